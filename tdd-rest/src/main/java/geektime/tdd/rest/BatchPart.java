@@ -0,0 +1,762 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class BatchPart extends HttpServletRequestWrapper {
+    static final long ASYNC_TIMEOUT = 30_000;
+
+    private static final String CONTENT_ID = "Content-ID";
+    private static final Locale ANY_LANGUAGE = Locale.of("*");
+    private static final Object REMOVED = new Object();
+
+    private final String method;
+    private final String path;
+    private final String servletPath;
+    private final String query;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final String contentId;
+    private final PartResponse response;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile ResourceContext context;
+    private volatile PartAsync async;
+    private Map<String, String[]> parameters;
+
+    private BatchPart(HttpServletRequest batch, String method, String path, String servletPath, String query,
+                      Map<String, List<String>> headers, byte[] body, String contentId) {
+        super(batch);
+        this.method = method;
+        this.path = path;
+        this.servletPath = servletPath;
+        this.query = query;
+        this.headers = headers;
+        this.body = body;
+        this.contentId = contentId;
+        this.response = new PartResponse();
+    }
+
+    static BatchPart parse(HttpServletRequest batch, String part) {
+        int separator = part.indexOf("\r\n\r\n");
+        if (separator < 0) return null;
+        String contentId = headers(part.substring(0, separator)).getOrDefault(CONTENT_ID, List.of()).stream().findFirst().orElse(null);
+
+        String message = part.substring(separator + 4);
+        int headersEnd = message.indexOf("\r\n\r\n");
+        String head = headersEnd < 0 ? message.strip() : message.substring(0, headersEnd);
+        byte[] body = headersEnd < 0 ? new byte[0] : message.substring(headersEnd + 4).getBytes(ISO_8859_1);
+
+        int lineEnd = head.indexOf("\r\n");
+        String[] requestLine = (lineEnd < 0 ? head : head.substring(0, lineEnd)).split(" ");
+        if (requestLine.length < 2 || !requestLine[1].startsWith("/")) return null;
+        String target = requestLine[1];
+        int question = target.indexOf('?');
+        String path = question < 0 ? target : target.substring(0, question);
+        String servletPath;
+        try {
+            servletPath = UriCodec.path(path);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return new BatchPart(batch, requestLine[0], path, servletPath, question < 0 ? null : target.substring(question + 1),
+                headers(lineEnd < 0 ? "" : head.substring(lineEnd + 2)), body, contentId);
+    }
+
+    private static Map<String, List<String>> headers(String lines) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String line : lines.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0)
+                headers.computeIfAbsent(line.substring(0, colon).trim(), name -> new ArrayList<>()).add(line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    void share(ResourceContext shared) {
+        context = new PartContext(shared, this);
+    }
+
+    ResourceContext context() {
+        return context;
+    }
+
+    void dispatch(ResourceServlet servlet) {
+        try {
+            servlet.dispatch(this, response);
+            PartAsync async = this.async;
+            if (async != null) async.await();
+        } catch (Throwable throwable) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    void writeTo(OutputStream out, String delimiter) throws IOException {
+        StringBuilder head = new StringBuilder("--").append(delimiter).append("\r\nContent-Type: application/http\r\n");
+        if (contentId != null) head.append(CONTENT_ID).append(": response-").append(contentId).append("\r\n");
+        response.head(head.append("\r\n"));
+        out.write(head.toString().getBytes(UTF_8));
+        response.body.writeTo(out);
+        out.write(new byte[]{'\r', '\n'});
+    }
+
+    private List<String> values(String name) {
+        List<String> values = headers.get(name);
+        if (values != null || !inherited(name)) return values;
+        Enumeration<String> batch = super.getHeaders(name);
+        return batch == null || !batch.hasMoreElements() ? null : Collections.list(batch);
+    }
+
+    private static boolean inherited(String name) {
+        return !name.regionMatches(true, 0, "Content-", 0, 8) && !name.equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getServletPath() {
+        return servletPath;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(getRequestURI());
+    }
+
+    @Override
+    public String getQueryString() {
+        return query;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = values(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = values(name);
+        return Collections.enumeration(values == null ? List.of() : values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        names.addAll(headers.keySet());
+        for (String name : Collections.list(super.getHeaderNames())) if (inherited(name)) names.add(name);
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) return -1;
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date header " + name + ": " + value, e);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader(HttpHeaders.CONTENT_TYPE);
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                return in.read(bytes, offset, length);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(getInputStream(), UTF_8));
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return getParameterMap().get(name);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        if (parameters != null) return parameters;
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (query != null)
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) continue;
+                int equals = pair.indexOf('=');
+                String name = UriCodec.decode(pair, 0, equals < 0 ? pair.length() : equals, true);
+                values.computeIfAbsent(name, n -> new ArrayList<>()).add(equals < 0 ? "" : UriCodec.decode(pair, equals + 1, pair.length(), true));
+            }
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        values.forEach((name, list) -> parameters.put(name, list.toArray(String[]::new)));
+        return this.parameters = Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        Object value = attributes.get(name);
+        if (value == null) return super.getAttribute(name);
+        return value == REMOVED ? null : value;
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        Set<String> names = new LinkedHashSet<>(Collections.list(super.getAttributeNames()));
+        attributes.forEach((name, value) -> {
+            if (value == REMOVED) names.remove(name);
+            else names.add(name);
+        });
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value == null ? REMOVED : value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.put(name, REMOVED);
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        return async = new PartAsync(this, response);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+        return startAsync();
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return async != null;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        if (async == null) throw new IllegalStateException();
+        return async;
+    }
+
+    static class PartResponse extends HttpServletResponseWrapper {
+        private static final HttpServletResponse DETACHED = (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(), new Class[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private volatile int status = HttpServletResponse.SC_OK;
+        private ServletOutputStream out;
+        private PrintWriter writer;
+
+        PartResponse() {
+            super(DETACHED);
+        }
+
+        private void head(StringBuilder head) {
+            if (writer != null) writer.flush();
+            Response.Status known = Response.Status.fromStatusCode(status);
+            head.append("HTTP/1.1 ").append(status).append(' ').append(known == null ? "" : known.getReasonPhrase()).append("\r\n");
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) continue;
+                for (String value : header.getValue()) head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+            head.append(HttpHeaders.CONTENT_LENGTH).append(": ").append(body.size()).append("\r\n\r\n");
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void sendError(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void sendError(int status, String message) {
+            this.status = status;
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            status = HttpServletResponse.SC_FOUND;
+            setHeader(HttpHeaders.LOCATION, location);
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            addHeader(HttpHeaders.SET_COOKIE, cookie.getName() + "=" + cookie.getValue());
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (value == null) headers.remove(name);
+            else headers.put(name, new ArrayList<>(List.of(value)));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            headers.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            addHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            setHeader(name, date(date));
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            addHeader(name, date(date));
+        }
+
+        private static String date(long date) {
+            return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC));
+        }
+
+        @Override
+        public String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values == null ? null : values.get(0);
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            return headers.getOrDefault(name, List.of());
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return headers.keySet();
+        }
+
+        @Override
+        public void setContentType(String type) {
+            setHeader(HttpHeaders.CONTENT_TYPE, type);
+        }
+
+        @Override
+        public String getContentType() {
+            return getHeader(HttpHeaders.CONTENT_TYPE);
+        }
+
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return UTF_8.name();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (out == null) out = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new IllegalStateException();
+                }
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                    body.write(bytes, offset, length);
+                }
+            };
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) writer = new PrintWriter(getOutputStream(), false, UTF_8);
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) writer.flush();
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            headers.clear();
+            resetBuffer();
+            status = HttpServletResponse.SC_OK;
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.reset();
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+        }
+
+        @Override
+        public int getBufferSize() {
+            return body.size();
+        }
+    }
+
+    private static class PartAsync implements AsyncContext {
+        private final BatchPart request;
+        private final PartResponse response;
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+        private volatile long timeout = ASYNC_TIMEOUT;
+
+        PartAsync(BatchPart request, PartResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        void await() throws InterruptedException {
+            if (timeout <= 0) {
+                completed.await();
+                return;
+            }
+            if (completed.await(timeout, TimeUnit.MILLISECONDS)) return;
+            for (AsyncListener listener : listeners) notify(listener::onTimeout);
+            if (completed.getCount() > 0) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                complete();
+            }
+        }
+
+        @Override
+        public void complete() {
+            if (completed.getCount() == 0) return;
+            completed.countDown();
+            for (AsyncListener listener : listeners) notify(listener::onComplete);
+        }
+
+        private void notify(Notification notification) {
+            try {
+                notification.accept(new AsyncEvent(this, request, response));
+            } catch (IOException ignored) {
+            }
+        }
+
+        private interface Notification {
+            void accept(AsyncEvent event) throws IOException;
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        @Override
+        public void dispatch() {
+            throw new IllegalStateException("Dispatch is not supported in batch parts");
+        }
+
+        @Override
+        public void dispatch(String path) {
+            dispatch();
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            dispatch();
+        }
+
+        @Override
+        public void start(Runnable run) {
+            CompletableFuture.runAsync(run);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> type) throws ServletException {
+            try {
+                return type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new ServletException(e);
+            }
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+    }
+
+    private record PartContext(ResourceContext shared, BatchPart part) implements ResourceContext {
+        @Override
+        public <T> T getResource(Class<T> type) {
+            if (type == HttpServletRequest.class) return type.cast(part);
+            if (type == HttpServletResponse.class) return type.cast(part.response);
+            if (type == HttpHeaders.class) return type.cast(new PartHeaders(part));
+            return shared.getResource(type);
+        }
+
+        @Override
+        public <T> T initResource(T resource) {
+            return shared.initResource(resource);
+        }
+    }
+
+    private record PartHeaders(BatchPart part) implements HttpHeaders {
+        @Override
+        public List<String> getRequestHeader(String name) {
+            return part.values(name);
+        }
+
+        @Override
+        public String getHeaderString(String name) {
+            List<String> values = part.values(name);
+            return values == null ? null : String.join(",", values);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getRequestHeaders() {
+            MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+            for (String name : Collections.list(part.getHeaderNames())) headers.put(name, part.values(name));
+            return headers;
+        }
+
+        @Override
+        public List<MediaType> getAcceptableMediaTypes() {
+            List<MediaType> types = new ArrayList<>();
+            for (String accept : Collections.list(part.getHeaders(ACCEPT)))
+                for (String type : accept.split(",")) if (!type.isBlank()) types.add(MediaType.valueOf(type.trim()));
+            return types.isEmpty() ? List.of(MediaType.WILDCARD_TYPE) : types;
+        }
+
+        @Override
+        public List<Locale> getAcceptableLanguages() {
+            List<Locale> languages = new ArrayList<>();
+            for (String accept : Collections.list(part.getHeaders(ACCEPT_LANGUAGE)))
+                for (String language : accept.split(",")) {
+                    String tag = language.split(";")[0].trim();
+                    if (!tag.isEmpty()) languages.add(tag.equals("*") ? ANY_LANGUAGE : Locale.forLanguageTag(tag));
+                }
+            return languages.isEmpty() ? List.of(ANY_LANGUAGE) : languages;
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            String type = part.getContentType();
+            return type == null ? null : MediaType.valueOf(type);
+        }
+
+        @Override
+        public Locale getLanguage() {
+            String language = part.getHeader(CONTENT_LANGUAGE);
+            return language == null ? null : Locale.forLanguageTag(language);
+        }
+
+        @Override
+        public Map<String, jakarta.ws.rs.core.Cookie> getCookies() {
+            Map<String, jakarta.ws.rs.core.Cookie> cookies = new LinkedHashMap<>();
+            for (String header : Collections.list(part.getHeaders(COOKIE)))
+                for (String pair : header.split(";")) {
+                    int equals = pair.indexOf('=');
+                    if (equals <= 0) continue;
+                    String name = pair.substring(0, equals).trim();
+                    cookies.put(name, new jakarta.ws.rs.core.Cookie.Builder(name).value(pair.substring(equals + 1).trim()).build());
+                }
+            return cookies;
+        }
+
+        @Override
+        public Date getDate() {
+            long date = part.getDateHeader(DATE);
+            return date < 0 ? null : new Date(date);
+        }
+
+        @Override
+        public int getLength() {
+            return part.getContentLength();
+        }
+    }
+}
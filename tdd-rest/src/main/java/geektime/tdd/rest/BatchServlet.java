@@ -0,0 +1,126 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class BatchServlet extends HttpServlet {
+    static final int MAX_PARTS = 100;
+    static final String MULTIPART_MIXED = "multipart/mixed";
+
+    private final ResourceServlet servlet;
+    private final int concurrency;
+    private final Executor executor;
+    private final ExecutorService owned;
+
+    public BatchServlet(ResourceServlet servlet, int concurrency) {
+        this(servlet, concurrency, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-", 0).factory()), true);
+    }
+
+    public BatchServlet(ResourceServlet servlet, int concurrency, Executor executor) {
+        this(servlet, concurrency, executor, false);
+    }
+
+    private BatchServlet(ResourceServlet servlet, int concurrency, Executor executor, boolean owned) {
+        if (concurrency < 1) throw new IllegalArgumentException("Batch concurrency must be at least 1: " + concurrency);
+        this.servlet = servlet;
+        this.concurrency = concurrency;
+        this.executor = executor;
+        this.owned = owned ? (ExecutorService) executor : null;
+    }
+
+    @Override
+    public void destroy() {
+        if (owned != null) owned.shutdown();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String boundary = boundary(req.getContentType());
+        byte[] body;
+        try {
+            body = boundary == null ? null : servlet.getRequestEntity().readAllBytes(req);
+        } catch (RequestEntity.TooLargeException e) {
+            resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        List<BatchPart> parts = body == null ? null : parse(req, body, boundary);
+        if (parts == null || parts.isEmpty() || parts.size() > MAX_PARTS) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        ResourceContext shared = servlet.getRuntime().createResourceContext(req, resp);
+        for (BatchPart part : parts) part.share(shared);
+        dispatch(parts);
+
+        String delimiter = "batch_" + UUID.randomUUID();
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(MULTIPART_MIXED + "; boundary=" + delimiter);
+        OutputStream out = Compression.DEFAULT.output(req, resp, true, BufferPool.DEFAULT.output(resp.getOutputStream()));
+        for (BatchPart part : parts) part.writeTo(out, delimiter);
+        out.write(("--" + delimiter + "--\r\n").getBytes(ISO_8859_1));
+        out.close();
+    }
+
+    private void dispatch(List<BatchPart> parts) {
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < parts.size(); i = next.getAndIncrement())
+                parts.get(i).dispatch(servlet);
+        };
+
+        CompletableFuture<?>[] workers = new CompletableFuture[Math.min(concurrency, parts.size()) - 1];
+        for (int i = 0; i < workers.length; i++) workers[i] = CompletableFuture.runAsync(worker, executor);
+        worker.run();
+        CompletableFuture.allOf(workers).join();
+    }
+
+    static String boundary(String contentType) {
+        if (contentType == null || !contentType.regionMatches(true, 0, MULTIPART_MIXED, 0, MULTIPART_MIXED.length())) return null;
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "boundary=", 0, 9)) {
+                String boundary = trimmed.substring(9);
+                return boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")
+                        ? boundary.substring(1, boundary.length() - 1) : boundary;
+            }
+        }
+        return null;
+    }
+
+    static List<BatchPart> parse(HttpServletRequest batch, byte[] body, String boundary) {
+        String content = new String(body, ISO_8859_1);
+        String delimiter = "--" + boundary;
+        int position = content.indexOf(delimiter);
+        if (position < 0) return null;
+
+        List<BatchPart> parts = new ArrayList<>();
+        while (true) {
+            position += delimiter.length();
+            if (content.startsWith("--", position)) return parts;
+            int start = content.indexOf("\r\n", position);
+            int end = start < 0 ? -1 : content.indexOf("\r\n" + delimiter, start);
+            if (end < 0 || parts.size() == MAX_PARTS) return null;
+
+            BatchPart part = BatchPart.parse(batch, content.substring(start + 2, end));
+            if (part == null) return null;
+            parts.add(part);
+            position = end + 2;
+        }
+    }
+}
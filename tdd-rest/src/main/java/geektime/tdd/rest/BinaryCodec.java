@@ -0,0 +1,425 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+abstract class BinaryCodec<T> {
+    private static final Map<Type, BinaryCodec<?>> CODECS = new ConcurrentHashMap<>();
+    private static final Map<Type, Deferred> COMPILING = new HashMap<>();
+
+    abstract void write(T value, BinaryWriter out) throws IOException;
+
+    abstract T read(BinaryReader in) throws IOException;
+
+    @SuppressWarnings("unchecked")
+    final void writeNullable(Object value, BinaryWriter out) throws IOException {
+        out.bool(value != null);
+        if (value != null) write((T) value, out);
+    }
+
+    final T readNullable(BinaryReader in) throws IOException {
+        return in.bool() ? read(in) : null;
+    }
+
+    static boolean supports(Type type) {
+        return !(of(type) instanceof Unsupported);
+    }
+
+    @SuppressWarnings("unchecked")
+    static BinaryCodec<Object> of(Type type) {
+        BinaryCodec<?> codec = CODECS.get(type);
+        if (codec != null) return (BinaryCodec<Object>) codec;
+        synchronized (COMPILING) {
+            codec = CODECS.get(type);
+            if (codec != null) return (BinaryCodec<Object>) codec;
+            Deferred deferred = COMPILING.get(type);
+            if (deferred != null) return deferred;
+
+            deferred = new Deferred();
+            COMPILING.put(type, deferred);
+            try {
+                codec = compile(type);
+            } catch (IllegalArgumentException e) {
+                codec = new Unsupported(e.getMessage());
+            } finally {
+                COMPILING.remove(type);
+            }
+            deferred.codec = (BinaryCodec<Object>) codec;
+            CODECS.put(type, codec);
+            return (BinaryCodec<Object>) codec;
+        }
+    }
+
+    private static BinaryCodec<Object> nested(Type type) {
+        BinaryCodec<Object> codec = of(type);
+        if (codec instanceof Unsupported unsupported) throw new IllegalArgumentException(unsupported.message);
+        return codec;
+    }
+
+    private static BinaryCodec<?> compile(Type type) {
+        if (type instanceof WildcardType wildcard) return nested(wildcard.getUpperBounds()[0]);
+        if (type instanceof TypeVariable<?> variable) return nested(variable.getBounds()[0]);
+        if (type instanceof GenericArrayType array)
+            return new ArrayCodec(JsonCodec.raw(array.getGenericComponentType()), nested(array.getGenericComponentType()));
+        Class<?> raw = JsonCodec.raw(type);
+
+        if (raw == String.class || raw == CharSequence.class) return Scalars.STRING;
+        if (raw == boolean.class || raw == Boolean.class) return Scalars.BOOLEAN;
+        if (raw == int.class || raw == Integer.class) return Scalars.INT;
+        if (raw == long.class || raw == Long.class) return Scalars.LONG;
+        if (raw == short.class || raw == Short.class) return Scalars.SHORT;
+        if (raw == byte.class || raw == Byte.class) return Scalars.BYTE;
+        if (raw == char.class || raw == Character.class) return Scalars.CHAR;
+        if (raw == double.class || raw == Double.class) return Scalars.DOUBLE;
+        if (raw == float.class || raw == Float.class) return Scalars.FLOAT;
+        if (raw == BigInteger.class) return Scalars.INTEGER;
+        if (raw == BigDecimal.class) return Scalars.DECIMAL;
+        if (raw == UUID.class) return Scalars.UUID;
+        if (raw == byte[].class) return Scalars.BYTES;
+        if (raw.isEnum()) return new EnumCodec(raw);
+        Function<String, Object> parser = JsonCodec.TEXT.get(raw);
+        if (parser != null) return new TextCodec(parser);
+
+        if (raw.isArray()) return new ArrayCodec(raw.getComponentType(), nested(raw.getComponentType()));
+        if (Collection.class.isAssignableFrom(raw) || raw == Iterable.class)
+            return new CollectionCodec(JsonCodec.collection(raw), nested(JsonCodec.argument(type, 0)));
+        if (Map.class.isAssignableFrom(raw))
+            return new MapCodec(JsonCodec.map(raw), nested(JsonCodec.argument(type, 0)), nested(JsonCodec.argument(type, 1)));
+        if (raw.isRecord()) return new RecordCodec(raw, JsonCodec.bindings(type));
+        throw new IllegalArgumentException("Unsupported binary type " + type.getTypeName());
+    }
+
+    private static final class Deferred extends BinaryCodec<Object> {
+        private BinaryCodec<Object> codec;
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            codec.write(value, out);
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            return codec.read(in);
+        }
+    }
+
+    private static final class Unsupported extends BinaryCodec<Object> {
+        private final String message;
+
+        Unsupported(String message) {
+            this.message = message;
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) {
+            throw new IllegalArgumentException(message);
+        }
+
+        @Override
+        Object read(BinaryReader in) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static final class Scalars<T> extends BinaryCodec<T> {
+        interface Writer<T> {
+            void write(T value, BinaryWriter out) throws IOException;
+        }
+
+        interface Reader<T> {
+            T read(BinaryReader in) throws IOException;
+        }
+
+        static final Scalars<Object> STRING = new Scalars<>((value, out) -> out.value(value.toString()), BinaryReader::string);
+        static final Scalars<Boolean> BOOLEAN = new Scalars<>((value, out) -> out.bool(value), BinaryReader::bool);
+        static final Scalars<Number> INT = new Scalars<>((value, out) -> out.signed(value.longValue()),
+                in -> Math.toIntExact(in.signed()));
+        static final Scalars<Number> LONG = new Scalars<>((value, out) -> out.signed(value.longValue()), BinaryReader::signed);
+        static final Scalars<Number> SHORT = new Scalars<>((value, out) -> out.signed(value.longValue()),
+                in -> narrow(in.signed(), Short.MIN_VALUE, Short.MAX_VALUE).shortValue());
+        static final Scalars<Number> BYTE = new Scalars<>((value, out) -> out.signed(value.longValue()),
+                in -> narrow(in.signed(), Byte.MIN_VALUE, Byte.MAX_VALUE).byteValue());
+        static final Scalars<Character> CHAR = new Scalars<>((value, out) -> out.signed(value),
+                in -> (char) narrow(in.signed(), Character.MIN_VALUE, Character.MAX_VALUE).intValue());
+        static final Scalars<Number> DOUBLE = new Scalars<>((value, out) -> out.value(value.doubleValue()), BinaryReader::doubleValue);
+        static final Scalars<Number> FLOAT = new Scalars<>((value, out) -> out.value(value.floatValue()), BinaryReader::floatValue);
+        static final Scalars<BigInteger> INTEGER = new Scalars<>((value, out) -> out.bytes(value.toByteArray()),
+                in -> new BigInteger(nonEmpty(in.bytes())));
+        static final Scalars<BigDecimal> DECIMAL = new Scalars<>((value, out) -> {
+            out.signed(value.scale());
+            out.bytes(value.unscaledValue().toByteArray());
+        }, in -> {
+            int scale = Math.toIntExact(in.signed());
+            return new BigDecimal(new BigInteger(nonEmpty(in.bytes())), scale);
+        });
+        static final Scalars<UUID> UUID = new Scalars<>((value, out) -> {
+            out.fixed64(value.getMostSignificantBits());
+            out.fixed64(value.getLeastSignificantBits());
+        }, in -> new UUID(in.fixed64(), in.fixed64()));
+        static final Scalars<byte[]> BYTES = new Scalars<>((value, out) -> out.bytes(value), BinaryReader::bytes);
+
+        private final Writer<T> writer;
+        private final Reader<T> reader;
+
+        Scalars(Writer<T> writer, Reader<T> reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        private static Long narrow(long value, long min, long max) {
+            if (value < min || value > max) throw new ArithmeticException("Value out of range: " + value);
+            return value;
+        }
+
+        private static byte[] nonEmpty(byte[] bytes) {
+            if (bytes.length == 0) throw new IllegalArgumentException("Empty integer magnitude");
+            return bytes;
+        }
+
+        @Override
+        void write(T value, BinaryWriter out) throws IOException {
+            writer.write(value, out);
+        }
+
+        @Override
+        T read(BinaryReader in) throws IOException {
+            return reader.read(in);
+        }
+    }
+
+    private static final class TextCodec extends BinaryCodec<Object> {
+        private final Function<String, Object> parser;
+
+        TextCodec(Function<String, Object> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            out.value(value.toString());
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            return parser.apply(in.string());
+        }
+    }
+
+    private static final class EnumCodec extends BinaryCodec<Object> {
+        private final Object[] constants;
+
+        EnumCodec(Class<?> type) {
+            this.constants = type.getEnumConstants();
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            out.varint(((Enum<?>) value).ordinal());
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            long ordinal = in.varint();
+            if (ordinal < 0 || ordinal >= constants.length) throw new IllegalArgumentException("Unknown ordinal " + ordinal);
+            return constants[(int) ordinal];
+        }
+    }
+
+    private static final class ArrayCodec extends BinaryCodec<Object> {
+        private final Class<?> component;
+        private final BinaryCodec<Object> codec;
+
+        ArrayCodec(Class<?> component, BinaryCodec<Object> codec) {
+            this.component = component;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            int length = Array.getLength(value);
+            out.varint(length);
+            if (value instanceof Object[] array) {
+                for (Object element : array) codec.writeNullable(element, out);
+            } else {
+                for (int i = 0; i < length; i++) codec.write(Array.get(value, i), out);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            int length = in.length();
+            in.enter();
+            List<Object> elements = new ArrayList<>(Math.min(length, 1024));
+            for (int i = 0; i < length; i++) elements.add(component.isPrimitive() ? codec.read(in) : codec.readNullable(in));
+            in.exit();
+            Object array = Array.newInstance(component, length);
+            for (int i = 0; i < length; i++) Array.set(array, i, elements.get(i));
+            return array;
+        }
+    }
+
+    private static final class CollectionCodec extends BinaryCodec<Object> {
+        private final Supplier<Collection<Object>> factory;
+        private final BinaryCodec<Object> codec;
+
+        CollectionCodec(Supplier<Collection<Object>> factory, BinaryCodec<Object> codec) {
+            this.factory = factory;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            Collection<?> collection = (Collection<?>) value;
+            out.varint(collection.size());
+            if (collection instanceof List<?> list && list instanceof RandomAccess) {
+                for (int i = 0, size = list.size(); i < size; i++) codec.writeNullable(list.get(i), out);
+            } else {
+                for (Object element : collection) codec.writeNullable(element, out);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            int size = in.length();
+            in.enter();
+            Collection<Object> collection = factory.get();
+            for (int i = 0; i < size; i++) collection.add(codec.readNullable(in));
+            in.exit();
+            return collection;
+        }
+    }
+
+    private static final class MapCodec extends BinaryCodec<Object> {
+        private final Supplier<Map<Object, Object>> factory;
+        private final BinaryCodec<Object> key;
+        private final BinaryCodec<Object> codec;
+
+        MapCodec(Supplier<Map<Object, Object>> factory, BinaryCodec<Object> key, BinaryCodec<Object> codec) {
+            this.factory = factory;
+            this.key = key;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                key.writeNullable(entry.getKey(), out);
+                codec.writeNullable(entry.getValue(), out);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            int size = in.length();
+            in.enter();
+            Map<Object, Object> map = factory.get();
+            for (int i = 0; i < size; i++) map.put(key.readNullable(in), codec.readNullable(in));
+            in.exit();
+            return map;
+        }
+    }
+
+    private static final class RecordCodec extends BinaryCodec<Object> {
+        private static final int OBJECT = 0, INT = 1, LONG = 2, FLOAT = 3, DOUBLE = 4, BOOLEAN = 5;
+
+        private final int[] kinds;
+        private final MethodHandle[] accessors;
+        private final BinaryCodec<Object>[] codecs;
+        private final MethodHandle constructor;
+
+        @SuppressWarnings("unchecked")
+        RecordCodec(Class<?> type, Map<TypeVariable<?>, Type> bindings) {
+            RecordComponent[] components = type.getRecordComponents();
+            kinds = new int[components.length];
+            accessors = new MethodHandle[components.length];
+            codecs = new BinaryCodec[components.length];
+            Class<?>[] parameters = new Class<?>[components.length];
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    Class<?> component = parameters[i] = components[i].getType();
+                    kinds[i] = component == int.class || component == short.class || component == byte.class || component == char.class ? INT
+                            : component == long.class ? LONG : component == float.class ? FLOAT : component == double.class ? DOUBLE
+                            : component == boolean.class ? BOOLEAN : OBJECT;
+                    Class<?> returns = switch (kinds[i]) {
+                        case INT -> int.class;
+                        case LONG -> long.class;
+                        case FLOAT -> float.class;
+                        case DOUBLE -> double.class;
+                        case BOOLEAN -> boolean.class;
+                        default -> Object.class;
+                    };
+                    Method accessor = components[i].getAccessor();
+                    accessor.setAccessible(true);
+                    accessors[i] = lookup.unreflect(accessor).asType(MethodType.methodType(returns, Object.class));
+                    codecs[i] = nested(JsonCodec.resolve(components[i].getGenericType(), bindings));
+                }
+                Constructor<?> canonical = type.getDeclaredConstructor(parameters);
+                canonical.setAccessible(true);
+                constructor = lookup.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, parameters.length).asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("Unsupported binary record " + type.getName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws IOException {
+            try {
+                for (int i = 0; i < kinds.length; i++) {
+                    MethodHandle accessor = accessors[i];
+                    switch (kinds[i]) {
+                        case INT -> out.signed((int) accessor.invokeExact(value));
+                        case LONG -> out.signed((long) accessor.invokeExact(value));
+                        case FLOAT -> out.value((float) accessor.invokeExact(value));
+                        case DOUBLE -> out.value((double) accessor.invokeExact(value));
+                        case BOOLEAN -> out.bool((boolean) accessor.invokeExact(value));
+                        default -> codecs[i].writeNullable((Object) accessor.invokeExact(value), out);
+                    }
+                }
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw JsonCodec.rethrow(e);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws IOException {
+            in.enter();
+            Object[] arguments = new Object[kinds.length];
+            for (int i = 0; i < kinds.length; i++)
+                arguments[i] = kinds[i] == OBJECT ? codecs[i].readNullable(in) : codecs[i].read(in);
+            in.exit();
+            try {
+                return (Object) constructor.invokeExact(arguments);
+            } catch (Throwable e) {
+                throw JsonCodec.rethrow(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.time.DateTimeException;
+
+class BinaryProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    static final String BINARY = "application/x-tdd-binary";
+    static final MediaType BINARY_TYPE = new MediaType("application", "x-tdd-binary");
+
+    private final BufferPool pool;
+
+    public BinaryProvider() {
+        this(BufferPool.DEFAULT);
+    }
+
+    public BinaryProvider(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    static boolean binary(MediaType mediaType) {
+        return mediaType != null && BINARY_TYPE.getType().equalsIgnoreCase(mediaType.getType())
+                && BINARY_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    static boolean preferred(String accept) {
+        if (accept == null || !mentioned(accept)) return false;
+        double binary = 0, other = 0;
+        for (String range : accept.split(",")) {
+            int semicolon = range.indexOf(';');
+            String name = (semicolon < 0 ? range : range.substring(0, semicolon)).trim();
+            double quality = semicolon < 0 ? 1 : quality(range.substring(semicolon + 1));
+            if (name.equalsIgnoreCase(BINARY)) binary = quality;
+            else other = Math.max(other, quality);
+        }
+        return binary > 0 && binary >= other;
+    }
+
+    private static boolean mentioned(String accept) {
+        for (int slash = accept.indexOf('/'); slash >= 0; slash = accept.indexOf('/', slash + 1))
+            if (accept.regionMatches(true, slash + 1, BINARY_TYPE.getSubtype(), 0, BINARY_TYPE.getSubtype().length())) return true;
+        return false;
+    }
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.trim();
+            if (!parameter.startsWith("q=")) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return binary(mediaType) && BinaryCodec.supports(genericType == null ? type : genericType);
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> headers, OutputStream entityStream) throws IOException {
+        BinaryCodec<Object> codec = BinaryCodec.of(genericType == null ? type : genericType);
+        try (BinaryWriter writer = new BinaryWriter(entityStream, pool)) {
+            codec.writeNullable(value, writer);
+        }
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return binary(mediaType) && BinaryCodec.supports(genericType == null ? type : genericType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> headers, InputStream entityStream) throws IOException {
+        BinaryCodec<Object> codec = BinaryCodec.of(genericType == null ? type : genericType);
+        try (BinaryReader reader = new BinaryReader(entityStream, pool)) {
+            Object value = codec.readNullable(reader);
+            reader.finish();
+            return value;
+        } catch (BinaryReader.MalformedException | ArithmeticException | IllegalArgumentException | DateTimeException e) {
+            throw new WebApplicationException(e, OutboundResponse.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+class BinaryReader implements AutoCloseable {
+    static final int MAX_DEPTH = 512;
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    static class MalformedException extends IOException {
+        MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    private final InputStream in;
+    private final BufferPool pool;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int depth;
+
+    BinaryReader(InputStream in) {
+        this(in, BufferPool.DEFAULT);
+    }
+
+    BinaryReader(InputStream in, BufferPool pool) {
+        this.in = in;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    byte raw() throws IOException {
+        if (position == limit && !fill()) throw new MalformedException("Unexpected end of binary entity");
+        return buffer[position++];
+    }
+
+    boolean bool() throws IOException {
+        byte b = raw();
+        if (b == 0) return false;
+        if (b == 1) return true;
+        throw new MalformedException("Invalid boolean " + b);
+    }
+
+    long varint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = raw();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new MalformedException("Varint exceeds 64 bits");
+    }
+
+    long signed() throws IOException {
+        long value = varint();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    int fixed32() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) value |= (raw() & 0xff) << 8 * i;
+        return value;
+    }
+
+    long fixed64() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) value |= (raw() & 0xffL) << 8 * i;
+        return value;
+    }
+
+    float floatValue() throws IOException {
+        return Float.intBitsToFloat(fixed32());
+    }
+
+    double doubleValue() throws IOException {
+        return Double.longBitsToDouble(fixed64());
+    }
+
+    int length() throws IOException {
+        long length = varint();
+        if (length < 0 || length > MAX_LENGTH) throw new MalformedException("Length " + length + " exceeds " + MAX_LENGTH);
+        return (int) length;
+    }
+
+    String string() throws IOException {
+        int length = length();
+        if (limit - position >= length) {
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        return new String(bytes(length), StandardCharsets.UTF_8);
+    }
+
+    byte[] bytes() throws IOException {
+        return bytes(length());
+    }
+
+    private byte[] bytes(int length) throws IOException {
+        byte[] bytes = new byte[Math.min(length, buffer.length)];
+        int read = 0;
+        while (read < length) {
+            if (position == limit && !fill()) throw new MalformedException("Unexpected end of binary entity");
+            if (read == bytes.length) bytes = Arrays.copyOf(bytes, (int) Math.min(length, bytes.length * 2L));
+            int count = Math.min(limit - position, bytes.length - read);
+            System.arraycopy(buffer, position, bytes, read, count);
+            position += count;
+            read += count;
+        }
+        return bytes;
+    }
+
+    void enter() throws MalformedException {
+        if (++depth > MAX_DEPTH) throw new MalformedException("Binary nesting exceeds " + MAX_DEPTH);
+    }
+
+    void exit() {
+        depth--;
+    }
+
+    void finish() throws IOException {
+        if (position < limit || fill()) throw new MalformedException("Unexpected content after binary entity");
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (buffer == null) return;
+        pool.release(buffer);
+        buffer = null;
+    }
+}
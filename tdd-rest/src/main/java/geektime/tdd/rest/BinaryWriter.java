@@ -0,0 +1,136 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+class BinaryWriter implements AutoCloseable {
+    private final OutputStream out;
+    private final BufferPool pool;
+    private byte[] buffer;
+    private int count;
+
+    BinaryWriter(OutputStream out) {
+        this(out, BufferPool.DEFAULT);
+    }
+
+    BinaryWriter(OutputStream out, BufferPool pool) {
+        this.out = out;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    void raw(byte b) throws IOException {
+        if (count == buffer.length) flush();
+        buffer[count++] = b;
+    }
+
+    void raw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - count) {
+            flush();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    void bool(boolean value) throws IOException {
+        raw((byte) (value ? 1 : 0));
+    }
+
+    void varint(long value) throws IOException {
+        if (buffer.length - count < 10) flush();
+        while ((value & ~0x7fL) != 0) {
+            buffer[count++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    void signed(long value) throws IOException {
+        varint(value << 1 ^ value >> 63);
+    }
+
+    void fixed32(int value) throws IOException {
+        if (buffer.length - count < 4) flush();
+        for (int i = 0; i < 4; i++, value >>>= 8) buffer[count++] = (byte) value;
+    }
+
+    void fixed64(long value) throws IOException {
+        if (buffer.length - count < 8) flush();
+        for (int i = 0; i < 8; i++, value >>>= 8) buffer[count++] = (byte) value;
+    }
+
+    void value(float value) throws IOException {
+        fixed32(Float.floatToRawIntBits(value));
+    }
+
+    void value(double value) throws IOException {
+        fixed64(Double.doubleToRawLongBits(value));
+    }
+
+    void bytes(byte[] bytes) throws IOException {
+        varint(bytes.length);
+        raw(bytes);
+    }
+
+    void value(String value) throws IOException {
+        int length = value.length();
+        varint(utf8Length(value));
+        for (int i = 0; i < length; i++) {
+            if (buffer.length - count < 4) flush();
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xc0 | c >> 6);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, value.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | code >> 18);
+                buffer[count++] = (byte) (0x80 | code >> 12 & 0x3f);
+                buffer[count++] = (byte) (0x80 | code >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | code & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xe0 | c >> 12);
+                buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length(), bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) bytes++;
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) bytes += 2;
+        }
+        return bytes;
+    }
+
+    void flush() throws IOException {
+        if (count == 0) return;
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) return;
+        try {
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
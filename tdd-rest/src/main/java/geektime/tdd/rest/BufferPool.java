@@ -0,0 +1,114 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BufferPool {
+    static final BufferPool DEFAULT = new BufferPool(8192, 256);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) return new byte[bufferSize];
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer.length != bufferSize) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+    public OutputStream output(OutputStream out) {
+        return new PooledOutputStream(out);
+    }
+
+    int pooled() {
+        return pooled.get();
+    }
+
+    static void discard(OutputStream out) {
+        if (out instanceof BufferPool.PooledOutputStream pooled) pooled.discard();
+    }
+
+    private class PooledOutputStream extends OutputStream {
+        private final OutputStream out;
+        private byte[] buffer;
+        private int count;
+
+        PooledOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            byte[] buffer = buffer();
+            if (count == buffer.length) drain();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            byte[] buffer = buffer();
+            if (length >= buffer.length) {
+                drain();
+                out.write(bytes, offset, length);
+                return;
+            }
+            if (length > buffer.length - count) drain();
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) return;
+            try {
+                drain();
+            } finally {
+                release(buffer);
+                buffer = null;
+            }
+        }
+
+        void discard() {
+            if (buffer == null) return;
+            release(buffer);
+            buffer = null;
+            count = 0;
+        }
+
+        private byte[] buffer() {
+            if (buffer == null) buffer = acquire();
+            return buffer;
+        }
+
+        private void drain() throws IOException {
+            if (count == 0) return;
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+class Compression {
+    static final Compression DEFAULT = new Compression(1024, Deflater.DEFAULT_COMPRESSION, 64);
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final String VARY = "Vary";
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final Set<String> COMPRESSED_TYPES = Set.of("image", "video", "audio");
+    private static final Set<String> COMPRESSED_SUBTYPES = Set.of("zip", "gzip", "x-gzip", "zstd", "x-bzip2", "x-xz",
+            "x-7z-compressed", "pdf", "octet-stream");
+
+    private final int threshold;
+    private final Deflaters gzip;
+    private final Deflaters deflate;
+
+    public Compression(int threshold, int level, int maxPooled) {
+        this.threshold = threshold;
+        this.gzip = new Deflaters(level, true, maxPooled);
+        this.deflate = new Deflaters(level, false, maxPooled);
+    }
+
+    public OutputStream output(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response, OutputStream out) {
+        return output(req, resp, compressible(response), out);
+    }
+
+    public OutputStream output(HttpServletRequest req, HttpServletResponse resp, boolean compressible, OutputStream out) {
+        if (!compressible) return out;
+        String vary = resp.getHeaders(VARY).isEmpty() ? null : String.join(", ", resp.getHeaders(VARY));
+        resp.setHeader(VARY, OutboundResponse.vary(vary, HttpHeaders.ACCEPT_ENCODING));
+
+        String encoding = encoding(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null) return out;
+        return new CompressingOutputStream(resp, out, encoding, encoding.equals(GZIP) ? gzip : deflate);
+    }
+
+    static void discard(OutputStream out) {
+        if (out instanceof CompressingOutputStream compressing) compressing.discard();
+        else BufferPool.discard(out);
+    }
+
+    static boolean compressible(OutboundResponse response) {
+        int status = response.getStatus();
+        if (status == 204 || status == 304 || status < 200) return false;
+
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || headers.containsKey(HttpHeaders.CONTENT_LENGTH)) return false;
+
+        MediaType type = response.getMediaType();
+        return type == null || !(COMPRESSED_TYPES.contains(type.getType()) || COMPRESSED_SUBTYPES.contains(type.getSubtype()));
+    }
+
+    static String encoding(String accept) {
+        if (accept == null) return null;
+        double gzip = -1, deflate = -1, any = -1;
+        for (String coding : accept.split(",")) {
+            int semicolon = coding.indexOf(';');
+            String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim();
+            double quality = semicolon < 0 ? 1 : quality(coding.substring(semicolon + 1));
+            if (name.equalsIgnoreCase(GZIP) || name.equalsIgnoreCase("x-gzip")) gzip = quality;
+            else if (name.equalsIgnoreCase(DEFLATE)) deflate = quality;
+            else if (name.equals("*")) any = quality;
+        }
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+        if (gzip > 0 && gzip >= deflate) return GZIP;
+        if (deflate > 0) return DEFLATE;
+        return null;
+    }
+
+    private static double quality(String parameters) {
+        String parameter = parameters.trim();
+        if (!parameter.startsWith("q=")) return 1;
+        try {
+            return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Deflaters {
+        private final int level;
+        private final boolean nowrap;
+        private final int maxPooled;
+        private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pooled = new AtomicInteger();
+
+        Deflaters(int level, boolean nowrap, int maxPooled) {
+            this.level = level;
+            this.nowrap = nowrap;
+            this.maxPooled = maxPooled;
+        }
+
+        Deflater acquire() {
+            Deflater deflater = deflaters.poll();
+            if (deflater == null) return new Deflater(level, nowrap);
+            pooled.decrementAndGet();
+            return deflater;
+        }
+
+        void release(Deflater deflater) {
+            if (pooled.incrementAndGet() > maxPooled) {
+                pooled.decrementAndGet();
+                deflater.end();
+                return;
+            }
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private class CompressingOutputStream extends OutputStream {
+        private final HttpServletResponse resp;
+        private final OutputStream out;
+        private final String encoding;
+        private final Deflaters deflaters;
+
+        private byte[] pending = BufferPool.DEFAULT.acquire();
+        private int count;
+        private boolean identity;
+        private Deflater deflater;
+        private byte[] buffer;
+        private CRC32 crc;
+
+        CompressingOutputStream(HttpServletResponse resp, OutputStream out, String encoding, Deflaters deflaters) {
+            this.resp = resp;
+            this.out = out;
+            this.encoding = encoding;
+            this.deflaters = deflaters;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (identity) {
+                out.write(bytes, offset, length);
+                return;
+            }
+            if (deflater == null) {
+                if (count + length <= threshold && count + length <= pending.length) {
+                    System.arraycopy(bytes, offset, pending, count, length);
+                    count += length;
+                    return;
+                }
+                start();
+            }
+            deflate(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflater != null) {
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, written);
+                } while (written == buffer.length);
+            } else if (!identity) {
+                identity = true;
+                drainPending();
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+                if (crc != null) trailer();
+                deflaters.release(deflater);
+                BufferPool.DEFAULT.release(buffer);
+                deflater = null;
+                identity = true;
+            } else if (!identity) {
+                identity = true;
+                drainPending();
+            }
+            out.close();
+        }
+
+        void discard() {
+            if (deflater != null) {
+                deflaters.release(deflater);
+                BufferPool.DEFAULT.release(buffer);
+                deflater = null;
+            }
+            if (pending != null) {
+                BufferPool.DEFAULT.release(pending);
+                pending = null;
+            }
+            identity = true;
+            BufferPool.discard(out);
+        }
+
+        private void start() throws IOException {
+            resp.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            String entityTag = resp.getHeader(HttpHeaders.ETAG);
+            if (entityTag != null && !entityTag.startsWith("W/")) resp.setHeader(HttpHeaders.ETAG, "W/" + entityTag);
+            deflater = deflaters.acquire();
+            buffer = BufferPool.DEFAULT.acquire();
+            if (encoding.equals(GZIP)) {
+                crc = new CRC32();
+                out.write(GZIP_HEADER);
+            }
+            byte[] pending = this.pending;
+            this.pending = null;
+            deflate(pending, 0, count);
+            BufferPool.DEFAULT.release(pending);
+        }
+
+        private void deflate(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return;
+            if (crc != null) crc.update(bytes, offset, length);
+            deflater.setInput(bytes, offset, length);
+            while (!deflater.needsInput()) {
+                int written = deflater.deflate(buffer);
+                if (written > 0) out.write(buffer, 0, written);
+            }
+        }
+
+        private void drainPending() throws IOException {
+            out.write(pending, 0, count);
+            BufferPool.DEFAULT.release(pending);
+            pending = null;
+        }
+
+        private void trailer() throws IOException {
+            int value = (int) crc.getValue();
+            int size = (int) deflater.getBytesRead();
+            out.write(new byte[]{
+                    (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
+                    (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)});
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+class ConditionalRequest implements Request {
+    static final String IF_MATCH = "If-Match";
+    static final String IF_NONE_MATCH = "If-None-Match";
+    static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
+    static final String IF_RANGE = "If-Range";
+
+    private final HttpServletRequest request;
+
+    public ConditionalRequest(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    static boolean notModified(HttpServletRequest request, Object entityTag, Object lastModified) {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) return false;
+
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null) return entityTag != null && matches(ifNoneMatch, opaque(entityTag), false);
+
+        String ifModifiedSince = request.getHeader(IF_MODIFIED_SINCE);
+        if (ifModifiedSince == null || lastModified == null) return false;
+        long since = seconds(ifModifiedSince);
+        long modified = lastModified instanceof Date date ? date.getTime() / 1000 : seconds(lastModified.toString());
+        return since >= 0 && modified >= 0 && modified <= since;
+    }
+
+    static boolean rangeable(HttpServletRequest request, String entityTag, String lastModified) {
+        String ifRange = request.getHeader(IF_RANGE);
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return entityTag != null && ifRange.startsWith("\"") && ifRange.equals(entityTag.trim());
+        long date = seconds(ifRange);
+        return date >= 0 && lastModified != null && date == seconds(lastModified);
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public Variant selectVariant(List<Variant> variants) {
+        if (variants == null || variants.isEmpty()) throw new IllegalArgumentException("Variants must not be empty");
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String acceptLanguage = request.getHeader(HttpHeaders.ACCEPT_LANGUAGE);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        Variant selected = null;
+        double best = 0;
+        for (Variant variant : variants) {
+            MediaType type = variant.getMediaType();
+            Locale language = variant.getLanguage();
+            double quality = quality(accept, type == null ? null : type.getType() + "/" + type.getSubtype(), ConditionalRequest::mediaRange)
+                    * quality(acceptLanguage, language == null ? null : language.toLanguageTag(), ConditionalRequest::languageRange)
+                    * quality(acceptEncoding, variant.getEncoding(), ConditionalRequest::encodingRange);
+            if (quality > best) {
+                best = quality;
+                selected = variant;
+            }
+        }
+        return selected;
+    }
+
+    private interface Range {
+        int specificity(String range, String value);
+    }
+
+    private static double quality(String header, String value, Range range) {
+        if (header == null || value == null) return 1;
+        String lower = value.toLowerCase(Locale.ROOT);
+        int specificity = -1;
+        double quality = 0;
+        for (String element : header.split(",")) {
+            String[] parameters = element.split(";");
+            int matched = range.specificity(parameters[0].trim().toLowerCase(Locale.ROOT), lower);
+            if (matched <= specificity) continue;
+            specificity = matched;
+            quality = q(parameters);
+        }
+        return quality;
+    }
+
+    private static double q(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (!parameter.regionMatches(true, 0, "q=", 0, 2)) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private static int mediaRange(String range, String type) {
+        if (range.equals("*/*")) return 0;
+        if (range.endsWith("/*")) return type.startsWith(range.substring(0, range.length() - 1)) ? 1 : -1;
+        return range.equals(type) ? 2 : -1;
+    }
+
+    private static int languageRange(String range, String tag) {
+        if (range.equals("*")) return 0;
+        return tag.equals(range) || tag.startsWith(range + "-") ? range.length() : -1;
+    }
+
+    private static int encodingRange(String range, String encoding) {
+        if (range.equals("*")) return 0;
+        return range.equals(encoding) ? 1 : -1;
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(EntityTag eTag) {
+        String ifMatch = request.getHeader(IF_MATCH);
+        if (ifMatch != null && (eTag.isWeak() || !matches(ifMatch, eTag.getValue(), true)))
+            return status(Response.Status.PRECONDITION_FAILED);
+
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, eTag.getValue(), false))
+            return safe() ? status(Response.Status.NOT_MODIFIED).header(HttpHeaders.ETAG, quoted(eTag))
+                    : status(Response.Status.PRECONDITION_FAILED);
+        return null;
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified) {
+        long modified = lastModified.getTime() / 1000;
+
+        String ifUnmodifiedSince = request.getHeader(IF_UNMODIFIED_SINCE);
+        if (ifUnmodifiedSince != null) {
+            long since = seconds(ifUnmodifiedSince);
+            if (since >= 0 && modified > since) return status(Response.Status.PRECONDITION_FAILED);
+        }
+
+        String ifModifiedSince = request.getHeader(IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && safe()) {
+            long since = seconds(ifModifiedSince);
+            if (since >= 0 && modified <= since) return status(Response.Status.NOT_MODIFIED);
+        }
+        return null;
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag) {
+        Response.ResponseBuilder tagged = evaluatePreconditions(eTag);
+        if (tagged != null || request.getHeader(IF_NONE_MATCH) != null) return tagged;
+        return evaluatePreconditions(lastModified);
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions() {
+        if (request.getHeader(IF_MATCH) != null) return status(Response.Status.PRECONDITION_FAILED);
+        return null;
+    }
+
+    private static OutboundResponseBuilder status(Response.Status status) {
+        return OutboundResponse.builder().status(status);
+    }
+
+    private static String quoted(EntityTag tag) {
+        return (tag.isWeak() ? "W/\"" : "\"") + tag.getValue() + '"';
+    }
+
+    private boolean safe() {
+        String method = request.getMethod();
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+    }
+
+    private static boolean matches(String header, String opaque, boolean strong) {
+        int length = header.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && (header.charAt(i) == ',' || header.charAt(i) == ' ')) i++;
+            if (i >= length) break;
+            if (header.charAt(i) == '*') return true;
+
+            boolean weak = header.startsWith("W/", i);
+            if (weak) i += 2;
+            if (i >= length || header.charAt(i) != '"') return false;
+            int end = header.indexOf('"', i + 1);
+            if (end < 0) return false;
+            if ((!strong || !weak) && header.regionMatches(i + 1, opaque, 0, opaque.length()) && end - i - 1 == opaque.length())
+                return true;
+            i = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaque(Object entityTag) {
+        if (entityTag instanceof EntityTag tag) return tag.getValue();
+        String value = entityTag.toString();
+        if (value.startsWith("W/")) value = value.substring(2);
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"')
+            value = value.substring(1, value.length() - 1);
+        return value;
+    }
+
+    private static long seconds(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    static class HashingOutputStream extends ByteArrayOutputStream {
+        private final MessageDigest digest;
+
+        HashingOutputStream() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            digest.update((byte) b);
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+            super.write(bytes, offset, length);
+        }
+
+        String entityTag() {
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16)) + '"';
+        }
+    }
+}
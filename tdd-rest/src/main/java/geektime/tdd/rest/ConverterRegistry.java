@@ -0,0 +1,199 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.ext.ParamConverter;
+import jakarta.ws.rs.ext.ParamConverterProvider;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+class ConverterRegistry {
+    static final ConverterRegistry DEFAULT = new ConverterRegistry(List.of());
+
+    private static final MethodType FACTORY = MethodType.methodType(Object.class, String.class);
+
+    private final List<ParamConverterProvider> providers;
+    private final Map<Key, Converter> converters = new ConcurrentHashMap<>();
+
+    public ConverterRegistry(List<ParamConverterProvider> providers) {
+        this.providers = List.copyOf(providers);
+    }
+
+    interface Converter {
+        Object convert(String value);
+
+        default Object convert(CharSequence value, int start, int end) {
+            return convert(value.subSequence(start, end).toString());
+        }
+    }
+
+    private interface Ranged extends Converter {
+        @Override
+        Object convert(CharSequence value, int start, int end);
+
+        @Override
+        default Object convert(String value) {
+            return convert(value, 0, value.length());
+        }
+    }
+
+    record Scalar(Converter converter, Object missing) {
+    }
+
+    Function<List<String>, Object> binder(Class<?> type, Type genericType, Annotation[] annotations) {
+        DefaultValue defaultValue = find(annotations, DefaultValue.class);
+
+        if (type == List.class || type == Set.class || type == SortedSet.class) {
+            Class<?> element = element(genericType);
+            Converter converter = converter(element, element, annotations);
+            Supplier<Collection<Object>> collection = type == List.class ? ArrayList::new : type == Set.class ? HashSet::new : TreeSet::new;
+            return values -> {
+                Collection<Object> result = collection.get();
+                if (values == null || values.isEmpty()) {
+                    if (defaultValue != null) result.add(converter.convert(defaultValue.value()));
+                } else {
+                    for (String value : values) result.add(converter.convert(value));
+                }
+                return result;
+            };
+        }
+
+        Scalar scalar = scalar(type, genericType, annotations);
+        Converter converter = scalar.converter();
+        Object missing = scalar.missing();
+        return values -> values == null || values.isEmpty() ? missing : converter.convert(values.get(0));
+    }
+
+    Scalar scalar(Class<?> type, Type genericType, Annotation[] annotations) {
+        if (type == List.class || type == Set.class || type == SortedSet.class) return null;
+        DefaultValue defaultValue = find(annotations, DefaultValue.class);
+        Converter converter = converter(type, genericType, annotations);
+        return new Scalar(converter, defaultValue != null ? converter.convert(defaultValue.value()) : zero(type));
+    }
+
+    Converter converter(Class<?> type, Type genericType, Annotation[] annotations) {
+        return converters.computeIfAbsent(new Key(type, genericType, List.of(annotations)), this::resolve);
+    }
+
+    private Converter resolve(Key key) {
+        for (ParamConverterProvider provider : providers) {
+            ParamConverter converter = provider.getConverter(key.type, key.genericType, key.annotations.toArray(Annotation[]::new));
+            if (converter != null) return converter::fromString;
+        }
+        return builtin(key.type);
+    }
+
+    private static Converter builtin(Class<?> type) {
+        if (type == String.class || type == Object.class) return value -> value;
+        if (type == int.class || type == Integer.class) return ranged((value, start, end) -> Integer.parseInt(value, start, end, 10));
+        if (type == long.class || type == Long.class) return ranged((value, start, end) -> Long.parseLong(value, start, end, 10));
+        if (type == short.class || type == Short.class) return ranged((value, start, end) -> (short) parse(value, start, end, Short.MIN_VALUE, Short.MAX_VALUE));
+        if (type == byte.class || type == Byte.class) return ranged((value, start, end) -> (byte) parse(value, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        if (type == boolean.class || type == Boolean.class) return ranged(ConverterRegistry::parseBoolean);
+        if (type == double.class || type == Double.class) return Double::valueOf;
+        if (type == float.class || type == Float.class) return Float::valueOf;
+        if (type == char.class || type == Character.class) return ranged(ConverterRegistry::parseChar);
+        if (type == UUID.class) return UUID::fromString;
+
+        MethodHandle factory = factory(type);
+        return value -> {
+            try {
+                return (Object) factory.invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException(e);
+            }
+        };
+    }
+
+    private static MethodHandle factory(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<String> names = type.isEnum() ? List.of("fromString", "valueOf") : List.of("valueOf", "fromString");
+        try {
+            for (String name : names) {
+                Method method = method(type, name);
+                if (method != null) return lookup.unreflect(method).asType(FACTORY);
+            }
+            Constructor<?> constructor = type.getConstructor(String.class);
+            constructor.trySetAccessible();
+            return lookup.unreflectConstructor(constructor).asType(FACTORY);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No converter for parameter type " + type.getName(), e);
+        }
+    }
+
+    private static Method method(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name, String.class);
+            if (!Modifier.isStatic(method.getModifiers()) || !type.isAssignableFrom(method.getReturnType())) return null;
+            method.trySetAccessible();
+            return method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Converter ranged(Ranged converter) {
+        return converter;
+    }
+
+    private static int parse(CharSequence value, int start, int end, int min, int max) {
+        int result = Integer.parseInt(value, start, end, 10);
+        if (result < min || result > max)
+            throw new NumberFormatException("Value out of range: " + value.subSequence(start, end));
+        return result;
+    }
+
+    private static Object parseBoolean(CharSequence value, int start, int end) {
+        return end - start == 4
+                && Character.toLowerCase(value.charAt(start)) == 't'
+                && Character.toLowerCase(value.charAt(start + 1)) == 'r'
+                && Character.toLowerCase(value.charAt(start + 2)) == 'u'
+                && Character.toLowerCase(value.charAt(start + 3)) == 'e';
+    }
+
+    private static Object parseChar(CharSequence value, int start, int end) {
+        if (end - start != 1) throw new IllegalArgumentException("Not a single character: " + value.subSequence(start, end));
+        return value.charAt(start);
+    }
+
+    private static Object zero(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return 0;
+    }
+
+    private static Class<?> element(Type genericType) {
+        if (genericType instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] instanceof Class<?> element)
+            return element;
+        return String.class;
+    }
+
+    private static <A extends Annotation> A find(Annotation[] annotations, Class<A> type) {
+        for (Annotation annotation : annotations)
+            if (type.isInstance(annotation)) return type.cast(annotation);
+        return null;
+    }
+
+    private record Key(Class<?> type, Type genericType, List<Annotation> annotations) {
+    }
+}
@@ -0,0 +1,177 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+class EventSink implements SseEventSink, WriteListener {
+    static final int DEFAULT_CAPACITY = 64;
+
+    static class SlowConsumerException extends IOException {
+        SlowConsumerException(int capacity) {
+            super("Evicted slow consumer with " + capacity + " pending events");
+        }
+    }
+
+    private final Providers providers;
+    private final int capacity;
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+    private final List<Consumer<EventSink>> closeListeners = new CopyOnWriteArrayList<>();
+    private AsyncContext async;
+    private ServletOutputStream out;
+    private boolean flushed;
+    private boolean closing;
+    private boolean completed;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    EventSink(Providers providers) {
+        this(providers, DEFAULT_CAPACITY);
+    }
+
+    EventSink(Providers providers, int capacity) {
+        this.providers = providers;
+        this.capacity = capacity;
+    }
+
+    Throwable getFailure() {
+        return failure;
+    }
+
+    void onClose(Consumer<EventSink> listener) {
+        closeListeners.add(listener);
+        if (closed) listener.accept(this);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public CompletionStage<?> send(OutboundSseEvent event) {
+        if (offer(ServerSentEvents.frame(event, providers))) return ServerSentEvents.SENT;
+        Throwable failure = this.failure;
+        return CompletableFuture.failedStage(failure != null ? failure : new IllegalStateException("Event sink is closed"));
+    }
+
+    boolean offer(byte[] frame) {
+        boolean evicted = false;
+        try {
+            synchronized (this) {
+                if (closing) return false;
+                if (out != null && frames.size() >= capacity) evicted = true;
+                else {
+                    frames.add(frame);
+                    if (out != null) drain();
+                }
+            }
+        } catch (IOException e) {
+            disconnected(e);
+            return false;
+        }
+        if (evicted) disconnected(new SlowConsumerException(capacity));
+        return !evicted;
+    }
+
+    synchronized boolean isAttached() {
+        return async != null;
+    }
+
+    synchronized void attach(AsyncContext async, ServletOutputStream out) {
+        this.async = async;
+        this.out = out;
+        out.setWriteListener(this);
+    }
+
+    @Override
+    public void onWritePossible() {
+        boolean done;
+        try {
+            synchronized (this) {
+                if (completed) return;
+                done = drain() && closing;
+            }
+        } catch (IOException e) {
+            disconnected(e);
+            return;
+        }
+        if (done) complete();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        disconnected(throwable);
+    }
+
+    void disconnected(Throwable throwable) {
+        boolean first;
+        synchronized (this) {
+            frames.clear();
+            first = !closing;
+            closing = true;
+            if (first) failure = throwable;
+        }
+        if (first) closed();
+        complete();
+    }
+
+    @Override
+    public void close() {
+        boolean done;
+        try {
+            synchronized (this) {
+                if (closing) return;
+                closing = true;
+                done = out != null && drain();
+            }
+        } catch (IOException e) {
+            failure = e;
+            done = true;
+        }
+        closed();
+        if (done) complete();
+    }
+
+    private boolean drain() throws IOException {
+        while (out.isReady()) {
+            byte[] frame = frames.poll();
+            if (frame != null) {
+                out.write(frame);
+                flushed = false;
+            } else if (!flushed) {
+                flushed = true;
+                out.flush();
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closed() {
+        closed = true;
+        for (Consumer<EventSink> listener : closeListeners) listener.accept(this);
+    }
+
+    private void complete() {
+        AsyncContext async;
+        synchronized (this) {
+            if (completed || this.async == null) return;
+            completed = true;
+            async = this.async;
+        }
+        async.complete();
+    }
+}
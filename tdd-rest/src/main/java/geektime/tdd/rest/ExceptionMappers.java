@@ -0,0 +1,29 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Providers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class ExceptionMappers {
+    private final Providers providers;
+    private final Map<Class<?>, ExceptionMapper> mappers = new ConcurrentHashMap<>();
+
+    public ExceptionMappers(Providers providers) {
+        this.providers = providers;
+    }
+
+    public Providers getProviders() {
+        return providers;
+    }
+
+    public ExceptionMapper get(Class<? extends Throwable> type) {
+        ExceptionMapper mapper = mappers.get(type);
+        if (mapper != null) return mapper;
+
+        mapper = providers.getExceptionMapper(type);
+        if (mapper != null) mappers.putIfAbsent(type, mapper);
+        return mapper;
+    }
+}
@@ -0,0 +1,110 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.core.HttpHeaders;
+import org.eclipse.jetty.server.HttpOutput;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class FileEntity implements Closeable {
+    static final long MAX_MAPPED_REGION = 64L * 1024 * 1024;
+
+    private static final String RANGE = "Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+
+    private final FileChannel channel;
+
+    private FileEntity(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static FileEntity of(Object entity) throws IOException {
+        if (entity instanceof FileChannel channel) return new FileEntity(channel);
+        if (entity instanceof Path path) return new FileEntity(FileChannel.open(path, StandardOpenOption.READ));
+        if (entity instanceof File file) return new FileEntity(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        return null;
+    }
+
+    void write(HttpServletRequest req, HttpServletResponse resp, int status, boolean head) throws IOException {
+        long size = channel.size();
+        long start = 0;
+        long length = size;
+
+        String range = status == HttpServletResponse.SC_OK && (HttpMethod.GET.equals(req.getMethod()) || head)
+                ? req.getHeader(RANGE) : null;
+        if (status == HttpServletResponse.SC_OK) resp.setHeader(ACCEPT_RANGES, "bytes");
+        if (range != null && !ConditionalRequest.rangeable(req, resp.getHeader(HttpHeaders.ETAG), resp.getHeader(HttpHeaders.LAST_MODIFIED)))
+            range = null;
+        if (range != null) {
+            long[] satisfiable = range(range, size);
+            if (satisfiable == null) {
+                resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                resp.setHeader(CONTENT_RANGE, "bytes */" + size);
+                resp.setContentLengthLong(0);
+                return;
+            }
+            if (satisfiable.length == 2) {
+                start = satisfiable[0];
+                length = satisfiable[1] - satisfiable[0] + 1;
+                status = HttpServletResponse.SC_PARTIAL_CONTENT;
+                resp.setHeader(CONTENT_RANGE, "bytes " + satisfiable[0] + "-" + satisfiable[1] + "/" + size);
+            }
+        }
+
+        resp.setStatus(status);
+        resp.setContentLengthLong(length);
+        if (!head) send(resp.getOutputStream(), start, length);
+    }
+
+    private void send(ServletOutputStream out, long start, long length) throws IOException {
+        if (out instanceof HttpOutput jetty) {
+            for (long position = start, end = start + length; position < end; position += MAX_MAPPED_REGION) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPED_REGION, end - position));
+                jetty.write(region);
+            }
+            return;
+        }
+        var target = Channels.newChannel(out);
+        for (long position = start, end = start + length; position < end; )
+            position += channel.transferTo(position, end - position, target);
+    }
+
+    static long[] range(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return new long[0];
+        int dash = header.indexOf('-', 6);
+        if (dash < 0) return new long[0];
+        try {
+            String first = header.substring(6, dash).trim();
+            String last = header.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix < 0) return new long[0];
+                if (suffix == 0 || size == 0) return null;
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) return new long[0];
+            if (start >= size) return null;
+            return new long[]{start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,214 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.Cookie;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+class FilteredRequest implements ContainerRequestContext {
+    private final ResourceContext context;
+    private final UriInfoBuilder builder;
+    private HttpServletRequest request;
+    private HttpHeaders headers;
+    private UriInfo uriInfo;
+    private SecurityContext securityContext;
+    private OutboundResponse aborted;
+
+    public FilteredRequest(ResourceContext context, UriInfoBuilder builder) {
+        this.context = context;
+        this.builder = builder;
+    }
+
+    OutboundResponse getAborted() {
+        return aborted;
+    }
+
+    private HttpServletRequest request() {
+        if (request == null) request = context.getResource(HttpServletRequest.class);
+        return request;
+    }
+
+    private HttpHeaders headers() {
+        if (headers == null) headers = context.getResource(HttpHeaders.class);
+        return headers;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return request().getAttribute(name);
+    }
+
+    @Override
+    public Collection<String> getPropertyNames() {
+        return Collections.list(request().getAttributeNames());
+    }
+
+    @Override
+    public void setProperty(String name, Object object) {
+        if (object == null) removeProperty(name);
+        else request().setAttribute(name, object);
+    }
+
+    @Override
+    public void removeProperty(String name) {
+        request().removeAttribute(name);
+    }
+
+    @Override
+    public UriInfo getUriInfo() {
+        if (uriInfo == null) uriInfo = builder.createUriInfo();
+        return uriInfo;
+    }
+
+    @Override
+    public void setRequestUri(URI requestUri) {
+        throw new IllegalStateException("Request URI can only be changed before matching");
+    }
+
+    @Override
+    public void setRequestUri(URI baseUri, URI requestUri) {
+        throw new IllegalStateException("Request URI can only be changed before matching");
+    }
+
+    @Override
+    public Request getRequest() {
+        return new ConditionalRequest(request());
+    }
+
+    @Override
+    public String getMethod() {
+        return request().getMethod();
+    }
+
+    @Override
+    public void setMethod(String method) {
+        throw new IllegalStateException("Request method can only be changed before matching");
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getHeaders() {
+        return headers().getRequestHeaders();
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        return headers().getHeaderString(name);
+    }
+
+    @Override
+    public Date getDate() {
+        return headers().getDate();
+    }
+
+    @Override
+    public Locale getLanguage() {
+        return headers().getLanguage();
+    }
+
+    @Override
+    public int getLength() {
+        return headers().getLength();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return headers().getMediaType();
+    }
+
+    @Override
+    public List<MediaType> getAcceptableMediaTypes() {
+        return headers().getAcceptableMediaTypes();
+    }
+
+    @Override
+    public List<Locale> getAcceptableLanguages() {
+        return headers().getAcceptableLanguages();
+    }
+
+    @Override
+    public Map<String, Cookie> getCookies() {
+        return headers().getCookies();
+    }
+
+    @Override
+    public boolean hasEntity() {
+        HttpServletRequest request = request();
+        return request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null;
+    }
+
+    @Override
+    public InputStream getEntityStream() {
+        try {
+            HttpServletRequest request = request();
+            if (request instanceof RequestEntity.EntityRequest entity) return entity.buffered();
+            return request.getInputStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void setEntityStream(InputStream input) {
+        if (!(request() instanceof RequestEntity.EntityRequest entity))
+            throw new IllegalStateException("Request has no entity stream to replace");
+        entity.replace(input);
+    }
+
+    @Override
+    public SecurityContext getSecurityContext() {
+        if (securityContext == null) {
+            HttpServletRequest request = request();
+            securityContext = new SecurityContext() {
+                @Override
+                public Principal getUserPrincipal() {
+                    return request.getUserPrincipal();
+                }
+
+                @Override
+                public boolean isUserInRole(String role) {
+                    return request.isUserInRole(role);
+                }
+
+                @Override
+                public boolean isSecure() {
+                    return request.isSecure();
+                }
+
+                @Override
+                public String getAuthenticationScheme() {
+                    return request.getAuthType();
+                }
+            };
+        }
+        return securityContext;
+    }
+
+    @Override
+    public void setSecurityContext(SecurityContext context) {
+        this.securityContext = context;
+    }
+
+    @Override
+    public void abortWith(Response response) {
+        this.aborted = (OutboundResponse) response;
+    }
+}
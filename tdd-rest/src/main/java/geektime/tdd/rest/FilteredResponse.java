@@ -0,0 +1,413 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Link;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class FilteredResponse extends OutboundResponse implements ContainerResponseContext {
+    private static final HeaderDelegates HEADERS = new HeaderDelegates();
+
+    interface EntityWriter {
+        void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                     MultivaluedMap<String, Object> headers, OutputStream out) throws IOException;
+    }
+
+    private final OutboundResponse response;
+    private final FilteredRequest request;
+    private final WriterInterceptor[] interceptors;
+    private final MultivaluedMap<String, Object> headers;
+    private StatusType status;
+    private GenericEntity entity;
+    private Annotation[] annotations;
+    private MediaType mediaType;
+    private final EntityStream origin = new EntityStream();
+    private OutputStream stream;
+
+    FilteredResponse(OutboundResponse response, FilteredRequest request, WriterInterceptor[] interceptors) {
+        this.response = response;
+        this.request = request;
+        this.interceptors = interceptors;
+        this.headers = new MultivaluedHashMap<>(response.getHeaders());
+        setStatus(response.getStatus());
+        this.entity = response.getGenericEntity();
+        this.annotations = response.getAnnotations();
+        this.mediaType = response.getMediaType();
+    }
+
+    boolean isIntercepted() {
+        return interceptors.length > 0 || stream != null;
+    }
+
+    void writeTo(GenericEntity entity, OutputStream out, EntityWriter writer) throws IOException {
+        origin.out = out;
+        if (stream == null) {
+            new Interception(entity, out, writer).proceed();
+            return;
+        }
+        try (OutputStream replaced = stream) {
+            new Interception(entity, replaced, writer).proceed();
+        }
+    }
+
+    @Override
+    GenericEntity getGenericEntity() {
+        return entity;
+    }
+
+    @Override
+    Annotation[] getAnnotations() {
+        return annotations;
+    }
+
+    @Override
+    public int getStatus() {
+        return status.getStatusCode();
+    }
+
+    @Override
+    public void setStatus(int code) {
+        this.status = statusType(code, null);
+    }
+
+    @Override
+    public StatusType getStatusInfo() {
+        return status;
+    }
+
+    @Override
+    public void setStatusInfo(StatusType statusInfo) {
+        this.status = statusInfo;
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getMetadata() {
+        return headers;
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getStringHeaders() {
+        MultivaluedMap<String, String> strings = new MultivaluedHashMap<>();
+        headers.forEach((name, values) -> values.forEach(value -> strings.add(name, HEADERS.toString(value))));
+        return strings;
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        List<Object> values = headers.get(name);
+        if (values == null) return null;
+        return values.stream().map(HEADERS::toString).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        Object type = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (type == null) return mediaType;
+        return type instanceof MediaType media ? media : MediaType.valueOf(type.toString());
+    }
+
+    @Override
+    public boolean hasEntity() {
+        return entity != null;
+    }
+
+    @Override
+    public Object getEntity() {
+        return entity == null ? null : entity.getEntity();
+    }
+
+    @Override
+    public Class<?> getEntityClass() {
+        return entity == null ? null : entity.getRawType();
+    }
+
+    @Override
+    public Type getEntityType() {
+        return entity == null ? null : entity.getType();
+    }
+
+    @Override
+    public void setEntity(Object entity) {
+        this.entity = entity == null ? null : entity instanceof GenericEntity<?> generic ? generic : new GenericEntity<>(entity, entity.getClass());
+    }
+
+    @Override
+    public void setEntity(Object entity, Annotation[] annotations, MediaType mediaType) {
+        setEntity(entity);
+        this.annotations = annotations;
+        this.mediaType = mediaType;
+        if (mediaType != null) headers.putSingle(HttpHeaders.CONTENT_TYPE, mediaType);
+    }
+
+    @Override
+    public Annotation[] getEntityAnnotations() {
+        return annotations;
+    }
+
+    @Override
+    public OutputStream getEntityStream() {
+        return stream == null ? origin : stream;
+    }
+
+    @Override
+    public void setEntityStream(OutputStream outputStream) {
+        this.stream = outputStream;
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public boolean bufferEntity() {
+        throw new IllegalStateException("Outbound response entity cannot be buffered");
+    }
+
+    @Override
+    public void close() {
+        response.close();
+    }
+
+    @Override
+    public Locale getLanguage() {
+        return response.getLanguage();
+    }
+
+    @Override
+    public int getLength() {
+        return response.getLength();
+    }
+
+    @Override
+    public Set<String> getAllowedMethods() {
+        return response.getAllowedMethods();
+    }
+
+    @Override
+    public Map<String, NewCookie> getCookies() {
+        return response.getCookies();
+    }
+
+    @Override
+    public EntityTag getEntityTag() {
+        return response.getEntityTag();
+    }
+
+    @Override
+    public Date getDate() {
+        return response.getDate();
+    }
+
+    @Override
+    public Date getLastModified() {
+        return response.getLastModified();
+    }
+
+    @Override
+    public URI getLocation() {
+        return response.getLocation();
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        return response.getLinks();
+    }
+
+    @Override
+    public boolean hasLink(String relation) {
+        return response.hasLink(relation);
+    }
+
+    @Override
+    public Link getLink(String relation) {
+        return response.getLink(relation);
+    }
+
+    @Override
+    public Link.Builder getLinkBuilder(String relation) {
+        return response.getLinkBuilder(relation);
+    }
+
+    private static class EntityStream extends OutputStream {
+        private OutputStream out;
+
+        @Override
+        public void write(int b) throws IOException {
+            out().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private OutputStream out() throws IOException {
+            if (out == null) throw new IOException("Entity stream is not open until the entity is written");
+            return out;
+        }
+    }
+
+    private class Interception implements WriterInterceptorContext {
+        private final EntityWriter writer;
+        private Object value;
+        private Class<?> type;
+        private Type genericType;
+        private Annotation[] annotations;
+        private MediaType mediaType;
+        private OutputStream out;
+        private int next;
+
+        Interception(GenericEntity entity, OutputStream out, EntityWriter writer) {
+            this.writer = writer;
+            this.value = entity.getEntity();
+            this.type = entity.getRawType();
+            this.genericType = entity.getType();
+            this.annotations = FilteredResponse.this.annotations;
+            this.mediaType = FilteredResponse.this.getMediaType();
+            this.out = out;
+        }
+
+        @Override
+        public void proceed() throws IOException {
+            if (next < interceptors.length) interceptors[next++].aroundWriteTo(this);
+            else writer.writeTo(value, type, genericType, annotations, mediaType, headers, out);
+        }
+
+        @Override
+        public Object getEntity() {
+            return value;
+        }
+
+        @Override
+        public void setEntity(Object entity) {
+            this.value = entity;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return request.getProperty(name);
+        }
+
+        @Override
+        public Collection<String> getPropertyNames() {
+            return request.getPropertyNames();
+        }
+
+        @Override
+        public void setProperty(String name, Object object) {
+            request.setProperty(name, object);
+        }
+
+        @Override
+        public void removeProperty(String name) {
+            request.removeProperty(name);
+        }
+
+        @Override
+        public Annotation[] getAnnotations() {
+            return annotations;
+        }
+
+        @Override
+        public void setAnnotations(Annotation[] annotations) {
+            this.annotations = annotations;
+        }
+
+        @Override
+        public Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        public void setType(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Type getGenericType() {
+            return genericType;
+        }
+
+        @Override
+        public void setGenericType(Type genericType) {
+            this.genericType = genericType;
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        @Override
+        public void setMediaType(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+    }
+}
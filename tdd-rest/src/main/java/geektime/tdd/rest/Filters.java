@@ -0,0 +1,122 @@
+package geektime.tdd.rest;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.NameBinding;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.WriterInterceptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+class Filters {
+    static final Filters NONE = new Filters(List.of());
+    static final String FILTERED = Filters.class.getName() + ".filtered";
+    static final String BOUND = Filters.class.getName() + ".bound";
+
+    private final List<Object> providers;
+
+    public Filters(List<?> providers) {
+        this.providers = List.copyOf(providers);
+    }
+
+    Chain chain(Class<?> resourceClass, Method method) {
+        if (providers.isEmpty()) return Chain.EMPTY;
+
+        Set<Class<? extends Annotation>> bindings = bindings(resourceClass);
+        bindings.addAll(bindings(method));
+
+        List<Object> bound = providers.stream().filter(provider -> bindings.containsAll(bindings(provider.getClass()))).toList();
+        ContainerRequestFilter[] requests = sorted(bound, ContainerRequestFilter.class, false).toArray(ContainerRequestFilter[]::new);
+        ContainerRequestFilter[] named = Arrays.stream(requests).filter(filter -> !bindings(filter.getClass()).isEmpty())
+                .toArray(ContainerRequestFilter[]::new);
+        ContainerResponseFilter[] responses = sorted(bound, ContainerResponseFilter.class, true).toArray(ContainerResponseFilter[]::new);
+        WriterInterceptor[] writers = sorted(bound, WriterInterceptor.class, false).toArray(WriterInterceptor[]::new);
+
+        if (requests.length == 0 && responses.length == 0 && writers.length == 0) return Chain.EMPTY;
+        return new Chain(requests, named, responses, writers);
+    }
+
+    ContainerRequestFilter[] global() {
+        List<Object> global = providers.stream().filter(provider -> bindings(provider.getClass()).isEmpty()).toList();
+        return sorted(global, ContainerRequestFilter.class, false).toArray(ContainerRequestFilter[]::new);
+    }
+
+    private static Set<Class<? extends Annotation>> bindings(AnnotatedElement element) {
+        Set<Class<? extends Annotation>> bindings = new HashSet<>();
+        for (Annotation annotation : element.getAnnotations())
+            if (annotation.annotationType().isAnnotationPresent(NameBinding.class)) bindings.add(annotation.annotationType());
+        return bindings;
+    }
+
+    private static <T> List<T> sorted(List<Object> providers, Class<T> type, boolean reversed) {
+        Comparator<T> priority = Comparator.comparingInt(Filters::priority);
+        return providers.stream().filter(type::isInstance).map(type::cast)
+                .sorted(reversed ? priority.reversed() : priority).toList();
+    }
+
+    private static int priority(Object provider) {
+        Priority priority = provider.getClass().getAnnotation(Priority.class);
+        return priority == null ? Priorities.USER : priority.value();
+    }
+
+    static class Chain {
+        static final Chain EMPTY = new Chain(new ContainerRequestFilter[0], new ContainerRequestFilter[0],
+                new ContainerResponseFilter[0], new WriterInterceptor[0]);
+
+        private final ContainerRequestFilter[] requests;
+        private final ContainerRequestFilter[] named;
+        private final ContainerResponseFilter[] responses;
+        private final WriterInterceptor[] writers;
+
+        Chain(ContainerRequestFilter[] requests, ContainerRequestFilter[] named, ContainerResponseFilter[] responses,
+              WriterInterceptor[] writers) {
+            this.requests = requests;
+            this.named = named;
+            this.responses = responses;
+            this.writers = writers;
+        }
+
+        GenericEntity filter(ResourceContext context, UriInfoBuilder builder, Supplier<GenericEntity> invocation) {
+            FilteredRequest request = new FilteredRequest(context, builder);
+            OutboundResponse response = null;
+            try {
+                ContainerRequestFilter[] requests = this.requests;
+                if (requests.length > 0 && request.getProperty(FILTERED) != null) requests = named;
+                if (named.length > 0) request.setProperty(BOUND, Boolean.TRUE);
+                for (ContainerRequestFilter filter : requests) {
+                    filter.filter(request);
+                    if ((response = request.getAborted()) != null) break;
+                }
+
+                if (response == null) {
+                    GenericEntity entity = invocation.get();
+                    if (responses.length == 0 && writers.length == 0) return entity;
+                    if (entity != null && entity.getEntity() instanceof CompletionStage<?>) return entity;
+                    response = entity == null ? OutboundResponse.NO_CONTENT
+                            : entity.getEntity() instanceof OutboundResponse outbound ? outbound : OutboundResponse.of(entity);
+                }
+
+                FilteredResponse filtered = new FilteredResponse(response, request, writers);
+                for (ContainerResponseFilter filter : responses) filter.filter(request, filtered);
+                return new GenericEntity<>(filtered, Response.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.Response;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HeaderDelegates {
+    static final int MAX_ENCODED_HEADERS = 1024;
+
+    private static final Set<String> VARIABLE = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        VARIABLE.addAll(Set.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.SET_COOKIE,
+                HttpHeaders.DATE, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.EXPIRES, HttpHeaders.LOCATION));
+    }
+
+    private volatile RuntimeDelegate runtimeDelegate;
+    private volatile Map<Class<?>, RuntimeDelegate.HeaderDelegate> delegates = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, HttpField>> encoded = new ConcurrentHashMap<>();
+    private final AtomicInteger encodedCount = new AtomicInteger();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    public String toString(Object value) {
+        if (value instanceof String string) return string;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return value.toString();
+
+        RuntimeDelegate current = RuntimeDelegate.getInstance();
+        Map<Class<?>, RuntimeDelegate.HeaderDelegate> delegates = this.delegates;
+        if (runtimeDelegate != current) {
+            this.delegates = delegates = new ConcurrentHashMap<>();
+            runtimeDelegate = current;
+        }
+
+        RuntimeDelegate.HeaderDelegate delegate = delegates.get(value.getClass());
+        if (delegate == null) {
+            delegate = current.createHeaderDelegate(value.getClass());
+            if (delegate != null) delegates.putIfAbsent(value.getClass(), delegate);
+        }
+        return delegate.toString(value);
+    }
+
+    public void add(HttpServletResponse resp, String name, Object value) {
+        String header = toString(value);
+
+        if (resp instanceof Response jetty && !jetty.isCommitted() && !VARIABLE.contains(name)) {
+            HttpField field = encoded(name, header);
+            if (field != null) {
+                jetty.getHttpFields().add(field);
+                return;
+            }
+        }
+        resp.addHeader(name, header);
+    }
+
+    private HttpField encoded(String name, String value) {
+        Map<String, HttpField> values = encoded.get(name);
+        HttpField field = values == null ? null : values.get(value);
+        if (field != null) return field;
+
+        if (encodedCount.get() >= MAX_ENCODED_HEADERS) return null;
+        if (seen.add(name + '\n' + value)) {
+            if (seen.size() > MAX_ENCODED_HEADERS) seen.clear();
+            return null;
+        }
+        encodedCount.incrementAndGet();
+        field = new PreEncodedHttpField(name, value);
+        HttpField existing = encoded.computeIfAbsent(name, n -> new ConcurrentHashMap<>()).putIfAbsent(value, field);
+        return existing != null ? existing : field;
+    }
+}
@@ -0,0 +1,715 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+abstract class JsonCodec<T> {
+    private static final Map<Type, JsonCodec<?>> CODECS = new ConcurrentHashMap<>();
+    private static final Map<Type, Deferred> COMPILING = new HashMap<>();
+    static final Map<Class<?>, Function<String, Object>> TEXT = Map.of(
+            UUID.class, UUID::fromString, Instant.class, Instant::parse, LocalDate.class, LocalDate::parse,
+            LocalDateTime.class, LocalDateTime::parse, LocalTime.class, LocalTime::parse,
+            OffsetDateTime.class, OffsetDateTime::parse, ZonedDateTime.class, ZonedDateTime::parse, Duration.class, Duration::parse);
+
+    abstract void write(T value, JsonWriter out) throws IOException;
+
+    abstract T read(JsonReader in) throws IOException;
+
+    @SuppressWarnings("unchecked")
+    final void writeNullable(Object value, JsonWriter out) throws IOException {
+        if (value == null) out.nullValue();
+        else write((T) value, out);
+    }
+
+    final T readNullable(JsonReader in) throws IOException {
+        return in.nextNull() ? null : read(in);
+    }
+
+    static boolean supports(Type type) {
+        return !(of(type) instanceof Unsupported);
+    }
+
+    @SuppressWarnings("unchecked")
+    static JsonCodec<Object> of(Type type) {
+        JsonCodec<?> codec = CODECS.get(type);
+        if (codec != null) return (JsonCodec<Object>) codec;
+        synchronized (COMPILING) {
+            codec = CODECS.get(type);
+            if (codec != null) return (JsonCodec<Object>) codec;
+            Deferred deferred = COMPILING.get(type);
+            if (deferred != null) return deferred;
+
+            deferred = new Deferred();
+            COMPILING.put(type, deferred);
+            try {
+                codec = compile(type);
+            } catch (IllegalArgumentException e) {
+                codec = new Unsupported(e.getMessage());
+            } finally {
+                COMPILING.remove(type);
+            }
+            deferred.codec = (JsonCodec<Object>) codec;
+            CODECS.put(type, codec);
+            return (JsonCodec<Object>) codec;
+        }
+    }
+
+    private static JsonCodec<Object> nested(Type type) {
+        JsonCodec<Object> codec = of(type);
+        if (codec instanceof Unsupported unsupported) throw new IllegalArgumentException(unsupported.message);
+        return codec;
+    }
+
+    private static JsonCodec<?> compile(Type type) {
+        if (type instanceof WildcardType wildcard) return nested(wildcard.getUpperBounds()[0]);
+        if (type instanceof TypeVariable<?> variable) return nested(variable.getBounds()[0]);
+        if (type instanceof GenericArrayType array) return new ArrayCodec(raw(array.getGenericComponentType()), nested(array.getGenericComponentType()));
+        Class<?> raw = raw(type);
+
+        if (raw == Object.class) return new Dynamic(Object.class);
+        if (raw == String.class || raw == CharSequence.class) return Scalars.STRING;
+        if (raw == boolean.class || raw == Boolean.class) return Scalars.BOOLEAN;
+        if (raw == int.class || raw == Integer.class) return Scalars.INT;
+        if (raw == long.class || raw == Long.class) return Scalars.LONG;
+        if (raw == short.class || raw == Short.class) return Scalars.SHORT;
+        if (raw == byte.class || raw == Byte.class) return Scalars.BYTE;
+        if (raw == double.class || raw == Double.class) return Scalars.DOUBLE;
+        if (raw == float.class || raw == Float.class) return Scalars.FLOAT;
+        if (raw == char.class || raw == Character.class) return Scalars.CHAR;
+        if (raw == BigDecimal.class || raw == Number.class) return Scalars.DECIMAL;
+        if (raw == BigInteger.class) return Scalars.INTEGER;
+        if (raw.isEnum()) return new EnumCodec(raw);
+        Function<String, Object> parser = TEXT.get(raw);
+        if (parser != null) return new TextCodec(parser);
+
+        if (raw.isArray()) return new ArrayCodec(raw.getComponentType(), nested(raw.getComponentType()));
+        if (Collection.class.isAssignableFrom(raw) || raw == Iterable.class)
+            return new CollectionCodec(collection(raw), nested(argument(type, 0)));
+        if (Map.class.isAssignableFrom(raw))
+            return new MapCodec(map(raw), key(argument(type, 0)), nested(argument(type, 1)));
+
+        String name = raw.getName();
+        if (raw.isPrimitive() || name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jakarta.")
+                || raw.isAnonymousClass() || raw.isSynthetic())
+            throw new IllegalArgumentException("Unsupported JSON type " + type.getTypeName());
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) return new Dynamic(raw);
+        return raw.isRecord() ? ObjectCodec.record(raw, bindings(type)) : ObjectCodec.bean(raw, bindings(type));
+    }
+
+    static Class<?> raw(Type type) {
+        if (type instanceof Class<?> raw) return raw;
+        if (type instanceof ParameterizedType parameterized) return (Class<?>) parameterized.getRawType();
+        if (type instanceof GenericArrayType array) return Array.newInstance(raw(array.getGenericComponentType()), 0).getClass();
+        if (type instanceof WildcardType wildcard) return raw(wildcard.getUpperBounds()[0]);
+        if (type instanceof TypeVariable<?> variable) return raw(variable.getBounds()[0]);
+        return Object.class;
+    }
+
+    static Type argument(Type type, int index) {
+        if (type instanceof ParameterizedType parameterized && parameterized.getActualTypeArguments().length > index)
+            return parameterized.getActualTypeArguments()[index];
+        return Object.class;
+    }
+
+    static Map<TypeVariable<?>, Type> bindings(Type type) {
+        if (!(type instanceof ParameterizedType parameterized)) return Map.of();
+        Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+        TypeVariable<?>[] variables = raw(type).getTypeParameters();
+        for (int i = 0; i < variables.length; i++) bindings.put(variables[i], parameterized.getActualTypeArguments()[i]);
+        return bindings;
+    }
+
+    static Type resolve(Type type, Map<TypeVariable<?>, Type> bindings) {
+        if (bindings.isEmpty()) return type;
+        if (type instanceof TypeVariable<?> variable) return bindings.getOrDefault(variable, Object.class);
+        if (type instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments().clone();
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                Type resolved = resolve(arguments[i], bindings);
+                changed |= resolved != arguments[i];
+                arguments[i] = resolved;
+            }
+            return changed ? new Parameterized((Class<?>) parameterized.getRawType(), arguments, parameterized.getOwnerType()) : type;
+        }
+        if (type instanceof GenericArrayType array) {
+            Type component = resolve(array.getGenericComponentType(), bindings);
+            return component instanceof Class<?> raw ? Array.newInstance(raw, 0).getClass() : type;
+        }
+        return type;
+    }
+
+    static Supplier<Collection<Object>> collection(Class<?> raw) {
+        if (raw.isAssignableFrom(ArrayList.class)) return ArrayList::new;
+        if (raw.isAssignableFrom(LinkedHashSet.class)) return LinkedHashSet::new;
+        if (raw.isAssignableFrom(TreeSet.class) || raw == SortedSet.class) return TreeSet::new;
+        return instantiable(raw);
+    }
+
+    static Supplier<Map<Object, Object>> map(Class<?> raw) {
+        if (raw.isAssignableFrom(LinkedHashMap.class)) return LinkedHashMap::new;
+        if (raw.isAssignableFrom(TreeMap.class) || raw == SortedMap.class) return TreeMap::new;
+        return instantiable(raw);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C> Supplier<C> instantiable(Class<?> raw) {
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) return () -> {
+            throw new IllegalArgumentException("Cannot instantiate " + raw.getName());
+        };
+        MethodHandle constructor = constructor(raw);
+        return () -> {
+            try {
+                return (C) constructor.invoke();
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+
+    private static Function<String, Object> key(Type type) {
+        Class<?> raw = raw(type);
+        if (raw == String.class || raw == Object.class || raw == CharSequence.class) return key -> key;
+        if (raw == Integer.class) return Integer::valueOf;
+        if (raw == Long.class) return Long::valueOf;
+        if (raw.isEnum()) return new EnumCodec(raw).constants::get;
+        Function<String, Object> parser = TEXT.get(raw);
+        if (parser != null) return parser;
+        throw new IllegalArgumentException("Unsupported JSON object key " + type.getTypeName());
+    }
+
+    private static MethodHandle constructor(Class<?> raw) {
+        try {
+            Constructor<?> constructor = raw.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException runtime) return runtime;
+        if (throwable instanceof Error error) throw error;
+        return new IllegalStateException(throwable);
+    }
+
+    private static final class Deferred extends JsonCodec<Object> {
+        private JsonCodec<Object> codec;
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            codec.write(value, out);
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            return codec.read(in);
+        }
+    }
+
+    private static final class Unsupported extends JsonCodec<Object> {
+        private final String message;
+
+        Unsupported(String message) {
+            this.message = message;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) {
+            throw new IllegalArgumentException(message);
+        }
+
+        @Override
+        Object read(JsonReader in) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static final class Dynamic extends JsonCodec<Object> {
+        private final Class<?> declared;
+
+        Dynamic(Class<?> declared) {
+            this.declared = declared;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            Class<?> type = value.getClass();
+            if (type == Object.class) {
+                out.raw(new byte[]{'{', '}'});
+                return;
+            }
+            of(type).write(value, out);
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            if (declared != Object.class) throw new IllegalArgumentException("Cannot read abstract type " + declared.getName());
+            return in.value();
+        }
+    }
+
+    private static final class Scalars<T> extends JsonCodec<T> {
+        interface Writer<T> {
+            void write(T value, JsonWriter out) throws IOException;
+        }
+
+        interface Reader<T> {
+            T read(JsonReader in) throws IOException;
+        }
+
+        static final Scalars<Object> STRING = new Scalars<>((value, out) -> out.value(value.toString()), JsonReader::string);
+        static final Scalars<Boolean> BOOLEAN = new Scalars<>((value, out) -> out.value(value), JsonReader::booleanValue);
+        static final Scalars<Number> INT = new Scalars<>((value, out) -> out.value(value.longValue()),
+                in -> Math.toIntExact(in.longValue()));
+        static final Scalars<Number> LONG = new Scalars<>((value, out) -> out.value(value.longValue()), JsonReader::longValue);
+        static final Scalars<Number> SHORT = new Scalars<>((value, out) -> out.value(value.longValue()),
+                in -> narrow(in.longValue(), Short.MIN_VALUE, Short.MAX_VALUE).shortValue());
+        static final Scalars<Number> BYTE = new Scalars<>((value, out) -> out.value(value.longValue()),
+                in -> narrow(in.longValue(), Byte.MIN_VALUE, Byte.MAX_VALUE).byteValue());
+        static final Scalars<Number> DOUBLE = new Scalars<>((value, out) -> out.value(value.doubleValue()), JsonReader::doubleValue);
+        static final Scalars<Number> FLOAT = new Scalars<>((value, out) -> out.value(value.doubleValue()),
+                in -> (float) in.doubleValue());
+        static final Scalars<Number> DECIMAL = new Scalars<>((value, out) -> out.ascii(value.toString()),
+                in -> new BigDecimal(in.numberText()));
+        static final Scalars<Number> INTEGER = new Scalars<>((value, out) -> out.ascii(value.toString()),
+                in -> new BigInteger(in.numberText()));
+        static final Scalars<Character> CHAR = new Scalars<>((value, out) -> out.value(value.toString()), in -> {
+            String text = in.string();
+            if (text.length() != 1) throw new IllegalArgumentException("Expected single character");
+            return text.charAt(0);
+        });
+
+        private final Writer<T> writer;
+        private final Reader<T> reader;
+
+        Scalars(Writer<T> writer, Reader<T> reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        private static Long narrow(long value, long min, long max) {
+            if (value < min || value > max) throw new ArithmeticException("Value out of range: " + value);
+            return value;
+        }
+
+        @Override
+        void write(T value, JsonWriter out) throws IOException {
+            writer.write(value, out);
+        }
+
+        @Override
+        T read(JsonReader in) throws IOException {
+            return reader.read(in);
+        }
+    }
+
+    private static final class TextCodec extends JsonCodec<Object> {
+        private final Function<String, Object> parser;
+
+        TextCodec(Function<String, Object> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            out.value(value.toString());
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            return parser.apply(in.string());
+        }
+    }
+
+    private static final class EnumCodec extends JsonCodec<Object> {
+        private final byte[][] names;
+        private final Map<String, Object> constants = new HashMap<>();
+
+        EnumCodec(Class<?> type) {
+            Object[] values = type.getEnumConstants();
+            names = new byte[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                String name = ((Enum<?>) values[i]).name();
+                names[i] = JsonWriter.quoted(name);
+                constants.put(name, values[i]);
+            }
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            out.raw(names[((Enum<?>) value).ordinal()]);
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            String name = in.string();
+            Object constant = constants.get(name);
+            if (constant == null) throw new IllegalArgumentException("Unknown constant " + name);
+            return constant;
+        }
+    }
+
+    private static final class ArrayCodec extends JsonCodec<Object> {
+        private final Class<?> component;
+        private final JsonCodec<Object> codec;
+
+        ArrayCodec(Class<?> component, JsonCodec<Object> codec) {
+            this.component = component;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            out.raw((byte) '[');
+            if (value instanceof Object[] array) {
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) out.raw((byte) ',');
+                    codec.writeNullable(array[i], out);
+                }
+            } else {
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    if (i > 0) out.raw((byte) ',');
+                    codec.write(Array.get(value, i), out);
+                }
+            }
+            out.raw((byte) ']');
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            List<Object> elements = new ArrayList<>();
+            in.beginArray();
+            if (!in.end(']')) do elements.add(codec.readNullable(in)); while (in.more(']'));
+            Object array = Array.newInstance(component, elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                Object element = elements.get(i);
+                if (element == null && component.isPrimitive()) throw new IllegalArgumentException("Null element in primitive array");
+                Array.set(array, i, element);
+            }
+            return array;
+        }
+    }
+
+    private static final class CollectionCodec extends JsonCodec<Object> {
+        private final Supplier<Collection<Object>> factory;
+        private final JsonCodec<Object> codec;
+
+        CollectionCodec(Supplier<Collection<Object>> factory, JsonCodec<Object> codec) {
+            this.factory = factory;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            out.raw((byte) '[');
+            boolean first = true;
+            if (value instanceof List<?> list && list instanceof java.util.RandomAccess) {
+                for (int i = 0, size = list.size(); i < size; i++) {
+                    if (i > 0) out.raw((byte) ',');
+                    codec.writeNullable(list.get(i), out);
+                }
+            } else {
+                for (Object element : (Iterable<?>) value) {
+                    if (!first) out.raw((byte) ',');
+                    first = false;
+                    codec.writeNullable(element, out);
+                }
+            }
+            out.raw((byte) ']');
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            Collection<Object> collection = factory.get();
+            in.beginArray();
+            if (!in.end(']')) do collection.add(codec.readNullable(in)); while (in.more(']'));
+            return collection;
+        }
+    }
+
+    private static final class MapCodec extends JsonCodec<Object> {
+        private final Supplier<Map<Object, Object>> factory;
+        private final Function<String, Object> key;
+        private final JsonCodec<Object> codec;
+
+        MapCodec(Supplier<Map<Object, Object>> factory, Function<String, Object> key, JsonCodec<Object> codec) {
+            this.factory = factory;
+            this.key = key;
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            out.raw((byte) '{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) out.raw((byte) ',');
+                first = false;
+                Object name = entry.getKey();
+                out.value(name instanceof Enum<?> constant ? constant.name() : String.valueOf(name));
+                out.raw((byte) ':');
+                codec.writeNullable(entry.getValue(), out);
+            }
+            out.raw((byte) '}');
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            Map<Object, Object> map = factory.get();
+            in.beginObject();
+            if (!in.end('}')) do {
+                Object name = key.apply(in.name());
+                if (name == null) throw new IllegalArgumentException("Unknown key");
+                map.put(name, codec.readNullable(in));
+            } while (in.more('}'));
+            return map;
+        }
+    }
+
+    private static final class ObjectCodec extends JsonCodec<Object> {
+        private static final int OBJECT = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4;
+
+        private final Class<?> type;
+        private final Property[] properties;
+        private final Map<String, Property> names = new HashMap<>();
+        private final MethodHandle constructor;
+        private final Object[] defaults;
+
+        private ObjectCodec(Class<?> type, Property[] properties, MethodHandle constructor, Object[] defaults) {
+            this.type = type;
+            this.properties = properties;
+            this.constructor = constructor;
+            this.defaults = defaults;
+            for (Property property : properties) names.put(property.name, property);
+        }
+
+        static ObjectCodec record(Class<?> type, Map<TypeVariable<?>, Type> bindings) {
+            RecordComponent[] components = type.getRecordComponents();
+            Property[] properties = new Property[components.length];
+            Class<?>[] parameters = new Class<?>[components.length];
+            Object[] defaults = new Object[components.length];
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    RecordComponent component = components[i];
+                    Method accessor = component.getAccessor();
+                    accessor.setAccessible(true);
+                    parameters[i] = component.getType();
+                    defaults[i] = parameters[i].isPrimitive() ? Array.get(Array.newInstance(parameters[i], 1), 0) : null;
+                    properties[i] = new Property(component.getName(), component.getType(),
+                            nested(resolve(component.getGenericType(), bindings)), lookup.unreflect(accessor), null, i);
+                }
+                Constructor<?> canonical = type.getDeclaredConstructor(parameters);
+                canonical.setAccessible(true);
+                MethodHandle constructor = lookup.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, parameters.length).asType(MethodType.methodType(Object.class, Object[].class));
+                return new ObjectCodec(type, properties, constructor, defaults);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("Unsupported JSON record " + type.getName(), e);
+            }
+        }
+
+        static ObjectCodec bean(Class<?> type, Map<TypeVariable<?>, Type> bindings) {
+            Map<String, Method> getters = new TreeMap<>();
+            Map<String, Method> setters = new HashMap<>();
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class) continue;
+                String name = method.getName();
+                if (method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+                    if (name.startsWith("get") && name.length() > 3) getters.put(property(name.substring(3)), method);
+                    else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class)
+                        getters.put(property(name.substring(2)), method);
+                } else if (method.getParameterCount() == 1 && name.startsWith("set") && name.length() > 3) {
+                    setters.put(property(name.substring(3)), method);
+                }
+            }
+            Map<String, Field> fields = new TreeMap<>();
+            for (Field field : type.getFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) fields.put(field.getName(), field);
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            List<Property> properties = new ArrayList<>();
+            try {
+                for (Map.Entry<String, Method> getter : getters.entrySet()) {
+                    Method method = getter.getValue();
+                    Method setter = setters.get(getter.getKey());
+                    MethodHandle set = setter != null && setter.getParameterTypes()[0] == method.getReturnType() ? lookup.unreflect(setter) : null;
+                    properties.add(new Property(getter.getKey(), method.getReturnType(),
+                            nested(resolve(method.getGenericReturnType(), bindings)), lookup.unreflect(method), set, -1));
+                }
+                for (Field field : fields.values()) {
+                    if (getters.containsKey(field.getName())) continue;
+                    MethodHandle set = Modifier.isFinal(field.getModifiers()) ? null : lookup.unreflectSetter(field);
+                    properties.add(new Property(field.getName(), field.getType(),
+                            nested(resolve(field.getGenericType(), bindings)), lookup.unreflectGetter(field), set, -1));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Unsupported JSON bean " + type.getName(), e);
+            }
+            if (properties.isEmpty()) throw new IllegalArgumentException("No JSON properties in " + type.getName());
+            return new ObjectCodec(type, properties.toArray(Property[]::new), constructor(type), null);
+        }
+
+        private static String property(String name) {
+            if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) return name;
+            return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+        }
+
+        @Override
+        void write(Object value, JsonWriter out) throws IOException {
+            try {
+                out.raw((byte) '{');
+                Property[] properties = this.properties;
+                for (int i = 0; i < properties.length; i++) {
+                    Property property = properties[i];
+                    if (i > 0) out.raw((byte) ',');
+                    out.raw(property.prefix);
+                    switch (property.kind) {
+                        case INT -> out.value((long) (int) property.getter.invokeExact(value));
+                        case LONG -> out.value((long) property.getter.invokeExact(value));
+                        case DOUBLE -> out.value((double) property.getter.invokeExact(value));
+                        case BOOLEAN -> out.value((boolean) property.getter.invokeExact(value));
+                        default -> property.codec.writeNullable((Object) property.getter.invokeExact(value), out);
+                    }
+                }
+                out.raw((byte) '}');
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        Object read(JsonReader in) throws IOException {
+            try {
+                Object[] arguments = defaults == null ? null : defaults.clone();
+                Object bean = defaults == null ? create() : null;
+                in.beginObject();
+                if (!in.end('}')) do {
+                    Property property = names.get(in.name());
+                    if (property == null || property.index < 0 && property.setter == null) {
+                        in.skip();
+                        continue;
+                    }
+                    Object value = property.codec.readNullable(in);
+                    if (value == null && property.type.isPrimitive()) continue;
+                    if (arguments != null) arguments[property.index] = value;
+                    else property.setter.invokeExact(bean, value);
+                } while (in.more('}'));
+                return arguments != null ? (Object) constructor.invokeExact(arguments) : bean;
+            } catch (IOException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        private Object create() throws Throwable {
+            if (constructor == null) throw new IllegalArgumentException("No default constructor for " + type.getName());
+            return (Object) constructor.invokeExact();
+        }
+
+        private static final class Property {
+            final String name;
+            final byte[] prefix;
+            final Class<?> type;
+            final JsonCodec<Object> codec;
+            final int kind;
+            final MethodHandle getter;
+            final MethodHandle setter;
+            final int index;
+
+            Property(String name, Class<?> type, JsonCodec<Object> codec, MethodHandle getter, MethodHandle setter, int index) {
+                this.name = name;
+                this.prefix = JsonWriter.name(name);
+                this.type = type;
+                this.codec = codec;
+                this.index = index;
+                this.kind = type == int.class || type == short.class || type == byte.class ? INT
+                        : type == long.class ? LONG : type == double.class || type == float.class ? DOUBLE
+                        : type == boolean.class ? BOOLEAN : OBJECT;
+                Class<?> returns = switch (kind) {
+                    case INT -> int.class;
+                    case LONG -> long.class;
+                    case DOUBLE -> double.class;
+                    case BOOLEAN -> boolean.class;
+                    default -> Object.class;
+                };
+                this.getter = getter.asType(MethodType.methodType(returns, Object.class));
+                this.setter = setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+        }
+    }
+
+    private record Parameterized(Class<?> raw, Type[] arguments, Type owner) implements ParameterizedType {
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return raw;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ParameterizedType other && raw.equals(other.getRawType())
+                    && Objects.equals(owner, other.getOwnerType()) && Arrays.equals(arguments, other.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(arguments) ^ Objects.hashCode(owner) ^ raw.hashCode();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.time.DateTimeException;
+
+class JsonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    private final BufferPool pool;
+
+    public JsonProvider() {
+        this(BufferPool.DEFAULT);
+    }
+
+    public JsonProvider(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    static boolean json(MediaType mediaType) {
+        if (mediaType == null) return false;
+        String subtype = mediaType.getSubtype();
+        return "application".equalsIgnoreCase(mediaType.getType())
+                && ("json".equalsIgnoreCase(subtype) || subtype.regionMatches(true, subtype.length() - 5, "+json", 0, 5));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return json(mediaType) && JsonCodec.supports(genericType == null ? type : genericType);
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> headers, OutputStream entityStream) throws IOException {
+        JsonCodec<Object> codec = JsonCodec.of(genericType == null ? type : genericType);
+        try (JsonWriter writer = new JsonWriter(entityStream, pool)) {
+            codec.writeNullable(value, writer);
+        }
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return json(mediaType) && JsonCodec.supports(genericType == null ? type : genericType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> headers, InputStream entityStream) throws IOException {
+        JsonCodec<Object> codec = JsonCodec.of(genericType == null ? type : genericType);
+        try (JsonReader reader = new JsonReader(entityStream, pool)) {
+            Object value = codec.readNullable(reader);
+            reader.finish();
+            return value;
+        } catch (JsonReader.MalformedException | ArithmeticException | IllegalArgumentException | DateTimeException e) {
+            throw new WebApplicationException(e, OutboundResponse.BAD_REQUEST);
+        }
+    }
+}
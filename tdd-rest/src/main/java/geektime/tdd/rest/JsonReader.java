@@ -0,0 +1,307 @@
+package geektime.tdd.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class JsonReader implements AutoCloseable {
+    static final int MAX_DEPTH = 512;
+
+    static class MalformedException extends IOException {
+        MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    private final InputStream in;
+    private final BufferPool pool;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] scratch = new byte[64];
+    private int depth;
+
+    JsonReader(InputStream in) {
+        this(in, BufferPool.DEFAULT);
+    }
+
+    JsonReader(InputStream in, BufferPool pool) {
+        this.in = in;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    int peek() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) return -1;
+            byte b = buffer[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+            position++;
+        }
+    }
+
+    void beginObject() throws IOException {
+        begin('{');
+    }
+
+    void beginArray() throws IOException {
+        begin('[');
+    }
+
+    boolean end(char close) throws IOException {
+        if (peek() != close) return false;
+        position++;
+        depth--;
+        return true;
+    }
+
+    boolean more(char close) throws IOException {
+        int c = peek();
+        position++;
+        if (c == ',') return true;
+        if (c == close) {
+            depth--;
+            return false;
+        }
+        throw malformed("Expected ',' or '" + close + "'");
+    }
+
+    String name() throws IOException {
+        String name = string();
+        expect(':');
+        return name;
+    }
+
+    boolean nextNull() throws IOException {
+        if (peek() != 'n') return false;
+        literal("null");
+        return true;
+    }
+
+    boolean booleanValue() throws IOException {
+        int c = peek();
+        if (c == 't') {
+            literal("true");
+            return true;
+        }
+        if (c == 'f') {
+            literal("false");
+            return false;
+        }
+        throw malformed("Expected boolean");
+    }
+
+    long longValue() throws IOException {
+        int length = number();
+        if (length > 18) return new BigDecimal(new String(scratch, 0, length, StandardCharsets.US_ASCII)).longValueExact();
+        long value = 0;
+        boolean negative = scratch[0] == '-';
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            byte b = scratch[i];
+            if (b < '0' || b > '9') return new BigDecimal(new String(scratch, 0, length, StandardCharsets.US_ASCII)).longValueExact();
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    double doubleValue() throws IOException {
+        return Double.parseDouble(numberText());
+    }
+
+    String numberText() throws IOException {
+        return new String(scratch, 0, number(), StandardCharsets.US_ASCII);
+    }
+
+    String string() throws IOException {
+        expect('"');
+        int start = position;
+        while (position < limit) {
+            byte b = buffer[position];
+            if (b == '"') {
+                position++;
+                return new String(buffer, start, position - start - 1, StandardCharsets.UTF_8);
+            }
+            if (b == '\\' || b < 0x20 && b >= 0) break;
+            position++;
+        }
+        int length = position - start;
+        ensureScratch(length);
+        System.arraycopy(buffer, start, scratch, 0, length);
+        return escaped(length);
+    }
+
+    private String escaped(int length) throws IOException {
+        while (true) {
+            if (position == limit && !fill()) throw malformed("Unterminated string");
+            byte b = buffer[position++];
+            if (b == '"') return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            if (b >= 0 && b < 0x20) throw malformed("Unescaped control character in string");
+            ensureScratch(length + 4);
+            if (b != '\\') {
+                scratch[length++] = b;
+                continue;
+            }
+            if (position == limit && !fill()) throw malformed("Unterminated string");
+            byte escape = buffer[position++];
+            switch (escape) {
+                case '"', '\\', '/' -> scratch[length++] = escape;
+                case 'n' -> scratch[length++] = '\n';
+                case 'r' -> scratch[length++] = '\r';
+                case 't' -> scratch[length++] = '\t';
+                case 'b' -> scratch[length++] = '\b';
+                case 'f' -> scratch[length++] = '\f';
+                case 'u' -> {
+                    int code = hex();
+                    if (Character.isHighSurrogate((char) code) && peekRaw() == '\\') {
+                        position++;
+                        if (position == limit && !fill() || buffer[position++] != 'u') throw malformed("Expected low surrogate");
+                        code = Character.toCodePoint((char) code, (char) hex());
+                    }
+                    length = utf8(code, length);
+                }
+                default -> throw malformed("Invalid escape");
+            }
+        }
+    }
+
+    private int utf8(int code, int length) {
+        ensureScratch(length + 4);
+        if (code < 0x80) {
+            scratch[length++] = (byte) code;
+        } else if (code < 0x800) {
+            scratch[length++] = (byte) (0xc0 | code >> 6);
+            scratch[length++] = (byte) (0x80 | code & 0x3f);
+        } else if (code < 0x10000) {
+            scratch[length++] = (byte) (0xe0 | code >> 12);
+            scratch[length++] = (byte) (0x80 | code >> 6 & 0x3f);
+            scratch[length++] = (byte) (0x80 | code & 0x3f);
+        } else {
+            scratch[length++] = (byte) (0xf0 | code >> 18);
+            scratch[length++] = (byte) (0x80 | code >> 12 & 0x3f);
+            scratch[length++] = (byte) (0x80 | code >> 6 & 0x3f);
+            scratch[length++] = (byte) (0x80 | code & 0x3f);
+        }
+        return length;
+    }
+
+    private int hex() throws IOException {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            if (position == limit && !fill()) throw malformed("Unterminated escape");
+            int digit = Character.digit(buffer[position++], 16);
+            if (digit < 0) throw malformed("Invalid unicode escape");
+            code = code << 4 | digit;
+        }
+        return code;
+    }
+
+    private int peekRaw() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    Object value() throws IOException {
+        int c = peek();
+        switch (c) {
+            case '{' -> {
+                Map<String, Object> object = new LinkedHashMap<>();
+                beginObject();
+                if (!end('}')) do {
+                    String name = name();
+                    object.put(name, value());
+                } while (more('}'));
+                return object;
+            }
+            case '[' -> {
+                List<Object> array = new ArrayList<>();
+                beginArray();
+                if (!end(']')) do array.add(value()); while (more(']'));
+                return array;
+            }
+            case '"' -> {
+                return string();
+            }
+            case 't', 'f' -> {
+                return booleanValue();
+            }
+            case 'n' -> {
+                literal("null");
+                return null;
+            }
+            default -> {
+                String number = numberText();
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0 && number.length() <= 18)
+                    return Long.parseLong(number);
+                return new BigDecimal(number);
+            }
+        }
+    }
+
+    void skip() throws IOException {
+        value();
+    }
+
+    void finish() throws IOException {
+        if (peek() != -1) throw malformed("Unexpected content after JSON value");
+    }
+
+    private void begin(char open) throws IOException {
+        expect(open);
+        if (++depth > MAX_DEPTH) throw malformed("JSON nesting exceeds " + MAX_DEPTH);
+    }
+
+    private int number() throws IOException {
+        peek();
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill()) break;
+            byte b = buffer[position];
+            if (!(b >= '0' && b <= '9' || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E')) break;
+            ensureScratch(length + 1);
+            scratch[length++] = b;
+            position++;
+        }
+        if (length == 0) throw malformed("Expected number");
+        return length;
+    }
+
+    private void literal(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (position == limit && !fill() || buffer[position++] != literal.charAt(i)) throw malformed("Expected " + literal);
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) throw malformed("Expected '" + c + "'");
+        position++;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private void ensureScratch(int length) {
+        if (length > scratch.length) scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+    }
+
+    private MalformedException malformed(String message) {
+        return new MalformedException(message + " at byte " + position);
+    }
+
+    @Override
+    public void close() {
+        if (buffer == null) return;
+        pool.release(buffer);
+        buffer = null;
+    }
+}
@@ -0,0 +1,182 @@
+package geektime.tdd.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+class JsonWriter implements AutoCloseable {
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) ESCAPES[c] = 'u';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+    }
+
+    private final OutputStream out;
+    private final BufferPool pool;
+    private byte[] buffer;
+    private int count;
+
+    JsonWriter(OutputStream out) {
+        this(out, BufferPool.DEFAULT);
+    }
+
+    JsonWriter(OutputStream out, BufferPool pool) {
+        this.out = out;
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    static byte[] name(String name) {
+        byte[] quoted = quoted(name);
+        byte[] prefix = Arrays.copyOf(quoted, quoted.length + 1);
+        prefix[quoted.length] = ':';
+        return prefix;
+    }
+
+    static byte[] quoted(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(bytes, new BufferPool(64, 0))) {
+            writer.value(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    void raw(byte b) throws IOException {
+        if (count == buffer.length) flush();
+        buffer[count++] = b;
+    }
+
+    void raw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - count) {
+            flush();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    void nullValue() throws IOException {
+        raw(NULL);
+    }
+
+    void value(boolean value) throws IOException {
+        raw(value ? TRUE : FALSE);
+    }
+
+    void value(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            raw(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (buffer.length - count < 20) flush();
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) digits++;
+        int position = count + digits;
+        do {
+            buffer[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        count += digits;
+    }
+
+    void value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            nullValue();
+            return;
+        }
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            value((long) value);
+            return;
+        }
+        ascii(Double.toString(value));
+    }
+
+    void ascii(String text) throws IOException {
+        int length = text.length();
+        if (buffer.length - count < length) flush();
+        if (length > buffer.length) {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        for (int i = 0; i < length; i++) buffer[count++] = (byte) text.charAt(i);
+    }
+
+    void value(String value) throws IOException {
+        raw((byte) '"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (buffer.length - count < 6) flush();
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    buffer[count++] = (byte) c;
+                } else if (escape == 'u') {
+                    buffer[count++] = '\\';
+                    buffer[count++] = 'u';
+                    buffer[count++] = '0';
+                    buffer[count++] = '0';
+                    buffer[count++] = HEX[c >> 4];
+                    buffer[count++] = HEX[c & 0xf];
+                } else {
+                    buffer[count++] = '\\';
+                    buffer[count++] = escape;
+                }
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xc0 | c >> 6);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, value.charAt(++i));
+                buffer[count++] = (byte) (0xf0 | code >> 18);
+                buffer[count++] = (byte) (0x80 | code >> 12 & 0x3f);
+                buffer[count++] = (byte) (0x80 | code >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | code & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xe0 | c >> 12);
+                buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        raw((byte) '"');
+    }
+
+    void flush() throws IOException {
+        if (count == 0) return;
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) return;
+        try {
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.Providers;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class MessageBodyReaders {
+    static final int MAX_MEDIA_TYPES = 32;
+
+    private static final Object UNSPECIFIED = new Object();
+
+    private final Class<?> rawType;
+    private final Type type;
+    private final Annotation[] annotations;
+    private volatile Cache cache = new Cache(null);
+
+    public MessageBodyReaders(Class<?> rawType, Type type, Annotation[] annotations) {
+        this.rawType = rawType;
+        this.type = type;
+        this.annotations = annotations;
+    }
+
+    public MessageBodyReader get(Providers providers, MediaType mediaType) {
+        Cache cache = this.cache;
+        if (cache.providers != providers) this.cache = cache = new Cache(providers);
+
+        Object key = mediaType == null ? UNSPECIFIED : mediaType;
+        MessageBodyReader reader = cache.readers.get(key);
+        if (reader != null) return reader;
+
+        reader = providers.getMessageBodyReader(rawType, type, annotations, mediaType);
+        if (reader != null && cache.readers.size() < MAX_MEDIA_TYPES) cache.readers.putIfAbsent(key, reader);
+        return reader;
+    }
+
+    private static final class Cache {
+        private final Providers providers;
+        private final Map<Object, MessageBodyReader> readers = new ConcurrentHashMap<>();
+
+        Cache(Providers providers) {
+            this.providers = providers;
+        }
+    }
+}
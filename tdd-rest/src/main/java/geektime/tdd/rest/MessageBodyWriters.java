@@ -0,0 +1,70 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+class MessageBodyWriters {
+    private final Providers providers;
+    private final Map<Key, MessageBodyWriter> writers = new ConcurrentHashMap<>();
+
+    public MessageBodyWriters(Providers providers) {
+        this.providers = providers;
+    }
+
+    public Providers getProviders() {
+        return providers;
+    }
+
+    public MessageBodyWriter get(Class<?> rawType, Type type, Annotation[] annotations, MediaType mediaType) {
+        Key key = new Key(rawType, type, annotations, mediaType);
+        MessageBodyWriter writer = writers.get(key);
+        if (writer != null) return writer;
+
+        writer = providers.getMessageBodyWriter(rawType, type, annotations, mediaType);
+        if (writer != null) writers.putIfAbsent(key, writer);
+        return writer;
+    }
+
+    private static final class Key {
+        private final Class<?> rawType;
+        private final Type type;
+        private final Annotation[] annotations;
+        private final MediaType mediaType;
+        private final int hash;
+
+        Key(Class<?> rawType, Type type, Annotation[] annotations, MediaType mediaType) {
+            this.rawType = rawType;
+            this.type = type;
+            this.annotations = annotations;
+            this.mediaType = mediaType;
+
+            int hash = Objects.hash(rawType, type, mediaType);
+            for (Annotation annotation : annotations) hash = 31 * hash + System.identityHashCode(annotation);
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            if (hash != key.hash || rawType != key.rawType || !Objects.equals(type, key.type)
+                    || !Objects.equals(mediaType, key.mediaType) || annotations.length != key.annotations.length)
+                return false;
+            for (int i = 0; i < annotations.length; i++)
+                if (annotations[i] != key.annotations[i]) return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
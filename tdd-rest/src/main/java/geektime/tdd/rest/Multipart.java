@@ -0,0 +1,375 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class Multipart implements Iterable<Multipart.Part>, AutoCloseable {
+    static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+    static final int MAX_HEADER_BYTES = 16 * 1024;
+    static final int MAX_PARTS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static class MalformedException extends IOException {
+        MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final int[] shift = new int[256];
+    private final int memoryThreshold;
+    private final Path directory;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final List<Part> parts = new ArrayList<>();
+    private int start;
+    private int end;
+    private boolean eof;
+    private boolean started;
+    private boolean done;
+    private boolean iterated;
+
+    Multipart(InputStream in, String boundary, int memoryThreshold, Path directory) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(ISO_8859_1);
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+
+        Arrays.fill(shift, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) shift[delimiter[i] & 0xff] = delimiter.length - 1 - i;
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        end = 2;
+    }
+
+    @Override
+    public Iterator<Part> iterator() {
+        if (iterated) throw new IllegalStateException("Multipart entity can only be iterated once");
+        iterated = true;
+        return new Iterator<>() {
+            private Part next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) next = read();
+                return next != null;
+            }
+
+            @Override
+            public Part next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Part part = next;
+                next = null;
+                return part;
+            }
+        };
+    }
+
+    private Part read() {
+        try {
+            return part();
+        } catch (MalformedException e) {
+            done = true;
+            throw new WebApplicationException(e, OutboundResponse.BAD_REQUEST);
+        } catch (IOException e) {
+            done = true;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Part part() throws IOException {
+        if (!started) {
+            body(null);
+            started = true;
+        }
+        ensure(2);
+        if (buffer[start] == '-' && buffer[start + 1] == '-') {
+            done = true;
+            return null;
+        }
+        for (ensure(1); buffer[start] == ' ' || buffer[start] == '\t'; ensure(1)) start++;
+        ensure(2);
+        if (buffer[start] != '\r' || buffer[start + 1] != '\n') throw new MalformedException("Malformed multipart delimiter");
+        start += 2;
+
+        Map<String, String> headers = headers();
+        if (parts.size() >= MAX_PARTS) throw new MalformedException("Multipart entity exceeds " + MAX_PARTS + " parts");
+        Part part = new Part(headers, memoryThreshold, directory);
+        parts.add(part);
+        body(part);
+        return part;
+    }
+
+    private Map<String, String> headers() throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int total = 0;
+        while (true) {
+            int eol = line();
+            total += eol - start + 2;
+            if (total > MAX_HEADER_BYTES) throw new MalformedException("Multipart headers exceed " + MAX_HEADER_BYTES + " bytes");
+            String line = new String(buffer, start, eol - start, UTF_8);
+            start = eol + 2;
+            if (line.isEmpty()) return headers;
+            int colon = line.indexOf(':');
+            if (colon <= 0) throw new MalformedException("Malformed multipart header");
+            headers.merge(line.substring(0, colon).trim(), line.substring(colon + 1).trim(), (a, b) -> a + ", " + b);
+        }
+    }
+
+    private int line() throws IOException {
+        while (true) {
+            for (int i = start; i < end - 1; i++)
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') return i;
+            if (end - start >= MAX_HEADER_BYTES) throw new MalformedException("Multipart headers exceed " + MAX_HEADER_BYTES + " bytes");
+            if (eof) throw new MalformedException("Unterminated multipart headers");
+            fill();
+        }
+    }
+
+    private void body(Part part) throws IOException {
+        while (true) {
+            int found = find();
+            if (found >= 0) {
+                if (part != null) part.write(buffer, start, found - start);
+                start = found + delimiter.length;
+                return;
+            }
+            int safe = end - delimiter.length + 1;
+            if (safe > start) {
+                if (part != null) part.write(buffer, start, safe - start);
+                start = safe;
+            }
+            if (eof) throw new MalformedException("Unterminated multipart entity");
+            fill();
+        }
+    }
+
+    private int find() {
+        int last = delimiter.length - 1;
+        for (int i = start; i <= end - delimiter.length; i += shift[buffer[i + last] & 0xff]) {
+            int j = last;
+            while (buffer[i + j] == delimiter[j])
+                if (j-- == 0) return i;
+        }
+        return -1;
+    }
+
+    private void ensure(int length) throws IOException {
+        while (end - start < length) {
+            if (eof) throw new MalformedException("Unterminated multipart entity");
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read < 0) eof = true;
+        else end += read;
+    }
+
+    @Override
+    public void close() {
+        for (Part part : parts) part.close();
+    }
+
+    static class Part implements AutoCloseable {
+        private final Map<String, String> headers;
+        private final int memoryThreshold;
+        private final Path directory;
+        private byte[] memory = new byte[0];
+        private FileChannel file;
+        private long size;
+
+        Part(Map<String, String> headers, int memoryThreshold, Path directory) {
+            this.headers = Collections.unmodifiableMap(headers);
+            this.memoryThreshold = memoryThreshold;
+            this.directory = directory;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public String getName() {
+            return disposition("name");
+        }
+
+        public String getFileName() {
+            return disposition("filename");
+        }
+
+        public String getContentType() {
+            return headers.get(HttpHeaders.CONTENT_TYPE);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isInMemory() {
+            return file == null;
+        }
+
+        public String getString() throws IOException {
+            if (file == null) return new String(memory, 0, (int) size, UTF_8);
+            return new String(getInputStream().readAllBytes(), UTF_8);
+        }
+
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    if (position >= size) return -1;
+                    if (length == 0) return 0;
+                    int count = (int) Math.min(length, size - position);
+                    if (file == null) System.arraycopy(memory, (int) position, bytes, offset, count);
+                    else count = file.read(ByteBuffer.wrap(bytes, offset, count), position);
+                    position += count;
+                    return count;
+                }
+            };
+        }
+
+        public long transferTo(Path target) throws IOException {
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (file == null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(memory, 0, (int) size);
+                    while (buffer.hasRemaining()) out.write(buffer);
+                    return size;
+                }
+                for (long position = 0; position < size; )
+                    position += file.transferTo(position, size - position, out);
+                return size;
+            }
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return;
+            if (file == null && size + length <= memoryThreshold) {
+                if (size + length > memory.length)
+                    memory = Arrays.copyOf(memory, (int) Math.min(memoryThreshold, Math.max(Math.max(memory.length * 2L, 1024), size + length)));
+                System.arraycopy(bytes, offset, memory, (int) size, length);
+                size += length;
+                return;
+            }
+            if (file == null) spill();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) file.write(buffer);
+            size += length;
+        }
+
+        private void spill() throws IOException {
+            Path path = directory == null ? Files.createTempFile("part-", ".tmp") : Files.createTempFile(directory, "part-", ".tmp");
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            ByteBuffer buffer = ByteBuffer.wrap(memory, 0, (int) size);
+            while (buffer.hasRemaining()) file.write(buffer);
+            memory = null;
+        }
+
+        private String disposition(String parameter) {
+            String disposition = headers.get("Content-Disposition");
+            if (disposition == null) return null;
+            int i = disposition.indexOf(';');
+            while (i >= 0 && i < disposition.length()) {
+                int name = i + 1;
+                while (name < disposition.length() && disposition.charAt(name) == ' ') name++;
+                int equals = disposition.indexOf('=', name);
+                if (equals < 0) return null;
+                StringBuilder value = new StringBuilder();
+                int next = equals + 1;
+                if (next < disposition.length() && disposition.charAt(next) == '"') {
+                    for (next++; next < disposition.length() && disposition.charAt(next) != '"'; next++) {
+                        char c = disposition.charAt(next);
+                        if (c == '\\' && next + 1 < disposition.length()) c = disposition.charAt(++next);
+                        value.append(c);
+                    }
+                    next = disposition.indexOf(';', next);
+                } else {
+                    int semicolon = disposition.indexOf(';', next);
+                    value.append(disposition, next, semicolon < 0 ? disposition.length() : semicolon);
+                    next = semicolon;
+                }
+                if (disposition.substring(name, equals).trim().equalsIgnoreCase(parameter)) return value.toString().trim();
+                i = next;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            memory = null;
+            if (file == null) return;
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
+
+class MultipartReader implements MessageBodyReader<Multipart> {
+    private final int memoryThreshold;
+    private final Path directory;
+
+    public MultipartReader() {
+        this(Multipart.DEFAULT_MEMORY_THRESHOLD, null);
+    }
+
+    public MultipartReader(int memoryThreshold, Path directory) {
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == Multipart.class && mediaType != null && MediaType.MULTIPART_FORM_DATA_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public Multipart readFrom(Class<Multipart> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                              MultivaluedMap<String, String> headers, InputStream entityStream) {
+        String boundary = mediaType == null ? null : mediaType.getParameters().get("boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70)
+            throw new WebApplicationException(OutboundResponse.BAD_REQUEST);
+        return new Multipart(entityStream, boundary, memoryThreshold, directory);
+    }
+}
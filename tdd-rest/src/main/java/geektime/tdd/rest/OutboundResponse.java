@@ -1,12 +1,720 @@
 package geektime.tdd.rest;
 
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Link;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.NewCookie;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+import jakarta.ws.rs.ext.RuntimeDelegate;
 
 import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 abstract class OutboundResponse extends Response {
+    static final OutboundResponse NO_CONTENT = builder().status(Status.NO_CONTENT).shared();
+    static final OutboundResponse BAD_REQUEST = builder().status(Status.BAD_REQUEST).shared();
+    static final OutboundResponse NOT_FOUND = builder().status(Status.NOT_FOUND).shared();
+    static final OutboundResponse PAYLOAD_TOO_LARGE = builder().status(Status.REQUEST_ENTITY_TOO_LARGE).shared();
+    static final OutboundResponse UNSUPPORTED_MEDIA_TYPE = builder().status(Status.UNSUPPORTED_MEDIA_TYPE).shared();
+    static final OutboundResponse INTERNAL_SERVER_ERROR = builder().status(Status.INTERNAL_SERVER_ERROR).shared();
+    static final OutboundResponse SERVICE_UNAVAILABLE = builder().status(Status.SERVICE_UNAVAILABLE).shared();
+
     abstract GenericEntity getGenericEntity();
 
     abstract Annotation[] getAnnotations();
+
+    static OutboundResponseBuilder builder() {
+        return new OutboundResponseBuilder();
+    }
+
+    static OutboundResponse of(GenericEntity entity) {
+        return new DefaultOutboundResponse(Status.OK, entity, null, new Headers());
+    }
+
+    static String vary(String vary, String header) {
+        if (vary == null || vary.isBlank()) return header;
+        for (String name : vary.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.equals("*") || trimmed.equalsIgnoreCase(header)) return vary;
+        }
+        return vary + ", " + header;
+    }
+
+    static StatusType statusType(int code, String reason) {
+        Status known = Status.fromStatusCode(code);
+        if (known != null && (reason == null || reason.equals(known.getReasonPhrase()))) return known;
+        return new StatusType() {
+            @Override
+            public int getStatusCode() {
+                return code;
+            }
+
+            @Override
+            public Status.Family getFamily() {
+                return Status.Family.familyOf(code);
+            }
+
+            @Override
+            public String getReasonPhrase() {
+                return reason == null ? "" : reason;
+            }
+        };
+    }
+
+    static class Headers extends AbstractMap<String, List<Object>> implements MultivaluedMap<String, Object> {
+        private static final String[] NO_NAMES = new String[0];
+        private static final Object[] NO_VALUES = new Object[0];
+
+        private String[] names = NO_NAMES;
+        private Object[] values = NO_VALUES;
+        private int size;
+        private boolean frozen;
+
+        Headers() {
+        }
+
+        private Headers(Headers headers, boolean frozen) {
+            this.names = Arrays.copyOf(headers.names, headers.size);
+            this.values = Arrays.copyOf(headers.values, headers.size);
+            this.size = headers.size;
+            this.frozen = frozen;
+        }
+
+        Headers copy(boolean frozen) {
+            return new Headers(this, frozen);
+        }
+
+        void forEachValue(BiConsumer<String, Object> consumer) {
+            for (int i = 0; i < size; i++) consumer.accept(names[i], values[i]);
+        }
+
+        private int indexOf(Object name, int from) {
+            for (int i = from; i < size; i++)
+                if (names[i].equalsIgnoreCase((String) name)) return i;
+            return -1;
+        }
+
+        private void modifying() {
+            if (frozen) throw new UnsupportedOperationException("Shared response headers are immutable");
+        }
+
+        @Override
+        public void add(String name, Object value) {
+            modifying();
+            if (size == names.length) {
+                int capacity = Math.max(4, size * 2);
+                names = Arrays.copyOf(names, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            names[size] = name;
+            values[size++] = value;
+        }
+
+        @Override
+        public Object getFirst(String name) {
+            int index = indexOf(name, 0);
+            return index < 0 ? null : values[index];
+        }
+
+        @Override
+        public void putSingle(String name, Object value) {
+            remove(name);
+            if (value != null) add(name, value);
+        }
+
+        @Override
+        public void addAll(String name, Object... values) {
+            for (Object value : values) add(name, value);
+        }
+
+        @Override
+        public void addAll(String name, List<Object> values) {
+            for (Object value : values) add(name, value);
+        }
+
+        @Override
+        public void addFirst(String name, Object value) {
+            add(name, value);
+            System.arraycopy(names, 0, names, 1, size - 1);
+            System.arraycopy(values, 0, values, 1, size - 1);
+            names[0] = name;
+            values[0] = value;
+        }
+
+        @Override
+        public boolean equalsIgnoreValueOrder(MultivaluedMap<String, Object> other) {
+            if (this == other) return true;
+            if (other == null || !keySet().equals(other.keySet())) return false;
+            for (Entry<String, List<Object>> entry : entrySet()) {
+                List<Object> values = other.get(entry.getKey());
+                if (values == null || values.size() != entry.getValue().size() || !values.containsAll(entry.getValue()))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public List<Object> get(Object name) {
+            if (!(name instanceof String)) return null;
+            int index = indexOf(name, 0);
+            if (index < 0) return null;
+            int next = indexOf(name, index + 1);
+            if (next < 0) return Collections.singletonList(values[index]);
+            List<Object> found = new ArrayList<>(4);
+            for (; index >= 0; index = indexOf(name, index + 1)) found.add(values[index]);
+            return Collections.unmodifiableList(found);
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return name instanceof String && indexOf(name, 0) >= 0;
+        }
+
+        @Override
+        public List<Object> put(String name, List<Object> values) {
+            List<Object> previous = remove(name);
+            if (values != null) addAll(name, values);
+            return previous;
+        }
+
+        @Override
+        public List<Object> remove(Object name) {
+            List<Object> previous = get(name);
+            if (previous == null) return null;
+            modifying();
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (names[i].equalsIgnoreCase((String) name)) continue;
+                names[kept] = names[i];
+                values[kept++] = values[i];
+            }
+            Arrays.fill(names, kept, size, null);
+            Arrays.fill(values, kept, size, null);
+            size = kept;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            modifying();
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public Set<Entry<String, List<Object>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, List<Object>>> iterator() {
+                    return new Iterator<>() {
+                        private int next = first(0);
+                        private String current;
+
+                        private int first(int from) {
+                            for (int i = from; i < size; i++)
+                                if (indexOf(names[i], 0) == i) return i;
+                            return size;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, List<Object>> next() {
+                            if (next >= size) throw new NoSuchElementException();
+                            current = names[next];
+                            next = first(next + 1);
+                            return new SimpleImmutableEntry<>(current, get(current));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) throw new IllegalStateException();
+                            int removed = indexOf(current, 0);
+                            Headers.this.remove(current);
+                            current = null;
+                            next = first(removed);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int distinct = 0;
+                    for (int i = 0; i < size; i++)
+                        if (indexOf(names[i], 0) == i) distinct++;
+                    return distinct;
+                }
+            };
+        }
+    }
+}
+
+class DefaultOutboundResponse extends OutboundResponse {
+    private static final HeaderDelegates HEADERS = new HeaderDelegates();
+
+    private final StatusType status;
+    private final GenericEntity entity;
+    private final Annotation[] annotations;
+    private final Headers headers;
+
+    DefaultOutboundResponse(StatusType status, GenericEntity entity, Annotation[] annotations, Headers headers) {
+        this.status = status;
+        this.entity = entity;
+        this.annotations = annotations == null ? new Annotation[0] : annotations;
+        this.headers = headers;
+    }
+
+    DefaultOutboundResponse negotiated(MediaType type) {
+        Headers negotiated = headers.copy(false);
+        if (type != null) negotiated.putSingle(HttpHeaders.CONTENT_TYPE, type);
+        String vary = null;
+        for (Object value : negotiated.getOrDefault(HttpHeaders.VARY, List.of()))
+            vary = vary == null ? value.toString() : vary + ", " + value;
+        negotiated.putSingle(HttpHeaders.VARY, vary(vary, HttpHeaders.ACCEPT));
+        return new DefaultOutboundResponse(status, entity, annotations, negotiated);
+    }
+
+    void forEachHeader(BiConsumer<String, Object> consumer) {
+        headers.forEachValue(consumer);
+    }
+
+    @Override
+    GenericEntity getGenericEntity() {
+        return entity;
+    }
+
+    @Override
+    Annotation[] getAnnotations() {
+        return annotations;
+    }
+
+    @Override
+    public int getStatus() {
+        return status.getStatusCode();
+    }
+
+    @Override
+    public StatusType getStatusInfo() {
+        return status;
+    }
+
+    @Override
+    public Object getEntity() {
+        return entity == null ? null : entity.getEntity();
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+        throw new IllegalStateException("Outbound response entity cannot be read");
+    }
+
+    @Override
+    public boolean hasEntity() {
+        return entity != null;
+    }
+
+    @Override
+    public boolean bufferEntity() {
+        throw new IllegalStateException("Outbound response entity cannot be buffered");
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        Object type = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (type == null) return null;
+        return type instanceof MediaType media ? media : MediaType.valueOf(type.toString());
+    }
+
+    @Override
+    public Locale getLanguage() {
+        Object language = headers.getFirst(HttpHeaders.CONTENT_LANGUAGE);
+        if (language == null) return null;
+        return language instanceof Locale locale ? locale : Locale.forLanguageTag(language.toString());
+    }
+
+    @Override
+    public int getLength() {
+        Object length = headers.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (length == null) return -1;
+        try {
+            return length instanceof Number number ? number.intValue() : Integer.parseInt(length.toString().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public Set<String> getAllowedMethods() {
+        List<Object> allowed = headers.get(HttpHeaders.ALLOW);
+        if (allowed == null) return Collections.emptySet();
+        Set<String> methods = new LinkedHashSet<>();
+        for (Object value : allowed)
+            for (String method : value.toString().split(","))
+                if (!method.isBlank()) methods.add(method.trim().toUpperCase(Locale.ROOT));
+        return methods;
+    }
+
+    @Override
+    public Map<String, NewCookie> getCookies() {
+        List<Object> cookies = headers.get(HttpHeaders.SET_COOKIE);
+        if (cookies == null) return Collections.emptyMap();
+        Map<String, NewCookie> found = new LinkedHashMap<>();
+        for (Object value : cookies) {
+            NewCookie cookie = value instanceof NewCookie newCookie ? newCookie : parse(NewCookie.class, value.toString());
+            found.put(cookie.getName(), cookie);
+        }
+        return found;
+    }
+
+    @Override
+    public EntityTag getEntityTag() {
+        Object tag = headers.getFirst(HttpHeaders.ETAG);
+        if (tag == null) return null;
+        return tag instanceof EntityTag entityTag ? entityTag : parse(EntityTag.class, tag.toString());
+    }
+
+    private static <T> T parse(Class<T> type, String value) {
+        return RuntimeDelegate.getInstance().createHeaderDelegate(type).fromString(value);
+    }
+
+    @Override
+    public Date getDate() {
+        return date(HttpHeaders.DATE);
+    }
+
+    @Override
+    public Date getLastModified() {
+        return date(HttpHeaders.LAST_MODIFIED);
+    }
+
+    private Date date(String name) {
+        Object value = headers.getFirst(name);
+        if (value == null || value instanceof Date) return (Date) value;
+        try {
+            return Date.from(ZonedDateTime.parse(value.toString(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public URI getLocation() {
+        Object location = headers.getFirst(HttpHeaders.LOCATION);
+        if (location == null) return null;
+        return location instanceof URI uri ? uri : URI.create(location.toString());
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        List<Object> links = headers.get(HttpHeaders.LINK);
+        if (links == null) return Collections.emptySet();
+        Set<Link> found = new LinkedHashSet<>();
+        for (Object value : links) found.add(value instanceof Link link ? link : Link.valueOf(value.toString()));
+        return found;
+    }
+
+    @Override
+    public boolean hasLink(String relation) {
+        return getLink(relation) != null;
+    }
+
+    @Override
+    public Link getLink(String relation) {
+        for (Link link : getLinks())
+            if (link.getRels().contains(relation)) return link;
+        return null;
+    }
+
+    @Override
+    public Link.Builder getLinkBuilder(String relation) {
+        Link link = getLink(relation);
+        return link == null ? null : Link.fromLink(link);
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getMetadata() {
+        return headers;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getStringHeaders() {
+        MultivaluedMap<String, String> strings = new MultivaluedHashMap<>();
+        headers.forEachValue((name, value) -> strings.add(name, HEADERS.toString(value)));
+        return strings;
+    }
+
+    @Override
+    public String getHeaderString(String name) {
+        List<Object> values = headers.get(name);
+        if (values == null) return null;
+        StringBuilder joined = new StringBuilder();
+        for (Object value : values) {
+            if (!joined.isEmpty()) joined.append(',');
+            joined.append(HEADERS.toString(value));
+        }
+        return joined.toString();
+    }
+}
+
+class OutboundResponseBuilder extends Response.ResponseBuilder {
+    private Response.StatusType status;
+    private GenericEntity entity;
+    private Annotation[] annotations;
+    private OutboundResponse.Headers headers = new OutboundResponse.Headers();
+
+    OutboundResponse shared() {
+        return new DefaultOutboundResponse(status(), entity, annotations, headers.copy(true));
+    }
+
+    private Response.StatusType status() {
+        if (status != null) return status;
+        return entity == null ? Response.Status.NO_CONTENT : Response.Status.OK;
+    }
+
+    @Override
+    public OutboundResponse build() {
+        return new DefaultOutboundResponse(status(), entity, annotations, headers.copy(false));
+    }
+
+    @Override
+    public OutboundResponseBuilder clone() {
+        OutboundResponseBuilder clone = new OutboundResponseBuilder();
+        clone.status = status;
+        clone.entity = entity;
+        clone.annotations = annotations;
+        clone.headers = headers.copy(false);
+        return clone;
+    }
+
+    @Override
+    public OutboundResponseBuilder status(int status) {
+        return status(status, null);
+    }
+
+    @Override
+    public OutboundResponseBuilder status(int status, String reasonPhrase) {
+        if (status < 100 || status > 599) throw new IllegalArgumentException("Invalid status code " + status);
+        this.status = OutboundResponse.statusType(status, reasonPhrase);
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder status(Response.StatusType status) {
+        if (status == null) throw new IllegalArgumentException("Status must not be null");
+        this.status = status;
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder status(Response.Status status) {
+        return status((Response.StatusType) status);
+    }
+
+    @Override
+    public OutboundResponseBuilder entity(Object entity) {
+        this.entity = entity == null ? null
+                : entity instanceof GenericEntity<?> generic ? generic : new GenericEntity<>(entity, entity.getClass());
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder entity(Object entity, Annotation[] annotations) {
+        this.annotations = annotations;
+        return entity(entity);
+    }
+
+    @Override
+    public OutboundResponseBuilder allow(String... methods) {
+        if (methods == null || methods.length == 1 && methods[0] == null) return replace(HttpHeaders.ALLOW, null);
+        return replace(HttpHeaders.ALLOW, String.join(",", methods));
+    }
+
+    @Override
+    public OutboundResponseBuilder allow(Set<String> methods) {
+        if (methods == null) return replace(HttpHeaders.ALLOW, null);
+        return replace(HttpHeaders.ALLOW, String.join(",", methods));
+    }
+
+    @Override
+    public OutboundResponseBuilder cacheControl(CacheControl cacheControl) {
+        return replace(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+
+    @Override
+    public OutboundResponseBuilder encoding(String encoding) {
+        return replace(HttpHeaders.CONTENT_ENCODING, encoding);
+    }
+
+    @Override
+    public OutboundResponseBuilder header(String name, Object value) {
+        if (value == null) headers.remove(name);
+        else headers.add(name, value);
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder replaceAll(MultivaluedMap<String, Object> headers) {
+        this.headers.clear();
+        if (headers != null) headers.forEach(this.headers::addAll);
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder language(String language) {
+        return replace(HttpHeaders.CONTENT_LANGUAGE, language);
+    }
+
+    @Override
+    public OutboundResponseBuilder language(Locale language) {
+        return replace(HttpHeaders.CONTENT_LANGUAGE, language == null ? null : language.toLanguageTag());
+    }
+
+    @Override
+    public OutboundResponseBuilder type(MediaType type) {
+        return replace(HttpHeaders.CONTENT_TYPE, type);
+    }
+
+    @Override
+    public OutboundResponseBuilder type(String type) {
+        return replace(HttpHeaders.CONTENT_TYPE, type);
+    }
+
+    @Override
+    public OutboundResponseBuilder variant(Variant variant) {
+        type(variant == null ? null : variant.getMediaType());
+        language(variant == null ? null : variant.getLanguage());
+        return encoding(variant == null ? null : variant.getEncoding());
+    }
+
+    @Override
+    public OutboundResponseBuilder contentLocation(URI location) {
+        return replace(HttpHeaders.CONTENT_LOCATION, location);
+    }
+
+    @Override
+    public OutboundResponseBuilder cookie(NewCookie... cookies) {
+        if (cookies == null) return replace(HttpHeaders.SET_COOKIE, null);
+        for (NewCookie cookie : cookies) headers.add(HttpHeaders.SET_COOKIE, cookie);
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder expires(Date expires) {
+        return replace(HttpHeaders.EXPIRES, expires);
+    }
+
+    @Override
+    public OutboundResponseBuilder lastModified(Date lastModified) {
+        return replace(HttpHeaders.LAST_MODIFIED, lastModified);
+    }
+
+    @Override
+    public OutboundResponseBuilder location(URI location) {
+        return replace(HttpHeaders.LOCATION, location);
+    }
+
+    @Override
+    public OutboundResponseBuilder tag(EntityTag tag) {
+        return replace(HttpHeaders.ETAG, tag);
+    }
+
+    @Override
+    public OutboundResponseBuilder tag(String tag) {
+        return tag(tag == null ? null : new EntityTag(tag));
+    }
+
+    @Override
+    public OutboundResponseBuilder variants(Variant... variants) {
+        return variants(variants == null ? null : Arrays.asList(variants));
+    }
+
+    @Override
+    public OutboundResponseBuilder variants(List<Variant> variants) {
+        if (variants == null || variants.isEmpty()) return replace(HttpHeaders.VARY, null);
+        Variant first = variants.get(0);
+        List<String> vary = new ArrayList<>(3);
+        if (variants.stream().anyMatch(v -> !Objects.equals(v.getMediaType(), first.getMediaType())))
+            vary.add(HttpHeaders.ACCEPT);
+        if (variants.stream().anyMatch(v -> !Objects.equals(v.getLanguage(), first.getLanguage())))
+            vary.add(HttpHeaders.ACCEPT_LANGUAGE);
+        if (variants.stream().anyMatch(v -> !Objects.equals(v.getEncoding(), first.getEncoding())))
+            vary.add(HttpHeaders.ACCEPT_ENCODING);
+        return replace(HttpHeaders.VARY, vary.isEmpty() ? null : String.join(",", vary));
+    }
+
+    @Override
+    public OutboundResponseBuilder links(Link... links) {
+        if (links == null) return replace(HttpHeaders.LINK, null);
+        for (Link link : links) headers.add(HttpHeaders.LINK, link);
+        return this;
+    }
+
+    @Override
+    public OutboundResponseBuilder link(URI uri, String rel) {
+        return links(Link.fromUri(uri).rel(rel).build());
+    }
+
+    @Override
+    public OutboundResponseBuilder link(String uri, String rel) {
+        return links(Link.fromUri(uri).rel(rel).build());
+    }
+
+    private OutboundResponseBuilder replace(String name, Object value) {
+        headers.putSingle(name, value);
+        return this;
+    }
 }
@@ -0,0 +1,159 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+interface ParameterExtractor {
+
+    Object extract(ResourceContext resourceContext, UriInfoBuilder builder);
+
+    static ParameterExtractor of(Parameter parameter, ConverterRegistry converters) {
+        Class<?> type = parameter.getType();
+
+        boolean decode = !encoded(parameter);
+
+        PathParam path = parameter.getAnnotation(PathParam.class);
+        if (path != null) {
+            String name = path.value();
+            return param(parameter, converters, ParameterExtractor::notFound,
+                    (context, builder) -> builder.createUriInfo().getPathParameters(decode).get(name));
+        }
+
+        QueryParam query = parameter.getAnnotation(QueryParam.class);
+        if (query != null) {
+            String name = query.value();
+            ParameterExtractor values = param(parameter, converters, ParameterExtractor::notFound,
+                    (context, builder) -> builder.createUriInfo().getQueryParameters(decode).get(name));
+            ConverterRegistry.Scalar scalar = converters.scalar(type, parameter.getParameterizedType(), parameter.getAnnotations());
+            return scalar == null ? values : query(name, scalar, values);
+        }
+
+        HeaderParam header = parameter.getAnnotation(HeaderParam.class);
+        if (header != null) {
+            String name = header.value();
+            return param(parameter, converters, ParameterExtractor::badRequest,
+                    (context, builder) -> context.getResource(HttpHeaders.class).getRequestHeader(name));
+        }
+
+        if (parameter.isAnnotationPresent(Suspended.class))
+            return (context, builder) -> new SuspendedResponse();
+
+        if (parameter.isAnnotationPresent(Context.class)) {
+            if (type == UriInfo.class) return (context, builder) -> builder.createUriInfo();
+            if (type == SseEventSink.class) return (context, builder) -> new EventSink(context.getResource(Providers.class));
+            if (type == Sse.class) return (context, builder) -> new ServerSentEvents(context.getResource(Providers.class));
+            if (type == Request.class)
+                return (context, builder) -> new ConditionalRequest(context.getResource(HttpServletRequest.class));
+            return (context, builder) -> context.getResource(type);
+        }
+
+        return entity(type, parameter.getParameterizedType(), parameter.getAnnotations());
+    }
+
+    private static boolean encoded(Parameter parameter) {
+        return parameter.isAnnotationPresent(Encoded.class) || parameter.getDeclaringExecutable().isAnnotationPresent(Encoded.class)
+                || parameter.getDeclaringExecutable().getDeclaringClass().isAnnotationPresent(Encoded.class);
+    }
+
+    private static ParameterExtractor entity(Class type, Type genericType, Annotation[] annotations) {
+        MessageBodyReaders readers = new MessageBodyReaders(type, genericType, annotations);
+        return (context, builder) -> {
+            HttpHeaders headers = context.getResource(HttpHeaders.class);
+            MediaType mediaType = headers.getMediaType();
+            MessageBodyReader reader = readers.get(context.getResource(Providers.class), mediaType);
+            if (reader == null) throw new WebApplicationException(OutboundResponse.UNSUPPORTED_MEDIA_TYPE);
+            HttpServletRequest request = context.getResource(HttpServletRequest.class);
+            try {
+                Object entity = reader.readFrom(type, genericType, annotations, mediaType, headers.getRequestHeaders(),
+                        request.getInputStream());
+                if (entity instanceof AutoCloseable closeable && request instanceof RequestEntity.EntityRequest wrapped)
+                    wrapped.closeAfter(closeable);
+                return entity;
+            } catch (IOException e) {
+                if (RequestEntity.tooLarge(e)) throw new WebApplicationException(e, OutboundResponse.PAYLOAD_TOO_LARGE);
+                throw new WebApplicationException(e, OutboundResponse.INTERNAL_SERVER_ERROR);
+            }
+        };
+    }
+
+    private static ParameterExtractor param(Parameter parameter, ConverterRegistry converters,
+                                            Function<Throwable, WebApplicationException> error,
+                                            BiFunction<ResourceContext, UriInfoBuilder, List<String>> values) {
+        Function<List<String>, Object> binder = converters.binder(parameter.getType(), parameter.getParameterizedType(), parameter.getAnnotations());
+        return (context, builder) -> {
+            List<String> value = values.apply(context, builder);
+            try {
+                return binder.apply(value);
+            } catch (WebApplicationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw error.apply(e);
+            }
+        };
+    }
+
+    private static ParameterExtractor query(String name, ConverterRegistry.Scalar scalar, ParameterExtractor values) {
+        ConverterRegistry.Converter converter = scalar.converter();
+        return (context, builder) -> {
+            if (!(builder instanceof DefaultUriInfoBuilder uri)) return values.extract(context, builder);
+            String query = uri.getQueryString();
+            if (query == null) return scalar.missing();
+            if (query.indexOf('%') >= 0 || query.indexOf('+') >= 0) return values.extract(context, builder);
+
+            for (int start = 0, length = query.length(); start < length; ) {
+                int next = query.indexOf('&', start);
+                if (next < 0) next = length;
+                int equals = query.indexOf('=', start);
+                if (equals < 0 || equals > next) equals = next;
+                if (equals - start == name.length() && query.startsWith(name, start)) {
+                    try {
+                        return converter.convert(query, Math.min(equals + 1, next), next);
+                    } catch (WebApplicationException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        throw notFound(e);
+                    }
+                }
+                start = next + 1;
+            }
+            return scalar.missing();
+        };
+    }
+
+    private static WebApplicationException notFound(Throwable cause) {
+        return new NotFoundException(OutboundResponse.NOT_FOUND, cause) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+    }
+
+    private static WebApplicationException badRequest(Throwable cause) {
+        return new BadRequestException(OutboundResponse.BAD_REQUEST, cause) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+    }
+}
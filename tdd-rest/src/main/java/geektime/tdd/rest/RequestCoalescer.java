@@ -0,0 +1,115 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+class RequestCoalescer {
+    private static final List<String> CREDENTIALS = List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE);
+
+    private final long timeoutMillis;
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+    private final Map<String, CompletableFuture<ResponseCache.Cached>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public RequestCoalescer(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    public RequestCoalescer route(String path, String... headers) {
+        routes.add(new Route(new PathTemplate(path), List.of(headers)));
+        return this;
+    }
+
+    public String key(HttpServletRequest req) {
+        String method = req.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) return null;
+
+        String path = req.getServletPath();
+        for (Route route : routes) {
+            Optional<UriTemplate.MatchResult> matched = route.template.match(path);
+            if (matched.isEmpty() || !exact(matched.get().getRemaining())) continue;
+
+            StringBuilder key = new StringBuilder(method).append(' ').append(path);
+            String query = req.getQueryString();
+            if (query != null) key.append('?').append(query);
+            for (String header : route.headers) key.append('\n').append(req.getHeader(header));
+            for (String header : CREDENTIALS) {
+                String credential = req.getHeader(header);
+                if (credential != null) key.append('\n').append(header).append(": ").append(credential);
+            }
+            return key.toString();
+        }
+        return null;
+    }
+
+    public CompletableFuture<ResponseCache.Cached> join(String key, CompletableFuture<ResponseCache.Cached> flight) {
+        CompletableFuture<ResponseCache.Cached> leading = inFlight.putIfAbsent(key, flight);
+        if (leading == null) invocations.increment();
+        return leading;
+    }
+
+    public void land(String key, CompletableFuture<ResponseCache.Cached> flight, ResponseCache.Cached shared, Throwable error) {
+        inFlight.remove(key, flight);
+        if (error == null) {
+            flight.complete(shared);
+            return;
+        }
+        failures.increment();
+        flight.completeExceptionally(error);
+    }
+
+    public ResponseCache.Cached await(CompletableFuture<ResponseCache.Cached> leading) throws Throwable {
+        try {
+            ResponseCache.Cached shared = leading.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (shared != null) coalesced.increment();
+            return shared;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    private static boolean exact(String remaining) {
+        return remaining == null || remaining.isEmpty() || remaining.equals("/");
+    }
+
+    private record Route(UriTemplate template, List<String> headers) {
+    }
+}
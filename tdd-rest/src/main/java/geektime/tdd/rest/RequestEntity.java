@@ -0,0 +1,331 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.ws.rs.HttpMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RequestEntity {
+    static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+    static final RequestEntity UNLIMITED = new RequestEntity(Long.MAX_VALUE);
+
+    static class TooLargeException extends IOException {
+        TooLargeException(long limit) {
+            super("Request entity exceeds " + limit + " bytes");
+        }
+    }
+
+    private final long maxBytes;
+    private final int memoryThreshold;
+    private final Path spillDirectory;
+
+    public RequestEntity(long maxBytes) {
+        this(maxBytes, DEFAULT_MEMORY_THRESHOLD, null);
+    }
+
+    public RequestEntity(long maxBytes, int memoryThreshold, Path spillDirectory) {
+        this.maxBytes = maxBytes;
+        this.memoryThreshold = memoryThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    boolean exceeds(HttpServletRequest req) {
+        return req.getContentLengthLong() > maxBytes;
+    }
+
+    HttpServletRequest wrap(HttpServletRequest req) {
+        long length = req.getContentLengthLong();
+        if (length == 0 || length < 0 && (HttpMethod.GET.equals(req.getMethod()) || HttpMethod.HEAD.equals(req.getMethod())))
+            return req;
+        return new EntityRequest(req, this);
+    }
+
+    byte[] readAllBytes(HttpServletRequest req) throws IOException {
+        if (exceeds(req)) throw new TooLargeException(maxBytes);
+        return new LimitedInputStream(req.getInputStream(), maxBytes).readAllBytes();
+    }
+
+    static boolean tooLarge(Throwable throwable) {
+        for (int depth = 0; throwable != null && depth < 8; throwable = throwable.getCause(), depth++)
+            if (throwable instanceof TooLargeException) return true;
+        return false;
+    }
+
+    static class EntityRequest extends HttpServletRequestWrapper {
+        private final RequestEntity limits;
+        private ServletInputStream input;
+        private ServletInputStream replaced;
+        private EntityBuffer buffer;
+        private List<AutoCloseable> closeables;
+
+        EntityRequest(HttpServletRequest request, RequestEntity limits) {
+            super(request);
+            this.limits = limits;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (replaced != null) return replaced;
+            if (buffer != null) return buffer.open();
+            return input();
+        }
+
+        ServletInputStream buffered() throws IOException {
+            if (replaced != null) return replaced;
+            if (buffer == null) buffer = new EntityBuffer(input(), limits.memoryThreshold, limits.spillDirectory);
+            return buffer.open();
+        }
+
+        void replace(InputStream entity) {
+            replaced = entity instanceof ServletInputStream servlet ? servlet : new ReplacedInputStream(entity);
+            closeAfter(entity);
+        }
+
+        void closeAfter(AutoCloseable closeable) {
+            if (closeables == null) closeables = new ArrayList<>(1);
+            closeables.add(closeable);
+        }
+
+        void release() {
+            if (closeables != null)
+                for (AutoCloseable closeable : closeables) {
+                    try {
+                        closeable.close();
+                    } catch (Exception ignored) {
+                    }
+                }
+            if (buffer != null) buffer.close();
+        }
+
+        private ServletInputStream input() throws IOException {
+            if (input == null) {
+                ServletInputStream in = super.getInputStream();
+                long length = getContentLengthLong();
+                input = length >= 0 && length <= limits.maxBytes ? in : new LimitedInputStream(in, limits.maxBytes);
+            }
+            return input;
+        }
+    }
+
+    static class ReplacedInputStream extends ServletInputStream {
+        private final InputStream in;
+        private boolean finished;
+
+        ReplacedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b < 0) finished = true;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = in.read(bytes, offset, length);
+            if (read < 0) finished = true;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            throw new IllegalStateException("Replaced request entity stream is blocking");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static class LimitedInputStream extends ServletInputStream {
+        private final ServletInputStream in;
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(ServletInputStream in, long limit) {
+            this.in = in;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) counted(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = in.read(bytes, offset, length);
+            if (read > 0) counted(read);
+            return read;
+        }
+
+        private void counted(int read) throws TooLargeException {
+            count += read;
+            if (count > limit) throw new TooLargeException(limit);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return in.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            in.setReadListener(listener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static class EntityBuffer {
+        private final ServletInputStream source;
+        private final int memoryThreshold;
+        private final Path directory;
+        private byte[] memory = new byte[1024];
+        private FileChannel file;
+        private long size;
+        private boolean exhausted;
+
+        EntityBuffer(ServletInputStream source, int memoryThreshold, Path directory) {
+            this.source = source;
+            this.memoryThreshold = memoryThreshold;
+            this.directory = directory;
+        }
+
+        ServletInputStream open() {
+            return new Cursor();
+        }
+
+        boolean isSpilled() {
+            return file != null;
+        }
+
+        long size() {
+            return size;
+        }
+
+        private int read(long position, byte[] bytes, int offset, int length) throws IOException {
+            if (position < size) {
+                int count = (int) Math.min(length, size - position);
+                if (file == null) {
+                    System.arraycopy(memory, (int) position, bytes, offset, count);
+                    return count;
+                }
+                return file.read(ByteBuffer.wrap(bytes, offset, count), position);
+            }
+            if (exhausted) return -1;
+            int read = source.read(bytes, offset, length);
+            if (read < 0) exhausted = true;
+            else append(bytes, offset, read);
+            return read;
+        }
+
+        private void append(byte[] bytes, int offset, int length) throws IOException {
+            if (file == null && size + length <= memoryThreshold) {
+                if (size + length > memory.length)
+                    memory = Arrays.copyOf(memory, (int) Math.min(memoryThreshold, Math.max(memory.length * 2L, size + length)));
+                System.arraycopy(bytes, offset, memory, (int) size, length);
+                size += length;
+                return;
+            }
+            if (file == null) spill();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) file.write(buffer, size + buffer.position() - offset);
+            size += length;
+        }
+
+        private void spill() throws IOException {
+            Path path = directory == null ? Files.createTempFile("entity-", ".tmp") : Files.createTempFile(directory, "entity-", ".tmp");
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            ByteBuffer buffer = ByteBuffer.wrap(memory, 0, (int) size);
+            while (buffer.hasRemaining()) file.write(buffer, buffer.position());
+            memory = null;
+        }
+
+        void close() {
+            if (file == null) return;
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private class Cursor extends ServletInputStream {
+            private final byte[] single = new byte[1];
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) return 0;
+                int read = EntityBuffer.this.read(position, bytes, offset, length);
+                if (read > 0) position += read;
+                return read;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return exhausted && position >= size;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+                throw new IllegalStateException("Buffered request entity is read synchronously");
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.Response;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+class ResourceMethods {
+
+    private final Route[] routes;
+
+    public ResourceMethods(Class<?> resourceClass, ConverterRegistry converters) {
+        this(resourceClass, converters, Filters.NONE);
+    }
+
+    public ResourceMethods(Class<?> resourceClass, ConverterRegistry converters, Filters filters) {
+        Map<String, List<ResourceRouter.ResourceMethod>> paths = new LinkedHashMap<>();
+        for (Method method : resourceClass.getMethods())
+            if (Arrays.stream(method.getAnnotations()).anyMatch(a -> a.annotationType().isAnnotationPresent(HttpMethod.class)))
+                paths.computeIfAbsent(method.getAnnotation(Path.class).value(), p -> new ArrayList<>())
+                        .add(new RootResourceClass.DefaultResourceMethod(resourceClass, method, converters, filters));
+
+        this.routes = paths.values().stream().map(Route::new).toArray(Route[]::new);
+    }
+
+    public Optional<ResourceRouter.ResourceMethod> findResourceMethod(String path, String method, UriInfoBuilder builder) {
+        Route best = null;
+        UriTemplate.MatchResult bestResult = null;
+
+        for (Route route : routes) {
+            UriTemplate.MatchResult result = route.match(path);
+            if (result == null) continue;
+
+            int order = best == null ? -1 : result.compareTo(bestResult);
+            if (order < 0 || order == 0 && !best.handles(method) && route.handles(method)) {
+                best = route;
+                bestResult = result;
+            }
+        }
+
+        if (best == null) return Optional.empty();
+        if (!best.handles(method)) return Optional.of(best.notAllowed);
+        builder.pushMatchedPath(bestResult.getMatched());
+        bestResult.getPathParameters().forEach(builder::addParameter);
+        return Optional.of(best.get(method));
+    }
+
+    static class Route {
+        private final UriTemplate uriTemplate;
+        private final Map<String, ResourceRouter.ResourceMethod> methods = new HashMap<>();
+        private final ResourceRouter.ResourceMethod notAllowed;
+
+        Route(List<ResourceRouter.ResourceMethod> resourceMethods) {
+            this.uriTemplate = resourceMethods.get(0).getUriTemplate();
+
+            for (ResourceRouter.ResourceMethod method : resourceMethods)
+                methods.putIfAbsent(method.getHttpMethod(), method);
+
+            if (methods.containsKey(HttpMethod.GET))
+                methods.putIfAbsent(HttpMethod.HEAD, new HeadResourceMethod(methods.get(HttpMethod.GET)));
+
+            Set<String> allowed = new TreeSet<>(methods.keySet());
+            allowed.add(HttpMethod.OPTIONS);
+
+            methods.putIfAbsent(HttpMethod.OPTIONS, new OptionsResourceMethod(uriTemplate, allowed));
+            this.notAllowed = new MethodNotAllowed(uriTemplate, allowed);
+        }
+
+        private UriTemplate.MatchResult match(String path) {
+            Optional<UriTemplate.MatchResult> matched = uriTemplate.match(path);
+            if (matched.isEmpty() || matched.get().getRemaining() != null) return null;
+            return matched.get();
+        }
+
+        private boolean handles(String method) {
+            return methods.containsKey(method);
+        }
+
+        private ResourceRouter.ResourceMethod get(String method) {
+            return methods.get(method);
+        }
+    }
+
+    static class HeadResourceMethod implements ResourceRouter.ResourceMethod {
+        private final ResourceRouter.ResourceMethod method;
+
+        HeadResourceMethod(ResourceRouter.ResourceMethod method) {
+            this.method = method;
+        }
+
+        @Override
+        public String getHttpMethod() {
+            return HttpMethod.HEAD;
+        }
+
+        @Override
+        public UriTemplate getUriTemplate() {
+            return method.getUriTemplate();
+        }
+
+        @Override
+        public GenericEntity call(ResourceContext resourceContext, UriInfoBuilder builder) {
+            return method.call(resourceContext, builder);
+        }
+
+        @Override
+        public String toString() {
+            return method.toString();
+        }
+    }
+
+    static class OptionsResourceMethod implements ResourceRouter.ResourceMethod {
+        private final UriTemplate uriTemplate;
+        private final OutboundResponse response;
+
+        OptionsResourceMethod(UriTemplate uriTemplate, Set<String> allowed) {
+            this.uriTemplate = uriTemplate;
+            this.response = OutboundResponse.builder().status(Response.Status.OK).allow(allowed).shared();
+        }
+
+        @Override
+        public String getHttpMethod() {
+            return HttpMethod.OPTIONS;
+        }
+
+        @Override
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
+        }
+
+        @Override
+        public GenericEntity call(ResourceContext resourceContext, UriInfoBuilder builder) {
+            return new GenericEntity<>(response, Response.class);
+        }
+    }
+
+    static class MethodNotAllowed implements ResourceRouter.ResourceMethod {
+        private final UriTemplate uriTemplate;
+        private final OutboundResponse response;
+
+        MethodNotAllowed(UriTemplate uriTemplate, Set<String> allowed) {
+            this.uriTemplate = uriTemplate;
+            this.response = OutboundResponse.builder().status(Response.Status.METHOD_NOT_ALLOWED).allow(allowed).shared();
+        }
+
+        @Override
+        public String getHttpMethod() {
+            return null;
+        }
+
+        @Override
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
+        }
+
+        @Override
+        public GenericEntity call(ResourceContext resourceContext, UriInfoBuilder builder) {
+            return new GenericEntity<>(response, Response.class);
+        }
+    }
+}
@@ -4,13 +4,19 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.GenericEntity;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.SseEventSink;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionStage;
 
 public interface ResourceRouter {
     OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext);
@@ -47,19 +53,26 @@ class DefaultResourceRouter implements ResourceRouter{
     public OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext) {
         String path = request.getServletPath();
 
+        Result matched = null;
+        for (RootResource resource : rootResources) {
+            Result result = match(path, resource);
+            if (result.isMatch() && (matched == null || result.compareTo(matched) < 0)) matched = result;
+        }
+
+        if (matched == null)
+            return OutboundResponse.NOT_FOUND;
+
         UriInfoBuilder uri= runtime.createUriInfoBuilder(request);
 
-        Optional<ResourceMethod> method = rootResources.stream().map(resource -> match(path, resource))
-                .filter(Result::isMatch).sorted().findFirst()
-                .flatMap(result -> result.findResourceMethod(request, uri));
+        Optional<ResourceMethod> method = matched.findResourceMethod(request, uri);
 
         if(method.isEmpty())
-            return (OutboundResponse) Response.status(Response.Status.NOT_FOUND).build();
+            return OutboundResponse.NOT_FOUND;
 
 
-        return (OutboundResponse) method.map(m -> m.call(resourceContext, uri))
-                .map(entity -> Response.ok(entity).build())
-                .orElseGet(() -> Response.status(Response.Status.NO_CONTENT).build());
+        return method.map(m -> m.call(resourceContext, uri))
+                .map(entity -> entity.getEntity() instanceof OutboundResponse response ? response : OutboundResponse.of(entity))
+                .orElse(OutboundResponse.NO_CONTENT);
 
     }
 
@@ -91,31 +104,29 @@ class RootResourceClass implements ResourceRouter.RootResource{
     private final PathTemplate uriTemplate;
     private Class<?> resourceClass;
 
-//    private List<ResourceRouter.ResourceMethod> resourceMethods;
-
-    private Map<String ,List<ResourceRouter.ResourceMethod>> resourceMethods;
+    private ResourceMethods resourceMethods;
 
     public RootResourceClass(Class<?> resourceClass) {
+        this(resourceClass, ConverterRegistry.DEFAULT);
+    }
+
+    public RootResourceClass(Class<?> resourceClass, ConverterRegistry converters) {
+        this(resourceClass, converters, Filters.NONE);
+    }
+
+    public RootResourceClass(Class<?> resourceClass, ConverterRegistry converters, Filters filters) {
         this.resourceClass = resourceClass;
         this.uriTemplate = new PathTemplate(resourceClass.getAnnotation(Path.class ).value());
 
-        this.resourceMethods = Arrays.stream(resourceClass.getMethods())
-                .filter(m -> Arrays.stream(m.getAnnotations()).anyMatch(a -> a.annotationType().isAnnotationPresent(HttpMethod.class)))
-                .map(m -> new DefaultResourceMethod(m))
-                .collect(Collectors.groupingBy(m ->m.getHttpMethod())) ;
+        this.resourceMethods = new ResourceMethods(resourceClass, converters, filters);
     }
 
     @Override
     public Optional<ResourceRouter.ResourceMethod> matches(UriTemplate.MatchResult result, String method, String[] mediaTypes, UriInfoBuilder builder) {
-//        UriTemplate.MatchResult result = uriTemplate.match(result).get();
-        String remaining = result.getRemaining();
-
-       return resourceMethods.get(method).stream()
-               .map(m -> match(remaining,m))
-               .filter(Result::isMatched).sorted()
-               .findFirst()
-               .map(Result::resourceMethod);
+        builder.pushMatchedPath(result.getMatched());
+        result.getPathParameters().forEach(builder::addParameter);
 
+        return resourceMethods.findResourceMethod(result.getRemaining(), method, builder);
     }
 
     @Override
@@ -123,34 +134,54 @@ class RootResourceClass implements ResourceRouter.RootResource{
         return uriTemplate;
     }
 
-    private Result match(String path, ResourceRouter.ResourceMethod method){
-        return new Result(method.getUriTemplate().match(path),method );
-    }
-
-    record Result(Optional<UriTemplate.MatchResult> matched , ResourceRouter.ResourceMethod resourceMethod) implements Comparable<Result>{
-
-        public boolean isMatched(){
-            return matched.map(r -> r.getRemaining() == null).orElse(false);
-        }
-
-        @Override
-        public int compareTo(Result o) {
-            return matched.flatMap(x -> o.matched.map(x::compareTo)).orElse(0);
-        }
-    }
-
     static class DefaultResourceMethod implements ResourceRouter.ResourceMethod{
 
+        private static final MethodType INVOKER = MethodType.methodType(Object.class, Object.class, Object[].class);
+
         private String httpMethod;
+        private Class<?> resourceClass;
         private Method method;
         private UriTemplate uriTemplate;
-        public DefaultResourceMethod(Method method) {
+        private MethodHandle handle;
+        private ParameterExtractor[] extractors;
+        private int suspended;
+        private Filters.Chain chain;
+
+        public DefaultResourceMethod(Class<?> resourceClass, Method method, ConverterRegistry converters) {
+            this(resourceClass, method, converters, Filters.NONE);
+        }
+
+        public DefaultResourceMethod(Class<?> resourceClass, Method method, ConverterRegistry converters, Filters filters) {
+            this.resourceClass = resourceClass;
             this.method = method;
             this.uriTemplate = new PathTemplate(method.getAnnotation(Path.class).value());
 
             this.httpMethod=Arrays.stream(method.getAnnotations())
                     .filter(a -> a.annotationType().isAnnotationPresent(HttpMethod.class))
                     .findFirst().get().annotationType().getAnnotation(HttpMethod.class).value();
+
+            this.extractors = Arrays.stream(method.getParameters()).map(p -> ParameterExtractor.of(p, converters)).toArray(ParameterExtractor[]::new);
+            this.suspended = suspended(method);
+            this.handle = handle(method);
+            this.chain = filters.chain(resourceClass, method);
+        }
+
+        private static int suspended(Method method) {
+            Parameter[] parameters = method.getParameters();
+            for (int i = 0; i < parameters.length; i++)
+                if (parameters[i].isAnnotationPresent(Suspended.class) || parameters[i].getType() == SseEventSink.class) return i;
+            return -1;
+        }
+
+        private static MethodHandle handle(Method method) {
+            try {
+                method.trySetAccessible();
+                return MethodHandles.lookup().unreflect(method)
+                        .asSpreader(Object[].class, method.getParameterCount())
+                        .asType(INVOKER);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
         }
 
         @Override
@@ -165,7 +196,31 @@ class RootResourceClass implements ResourceRouter.RootResource{
 
         @Override
         public GenericEntity call(ResourceContext resourceContext, UriInfoBuilder builder) {
-            return null;
+            if (chain == Filters.Chain.EMPTY) return invoke(resourceContext, builder);
+            return chain.filter(resourceContext, builder, () -> invoke(resourceContext, builder));
+        }
+
+        private GenericEntity invoke(ResourceContext resourceContext, UriInfoBuilder builder) {
+            Object resource = resourceContext.getResource(resourceClass);
+
+            Object[] args = new Object[extractors.length];
+            for (int i = 0; i < extractors.length; i++)
+                args[i] = extractors[i].extract(resourceContext, builder);
+
+            Object result;
+            try {
+                result = (Object) handle.invokeExact(resource, args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+
+            if (suspended >= 0)
+                return new GenericEntity(args[suspended], args[suspended] instanceof SseEventSink ? SseEventSink.class : CompletionStage.class);
+            if (result == null) return null;
+            if (result instanceof GenericEntity entity) return entity;
+            return new GenericEntity(result, method.getReturnType().isPrimitive() ? result.getClass() : method.getGenericReturnType());
         }
 
         @Override
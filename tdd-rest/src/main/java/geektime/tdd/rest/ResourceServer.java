@@ -0,0 +1,111 @@
+package geektime.tdd.rest;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ResourceServer {
+    public enum Execution {
+        POOLED, VIRTUAL
+    }
+
+    public record Tls(int port, Path keyStore, String password) {
+    }
+
+    static final int DEFAULT_MAX_THREADS = 200;
+    static final int DEFAULT_BATCH_CONCURRENCY = 8;
+    static final String BATCH_PATH = "/$batch";
+
+    private final Server server;
+    private final ServerConnector connector;
+    private final ServerConnector secureConnector;
+    private final ExecutorService requests;
+
+    public ResourceServer(Runtime runtime, int port, Execution execution) {
+        this(runtime, port, execution, DEFAULT_MAX_THREADS);
+    }
+
+    public ResourceServer(Runtime runtime, int port, Execution execution, int maxThreads) {
+        this(runtime, port, execution, maxThreads, null);
+    }
+
+    public ResourceServer(Runtime runtime, int port, Execution execution, int maxThreads, Tls tls) {
+        this(runtime, port, execution, maxThreads, tls, new ResourceServlet.Options());
+    }
+
+    public ResourceServer(Runtime runtime, int port, Execution execution, int maxThreads, Tls tls, ResourceServlet.Options options) {
+        this.requests = execution == Execution.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("resource-", 0).factory()) : null;
+        this.server = new Server(new QueuedThreadPool(maxThreads));
+
+        HttpConfiguration configuration = new HttpConfiguration();
+        this.connector = new ServerConnector(server, new HttpConnectionFactory(configuration),
+                new HTTP2CServerConnectionFactory(configuration));
+        connector.setPort(port);
+        server.addConnector(connector);
+        this.secureConnector = tls == null ? null : secure(tls, configuration);
+
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ResourceServlet servlet = new ResourceServlet(runtime, requests == null ? options : options.copy().executor(requests));
+        ServletHolder holder = new ServletHolder(servlet);
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        handler.addServlet(new ServletHolder(new BatchServlet(servlet, DEFAULT_BATCH_CONCURRENCY)), BATCH_PATH);
+        server.setHandler(handler);
+    }
+
+    private ServerConnector secure(Tls tls, HttpConfiguration configuration) {
+        SslContextFactory.Server ssl = new SslContextFactory.Server();
+        ssl.setKeyStorePath(tls.keyStore().toString());
+        ssl.setKeyStorePassword(tls.password());
+        ssl.setCipherComparator(HTTP2Cipher.COMPARATOR);
+
+        HttpConfiguration secure = new HttpConfiguration(configuration);
+        secure.addCustomizer(new SecureRequestCustomizer());
+        HttpConnectionFactory http1 = new HttpConnectionFactory(secure);
+        ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", http1.getProtocol());
+        alpn.setDefaultProtocol(http1.getProtocol());
+
+        ServerConnector secureConnector = new ServerConnector(server, new SslConnectionFactory(ssl, alpn.getProtocol()),
+                alpn, new HTTP2ServerConnectionFactory(secure), http1);
+        secureConnector.setPort(tls.port());
+        server.addConnector(secureConnector);
+        return secureConnector;
+    }
+
+    public void start() throws Exception {
+        server.start();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+        if (requests != null) requests.shutdown();
+    }
+
+    public void join() throws InterruptedException {
+        server.join();
+    }
+
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+
+    public int getSecurePort() {
+        return secureConnector == null ? -1 : secureConnector.getLocalPort();
+    }
+}
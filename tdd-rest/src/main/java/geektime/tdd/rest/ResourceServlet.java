@@ -1,80 +1,688 @@
 package geektime.tdd.rest;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.ServiceUnavailableException;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Providers;
-import jakarta.ws.rs.ext.RuntimeDelegate;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 public class ResourceServlet extends HttpServlet {
     private Runtime runtime;
-    private Providers providers;
+    private volatile MessageBodyWriters writers;
+    private volatile ExceptionMappers mappers;
+    private final HeaderDelegates headerDelegates = new HeaderDelegates();
+    private final Executor executor;
+    private final boolean hashEntityTags;
+    private final ResponseCache cache;
+    private final RequestCoalescer coalescer;
+    private final RequestEntity requestEntity;
+    private final ContainerRequestFilter[] filters;
+
+    public static class Options {
+        private Executor executor;
+        private boolean hashEntityTags;
+        private ResponseCache cache;
+        private RequestCoalescer coalescer;
+        private RequestEntity requestEntity = RequestEntity.UNLIMITED;
+        private Filters filters = Filters.NONE;
+
+        public Options executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Options hashEntityTags(boolean hashEntityTags) {
+            this.hashEntityTags = hashEntityTags;
+            return this;
+        }
+
+        public Options cache(ResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Options coalescer(RequestCoalescer coalescer) {
+            this.coalescer = coalescer;
+            return this;
+        }
+
+        public Options requestEntity(RequestEntity requestEntity) {
+            this.requestEntity = requestEntity;
+            return this;
+        }
+
+        public Options filters(Filters filters) {
+            this.filters = filters;
+            return this;
+        }
+
+        Options copy() {
+            return new Options().executor(executor).hashEntityTags(hashEntityTags).cache(cache).coalescer(coalescer)
+                    .requestEntity(requestEntity).filters(filters);
+        }
+    }
 
     public ResourceServlet(Runtime runtime) {
-        this.runtime = runtime;
-        this.providers = runtime.getProviders();
+        this(runtime, new Options());
+    }
 
+    public ResourceServlet(Runtime runtime, Options options) {
+        this.runtime = runtime;
+        this.executor = options.executor;
+        this.hashEntityTags = options.hashEntityTags;
+        this.cache = options.cache;
+        this.coalescer = options.coalescer;
+        this.requestEntity = options.requestEntity;
+        this.filters = options.filters.global();
+        this.writers = new MessageBodyWriters(runtime.getProviders());
+        this.mappers = new ExceptionMappers(runtime.getProviders());
     }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (executor == null) {
+            service(req, resp, null);
+            return;
+        }
+        AsyncContext async = req.startAsync();
+        async.setTimeout(0);
+        executor.execute(() -> service(req, resp, async));
+    }
+
+    void dispatch(HttpServletRequest req, HttpServletResponse resp) {
+        service(req, resp, null);
+    }
+
+    Runtime getRuntime() {
+        return runtime;
+    }
+
+    RequestEntity getRequestEntity() {
+        return requestEntity;
+    }
+
+    private ResourceContext context(HttpServletRequest req, HttpServletResponse resp) {
+        if (req instanceof BatchPart part) return part.context();
+        return runtime.createResourceContext(req, resp);
+    }
+
+    private void service(HttpServletRequest req, HttpServletResponse resp, AsyncContext started) {
+        if (requestEntity.exceeds(req)) {
+            response(req, resp, () -> OutboundResponse.PAYLOAD_TOO_LARGE);
+            complete(started);
+            return;
+        }
+        if (req instanceof BatchPart) {
+            serve(req, resp, started);
+            return;
+        }
+        HttpServletRequest request = requestEntity.wrap(req);
+        boolean suspended = false;
+        try {
+            suspended = serve(request, resp, started);
+        } finally {
+            if (!suspended) release(request);
+        }
+    }
+
+    private static void release(HttpServletRequest req) {
+        if (req instanceof RequestEntity.EntityRequest entity) entity.release();
+    }
+
+    private boolean serve(HttpServletRequest req, HttpServletResponse resp, AsyncContext started) {
+        if (filters.length > 0 && filter(req, resp)) {
+            complete(started);
+            return false;
+        }
+
+        ResponseCache.Cached cached = cache == null ? null : cache.get(req);
+        if (cached != null) {
+            respond(req, resp, () -> {
+                respond(req, resp, cached, true);
+                if (HttpMethod.GET.equals(req.getMethod()) && cache.revalidate(cached)) {
+                    resp.getOutputStream().close();
+                    refresh(req, resp, cached);
+                }
+            });
+            complete(started);
+            return false;
+        }
+
+        String key = coalescer == null ? null : coalescer.key(req);
+        if (key != null && BinaryProvider.preferred(req.getHeader(HttpHeaders.ACCEPT))) key += "\n" + BinaryProvider.BINARY;
+        CompletableFuture<ResponseCache.Cached> flight = key == null ? null : new CompletableFuture<>();
+        if (flight != null) {
+            CompletableFuture<ResponseCache.Cached> leading = coalescer.join(key, flight);
+            if (leading != null) {
+                flight = null;
+                if (follow(req, resp, leading)) {
+                    complete(started);
+                    return false;
+                }
+            }
+        }
+
         ResourceRouter router = runtime.getResourceRouter();
-        response(resp, () -> router.dispatch(req, runtime.createResourceContext(req, resp)));
+
+        OutboundResponse response;
+        try {
+            response = router.dispatch(req, context(req, resp));
+        } catch (Throwable throwable) {
+            if (flight != null) coalescer.land(key, flight, null, throwable);
+            failed(req, resp, throwable);
+            complete(started);
+            return false;
+        }
+
+        if (flight != null) {
+            ResponseCache.Cached shared;
+            try {
+                shared = share(req, response, key, flight);
+            } catch (Throwable throwable) {
+                failed(req, resp, throwable);
+                complete(started);
+                return false;
+            }
+            if (shared != null) {
+                respond(req, resp, () -> respond(req, resp, shared, false));
+                complete(started);
+                return false;
+            }
+        }
+
+        GenericEntity entity = response.getGenericEntity();
+        if (entity != null && entity.getEntity() instanceof CompletionStage<?> stage) {
+            suspend(req, resp, started, entity.getType(), stage);
+            return true;
+        }
+        if (entity != null && entity.getEntity() instanceof EventSink sink) {
+            stream(req, resp, started, response, sink);
+            return true;
+        }
+        response(req, resp, () -> response);
+        complete(started);
+        return false;
+    }
+
+    private boolean filter(HttpServletRequest req, HttpServletResponse resp) {
+        FilteredRequest request = new FilteredRequest(context(req, resp), runtime.createUriInfoBuilder(req));
+        OutboundResponse aborted = null;
+        try {
+            for (ContainerRequestFilter filter : filters) {
+                filter.filter(request);
+                if ((aborted = request.getAborted()) != null) break;
+            }
+        } catch (Throwable throwable) {
+            failed(req, resp, throwable);
+            return true;
+        }
+        req.setAttribute(Filters.FILTERED, Boolean.TRUE);
+        if (aborted == null) return false;
+        OutboundResponse response = aborted;
+        response(req, resp, () -> response);
+        return true;
+    }
+
+    private boolean follow(HttpServletRequest req, HttpServletResponse resp, CompletableFuture<ResponseCache.Cached> leading) {
+        ResponseCache.Cached shared;
+        try {
+            shared = coalescer.await(leading);
+        } catch (Throwable throwable) {
+            failed(req, resp, throwable);
+            return true;
+        }
+        if (shared == null) return false;
+        respond(req, resp, () -> respond(req, resp, shared, false));
+        return true;
+    }
+
+    private ResponseCache.Cached share(HttpServletRequest req, OutboundResponse response, String key,
+                                       CompletableFuture<ResponseCache.Cached> flight) throws IOException {
+        try {
+            ResponseCache.Cached shared = shareable(req, response)
+                    ? serialize(req, negotiate(req, response), cacheable(req, response)) : null;
+            coalescer.land(key, flight, shared, null);
+            return shared;
+        } catch (IOException | RuntimeException | Error e) {
+            coalescer.land(key, flight, null, e);
+            throw e;
+        }
+    }
+
+    private static boolean shareable(HttpServletRequest req, OutboundResponse response) {
+        GenericEntity entity = response.getGenericEntity();
+        if (req.getAttribute(Filters.BOUND) != null || response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)) return false;
+        if (entity == null) return true;
+        Object value = entity.getEntity();
+        return bounded(entity) && !(value instanceof File || value instanceof Path || value instanceof FileChannel);
+    }
+
+    private static void complete(AsyncContext async) {
+        if (async != null) async.complete();
+    }
+
+    private void suspend(HttpServletRequest req, HttpServletResponse resp, AsyncContext started, Type type, CompletionStage<?> stage) {
+        AsyncContext async = started != null ? started : req.startAsync();
+        if (stage instanceof SuspendedResponse) async.setTimeout(0);
+
+        AtomicBoolean done = new AtomicBoolean();
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                release(req);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (!done.compareAndSet(false, true)) return;
+                if (stage instanceof Future<?> future) future.cancel(true);
+                failed(req, resp, new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE));
+                async.complete();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (!done.compareAndSet(false, true)) return;
+                if (stage instanceof SuspendedResponse suspended) suspended.disconnected();
+                else if (stage instanceof Future<?> future) future.cancel(true);
+                async.complete();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        stage.whenComplete((value, error) -> {
+            if (!done.compareAndSet(false, true)) return;
+            if (error != null) failed(req, resp, unwrap(error));
+            else response(req, resp, () -> completed(type, value));
+            async.complete();
+        });
+    }
+
+    private void stream(HttpServletRequest req, HttpServletResponse resp, AsyncContext started, OutboundResponse response, EventSink sink) {
+        AsyncContext async = started != null ? started : req.startAsync();
+        async.setTimeout(0);
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                sink.disconnected(null);
+                release(req);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                sink.disconnected(event.getThrowable());
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                sink.disconnected(event.getThrowable());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        try {
+            resp.setStatus(response.getStatus());
+            headers(resp, response);
+            resp.setContentType(MediaType.SERVER_SENT_EVENTS);
+            resp.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            sink.attach(async, resp.getOutputStream());
+        } catch (Throwable throwable) {
+            failed(req, resp, throwable);
+            sink.disconnected(throwable);
+            if (!sink.isAttached()) async.complete();
+        }
+    }
+
+    private static OutboundResponse completed(Type type, Object value) {
+        if (value instanceof OutboundResponse response) return response;
+        if (value == null) return OutboundResponse.NO_CONTENT;
+        if (value instanceof GenericEntity<?> entity) return OutboundResponse.of(entity);
+        return OutboundResponse.of(new GenericEntity<>(value, element(type, value)));
+    }
+
+    private static Type element(Type type, Object value) {
+        if (type instanceof ParameterizedType parameterized) {
+            Type element = parameterized.getActualTypeArguments()[0];
+            if (element instanceof Class<?> || element instanceof ParameterizedType) return element;
+        }
+        return value.getClass();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) return unwrap(error.getCause());
+        if (error instanceof CancellationException) return new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE);
+        return error;
     }
 
-    private void response(HttpServletResponse resp, Supplier<OutboundResponse> supplier) {
+    private void response(HttpServletRequest req, HttpServletResponse resp, Supplier<OutboundResponse> supplier) {
+        respond(req, resp, () -> response(req, resp, supplier.get()));
+    }
+
+    private void respond(HttpServletRequest req, HttpServletResponse resp, Responding responding) {
         try {
-            response(resp, supplier.get());
-        } catch (WebApplicationException ex) {
-            response(resp, () -> (OutboundResponse) ex.getResponse());
+            responding.respond();
         } catch (Throwable throwable) {
-            response(resp, () -> from(throwable));
+            failed(req, resp, throwable);
         }
     }
 
+    private interface Responding {
+        void respond() throws IOException;
+    }
+
+    private void failed(HttpServletRequest req, HttpServletResponse resp, Throwable throwable) {
+        if (RequestEntity.tooLarge(throwable))
+            response(req, resp, () -> OutboundResponse.PAYLOAD_TOO_LARGE);
+        else if (throwable instanceof WebApplicationException ex)
+            response(req, resp, () -> (OutboundResponse) ex.getResponse());
+        else
+            response(req, resp, () -> from(throwable));
+    }
+
 
+    private void response(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response) throws IOException {
+        response = negotiate(req, response);
+        if (notModified(req, resp, response)) return;
+
+        boolean head = HttpMethod.HEAD.equals(req.getMethod());
+        GenericEntity entity = response.getGenericEntity();
+        FileEntity file = entity == null ? null : FileEntity.of(entity.getEntity());
+        if (file != null) {
+            try (file) {
+                headers(resp, response);
+                file.write(req, resp, response.getStatus(), head);
+            }
+            return;
+        }
+
+        if (!head && cacheable(req, response)) {
+            respond(req, resp, serialize(req, response, true), false);
+            return;
+        }
 
-    private void response(HttpServletResponse resp, OutboundResponse response) throws IOException {
         resp.setStatus(response.getStatus());
 
         headers(resp, response);
 
-        body(resp, response);
+        if (head)
+            discard(response);
+        else if (hashEntityTags && hashable(req, response))
+            hashed(req, resp, response);
+        else
+            body(req, resp, response);
+    }
+
+    private OutboundResponse negotiate(HttpServletRequest req, OutboundResponse response) {
+        GenericEntity entity = response.getGenericEntity();
+        if (entity == null || !(response instanceof DefaultOutboundResponse outbound)
+                || response.getHeaders().containsKey(HttpHeaders.CONTENT_TYPE) || !bounded(entity)) return response;
+        if (writers().get(entity.getRawType(), entity.getType(), response.getAnnotations(), BinaryProvider.BINARY_TYPE) == null)
+            return response;
+        return outbound.negotiated(BinaryProvider.preferred(req.getHeader(HttpHeaders.ACCEPT)) ? BinaryProvider.BINARY_TYPE : null);
+    }
+
+    private boolean notModified(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response) {
+        if (response.getStatus() != HttpServletResponse.SC_OK) return false;
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        Object entityTag = headers.getFirst(HttpHeaders.ETAG);
+        Object lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        if (entityTag == null && lastModified == null) return false;
+        if (!ConditionalRequest.notModified(req, entityTag, lastModified)) return false;
+
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        headers(resp, response);
+        discard(response);
+        return true;
     }
 
-    private void body(HttpServletResponse resp, OutboundResponse response) throws IOException {
+    private static boolean hashable(HttpServletRequest req, OutboundResponse response) {
+        GenericEntity entity = response.getGenericEntity();
+        if (entity == null || !HttpMethod.GET.equals(req.getMethod()) || response.getStatus() != HttpServletResponse.SC_OK
+                || response.getHeaders().containsKey(HttpHeaders.ETAG)) return false;
+        return bounded(entity);
+    }
+
+    private static boolean bounded(GenericEntity entity) {
+        Object value = entity.getEntity();
+        return !(value instanceof StreamingOutput || value instanceof Stream<?> || value instanceof Iterator<?>
+                || value instanceof CompletionStage<?> || value instanceof EventSink);
+    }
+
+    private boolean cacheable(HttpServletRequest req, OutboundResponse response) {
+        if (cache == null || !HttpMethod.GET.equals(req.getMethod()) || response.getStatus() != HttpServletResponse.SC_OK
+                || req.getAttribute(Filters.BOUND) != null) return false;
+        GenericEntity entity = response.getGenericEntity();
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        Object cacheControl = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+        return (entity == null || bounded(entity)) && cacheControl != null && !headers.containsKey(HttpHeaders.SET_COOKIE)
+                && ResponseCache.storable(headerDelegates.toString(cacheControl));
+    }
+
+    private ResponseCache.Cached serialize(HttpServletRequest req, OutboundResponse response, boolean store) throws IOException {
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        Map<String, List<String>> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            List<String> strings = new ArrayList<>(header.getValue().size());
+            for (Object value : header.getValue()) strings.add(headerDelegates.toString(value));
+            values.put(header.getKey(), strings);
+        }
+
+        ByteArrayOutputStream body = hashEntityTags && response.getStatus() == HttpServletResponse.SC_OK
+                && !headers.containsKey(HttpHeaders.ETAG)
+                ? new ConditionalRequest.HashingOutputStream() : new ByteArrayOutputStream();
+        GenericEntity entity = response.getGenericEntity();
+        if (entity != null) entity(response, entity, body);
+        if (body instanceof ConditionalRequest.HashingOutputStream hashing)
+            values.put(HttpHeaders.ETAG, List.of(hashing.entityTag()));
+
+        if (store) return cache.store(req, values, body.toByteArray(), Compression.compressible(response));
+        return ResponseCache.snapshot(response.getStatus(), values, body.toByteArray(), Compression.compressible(response));
+    }
+
+    private void refresh(HttpServletRequest req, HttpServletResponse resp, ResponseCache.Cached cached) {
+        try {
+            OutboundResponse response = negotiate(req, runtime.getResourceRouter().dispatch(req, context(req, resp)));
+            if (cacheable(req, response)) {
+                serialize(req, response, true);
+                return;
+            }
+            discard(response);
+            cache.invalidate(cached);
+        } catch (Throwable throwable) {
+            cache.revalidated(cached);
+        }
+    }
+
+    private void respond(HttpServletRequest req, HttpServletResponse resp, ResponseCache.Cached cached, boolean hit) throws IOException {
+        for (Map.Entry<String, List<String>> header : cached.getHeaders().entrySet())
+            for (String value : header.getValue())
+                headerDelegates.add(resp, header.getKey(), value);
+        if (hit) resp.setHeader(ResponseCache.AGE, String.valueOf(cache.age(cached)));
+
+        if (cached.getStatus() == HttpServletResponse.SC_OK
+                && ConditionalRequest.notModified(req, cached.getHeader(HttpHeaders.ETAG), cached.getHeader(HttpHeaders.LAST_MODIFIED))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        resp.setStatus(cached.getStatus());
+        if (HttpMethod.HEAD.equals(req.getMethod()) || cached.getBody().length == 0) return;
+
+        OutputStream pooled = BufferPool.DEFAULT.output(resp.getOutputStream());
+        OutputStream out = Compression.DEFAULT.output(req, resp, cached.isCompressible(), pooled);
+        if (out == pooled) resp.setContentLength(cached.getBody().length);
+        try {
+            out.write(cached.getBody());
+        } catch (IOException | RuntimeException | Error e) {
+            Compression.discard(out);
+            throw e;
+        }
+        out.close();
+    }
+
+    private void hashed(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response) throws IOException {
+        ConditionalRequest.HashingOutputStream hashing = new ConditionalRequest.HashingOutputStream();
+        entity(response, response.getGenericEntity(), hashing);
+
+        String entityTag = hashing.entityTag();
+        resp.setHeader(HttpHeaders.ETAG, entityTag);
+        if (ConditionalRequest.notModified(req, entityTag, null)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        write(req, resp, response, hashing::writeTo);
+    }
+
+    private void body(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response) throws IOException {
         GenericEntity entity = response.getGenericEntity();
         if(entity != null) {
-            MessageBodyWriter writer = providers.getMessageBodyWriter(
-                    entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType());
+            Object value = entity.getEntity();
+            if (value instanceof StreamingOutput streaming) {
+                write(req, resp, response, streaming);
+            } else if (value instanceof Stream<?> stream) {
+                try (stream) {
+                    write(req, resp, response, out -> elements(stream.iterator(), entity.getType(), response, out));
+                }
+            } else if (value instanceof Iterator<?> iterator) {
+                try {
+                    write(req, resp, response, out -> elements(iterator, entity.getType(), response, out));
+                } finally {
+                    if (iterator instanceof AutoCloseable closeable) close(closeable);
+                }
+            } else {
+                write(req, resp, response, out -> entity(response, entity, out));
+            }
+        }
+    }
 
-            writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType(),
-                    response.getHeaders(), resp.getOutputStream());
+    private void entity(OutboundResponse response, GenericEntity entity, OutputStream out) throws IOException {
+        if (response instanceof FilteredResponse filtered && filtered.isIntercepted()) {
+            filtered.writeTo(entity, out, (value, type, genericType, annotations, mediaType, headers, stream) ->
+                    writers().get(type, genericType, annotations, mediaType).writeTo(value, type, genericType, annotations, mediaType, headers, stream));
+            return;
         }
+        MessageBodyWriter writer = writers().get(
+                entity.getRawType(), entity.getType(), response.getAnnotations(), response.getMediaType());
+
+        writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(), response.getAnnotations(),
+                response.getMediaType(), response.getHeaders(), out);
     }
 
-    private static void headers(HttpServletResponse resp, OutboundResponse response) {
-        MultivaluedMap<String, Object> headers = response.getHeaders();
-        for(String name : headers.keySet()){
-            for(Object value:headers.get(name)){
-                RuntimeDelegate.HeaderDelegate delegate = RuntimeDelegate.getInstance().createHeaderDelegate(value.getClass());
-                resp.addHeader(name, delegate.toString(value));
+    private static void write(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response, StreamingOutput output) throws IOException {
+        OutputStream out = Compression.DEFAULT.output(req, resp, response, BufferPool.DEFAULT.output(resp.getOutputStream()));
+        try {
+            output.write(out);
+        } catch (IOException | RuntimeException | Error e) {
+            Compression.discard(out);
+            throw e;
+        }
+        out.close();
+    }
+
+    private void elements(Iterator<?> elements, Type type, OutboundResponse response, OutputStream out) throws IOException {
+        Class<?> writerType = null;
+        MessageBodyWriter writer = null;
+        while (elements.hasNext()) {
+            Object element = elements.next();
+            if (element == null) continue;
+            Type elementType = element(type, element);
+            if (element.getClass() != writerType) {
+                writerType = element.getClass();
+                writer = writers().get(writerType, elementType, response.getAnnotations(), response.getMediaType());
             }
+            writer.writeTo(element, writerType, elementType, response.getAnnotations(), response.getMediaType(),
+                    response.getHeaders(), out);
         }
     }
 
+    private static void discard(OutboundResponse response) {
+        GenericEntity entity = response.getGenericEntity();
+        if (entity != null && entity.getEntity() instanceof AutoCloseable closeable) close(closeable);
+    }
+
+    private static void close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private MessageBodyWriters writers() {
+        MessageBodyWriters writers = this.writers;
+        Providers providers = runtime.getProviders();
+        if (writers.getProviders() != providers)
+            this.writers = writers = new MessageBodyWriters(providers);
+        return writers;
+    }
+
+    private void headers(HttpServletResponse resp, OutboundResponse response) {
+        if (response instanceof DefaultOutboundResponse outbound) {
+            outbound.forEachHeader((name, value) -> headerDelegates.add(resp, name, value));
+            return;
+        }
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            String name = header.getKey();
+            for (Object value : header.getValue())
+                headerDelegates.add(resp, name, value);
+        }
+    }
+
+    private ExceptionMappers mappers() {
+        ExceptionMappers mappers = this.mappers;
+        Providers providers = runtime.getProviders();
+        if (mappers.getProviders() != providers)
+            this.mappers = mappers = new ExceptionMappers(providers);
+        return mappers;
+    }
+
     private OutboundResponse from(Throwable throwable) {
-        ExceptionMapper mapper = providers.getExceptionMapper(throwable.getClass());
+        ExceptionMapper mapper = mappers().get(throwable.getClass());
         return (OutboundResponse) mapper.toResponse(throwable);
     }
 }
\ No newline at end of file
@@ -0,0 +1,294 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ResponseCache {
+    static final String AGE = "Age";
+    static final String PRAGMA = "Pragma";
+
+    private final long maxBytes;
+    private final Clock clock;
+    private final Map<String, Variants> variants = new HashMap<>();
+    private final LinkedHashMap<String, Cached> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public ResponseCache(long maxBytes) {
+        this(maxBytes, Clock.systemUTC());
+    }
+
+    public ResponseCache(long maxBytes, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    public Cached get(HttpServletRequest req) {
+        String method = req.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            if (!HttpMethod.OPTIONS.equals(method)) invalidate(base(req));
+            return null;
+        }
+        if (bypass(req.getHeader(HttpHeaders.CACHE_CONTROL)) || "no-cache".equals(req.getHeader(PRAGMA))) return null;
+        String base = base(req);
+        long now = clock.millis();
+        synchronized (entries) {
+            Variants variants = this.variants.get(base);
+            if (variants == null) return null;
+            String key = key(base, variants.vary, req);
+            Cached cached = entries.get(key);
+            if (cached != null && !cached.authorizable && authorized(req)) return null;
+            if (cached == null || now < cached.stale) return cached;
+            remove(key);
+            return null;
+        }
+    }
+
+    public boolean revalidate(Cached cached) {
+        return clock.millis() >= cached.fresh && cached.revalidating.compareAndSet(false, true);
+    }
+
+    public void revalidated(Cached cached) {
+        cached.revalidating.set(false);
+    }
+
+    public void invalidate(Cached cached) {
+        synchronized (entries) {
+            if (entries.get(cached.key) == cached) remove(cached.key);
+        }
+    }
+
+    private void invalidate(String base) {
+        synchronized (entries) {
+            if (variants.remove(base) == null) return;
+            entries.values().removeIf(entry -> {
+                if (!entry.base.equals(base)) return false;
+                bytes -= entry.size;
+                return true;
+            });
+        }
+    }
+
+    public Cached store(HttpServletRequest req, Map<String, List<String>> headers, byte[] body, boolean compressible) {
+        long now = clock.millis();
+        String cacheControl = first(headers, HttpHeaders.CACHE_CONTROL);
+        long[] lifetime = lifetime(cacheControl);
+        List<String> vary = vary(headers.get(HttpHeaders.VARY));
+        String base = base(req);
+        Cached cached = new Cached(base, vary == null ? null : key(base, vary, req), 200, headers, body, compressible, now,
+                lifetime == null ? now : now + lifetime[0] * 1000, lifetime == null ? now : now + (lifetime[0] + lifetime[1]) * 1000,
+                authorizable(cacheControl));
+
+        if (cached.key == null || lifetime == null || cached.size > maxBytes || authorized(req) && !cached.authorizable) return cached;
+        synchronized (entries) {
+            remove(cached.key);
+            entries.put(cached.key, cached);
+            bytes += cached.size;
+            variants.computeIfAbsent(base, b -> new Variants()).added(vary);
+            for (Iterator<Cached> eldest = entries.values().iterator(); bytes > maxBytes && eldest.hasNext(); ) {
+                Cached evicted = eldest.next();
+                eldest.remove();
+                released(evicted);
+            }
+        }
+        return cached;
+    }
+
+    static Cached snapshot(int status, Map<String, List<String>> headers, byte[] body, boolean compressible) {
+        return new Cached(null, null, status, headers, body, compressible, 0, 0, 0, false);
+    }
+
+    public long age(Cached cached) {
+        return Math.max(0, clock.millis() - cached.stored) / 1000;
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    int bases() {
+        synchronized (entries) {
+            return variants.size();
+        }
+    }
+
+    long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    static boolean storable(String cacheControl) {
+        return lifetime(cacheControl) != null;
+    }
+
+    static long[] lifetime(String cacheControl) {
+        if (cacheControl == null) return null;
+        long maxAge = -1, sharedMaxAge = -1, staleWhileRevalidate = 0;
+        boolean revalidate = false;
+        for (String directive : cacheControl.split(",")) {
+            String name = directive.trim().toLowerCase(Locale.ROOT);
+            int equals = name.indexOf('=');
+            String value = equals < 0 ? null : name.substring(equals + 1).trim().replace("\"", "");
+            if (equals >= 0) name = name.substring(0, equals).trim();
+            switch (name) {
+                case "no-store", "no-cache", "private" -> {
+                    return null;
+                }
+                case "must-revalidate", "proxy-revalidate" -> revalidate = true;
+                case "max-age" -> maxAge = seconds(value);
+                case "s-maxage" -> sharedMaxAge = seconds(value);
+                case "stale-while-revalidate" -> staleWhileRevalidate = Math.max(0, seconds(value));
+                default -> {
+                }
+            }
+        }
+        long fresh = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        if (fresh <= 0) return null;
+        return new long[]{fresh, revalidate ? 0 : staleWhileRevalidate};
+    }
+
+    private static boolean authorizable(String cacheControl) {
+        if (cacheControl == null) return false;
+        for (String directive : cacheControl.split(",")) {
+            String name = directive.trim().toLowerCase(Locale.ROOT);
+            int equals = name.indexOf('=');
+            if (equals >= 0) name = name.substring(0, equals).trim();
+            if (name.equals("public") || name.equals("s-maxage") || name.equals("must-revalidate")) return true;
+        }
+        return false;
+    }
+
+    private static boolean authorized(HttpServletRequest req) {
+        return req.getHeader(HttpHeaders.AUTHORIZATION) != null;
+    }
+
+    private static boolean bypass(String cacheControl) {
+        if (cacheControl == null) return false;
+        String directives = cacheControl.toLowerCase(Locale.ROOT);
+        return directives.contains("no-cache") || directives.contains("no-store") || directives.contains("max-age=0");
+    }
+
+    private static long seconds(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static List<String> vary(List<String> headers) {
+        if (headers == null) return List.of();
+        List<String> names = new ArrayList<>();
+        for (String header : headers)
+            for (String name : header.split(",")) {
+                String trimmed = name.trim().toLowerCase(Locale.ROOT);
+                if (trimmed.equals("*")) return null;
+                if (!trimmed.isEmpty() && !trimmed.equals("accept-encoding")) names.add(trimmed);
+            }
+        return List.copyOf(names);
+    }
+
+    private static String base(HttpServletRequest req) {
+        String query = req.getQueryString();
+        return query == null ? req.getRequestURI() : req.getRequestURI() + '?' + query;
+    }
+
+    private static String key(String base, List<String> vary, HttpServletRequest req) {
+        if (vary.isEmpty()) return base;
+        StringBuilder key = new StringBuilder(base);
+        for (String name : vary) key.append('\n').append(req.getHeader(name));
+        return key.toString();
+    }
+
+    private static String first(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : String.join(",", values);
+    }
+
+    private void remove(String key) {
+        Cached removed = entries.remove(key);
+        if (removed != null) released(removed);
+    }
+
+    private void released(Cached cached) {
+        bytes -= cached.size;
+        Variants variants = this.variants.get(cached.base);
+        if (variants != null && --variants.count == 0) this.variants.remove(cached.base);
+    }
+
+    private static class Variants {
+        private List<String> vary;
+        private int count;
+
+        void added(List<String> vary) {
+            this.vary = vary;
+            count++;
+        }
+    }
+
+    static class Cached {
+        private final String base;
+        private final String key;
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final boolean compressible;
+        private final long stored;
+        private final long fresh;
+        private final long stale;
+        private final long size;
+        private final boolean authorizable;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+
+        Cached(String base, String key, int status, Map<String, List<String>> headers, byte[] body, boolean compressible, long stored, long fresh, long stale,
+               boolean authorizable) {
+            this.base = base;
+            this.key = key;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.compressible = compressible;
+            this.stored = stored;
+            this.fresh = fresh;
+            this.stale = stale;
+            this.authorizable = authorizable;
+            long size = body.length + (key == null ? 0 : key.length());
+            for (Map.Entry<String, List<String>> header : headers.entrySet())
+                for (String value : header.getValue()) size += header.getKey().length() + value.length();
+            this.size = size;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public String getHeader(String name) {
+            return first(headers, name);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isCompressible() {
+            return compressible;
+        }
+    }
+}
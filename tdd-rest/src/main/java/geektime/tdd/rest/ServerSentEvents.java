@@ -0,0 +1,301 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+class ServerSentEvents implements Sse {
+    static final CompletionStage<?> SENT = CompletableFuture.completedStage(null);
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final Providers providers;
+
+    ServerSentEvents(Providers providers) {
+        this.providers = providers;
+    }
+
+    @Override
+    public OutboundSseEvent.Builder newEventBuilder() {
+        return new OutboundEvent.Builder();
+    }
+
+    @Override
+    public SseBroadcaster newBroadcaster() {
+        return new EventBroadcaster(providers);
+    }
+
+    static byte[] frame(OutboundSseEvent event, Providers providers) {
+        if (event instanceof OutboundEvent outbound) return outbound.frame(providers);
+        return serialize(event, providers);
+    }
+
+    static byte[] serialize(OutboundSseEvent event, Providers providers) {
+        StringBuilder frame = new StringBuilder(64);
+        if (event.getComment() != null) lines(frame, "", event.getComment());
+        if (event.getName() != null) lines(frame, "event", event.getName());
+        if (event.getId() != null) lines(frame, "id", event.getId());
+        if (event.isReconnectDelaySet()) frame.append("retry: ").append(event.getReconnectDelay()).append('\n');
+        if (event.getData() != null) lines(frame, "data", data(event, providers));
+        return frame.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void lines(StringBuilder frame, String field, String value) {
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : '\n';
+            if (c != '\n' && c != '\r') continue;
+            frame.append(field).append(": ").append(value, start, i).append('\n');
+            if (c == '\r' && i + 1 < value.length() && value.charAt(i + 1) == '\n') i++;
+            start = i + 1;
+        }
+    }
+
+    private static String data(OutboundSseEvent event, Providers providers) {
+        Object data = event.getData();
+        MediaType mediaType = event.getMediaType();
+        if (data instanceof String string && (mediaType == null || MediaType.TEXT_PLAIN_TYPE.isCompatible(mediaType)))
+            return string;
+
+        MessageBodyWriter writer = providers.getMessageBodyWriter(event.getType(), event.getGenericType(), NO_ANNOTATIONS, mediaType);
+        if (writer == null)
+            throw new IllegalStateException("No MessageBodyWriter for " + event.getType().getName() + " as " + mediaType);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.writeTo(data, event.getType(), event.getGenericType(), NO_ANNOTATIONS, mediaType, new MultivaluedHashMap<>(), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
+
+class OutboundEvent implements OutboundSseEvent {
+    private final String id;
+    private final String name;
+    private final String comment;
+    private final long reconnectDelay;
+    private final MediaType mediaType;
+    private final Class<?> type;
+    private final Type genericType;
+    private final Object data;
+    private volatile byte[] frame;
+
+    private OutboundEvent(Builder builder) {
+        this.id = builder.id;
+        this.name = builder.name;
+        this.comment = builder.comment;
+        this.reconnectDelay = builder.reconnectDelay;
+        this.mediaType = builder.mediaType;
+        this.type = builder.type;
+        this.genericType = builder.genericType;
+        this.data = builder.data;
+    }
+
+    byte[] frame(Providers providers) {
+        byte[] frame = this.frame;
+        if (frame == null) this.frame = frame = ServerSentEvents.serialize(this, providers);
+        return frame;
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    public Type getGenericType() {
+        return genericType;
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getComment() {
+        return comment;
+    }
+
+    @Override
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    @Override
+    public boolean isReconnectDelaySet() {
+        return reconnectDelay != RECONNECT_NOT_SET;
+    }
+
+    static class Builder implements OutboundSseEvent.Builder {
+        private String id;
+        private String name;
+        private String comment;
+        private long reconnectDelay = RECONNECT_NOT_SET;
+        private MediaType mediaType = MediaType.TEXT_PLAIN_TYPE;
+        private Class<?> type;
+        private Type genericType;
+        private Object data;
+
+        @Override
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        @Override
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public Builder reconnectDelay(long milliseconds) {
+            this.reconnectDelay = milliseconds < 0 ? RECONNECT_NOT_SET : milliseconds;
+            return this;
+        }
+
+        @Override
+        public Builder mediaType(MediaType mediaType) {
+            if (mediaType == null) throw new NullPointerException("Media type must not be null");
+            this.mediaType = mediaType;
+            return this;
+        }
+
+        @Override
+        public Builder comment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+
+        @Override
+        public Builder data(Class type, Object data) {
+            if (type == null || data == null) throw new IllegalArgumentException("Data and its type must not be null");
+            this.type = type;
+            this.genericType = type;
+            this.data = data;
+            return this;
+        }
+
+        @Override
+        public Builder data(GenericType type, Object data) {
+            if (type == null || data == null) throw new IllegalArgumentException("Data and its type must not be null");
+            this.type = type.getRawType();
+            this.genericType = type.getType();
+            this.data = data;
+            return this;
+        }
+
+        @Override
+        public Builder data(Object data) {
+            if (data == null) throw new IllegalArgumentException("Data must not be null");
+            return data(data.getClass(), data);
+        }
+
+        @Override
+        public OutboundEvent build() {
+            if (data == null && comment == null) throw new IllegalStateException("Event must have data or a comment");
+            return new OutboundEvent(this);
+        }
+    }
+}
+
+class EventBroadcaster implements SseBroadcaster {
+    private final Providers providers;
+    private final Set<EventSink> sinks = ConcurrentHashMap.newKeySet();
+    private final List<BiConsumer<SseEventSink, Throwable>> errorHandlers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<SseEventSink>> closeHandlers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    EventBroadcaster(Providers providers) {
+        this.providers = providers;
+    }
+
+    int size() {
+        return sinks.size();
+    }
+
+    @Override
+    public void onError(BiConsumer<SseEventSink, Throwable> onError) {
+        errorHandlers.add(onError);
+    }
+
+    @Override
+    public void onClose(Consumer<SseEventSink> onClose) {
+        closeHandlers.add(onClose);
+    }
+
+    @Override
+    public void register(SseEventSink sink) {
+        if (closed) throw new IllegalStateException("Broadcaster is closed");
+        if (!(sink instanceof EventSink events))
+            throw new IllegalArgumentException("Unsupported event sink " + sink.getClass().getName());
+        if (sinks.add(events)) events.onClose(this::closed);
+    }
+
+    @Override
+    public CompletionStage<?> broadcast(OutboundSseEvent event) {
+        if (closed) throw new IllegalStateException("Broadcaster is closed");
+        byte[] frame = ServerSentEvents.frame(event, providers);
+        for (EventSink sink : sinks) {
+            if (sink.offer(frame)) continue;
+            Throwable failure = sink.getFailure();
+            if (failure != null) for (BiConsumer<SseEventSink, Throwable> handler : errorHandlers) handler.accept(sink, failure);
+        }
+        return ServerSentEvents.SENT;
+    }
+
+    private void closed(EventSink sink) {
+        if (!sinks.remove(sink)) return;
+        for (Consumer<SseEventSink> handler : closeHandlers) handler.accept(sink);
+    }
+
+    @Override
+    public void close() {
+        close(true);
+    }
+
+    @Override
+    public void close(boolean cascading) {
+        closed = true;
+        if (cascading) for (EventSink sink : sinks) sink.close();
+        sinks.clear();
+    }
+}
@@ -0,0 +1,145 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.container.TimeoutHandler;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+class SuspendedResponse extends CompletableFuture<Object> implements AsyncResponse {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suspended-response-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean cancelled;
+    private volatile TimeoutHandler timeoutHandler;
+    private volatile ScheduledFuture<?> timeout;
+    private final List<ConnectionCallback> connectionCallbacks = new CopyOnWriteArrayList<>();
+
+    SuspendedResponse() {
+        whenComplete((result, error) -> {
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) timeout.cancel(false);
+        });
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        return complete(response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        return completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return cancel(new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE));
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel(unavailable(String.valueOf(retryAfter)));
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel(unavailable(DateTimeFormatter.RFC_1123_DATE_TIME.format(retryAfter.toInstant().atZone(ZoneOffset.UTC))));
+    }
+
+    private static ServiceUnavailableException unavailable(String retryAfter) {
+        return new ServiceUnavailableException(OutboundResponse.builder().status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter).build());
+    }
+
+    private boolean cancel(ServiceUnavailableException unavailable) {
+        if (isDone()) return cancelled;
+        cancelled = true;
+        completeExceptionally(unavailable);
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        cancelled = true;
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        if (isDone()) return false;
+        ScheduledFuture<?> previous = timeout;
+        if (previous != null) previous.cancel(false);
+        timeout = time <= 0 ? null : TIMER.schedule(this::timeout, time, unit);
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+        this.timeoutHandler = handler;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        throw new UnsupportedOperationException("Register callback instances instead of classes");
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        throw new UnsupportedOperationException("Register callback instances instead of classes");
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        List<Class<?>> registered = new ArrayList<>();
+        if (callback instanceof CompletionCallback completion) {
+            whenComplete((result, error) -> completion.onComplete(error));
+            registered.add(CompletionCallback.class);
+        }
+        if (callback instanceof ConnectionCallback connection) {
+            connectionCallbacks.add(connection);
+            registered.add(ConnectionCallback.class);
+        }
+        return registered;
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+        registered.put(callback.getClass(), register(callback));
+        for (Object other : callbacks) registered.put(other.getClass(), register(other));
+        return registered;
+    }
+
+    void disconnected() {
+        for (ConnectionCallback callback : connectionCallbacks) callback.onDisconnect(this);
+        cancel(true);
+    }
+
+    private void timeout() {
+        if (isDone()) return;
+        TimeoutHandler handler = timeoutHandler;
+        if (handler != null) handler.handleTimeout(this);
+        else completeExceptionally(new ServiceUnavailableException(OutboundResponse.SERVICE_UNAVAILABLE));
+    }
+}
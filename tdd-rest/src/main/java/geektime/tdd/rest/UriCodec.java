@@ -0,0 +1,150 @@
+package geektime.tdd.rest;
+
+import java.nio.charset.StandardCharsets;
+
+class UriCodec {
+
+    static String decode(String value) {
+        return decode(value, 0, value.length(), false);
+    }
+
+    static String decode(String value, int start, int end, boolean plus) {
+        int i = start;
+        while (i < end && value.charAt(i) != '%' && !(plus && value.charAt(i) == '+')) i++;
+        if (i == end) return value.substring(start, end);
+
+        char[] decoded = new char[end - start];
+        value.getChars(start, i, decoded, 0);
+        int length = i - start;
+        byte[] bytes = null;
+        while (i < end) {
+            char c = value.charAt(i);
+            if (c == '%') {
+                if (bytes == null) bytes = new byte[(end - i) / 3];
+                int count = 0;
+                boolean ascii = true;
+                for (; i < end && value.charAt(i) == '%'; i += 3) {
+                    if (i + 2 >= end) throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+                    int high = Character.digit(value.charAt(i + 1), 16);
+                    int low = Character.digit(value.charAt(i + 2), 16);
+                    if (high < 0 || low < 0) throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern");
+                    bytes[count] = (byte) (high << 4 | low);
+                    ascii &= bytes[count++] >= 0;
+                }
+                if (ascii) {
+                    for (int j = 0; j < count; j++) decoded[length++] = (char) bytes[j];
+                } else {
+                    String run = new String(bytes, 0, count, StandardCharsets.UTF_8);
+                    run.getChars(0, run.length(), decoded, length);
+                    length += run.length();
+                }
+            } else {
+                decoded[length++] = plus && c == '+' ? ' ' : c;
+                i++;
+            }
+        }
+        return new String(decoded, 0, length);
+    }
+
+    static boolean escaped(String value, int index, int end) {
+        return index + 2 < end && value.charAt(index) == '%'
+                && Character.digit(value.charAt(index + 1), 16) >= 0 && Character.digit(value.charAt(index + 2), 16) >= 0;
+    }
+
+    static String encode(String value) {
+        for (int i = 0; i < value.length(); i++)
+            if (!unreserved(value.charAt(i))) return encode(value, i);
+        return value;
+    }
+
+    private static String encode(String value, int from) {
+        StringBuilder encoded = new StringBuilder(value.length() + 16).append(value, 0, from);
+        for (byte b : value.substring(from).getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c < 0x80 && unreserved(c)) encoded.append(c);
+            else encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+        }
+        return encoded.toString();
+    }
+
+    private static boolean unreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~' || c == '!' || c == '$' || c == '&' || c == '\''
+                || c == '(' || c == ')' || c == '*' || c == '+' || c == ',' || c == '=' || c == ':' || c == '@';
+    }
+
+    static String path(String raw) {
+        if (plain(raw)) return raw;
+        String path = raw.indexOf(';') < 0 ? raw : withoutMatrix(raw);
+        return normalize(decode(path));
+    }
+
+    private static boolean plain(String path) {
+        int length = path.length();
+        if (length == 0) return true;
+        if (path.charAt(0) != '/') return false;
+        int segment = 1;
+        for (int i = 1; i <= length; i++) {
+            char c = i < length ? path.charAt(i) : '/';
+            if (c == '%' || c == ';') return false;
+            if (c != '/') continue;
+            if (!normal(path, segment, i, i == length)) return false;
+            segment = i + 1;
+        }
+        return true;
+    }
+
+    private static boolean normal(String path, int start, int end, boolean last) {
+        int length = end - start;
+        if (length == 0) return last;
+        if (length == 1) return path.charAt(start) != '.';
+        return length != 2 || path.charAt(start) != '.' || path.charAt(start + 1) != '.';
+    }
+
+    private static String withoutMatrix(String raw) {
+        StringBuilder path = new StringBuilder(raw.length());
+        int i = 0;
+        while (i < raw.length()) {
+            int semicolon = raw.indexOf(';', i);
+            if (semicolon < 0) return path.append(raw, i, raw.length()).toString();
+            path.append(raw, i, semicolon);
+            int slash = raw.indexOf('/', semicolon);
+            i = slash < 0 ? raw.length() : slash;
+        }
+        return path.toString();
+    }
+
+    static String normalize(String path) {
+        if (normalized(path)) return path;
+
+        StringBuilder normalized = new StringBuilder(path.length());
+        int start = 0;
+        boolean directory = false;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            int length = end - start;
+            directory = length == 0 || length == 1 && path.charAt(start) == '.'
+                    || length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.';
+            if (length == 2 && directory) normalized.setLength(Math.max(0, normalized.lastIndexOf("/")));
+            else if (!directory) normalized.append('/').append(path, start, end);
+            start = end + 1;
+        }
+        if (directory || normalized.length() == 0) normalized.append('/');
+        return normalized.toString();
+    }
+
+    private static boolean normalized(String path) {
+        int length = path.length();
+        if (length == 0) return true;
+        if (path.charAt(0) != '/') return false;
+        int segment = 1;
+        for (int i = 1; i <= length; i++) {
+            if (i < length && path.charAt(i) != '/') continue;
+            if (!normal(path, segment, i, i == length)) return false;
+            segment = i + 1;
+        }
+        return true;
+    }
+}
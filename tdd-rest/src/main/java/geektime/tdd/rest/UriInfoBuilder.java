@@ -1,9 +1,313 @@
 package geektime.tdd.rest;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 interface UriInfoBuilder {
     void pushMatchedPath(String path);
 
     void addParameter(String name, String value);
 
     String getUnmatchedPath();
+
+    UriInfo createUriInfo();
+}
+
+class DefaultUriInfoBuilder implements UriInfoBuilder {
+    private final HttpServletRequest request;
+    private final String path;
+    private int[] matched;
+    private int matchedCount;
+    private String[] parameters;
+    private int parameterCount;
+    private Info info;
+
+    public DefaultUriInfoBuilder(HttpServletRequest request) {
+        this.request = request;
+        this.path = request.getServletPath();
+    }
+
+    @Override
+    public void pushMatchedPath(String matchedPath) {
+        if (matched == null) matched = new int[4];
+        else if (matchedCount == matched.length) matched = Arrays.copyOf(matched, matchedCount * 2);
+        matched[matchedCount] = matchedEnd() + matchedPath.length();
+        matchedCount++;
+    }
+
+    @Override
+    public void addParameter(String name, String value) {
+        if (parameters == null) parameters = new String[8];
+        else if (parameterCount * 2 == parameters.length) parameters = Arrays.copyOf(parameters, parameters.length * 2);
+        parameters[parameterCount * 2] = name;
+        parameters[parameterCount * 2 + 1] = value;
+        parameterCount++;
+    }
+
+    String getQueryString() {
+        return request.getQueryString();
+    }
+
+    @Override
+    public String getUnmatchedPath() {
+        return path.substring(matchedEnd());
+    }
+
+    @Override
+    public UriInfo createUriInfo() {
+        if (info == null) info = new Info();
+        return info;
+    }
+
+    private int matchedEnd() {
+        return matchedCount == 0 ? 0 : matched[matchedCount - 1];
+    }
+
+    private class Info implements UriInfo {
+        private String rawPath;
+        private List<PathSegment> segments;
+        private List<PathSegment> rawSegments;
+        private MultivaluedMap<String, String> pathParameters;
+        private MultivaluedMap<String, String> rawPathParameters;
+        private MultivaluedMap<String, String> queryParameters;
+        private MultivaluedMap<String, String> rawQueryParameters;
+
+        private String rawPath() {
+            if (rawPath == null) rawPath = request.getRequestURI().substring(request.getContextPath().length());
+            return rawPath;
+        }
+
+        private int rawOffset(int decoded) {
+            String raw = rawPath();
+            int i = 0, j = 0;
+            while (j < decoded && i < raw.length()) {
+                char c = raw.charAt(i);
+                if (c == ';') {
+                    while (i < raw.length() && raw.charAt(i) != '/') i++;
+                } else if (UriCodec.escaped(raw, i, raw.length())) {
+                    int lead = Character.digit(raw.charAt(i + 1), 16) << 4 | Character.digit(raw.charAt(i + 2), 16);
+                    int length = lead < 0x80 ? 1 : lead < 0xe0 ? 2 : lead < 0xf0 ? 3 : 4;
+                    i += 3 * length;
+                    j += length == 4 ? 2 : 1;
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+            return i;
+        }
+
+        private static String relative(String path) {
+            return path.startsWith("/") ? path.substring(1) : path;
+        }
+
+        @Override
+        public String getPath() {
+            return getPath(true);
+        }
+
+        @Override
+        public String getPath(boolean decode) {
+            return relative(decode ? path : rawPath());
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments() {
+            return getPathSegments(true);
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments(boolean decode) {
+            if (decode ? segments != null : rawSegments != null) return decode ? segments : rawSegments;
+
+            String raw = rawPath();
+            List<PathSegment> result = new ArrayList<>();
+            int start = raw.startsWith("/") ? 1 : 0;
+            while (start <= raw.length()) {
+                int end = raw.indexOf('/', start);
+                if (end < 0) end = raw.length();
+                result.add(new Segment(raw, start, end, decode));
+                start = end + 1;
+            }
+            result = List.copyOf(result);
+            if (decode) segments = result;
+            else rawSegments = result;
+            return result;
+        }
+
+        @Override
+        public URI getRequestUri() {
+            String query = request.getQueryString();
+            StringBuffer url = request.getRequestURL();
+            return URI.create(query == null ? url.toString() : url.append('?').append(query).toString());
+        }
+
+        @Override
+        public UriBuilder getRequestUriBuilder() {
+            return UriBuilder.fromUri(getRequestUri());
+        }
+
+        @Override
+        public URI getAbsolutePath() {
+            return URI.create(request.getRequestURL().toString());
+        }
+
+        @Override
+        public UriBuilder getAbsolutePathBuilder() {
+            return UriBuilder.fromUri(getAbsolutePath());
+        }
+
+        @Override
+        public URI getBaseUri() {
+            String url = request.getRequestURL().toString();
+            return URI.create(url.substring(0, url.length() - rawPath().length()) + "/");
+        }
+
+        @Override
+        public UriBuilder getBaseUriBuilder() {
+            return UriBuilder.fromUri(getBaseUri());
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters() {
+            return getPathParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+            if (decode ? pathParameters != null : rawPathParameters != null) return decode ? pathParameters : rawPathParameters;
+
+            MultivaluedMap<String, String> result = new MultivaluedHashMap<>();
+            for (int i = 0; i < parameterCount; i++) {
+                String value = parameters[i * 2 + 1];
+                result.add(parameters[i * 2], decode ? value : UriCodec.encode(value));
+            }
+            if (decode) pathParameters = result;
+            else rawPathParameters = result;
+            return result;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters() {
+            return getQueryParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+            if (decode ? queryParameters != null : rawQueryParameters != null) return decode ? queryParameters : rawQueryParameters;
+
+            MultivaluedMap<String, String> result = new MultivaluedHashMap<>();
+            String query = request.getQueryString();
+            try {
+                if (query != null) parameters(query, 0, query.length(), '&', decode, true, result);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(OutboundResponse.BAD_REQUEST, e);
+            }
+            if (decode) queryParameters = result;
+            else rawQueryParameters = result;
+            return result;
+        }
+
+        @Override
+        public List<String> getMatchedURIs() {
+            return getMatchedURIs(true);
+        }
+
+        @Override
+        public List<String> getMatchedURIs(boolean decode) {
+            String[] uris = new String[matchedCount];
+            for (int i = 0; i < matchedCount; i++) {
+                int end = matched[matchedCount - 1 - i];
+                uris[i] = relative(decode ? path.substring(0, end) : rawPath().substring(0, rawOffset(end)));
+            }
+            return List.of(uris);
+        }
+
+        @Override
+        public List<Object> getMatchedResources() {
+            return List.of();
+        }
+
+        @Override
+        public URI resolve(URI uri) {
+            return getBaseUri().resolve(uri);
+        }
+
+        @Override
+        public URI relativize(URI uri) {
+            URI absolute = uri.isAbsolute() ? uri : resolve(uri);
+            return getRequestUri().resolve(".").relativize(absolute);
+        }
+    }
+
+    private static void parameters(String value, int start, int end, char separator, boolean decode, boolean plus,
+                                   MultivaluedMap<String, String> parameters) {
+        while (start < end) {
+            int next = value.indexOf(separator, start);
+            if (next < 0 || next > end) next = end;
+            if (next > start) {
+                int equals = value.indexOf('=', start);
+                if (equals < 0 || equals > next) equals = next;
+                String name = decode ? UriCodec.decode(value, start, equals, plus) : value.substring(start, equals);
+                String parameter = equals == next ? "" : decode ? UriCodec.decode(value, equals + 1, next, plus) : value.substring(equals + 1, next);
+                parameters.add(name, parameter);
+            }
+            start = next + 1;
+        }
+    }
+
+    private static class Segment implements PathSegment {
+        private final String raw;
+        private final int start;
+        private final int end;
+        private final int matrix;
+        private final boolean decode;
+        private String path;
+        private MultivaluedMap<String, String> parameters;
+
+        Segment(String raw, int start, int end, boolean decode) {
+            this.raw = raw;
+            this.start = start;
+            this.end = end;
+            int semicolon = raw.indexOf(';', start);
+            this.matrix = semicolon < 0 || semicolon > end ? end : semicolon;
+            this.decode = decode;
+        }
+
+        @Override
+        public String getPath() {
+            if (path == null) {
+                try {
+                    path = decode ? UriCodec.decode(raw, start, matrix, false) : raw.substring(start, matrix);
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException(OutboundResponse.BAD_REQUEST, e);
+                }
+            }
+            return path;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getMatrixParameters() {
+            if (parameters == null) {
+                MultivaluedMap<String, String> result = new MultivaluedHashMap<>();
+                try {
+                    if (matrix < end) DefaultUriInfoBuilder.parameters(raw, matrix + 1, end, ';', decode, false, result);
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException(OutboundResponse.BAD_REQUEST, e);
+                }
+                parameters = result;
+            }
+            return parameters;
+        }
+    }
 }
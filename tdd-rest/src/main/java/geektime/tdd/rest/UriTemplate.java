@@ -62,9 +62,8 @@ class PathTemplate implements UriTemplate {
         private int variableNameGroup = 1;
         private int variablePatternGroup = 3;
 
-        Map<String, String> parameters =new HashMap<>();
-
         private Map<String, String> extract(Matcher matcher){
+            Map<String, String> parameters = new HashMap<>();
             for (int i = 0; i < pathVariables.variables.size(); i++) {
                 parameters.put(pathVariables.variables.get(i), matcher.group(variableGroupStartFrom + i));
             }
@@ -100,8 +99,8 @@ class PathTemplate implements UriTemplate {
             if (specificPatternCount > o.specificPatternCount) return -1;
             if (specificPatternCount < o.specificPatternCount) return 1;
 
-            if (parameters.size() > o.parameters.size()) return -1;
-            if (parameters.size() < o.parameters.size()) return 1;
+            if (variables.size() > o.variables.size()) return -1;
+            if (variables.size() < o.variables.size()) return 1;
 
             return 0;
         }
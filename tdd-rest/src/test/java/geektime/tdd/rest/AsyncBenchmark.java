@@ -0,0 +1,129 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Providers;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+public class AsyncBenchmark {
+    private static final int POOL_SIZE = 16;
+    private static final long DOWNSTREAM_MILLIS = 200;
+
+    private final Executor downstream = CompletableFuture.delayedExecutor(DOWNSTREAM_MILLIS, TimeUnit.MILLISECONDS);
+    private final OutboundResponse noContent = noContent();
+
+    @Test
+    public void slow_downstream_blocking() throws Exception {
+        run(name("blocking resource"), (request, context) -> {
+            try {
+                Thread.sleep(DOWNSTREAM_MILLIS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return noContent;
+        });
+    }
+
+    @Test
+    public void slow_downstream_completion_stage() throws Exception {
+        run(name("CompletionStage resource"), (request, context) ->
+                suspended(CompletableFuture.supplyAsync(() -> noContent, downstream)));
+    }
+
+    @Test
+    public void slow_downstream_async_response() throws Exception {
+        run(name("@Suspended AsyncResponse"), (request, context) -> {
+            SuspendedResponse response = new SuspendedResponse();
+            response.setTimeout(5, TimeUnit.SECONDS);
+            downstream.execute(() -> response.resume(noContent));
+            return suspended(response);
+        });
+    }
+
+    private static String name(String resource) {
+        return resource + ", " + DOWNSTREAM_MILLIS + "ms downstream, " + POOL_SIZE + " threads";
+    }
+
+    private static void run(String name, ResourceRouter router) throws Exception {
+        Server server = new Server(new QueuedThreadPool(POOL_SIZE));
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ServletHolder holder = new ServletHolder(new ResourceServlet(runtime(router)));
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        server.setHandler(handler);
+        server.start();
+
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/orders")).build();
+            Throughput.requests(name, 512, client, request);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static OutboundResponse noContent() {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(Response.Status.NO_CONTENT.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        return response;
+    }
+
+    private static OutboundResponse suspended(CompletionStage<?> stage) {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getGenericEntity()).thenReturn(new GenericEntity<>(stage, CompletionStage.class));
+        return response;
+    }
+
+    private static Runtime runtime(ResourceRouter router) {
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchBenchmark {
+    private static final int CALLS_PER_SCREEN = 20;
+
+    @Test
+    public void screen_of_small_calls() throws Exception {
+        ResourceServlet servlet = new ResourceServlet(runtime());
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        handler.addServlet(new ServletHolder(servlet), "/");
+        handler.addServlet(new ServletHolder(new BatchServlet(servlet, 8)), ResourceServer.BATCH_PATH);
+        server.setHandler(handler);
+        server.start();
+
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + connector.getLocalPort();
+            HttpRequest[] calls = new HttpRequest[CALLS_PER_SCREEN];
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < CALLS_PER_SCREEN; i++) {
+                calls[i] = HttpRequest.newBuilder(URI.create(base + "/items/" + i)).build();
+                body.append("--b\r\nContent-Type: application/http\r\nContent-ID: ").append(i)
+                        .append("\r\n\r\nGET /items/").append(i).append(" HTTP/1.1\r\n\r\n\r\n");
+            }
+            HttpRequest batch = HttpRequest.newBuilder(URI.create(base + ResourceServer.BATCH_PATH))
+                    .header(HttpHeaders.CONTENT_TYPE, BatchServlet.MULTIPART_MIXED + "; boundary=b")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.append("--b--\r\n").toString())).build();
+
+            Throughput.measure(CALLS_PER_SCREEN + " sequential calls per screen", () -> {
+                for (HttpRequest call : calls) client.sendAsync(call, HttpResponse.BodyHandlers.discarding()).join();
+            });
+            Throughput.measure(CALLS_PER_SCREEN + " concurrent calls per screen", () -> {
+                CompletableFuture<?>[] responses = new CompletableFuture[calls.length];
+                for (int i = 0; i < calls.length; i++) responses[i] = client.sendAsync(calls[i], HttpResponse.BodyHandlers.discarding());
+                CompletableFuture.allOf(responses).join();
+            });
+            Throughput.measure("1 batch of " + CALLS_PER_SCREEN + " calls per screen", () ->
+                    client.sendAsync(batch, HttpResponse.BodyHandlers.discarding()).join());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Runtime runtime() {
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        when(providers.getMessageBodyWriter(any(), any(), any(), any())).thenReturn(new MessageBodyWriter<>() {
+            @Override
+            public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+                return true;
+            }
+
+            @Override
+            public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                MultivaluedMap<String, Object> headers, OutputStream out) throws IOException {
+                out.write(o.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        ResourceRouter router = (request, context) -> {
+            OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+            when(response.getStatus()).thenReturn(200);
+            when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+            when(response.getGenericEntity()).thenReturn(new GenericEntity<>("{\"path\":\"" + request.getServletPath() + "\"}", String.class));
+            when(response.getAnnotations()).thenReturn(new Annotation[0]);
+            when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+            return response;
+        };
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.Servlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchServletTest extends ServletTest {
+    private Runtime runtime;
+    private ResourceContext shared;
+    private final Set<HttpServletRequest> contexts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Override
+    protected Servlet getServlet() {
+        runtime = mock(Runtime.class);
+        shared = mock(ResourceContext.class);
+        Providers providers = mock(Providers.class);
+        when(runtime.getProviders()).thenReturn(providers);
+        when(runtime.createResourceContext(any(), any())).thenReturn(shared);
+        when(providers.getMessageBodyWriter(any(), any(), any(), any())).thenReturn(new MessageBodyWriter<>() {
+            @Override
+            public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+                return true;
+            }
+
+            @Override
+            public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                MultivaluedMap<String, Object> headers, OutputStream out) throws IOException {
+                out.write(o.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        when(runtime.getResourceRouter()).thenReturn((request, context) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (request.getServletPath().equals("/bound")) request.setAttribute(Filters.BOUND, Boolean.TRUE);
+                Thread.sleep(20);
+                contexts.add(context.getResource(HttpServletRequest.class));
+                if (request.getServletPath().equals("/missing")) return response(404, null);
+                if (request.getServletPath().equals("/bound") || request.getServletPath().equals("/unbound"))
+                    return response(200, request.getServletPath() + " " + request.getAttribute(Filters.BOUND));
+                return response(200, request.getMethod() + " " + request.getServletPath() + " " + request.getParameter("page")
+                        + " " + context.getResource(HttpHeaders.class).getHeaderString("X-Trace"));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        return new BatchServlet(new ResourceServlet(runtime), 2);
+    }
+
+    @Test
+    public void should_dispatch_sub_requests_and_return_sub_responses_in_order() throws Exception {
+        HttpResponse<String> response = batch(part("1", "GET /users?page=2 HTTP/1.1\r\nX-Trace: a"),
+                part("2", "GET /missing HTTP/1.1"),
+                part("3", "DELETE /orders/1 HTTP/1.1"));
+
+        assertEquals(200, response.statusCode());
+        String boundary = BatchServlet.boundary(response.headers().firstValue(HttpHeaders.CONTENT_TYPE).get());
+        String[] parts = response.body().split("--" + boundary);
+        assertEquals(5, parts.length);
+        assertTrue(parts[1].contains("Content-ID: response-1"));
+        assertTrue(parts[1].contains("HTTP/1.1 200 OK"));
+        assertTrue(parts[1].endsWith("\r\n\r\nGET /users 2 a\r\n"));
+        assertTrue(parts[2].contains("HTTP/1.1 404 Not Found"));
+        assertTrue(parts[3].endsWith("\r\n\r\nDELETE /orders/1 null null\r\n"));
+        assertEquals("--\r\n", parts[4]);
+    }
+
+    @Test
+    public void should_limit_concurrency_and_share_one_resource_context() throws Exception {
+        batch(part("1", "GET /a HTTP/1.1"), part("2", "GET /b HTTP/1.1"), part("3", "GET /c HTTP/1.1"),
+                part("4", "GET /d HTTP/1.1"), part("5", "GET /e HTTP/1.1"));
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(5, contexts.size());
+        verify(runtime, times(1)).createResourceContext(any(), any());
+    }
+
+    @Test
+    public void should_keep_request_attributes_of_parts_apart() throws Exception {
+        HttpResponse<String> response = batch(part("1", "GET /bound HTTP/1.1"), part("2", "GET /unbound HTTP/1.1"));
+
+        String boundary = BatchServlet.boundary(response.headers().firstValue(HttpHeaders.CONTENT_TYPE).get());
+        String[] parts = response.body().split("--" + boundary);
+        assertTrue(parts[1].endsWith("\r\n\r\n/bound true\r\n"));
+        assertTrue(parts[2].endsWith("\r\n\r\n/unbound null\r\n"));
+    }
+
+    @Test
+    public void should_reject_malformed_batch() throws Exception {
+        assertEquals(400, send("text/plain", "GET /a HTTP/1.1").statusCode());
+        assertEquals(400, send(BatchServlet.MULTIPART_MIXED + "; boundary=b", "--b\r\nContent-Type: application/http\r\n\r\nGET\r\n--b--").statusCode());
+    }
+
+    @Test
+    public void should_reject_batch_exceeding_request_entity_limit() throws Exception {
+        BatchServlet limited = new BatchServlet(new ResourceServlet(runtime, new ResourceServlet.Options().requestEntity(new RequestEntity(16))), 2);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentType()).thenReturn(BatchServlet.MULTIPART_MIXED + "; boundary=batch");
+        when(request.getContentLengthLong()).thenReturn(1024L);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        limited.doPost(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        verify(request, never()).getInputStream();
+    }
+
+    @Test
+    public void should_reject_concurrency_below_one() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchServlet(new ResourceServlet(runtime), 0, Runnable::run));
+    }
+
+    @Test
+    public void should_reject_malformed_date_header_of_part_as_illegal_argument() {
+        BatchPart part = BatchPart.parse(mock(HttpServletRequest.class),
+                part("1", "GET /a HTTP/1.1\r\nIf-Modified-Since: Sat, 29 Oct 1994 19:43:31 GMT\r\nDate: yesterday"));
+
+        assertEquals(783459811000L, part.getDateHeader("If-Modified-Since"));
+        assertEquals(-1, part.getDateHeader("Expires"));
+        assertThrows(IllegalArgumentException.class, () -> part.getDateHeader("Date"));
+    }
+
+    private OutboundResponse response(int status, String entity) {
+        OutboundResponse response = mock(OutboundResponse.class);
+        when(response.getStatus()).thenReturn(status);
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getGenericEntity()).thenReturn(entity == null ? null : new GenericEntity<>(entity, String.class));
+        when(response.getAnnotations()).thenReturn(new Annotation[0]);
+        when(response.getMediaType()).thenReturn(MediaType.TEXT_PLAIN_TYPE);
+        return response;
+    }
+
+    private static String part(String id, String request) {
+        return "Content-Type: application/http\r\nContent-ID: " + id + "\r\n\r\n" + request + "\r\n\r\n";
+    }
+
+    private HttpResponse<String> batch(String... parts) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (String part : parts) body.append("--batch\r\n").append(part).append("\r\n");
+        return send(BatchServlet.MULTIPART_MIXED + "; boundary=batch", body.append("--batch--\r\n").toString());
+    }
+
+    private HttpResponse<String> send(String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(path("/batch")).header(HttpHeaders.CONTENT_TYPE, contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,74 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryBenchmark {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+
+    record Item(long id, String name, int quantity, double price, boolean available) {
+    }
+
+    record Order(long id, String customer, List<Item> items) {
+    }
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Test
+    public void json_vs_binary() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) items.add(new Item(1000 + i, "item " + i, i % 5, i * 1.25, i % 2 == 0));
+        Order order = new Order(42, "customer", items);
+        JsonProvider json = new JsonProvider();
+        BinaryProvider binary = new BinaryProvider();
+        byte[] jsonBytes = write(json, order, MediaType.APPLICATION_JSON_TYPE);
+        byte[] binaryBytes = write(binary, order, BinaryProvider.BINARY_TYPE);
+        System.out.printf("%-56s %,10d bytes%n", "application/json, 20 items", jsonBytes.length);
+        System.out.printf("%-56s %,10d bytes%n", BinaryProvider.BINARY + ", 20 items", binaryBytes.length);
+
+        Throughput.measure("application/json write, 20 items", () -> run(() -> json.writeTo(order, Order.class, Order.class,
+                ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, DISCARD)));
+        Throughput.measure("application/x-tdd-binary write, 20 items", () -> run(() -> binary.writeTo(order, Order.class, Order.class,
+                ANNOTATIONS, BinaryProvider.BINARY_TYPE, null, DISCARD)));
+        Throughput.measure("application/json read, 20 items", () -> run(() -> json.readFrom(Object.class, Order.class,
+                ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, new ByteArrayInputStream(jsonBytes))));
+        Throughput.measure("application/x-tdd-binary read, 20 items", () -> run(() -> binary.readFrom(Object.class, Order.class,
+                ANNOTATIONS, BinaryProvider.BINARY_TYPE, null, new ByteArrayInputStream(binaryBytes))));
+    }
+
+    interface Task {
+        void run() throws IOException;
+    }
+
+    private static void run(Task task) {
+        try {
+            task.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] write(MessageBodyWriter<Object> writer, Order order, MediaType mediaType) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(order, Order.class, Order.class, ANNOTATIONS, mediaType, null, out);
+        return out.toByteArray();
+    }
+}
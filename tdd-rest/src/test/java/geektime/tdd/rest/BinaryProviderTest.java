@@ -0,0 +1,154 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryProviderTest {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+    private static final MediaType BINARY = BinaryProvider.BINARY_TYPE;
+
+    enum Role {ADMIN, USER}
+
+    record Address(String city, String zip) {
+    }
+
+    record User(long id, String name, int age, double score, float ratio, boolean active, short level, char grade, Role role,
+                Address address, List<String> tags, Map<String, Integer> counts, Set<Role> roles, LocalDate born,
+                BigDecimal balance, UUID key, byte[] avatar, Integer optional) {
+    }
+
+    record Page<T>(int page, List<T> items) {
+    }
+
+    record Node(String name, List<Node> children) {
+    }
+
+    record Counter(int value) {
+    }
+
+    public static class Bean {
+        public String name;
+    }
+
+    private final BinaryProvider provider = new BinaryProvider();
+
+    @Test
+    public void should_round_trip_record_components() throws Exception {
+        User user = new User(-42, "john 中文 😀", 30, 1.5, 0.25f, true, (short) -7, 'A', Role.USER, new Address("Beijing", null),
+                List.of("a", "b"), Map.of("x", 1), Set.of(Role.ADMIN), LocalDate.of(2000, 1, 2), new BigDecimal("-10.25"),
+                UUID.randomUUID(), new byte[]{1, 2, 3}, null);
+
+        User read = (User) read(write(user, User.class), User.class);
+
+        assertEquals(user.name(), read.name());
+        assertArrayEquals(user.avatar(), read.avatar());
+        assertEquals(user, new User(read.id(), read.name(), read.age(), read.score(), read.ratio(), read.active(), read.level(),
+                read.grade(), read.role(), read.address(), read.tags(), read.counts(), read.roles(), read.born(), read.balance(),
+                read.key(), user.avatar(), read.optional()));
+    }
+
+    @Test
+    public void should_write_zigzag_varints_without_field_names() throws Exception {
+        assertArrayEquals(new byte[]{1, 0}, write(new Counter(0), Counter.class));
+        assertArrayEquals(new byte[]{1, 1}, write(new Counter(-1), Counter.class));
+        assertArrayEquals(new byte[]{1, 2}, write(new Counter(1), Counter.class));
+        assertArrayEquals(new byte[]{1, (byte) 0x80, 0x01}, write(new Counter(64), Counter.class));
+        assertArrayEquals(new byte[]{1, (byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f}, write(new Counter(Integer.MAX_VALUE), Counter.class));
+        assertArrayEquals(new byte[]{1, 1, 1, 'a', 0}, write(new Address("a", null), Address.class));
+    }
+
+    @Test
+    public void should_resolve_generic_and_recursive_types() throws Exception {
+        Type type = new GenericType<Page<Address>>() {
+        }.getType();
+        Page<Address> page = new Page<>(2, List.of(new Address("a", "1")));
+        Node tree = new Node("root", List.of(new Node("leaf", List.of())));
+
+        assertEquals(page, read(write(page, type), type));
+        assertEquals(tree, read(write(tree, Node.class), Node.class));
+        assertNull(read(write(null, Node.class), Node.class));
+    }
+
+    @Test
+    public void should_be_smaller_than_json() throws Exception {
+        Address address = new Address("Beijing", "100000");
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new JsonProvider().writeTo(address, Address.class, Address.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, json);
+
+        assertEquals(18, write(address, Address.class).length);
+        assertEquals(33, json.size());
+    }
+
+    @Test
+    public void should_only_handle_binary_media_type_and_records() {
+        assertTrue(provider.isWriteable(User.class, User.class, ANNOTATIONS, BINARY));
+        assertTrue(provider.isReadable(User.class, User.class, ANNOTATIONS, new MediaType("application", "X-TDD-Binary")));
+        assertFalse(provider.isWriteable(User.class, User.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(provider.isWriteable(User.class, User.class, ANNOTATIONS, null));
+        assertFalse(provider.isWriteable(Object.class, Object.class, ANNOTATIONS, BINARY));
+        assertFalse(provider.isWriteable(Bean.class, Bean.class, ANNOTATIONS, BINARY));
+        assertFalse(provider.isReadable(InputStream.class, InputStream.class, ANNOTATIONS, BINARY));
+    }
+
+    @Test
+    public void should_prefer_binary_only_when_accepted_with_highest_quality() {
+        assertTrue(BinaryProvider.preferred("application/x-tdd-binary"));
+        assertTrue(BinaryProvider.preferred("application/json;q=0.9, application/x-tdd-binary"));
+        assertTrue(BinaryProvider.preferred("application/x-tdd-binary, */*"));
+        assertFalse(BinaryProvider.preferred(null));
+        assertFalse(BinaryProvider.preferred("*/*"));
+        assertFalse(BinaryProvider.preferred("application/json, application/x-tdd-binary;q=0.5"));
+        assertFalse(BinaryProvider.preferred("application/x-tdd-binary;q=0"));
+    }
+
+    @Test
+    public void should_reject_malformed_entity_as_bad_request() throws Exception {
+        byte[] address = write(new Address("a", "b"), Address.class);
+        byte[] deep = new byte[2 * BinaryReader.MAX_DEPTH + 8];
+        for (int i = 0; i < deep.length; i += 2) deep[i] = 1;
+        for (int i = 1; i < deep.length; i += 2) deep[i] = 1;
+
+        for (Map.Entry<byte[], Type> entity : Map.<byte[], Type>of(
+                Arrays.copyOf(address, address.length - 1), Address.class,
+                Arrays.copyOf(address, address.length + 1), Address.class,
+                new byte[]{2}, Address.class,
+                new byte[]{1, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f}, Address.class,
+                new byte[]{1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01}, Counter.class,
+                new byte[]{1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10}, Counter.class,
+                new byte[]{1, 5}, Role.class,
+                deep, Node.class).entrySet()) {
+            WebApplicationException exception = assertThrows(WebApplicationException.class, () -> read(entity.getKey(), entity.getValue()));
+            assertEquals(400, exception.getResponse().getStatus());
+        }
+    }
+
+    private byte[] write(Object value, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(value, JsonCodec.raw(type), type, ANNOTATIONS, BINARY, null, out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object read(byte[] entity, Type type) throws IOException {
+        return provider.readFrom((Class<Object>) JsonCodec.raw(type), type, ANNOTATIONS, BINARY, null, new ByteArrayInputStream(entity));
+    }
+}
@@ -0,0 +1,77 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+    private final BufferPool pool = new BufferPool(4, 1);
+
+    @Test
+    public void should_write_to_underlying_stream_only_when_buffer_full() throws IOException {
+        CountingOutputStream target = new CountingOutputStream();
+        OutputStream out = pool.output(target);
+
+        out.write("abc".getBytes());
+        assertEquals(0, target.writes);
+        out.write("de".getBytes());
+        assertEquals(1, target.writes);
+
+        out.close();
+        assertEquals("abcde", target.toString());
+    }
+
+    @Test
+    public void should_write_large_chunk_directly() throws IOException {
+        CountingOutputStream target = new CountingOutputStream();
+        OutputStream out = pool.output(target);
+
+        out.write('a');
+        out.write("bcdefgh".getBytes());
+        out.close();
+
+        assertEquals("abcdefgh", target.toString());
+        assertEquals(2, target.writes);
+    }
+
+    @Test
+    public void should_reuse_released_buffer_up_to_limit() throws IOException {
+        OutputStream first = pool.output(new ByteArrayOutputStream());
+        OutputStream second = pool.output(new ByteArrayOutputStream());
+        first.write('a');
+        second.write('b');
+        first.close();
+        second.close();
+
+        assertEquals(1, pool.pooled());
+        byte[] buffer = pool.acquire();
+        assertEquals(4, buffer.length);
+        assertEquals(0, pool.pooled());
+    }
+
+    @Test
+    public void should_release_buffer_without_writing_when_discarded() throws IOException {
+        CountingOutputStream target = new CountingOutputStream();
+        OutputStream out = pool.output(target);
+
+        out.write("abc".getBytes());
+        BufferPool.discard(out);
+
+        assertEquals(0, target.size());
+        assertEquals(1, pool.pooled());
+    }
+
+    static class CountingOutputStream extends ByteArrayOutputStream {
+        int writes;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+    }
+}
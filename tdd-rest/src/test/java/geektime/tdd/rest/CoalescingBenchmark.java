@@ -0,0 +1,129 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CoalescingBenchmark {
+    private static final long RESOURCE_MILLIS = 50;
+
+    private final AtomicLong invocations = new AtomicLong();
+
+    @Test
+    public void hot_key_stampede() throws Exception {
+        run("every request invokes the resource", null);
+        RequestCoalescer coalescer = new RequestCoalescer(5, TimeUnit.SECONDS).route("/users/{id}");
+        run("identical requests coalesced", coalescer);
+        System.out.printf("%-56s %,d invocations, %,d coalesced%n", "coalescer metrics", coalescer.getInvocations(), coalescer.getCoalesced());
+    }
+
+    private void run(String name, RequestCoalescer coalescer) throws Exception {
+        invocations.set(0);
+        Server server = new Server(new QueuedThreadPool(256));
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        handler.addServlet(new ServletHolder(new ResourceServlet(runtime(), new ResourceServlet.Options().coalescer(coalescer))), "/");
+        server.setHandler(handler);
+        server.start();
+
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/users/1")).build();
+            Throughput.requests(name + ", " + RESOURCE_MILLIS + "ms resource", 128, client, request);
+            System.out.printf("%-56s %,d resource invocations%n", name, invocations.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private OutboundResponse user() {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getGenericEntity()).thenReturn(new GenericEntity<>("{\"id\":1,\"name\":\"user-1\"}", String.class));
+        when(response.getAnnotations()).thenReturn(new Annotation[0]);
+        when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+        return response;
+    }
+
+    private Runtime runtime() {
+        OutboundResponse user = user();
+        ResourceRouter router = (request, context) -> {
+            invocations.incrementAndGet();
+            try {
+                Thread.sleep(RESOURCE_MILLIS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return user;
+        };
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), any())).thenReturn(new MessageBodyWriter<>() {
+            @Override
+            public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+                return true;
+            }
+
+            @Override
+            public void writeTo(String s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                MultivaluedMap<String, Object> headers, OutputStream out) throws IOException {
+                out.write(s.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Mockito.*;
+
+public class CompressionBenchmark {
+    private static final byte[] PAYLOAD = IntStream.range(0, 500)
+            .mapToObj(i -> "{\"id\":" + i + ",\"name\":\"user-" + i + "\",\"email\":\"user-" + i + "@example.com\",\"active\":true}")
+            .collect(Collectors.joining(",", "[", "]")).getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServletRequest request = mock(HttpServletRequest.class, withSettings().stubOnly());
+    private final HttpServletResponse resp = mock(HttpServletResponse.class, withSettings().stubOnly());
+    private final OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+
+    @Test
+    public void cpu_versus_bytes() {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+
+        measure("identity", out -> write(out, PAYLOAD));
+        measure("new GZIPOutputStream per response", out -> {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(PAYLOAD);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        for (int level : new int[]{Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            Compression compression = new Compression(1024, level, 64);
+            measure("pooled gzip, level " + level, out -> {
+                try (OutputStream compressed = compression.output(request, resp, response, out)) {
+                    compressed.write(PAYLOAD);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static void measure(String name, java.util.function.Consumer<OutputStream> writer) {
+        ByteArrayOutputStream sample = new ByteArrayOutputStream();
+        writer.accept(sample);
+        double throughput = Throughput.measure(name, () -> writer.accept(OutputStream.nullOutputStream()));
+        System.out.printf("%-56s %,10d -> %,8d bytes, %,12.0f MB/s in%n", name, PAYLOAD.length, sample.size(),
+                throughput * PAYLOAD.length / 1_000_000);
+    }
+
+    private static void write(OutputStream out, byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
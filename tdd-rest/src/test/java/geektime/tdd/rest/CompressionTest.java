@@ -0,0 +1,174 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CompressionTest {
+    private final Compression compression = new Compression(16, Deflater.DEFAULT_COMPRESSION, 2);
+    private HttpServletRequest request;
+    private HttpServletResponse resp;
+    private OutboundResponse response;
+    private final MultivaluedHashMap<String, Object> headers = new MultivaluedHashMap<>();
+
+    @BeforeEach
+    public void before() {
+        request = mock(HttpServletRequest.class);
+        resp = mock(HttpServletResponse.class);
+        response = mock(OutboundResponse.class);
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "gzip;gzip",
+            "deflate;deflate",
+            "gzip, deflate, br;gzip",
+            "*;gzip",
+            "identity;",
+            "br;",
+    }, delimiter = ';')
+    public void should_negotiate_content_coding(String accept, String expected) {
+        assertEquals(expected, Compression.encoding(accept));
+    }
+
+    @Test
+    public void should_negotiate_by_quality_value() {
+        assertEquals(Compression.DEFLATE, Compression.encoding("gzip;q=0.5, deflate"));
+        assertEquals(Compression.DEFLATE, Compression.encoding("gzip;q=0, *"));
+        assertNull(Compression.encoding("gzip;q=0, deflate;q=0"));
+    }
+
+    @Test
+    public void should_gzip_body_above_threshold() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        String body = "{\"name\":\"value\"}".repeat(100);
+
+        try (OutputStream out = compression.output(request, resp, response, target)) {
+            out.write(body.getBytes());
+        }
+
+        verify(resp).setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+        verify(resp).setHeader("Vary", HttpHeaders.ACCEPT_ENCODING);
+        assertEquals(body, new String(new GZIPInputStream(new ByteArrayInputStream(target.toByteArray())).readAllBytes()));
+        assertTrue(target.size() < body.length());
+    }
+
+    @Test
+    public void should_deflate_body_above_threshold() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("deflate");
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        String body = "{\"name\":\"value\"}".repeat(100);
+
+        try (OutputStream out = compression.output(request, resp, response, target)) {
+            out.write(body.getBytes());
+        }
+
+        verify(resp).setHeader(HttpHeaders.CONTENT_ENCODING, Compression.DEFLATE);
+        assertEquals(body, new String(new InflaterInputStream(new ByteArrayInputStream(target.toByteArray())).readAllBytes()));
+    }
+
+    @Test
+    public void should_not_compress_body_below_threshold() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (OutputStream out = compression.output(request, resp, response, target)) {
+            out.write("small".getBytes());
+        }
+
+        assertEquals("small", target.toString());
+        verify(resp, never()).setHeader(eq(HttpHeaders.CONTENT_ENCODING), any());
+    }
+
+    @Test
+    public void should_not_compress_already_compressed_media_type_or_encoded_response() {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        OutputStream target = new ByteArrayOutputStream();
+
+        when(response.getMediaType()).thenReturn(new MediaType("image", "png"));
+        assertSame(target, compression.output(request, resp, response, target));
+
+        when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+        headers.add(HttpHeaders.CONTENT_ENCODING, "identity");
+        assertSame(target, compression.output(request, resp, response, target));
+        verify(resp, never()).setHeader(any(), any());
+    }
+
+    @Test
+    public void should_weaken_strong_entity_tag_of_compressed_body() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        when(resp.getHeader(HttpHeaders.ETAG)).thenReturn("\"abc\"");
+
+        try (OutputStream out = compression.output(request, resp, response, new ByteArrayOutputStream())) {
+            out.write("{\"name\":\"value\"}".repeat(100).getBytes());
+        }
+
+        verify(resp).setHeader(HttpHeaders.ETAG, "W/\"abc\"");
+    }
+
+    @Test
+    public void should_keep_strong_entity_tag_of_identity_body() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        when(resp.getHeader(HttpHeaders.ETAG)).thenReturn("\"abc\"");
+
+        try (OutputStream out = compression.output(request, resp, response, new ByteArrayOutputStream())) {
+            out.write("small".getBytes());
+        }
+
+        verify(resp, never()).setHeader(eq(HttpHeaders.ETAG), any());
+    }
+
+    @Test
+    public void should_merge_accept_encoding_into_existing_vary() {
+        when(resp.getHeaders("Vary")).thenReturn(List.of(HttpHeaders.ACCEPT));
+
+        compression.output(request, resp, response, new ByteArrayOutputStream());
+
+        verify(resp).setHeader("Vary", HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    public void should_not_duplicate_accept_encoding_in_vary() {
+        when(resp.getHeaders("Vary")).thenReturn(List.of("accept-encoding"));
+
+        compression.output(request, resp, response, new ByteArrayOutputStream());
+
+        verify(resp).setHeader("Vary", "accept-encoding");
+    }
+
+    @Test
+    public void should_discard_pending_body_without_writing_it() throws IOException {
+        when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        OutputStream out = compression.output(request, resp, response, target);
+        out.write("small".getBytes());
+        Compression.discard(out);
+
+        assertEquals(0, target.size());
+        verify(resp, never()).setHeader(eq(HttpHeaders.CONTENT_ENCODING), any());
+    }
+}
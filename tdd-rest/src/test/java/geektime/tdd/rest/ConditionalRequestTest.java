@@ -0,0 +1,159 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConditionalRequestTest {
+    private static final String MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    private static final String BEFORE = "Tue, 20 Oct 2015 07:28:00 GMT";
+    private static final Date LAST_MODIFIED = new Date(1445412480000L);
+
+    private HttpServletRequest request;
+
+    @BeforeEach
+    public void before() {
+        request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        RuntimeDelegate.setInstance(mock(RuntimeDelegate.class));
+    }
+
+    @AfterEach
+    public void after() {
+        RuntimeDelegate.setInstance(null);
+    }
+
+    @Test
+    public void should_not_be_modified_if_any_entity_tag_weakly_matches() {
+        when(request.getHeader(ConditionalRequest.IF_NONE_MATCH)).thenReturn("\"a\", W/\"b\"");
+
+        assertTrue(ConditionalRequest.notModified(request, "\"b\"", null));
+        assertTrue(ConditionalRequest.notModified(request, new EntityTag("a", true), null));
+        assertFalse(ConditionalRequest.notModified(request, "\"c\"", null));
+    }
+
+    @Test
+    public void should_ignore_if_modified_since_when_if_none_match_present() {
+        when(request.getHeader(ConditionalRequest.IF_NONE_MATCH)).thenReturn("\"a\"");
+        when(request.getHeader(ConditionalRequest.IF_MODIFIED_SINCE)).thenReturn(MODIFIED);
+
+        assertFalse(ConditionalRequest.notModified(request, "\"b\"", LAST_MODIFIED));
+    }
+
+    @Test
+    public void should_compare_last_modified_in_seconds() {
+        when(request.getHeader(ConditionalRequest.IF_MODIFIED_SINCE)).thenReturn(MODIFIED);
+
+        assertTrue(ConditionalRequest.notModified(request, null, new Date(LAST_MODIFIED.getTime() + 999)));
+        assertTrue(ConditionalRequest.notModified(request, null, MODIFIED));
+        assertFalse(ConditionalRequest.notModified(request, null, new Date(LAST_MODIFIED.getTime() + 1000)));
+    }
+
+    @Test
+    public void should_not_short_circuit_unsafe_methods() {
+        when(request.getMethod()).thenReturn("PUT");
+        when(request.getHeader(ConditionalRequest.IF_NONE_MATCH)).thenReturn("*");
+
+        assertFalse(ConditionalRequest.notModified(request, "\"a\"", null));
+    }
+
+    @Test
+    public void should_honor_range_only_if_if_range_strongly_matches_current_validator() {
+        assertTrue(ConditionalRequest.rangeable(request, "\"a\"", MODIFIED));
+
+        when(request.getHeader(ConditionalRequest.IF_RANGE)).thenReturn("\"a\"");
+        assertTrue(ConditionalRequest.rangeable(request, "\"a\"", null));
+        assertFalse(ConditionalRequest.rangeable(request, "\"b\"", null));
+        assertFalse(ConditionalRequest.rangeable(request, "W/\"a\"", null));
+        assertFalse(ConditionalRequest.rangeable(request, null, MODIFIED));
+
+        when(request.getHeader(ConditionalRequest.IF_RANGE)).thenReturn("W/\"a\"");
+        assertFalse(ConditionalRequest.rangeable(request, "\"a\"", null));
+
+        when(request.getHeader(ConditionalRequest.IF_RANGE)).thenReturn(MODIFIED);
+        assertTrue(ConditionalRequest.rangeable(request, null, MODIFIED));
+        assertFalse(ConditionalRequest.rangeable(request, null, BEFORE));
+        assertFalse(ConditionalRequest.rangeable(request, "\"a\"", null));
+    }
+
+    @Test
+    public void should_evaluate_not_modified_for_matched_entity_tag() {
+        when(request.getHeader(ConditionalRequest.IF_NONE_MATCH)).thenReturn("\"a\"");
+        EntityTag tag = new EntityTag("a");
+
+        Response response = new ConditionalRequest(request).evaluatePreconditions(tag).build();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertEquals("\"a\"", response.getHeaders().getFirst(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void should_fail_precondition_if_strong_entity_tag_not_match() {
+        when(request.getMethod()).thenReturn("PUT");
+        when(request.getHeader(ConditionalRequest.IF_MATCH)).thenReturn("W/\"a\", \"b\"");
+
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(),
+                new ConditionalRequest(request).evaluatePreconditions(new EntityTag("a")).build().getStatus());
+        assertNull(new ConditionalRequest(request).evaluatePreconditions(new EntityTag("b")));
+    }
+
+    @Test
+    public void should_fail_precondition_if_modified_since_unmodified_since() {
+        when(request.getMethod()).thenReturn("PUT");
+        when(request.getHeader(ConditionalRequest.IF_UNMODIFIED_SINCE)).thenReturn(BEFORE);
+
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(),
+                new ConditionalRequest(request).evaluatePreconditions(LAST_MODIFIED).build().getStatus());
+    }
+
+    @Test
+    public void should_evaluate_not_modified_for_last_modified() {
+        when(request.getHeader(ConditionalRequest.IF_MODIFIED_SINCE)).thenReturn(MODIFIED);
+
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                new ConditionalRequest(request).evaluatePreconditions(LAST_MODIFIED).build().getStatus());
+        assertNull(new ConditionalRequest(request).evaluatePreconditions(new Date(LAST_MODIFIED.getTime() + 1000)));
+    }
+
+    @Test
+    public void should_prefer_entity_tag_over_last_modified() {
+        when(request.getHeader(ConditionalRequest.IF_NONE_MATCH)).thenReturn("\"b\"");
+        when(request.getHeader(ConditionalRequest.IF_MODIFIED_SINCE)).thenReturn(MODIFIED);
+
+        assertNull(new ConditionalRequest(request).evaluatePreconditions(LAST_MODIFIED, new EntityTag("a")));
+    }
+
+    @Test
+    public void should_select_variant_by_accept_language_and_encoding_quality() {
+        Variant json = new Variant(MediaType.APPLICATION_JSON_TYPE, Locale.ENGLISH, null);
+        Variant chinese = new Variant(MediaType.TEXT_PLAIN_TYPE, Locale.CHINESE, null);
+        Variant gzip = new Variant(MediaType.TEXT_PLAIN_TYPE, Locale.ENGLISH, "gzip");
+        when(request.getHeader("Accept")).thenReturn("application/json;q=0.5, text/*");
+        when(request.getHeader("Accept-Language")).thenReturn("en-US, en;q=0.8, *;q=0.1");
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, identity;q=0.5");
+
+        assertSame(gzip, new ConditionalRequest(request).selectVariant(List.of(json, chinese, gzip)));
+        assertSame(json, new ConditionalRequest(request).selectVariant(List.of(json, chinese)));
+    }
+
+    @Test
+    public void should_not_select_variant_if_none_acceptable() {
+        when(request.getHeader("Accept")).thenReturn("application/json, text/*;q=0");
+
+        assertNull(new ConditionalRequest(request).selectVariant(List.of(new Variant(MediaType.TEXT_HTML_TYPE, (Locale) null, null))));
+        assertThrows(IllegalArgumentException.class, () -> new ConditionalRequest(request).selectVariant(List.of()));
+    }
+}
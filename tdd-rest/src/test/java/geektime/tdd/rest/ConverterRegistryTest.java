@@ -0,0 +1,148 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.ext.ParamConverter;
+import jakarta.ws.rs.ext.ParamConverterProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ConverterRegistryTest {
+
+    enum Color {
+        RED, GREEN;
+
+        public static Color fromString(String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
+
+    public static class Name {
+        final String value;
+
+        public Name(String value) {
+            this.value = value;
+        }
+    }
+
+    private final ConverterRegistry registry = new ConverterRegistry(List.of());
+
+    @ParameterizedTest
+    @CsvSource({
+            "int,42,42",
+            "long,-9000000000,-9000000000",
+            "short,12,12",
+            "byte,7,7",
+            "boolean,TRUE,true",
+            "double,2.5,2.5",
+            "char,x,x",
+    })
+    public void should_convert_primitive(String type, String value, String expected) {
+        Class<?> primitive = switch (type) {
+            case "int" -> int.class;
+            case "long" -> long.class;
+            case "short" -> short.class;
+            case "byte" -> byte.class;
+            case "boolean" -> boolean.class;
+            case "double" -> double.class;
+            default -> char.class;
+        };
+        Object converted = registry.converter(primitive, primitive, new Annotation[0]).convert(value);
+
+        assertEquals(expected, String.valueOf(converted));
+    }
+
+    @Test
+    public void should_convert_primitive_from_string_offsets() {
+        String query = "page=42&draft=true&size=7";
+
+        assertEquals(42, registry.converter(int.class, int.class, new Annotation[0]).convert(query, 5, 7));
+        assertEquals(true, registry.converter(boolean.class, boolean.class, new Annotation[0]).convert(query, 14, 18));
+        assertEquals((short) 7, registry.converter(short.class, short.class, new Annotation[0]).convert(query, 24, 25));
+        assertThrows(NumberFormatException.class, () -> registry.converter(byte.class, byte.class, new Annotation[0]).convert("300", 0, 3));
+    }
+
+    @Test
+    public void should_convert_uuid() {
+        UUID id = UUID.randomUUID();
+        assertEquals(id, registry.converter(UUID.class, UUID.class, new Annotation[0]).convert(id.toString()));
+    }
+
+    @Test
+    public void should_prefer_from_string_for_enum() {
+        assertEquals(Color.GREEN, registry.converter(Color.class, Color.class, new Annotation[0]).convert("green"));
+    }
+
+    @Test
+    public void should_use_value_of_or_string_constructor() {
+        assertEquals(new BigDecimal("1.50"), registry.converter(BigDecimal.class, BigDecimal.class, new Annotation[0]).convert("1.50"));
+        assertEquals("name", ((Name) registry.converter(Name.class, Name.class, new Annotation[0]).convert("name")).value);
+    }
+
+    @Test
+    public void should_throw_illegal_argument_exception_if_no_converter_found() {
+        assertThrows(IllegalArgumentException.class, () -> registry.converter(Object[].class, Object[].class, new Annotation[0]));
+    }
+
+    @Test
+    public void should_use_default_value_or_zero_if_value_missing() throws Exception {
+        Annotation[] annotations = getClass().getDeclaredMethod("withDefault", int.class).getParameterAnnotations()[0];
+
+        assertEquals(10, registry.binder(int.class, int.class, annotations).apply(null));
+        assertEquals(0, registry.binder(int.class, int.class, new Annotation[0]).apply(List.of()));
+        assertNull(registry.binder(Integer.class, Integer.class, new Annotation[0]).apply(null));
+    }
+
+    @Test
+    public void should_convert_all_values_for_collections() throws Exception {
+        Type list = getClass().getDeclaredMethod("collections", List.class, SortedSet.class).getGenericParameterTypes()[0];
+        Type sorted = getClass().getDeclaredMethod("collections", List.class, SortedSet.class).getGenericParameterTypes()[1];
+
+        assertEquals(List.of(1L, 2L), registry.binder(List.class, list, new Annotation[0]).apply(List.of("1", "2")));
+        assertEquals(new TreeSet<>(Set.of(1, 2)), registry.binder(SortedSet.class, sorted, new Annotation[0]).apply(List.of("2", "1")));
+    }
+
+    @Test
+    public void should_resolve_param_converter_provider_once() {
+        ParamConverter<Name> converter = new ParamConverter<>() {
+            @Override
+            public Name fromString(String value) {
+                return new Name(value.toUpperCase());
+            }
+
+            @Override
+            public String toString(Name value) {
+                return value.value;
+            }
+        };
+        ParamConverterProvider provider = mock(ParamConverterProvider.class);
+        when(provider.getConverter(eq(Name.class), any(), any())).thenReturn((ParamConverter) converter);
+        ConverterRegistry registry = new ConverterRegistry(List.of(provider));
+
+        registry.converter(Name.class, Name.class, new Annotation[0]);
+        Object converted = registry.converter(Name.class, Name.class, new Annotation[0]).convert("name");
+
+        assertEquals("NAME", ((Name) converted).value);
+        verify(provider, times(1)).getConverter(eq(Name.class), any(), any());
+    }
+
+    private void withDefault(@DefaultValue("10") int value) {
+    }
+
+    private void collections(List<Long> list, SortedSet<Integer> sorted) {
+    }
+}
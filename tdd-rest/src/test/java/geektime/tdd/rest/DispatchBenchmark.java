@@ -0,0 +1,113 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+public class DispatchBenchmark {
+
+    @Path("/users")
+    public static class Users {
+        @GET
+        @Path("/{id}")
+        public String get(@PathParam("id") long id, @QueryParam("fields") String fields) {
+            return fields;
+        }
+
+        @GET
+        @Path("/{id}/orders/{order}")
+        public String order(@PathParam("id") long id, @PathParam("order") String order) {
+            return order;
+        }
+    }
+
+    private final Users users = new Users();
+    private ResourceContext context;
+    private UriInfo uriInfo;
+
+    @BeforeEach
+    public void before() {
+        MultivaluedMap<String, String> path = new MultivaluedHashMap<>(Map.of("id", "1"));
+        MultivaluedMap<String, String> query = new MultivaluedHashMap<>(Map.of("fields", "name"));
+        uriInfo = (UriInfo) Proxy.newProxyInstance(UriInfo.class.getClassLoader(), new Class[]{UriInfo.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getPathParameters" -> path;
+                    case "getQueryParameters" -> query;
+                    default -> null;
+                });
+
+        context = new ResourceContext() {
+            @Override
+            public <T> T getResource(Class<T> resourceClass) {
+                return (T) users;
+            }
+
+            @Override
+            public <T> T initResource(T resource) {
+                return resource;
+            }
+        };
+    }
+
+    @Test
+    public void route_and_invoke() {
+        ResourceRouter.RootResource resource = new RootResourceClass(Users.class);
+        UriInfoBuilder builder = new StubUriInfoBuilder(uriInfo);
+        String[] accept = {MediaType.WILDCARD};
+        Runnable task = () -> resource.getUriTemplate().match("/users/1")
+                .flatMap(result -> resource.matches(result, HttpMethod.GET, accept, builder))
+                .map(method -> method.call(context, builder));
+
+        Throughput.measure("route and invoke GET /users/{id}", task);
+        Throughput.measure("route and invoke GET /users/{id}", 4, task);
+    }
+
+    @Test
+    public void invoke() throws Exception {
+        Method method = Users.class.getMethod("get", long.class, String.class);
+        ResourceRouter.ResourceMethod resourceMethod = new RootResourceClass.DefaultResourceMethod(Users.class, method, ConverterRegistry.DEFAULT);
+        UriInfoBuilder builder = new StubUriInfoBuilder(uriInfo);
+
+        Throughput.measure("Method.invoke with per-call annotation scan", () -> {
+            try {
+                Object[] args = new Object[method.getParameterCount()];
+                for (int i = 0; i < args.length; i++)
+                    args[i] = method.getParameters()[i].getAnnotation(PathParam.class) != null ? 1L : "name";
+                method.invoke(users, args);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Throughput.measure("DefaultResourceMethod.call", () -> resourceMethod.call(context, builder));
+    }
+
+    record StubUriInfoBuilder(UriInfo uriInfo) implements UriInfoBuilder {
+        @Override
+        public void pushMatchedPath(String path) {
+        }
+
+        @Override
+        public void addParameter(String name, String value) {
+        }
+
+        @Override
+        public String getUnmatchedPath() {
+            return null;
+        }
+
+        @Override
+        public UriInfo createUriInfo() {
+            return uriInfo;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.*;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+public class ErrorPathBenchmark {
+
+    static class BadRequestUrl extends IllegalArgumentException {
+    }
+
+    record HierarchyProviders(Map<Class<?>, ExceptionMapper<?>> mappers) implements Providers {
+        @Override
+        public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return null;
+        }
+
+        @Override
+        public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return null;
+        }
+
+        @Override
+        public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                ExceptionMapper<?> mapper = mappers.get(current);
+                if (mapper != null) return (ExceptionMapper<T>) mapper;
+            }
+            return null;
+        }
+
+        @Override
+        public <T> ContextResolver<T> getContextResolver(Class<T> contextType, MediaType mediaType) {
+            return null;
+        }
+    }
+
+    private static OutboundResponse notFound() {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(404);
+        when(response.getStatusInfo()).thenReturn(Response.Status.NOT_FOUND);
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        return response;
+    }
+
+    @Test
+    public void exception_mapper_resolution() {
+        OutboundResponse response = notFound();
+        Providers providers = new HierarchyProviders(Map.of(Throwable.class, e -> response, RuntimeException.class, e -> response));
+        ExceptionMappers mappers = new ExceptionMappers(providers);
+
+        Throughput.measure("Providers.getExceptionMapper hierarchy walk", () -> providers.getExceptionMapper(BadRequestUrl.class));
+        Throughput.measure("ExceptionMappers.get", () -> mappers.get(BadRequestUrl.class));
+    }
+
+    @Test
+    public void control_flow_exceptions() {
+        OutboundResponse response = notFound();
+
+        Throughput.measure("new WebApplicationException with stack trace", () -> new WebApplicationException(response));
+        Throughput.measure("new WebApplicationException stackless", () -> new WebApplicationException(response) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        });
+    }
+
+    @Test
+    public void error_storm_over_http() throws Exception {
+        OutboundResponse response = notFound();
+        Providers providers = new HierarchyProviders(Map.of(RuntimeException.class, e -> response));
+        ResourceRouter router = (request, context) -> {
+            throw new BadRequestUrl();
+        };
+
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        handler.addServlet(new ServletHolder(new ResourceServlet(runtime(providers, router))), "/");
+        server.setHandler(handler);
+        server.start();
+
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/wp-login.php")).build();
+            Throughput.requests("404 error storm over HTTP", 64, client, request);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Runtime runtime(Providers providers, ResourceRouter router) {
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+
+import static org.mockito.Mockito.*;
+
+public class ExecutionBenchmark {
+    private static final long DOWNSTREAM_MILLIS = 100;
+    private static final int MAX_THREADS = 32;
+
+    @Test
+    public void blocking_resources_on_bounded_pool() throws Exception {
+        run(ResourceServer.Execution.POOLED);
+    }
+
+    @Test
+    public void blocking_resources_on_virtual_threads() throws Exception {
+        run(ResourceServer.Execution.VIRTUAL);
+    }
+
+    private static void run(ResourceServer.Execution execution) throws Exception {
+        OutboundResponse noContent = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(noContent.getStatus()).thenReturn(Response.Status.NO_CONTENT.getStatusCode());
+        when(noContent.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+
+        ResourceServer server = new ResourceServer(runtime((request, context) -> {
+            try {
+                Thread.sleep(DOWNSTREAM_MILLIS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return noContent;
+        }), 0, execution, MAX_THREADS);
+        server.start();
+
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/orders")).build();
+            Throughput.requests("blocking resource, " + DOWNSTREAM_MILLIS + "ms downstream, " + MAX_THREADS + " " + execution, 1024, client, request);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Runtime runtime(ResourceRouter router) {
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
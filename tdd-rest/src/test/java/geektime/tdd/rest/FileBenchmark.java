@@ -0,0 +1,120 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.*;
+
+public class FileBenchmark {
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+    private static Path file;
+
+    @BeforeAll
+    public static void createFile() throws Exception {
+        file = Files.createTempFile("export", ".bin");
+        byte[] content = new byte[FILE_SIZE];
+        Arrays.fill(content, (byte) 'x');
+        Files.write(file, content);
+    }
+
+    @AfterAll
+    public static void deleteFile() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void stream_copy() throws Exception {
+        run("16MiB export via InputStream copy", () -> new GenericEntity<>((StreamingOutput) out -> {
+            try (InputStream in = Files.newInputStream(file)) {
+                in.transferTo(out);
+            }
+        }, StreamingOutput.class));
+    }
+
+    @Test
+    public void mapped_file() throws Exception {
+        run("16MiB export via Path entity", () -> new GenericEntity<>(file, Path.class));
+    }
+
+    private static void run(String name, Supplier<GenericEntity<?>> entity) throws Exception {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(Response.Status.OK.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getGenericEntity()).then(invocation -> entity.get());
+
+        ResourceServer server = new ResourceServer(runtime((request, context) -> response), 0, ResourceServer.Execution.POOLED);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/export")).build();
+            Throughput.requests(name, 4, client, request);
+
+            long before = allocated();
+            for (int i = 0; i < 20; i++) client.send(request, HttpResponse.BodyHandlers.discarding());
+            System.out.printf("%-56s %,16d server bytes allocated per request%n", name, (allocated() - before) / 20);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long allocated() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] server = Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds()))
+                .filter(thread -> thread != null && thread.getThreadName().startsWith("qtp"))
+                .mapToLong(ThreadInfo::getThreadId).toArray();
+        return Arrays.stream(threads.getThreadAllocatedBytes(server)).filter(bytes -> bytes > 0).sum();
+    }
+
+    private static Runtime runtime(ResourceRouter router) {
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.HttpHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class FileEntityTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "bytes=0-4,0,4",
+            "bytes=5-,5,9",
+            "bytes=-3,7,9",
+            "bytes=8-20,8,9",
+            "bytes=-20,0,9",
+    })
+    public void should_resolve_satisfiable_range(String header, long start, long end) {
+        assertArrayEquals(new long[]{start, end}, FileEntity.range(header, 10));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"bytes=10-", "bytes=-0"})
+    public void should_reject_unsatisfiable_range(String header) {
+        assertNull(FileEntity.range(header, 10));
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {"items=0-4", "bytes=0-1,4-5", "bytes=a-b", "bytes=5", "bytes=5-2", "bytes=--3"}, delimiter = ';')
+    public void should_ignore_unsupported_range(String header) {
+        assertEquals(0, FileEntity.range(header, 10).length);
+    }
+
+    @Test
+    public void should_serve_range_if_if_range_matches_entity_tag(@TempDir Path dir) throws IOException {
+        HttpServletResponse resp = response("\"v1\"");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(resp.getOutputStream()).thenReturn(output(body));
+
+        write(dir, request("bytes=2-4", "\"v1\""), resp);
+
+        verify(resp).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        assertEquals("234", body.toString());
+    }
+
+    @Test
+    public void should_serve_full_body_if_if_range_does_not_match(@TempDir Path dir) throws IOException {
+        HttpServletResponse resp = response("\"v2\"");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(resp.getOutputStream()).thenReturn(output(body));
+
+        write(dir, request("bytes=2-4", "\"v1\""), resp);
+
+        verify(resp).setStatus(HttpServletResponse.SC_OK);
+        assertEquals("0123456789", body.toString());
+    }
+
+    @Test
+    public void should_serve_full_body_if_range_is_invalid(@TempDir Path dir) throws IOException {
+        HttpServletResponse resp = response(null);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(resp.getOutputStream()).thenReturn(output(body));
+
+        write(dir, request("bytes=5-3", null), resp);
+
+        verify(resp).setStatus(HttpServletResponse.SC_OK);
+        assertEquals("0123456789", body.toString());
+    }
+
+    private static void write(Path dir, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Path file = Files.writeString(dir.resolve("digits.txt"), "0123456789");
+        try (FileEntity entity = FileEntity.of(file)) {
+            entity.write(req, resp, HttpServletResponse.SC_OK, false);
+        }
+    }
+
+    private static HttpServletRequest request(String range, String ifRange) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Range")).thenReturn(range);
+        when(request.getHeader(ConditionalRequest.IF_RANGE)).thenReturn(ifRange);
+        return request;
+    }
+
+    private static HttpServletResponse response(String entityTag) {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getHeader(HttpHeaders.ETAG)).thenReturn(entityTag);
+        return response;
+    }
+
+    private static ServletOutputStream output(ByteArrayOutputStream body) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NameBinding;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.*;
+
+public class FilterBenchmark {
+
+    @NameBinding
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Elsewhere {
+    }
+
+    @Path("/orders")
+    public static class Orders {
+        static OutboundResponse response;
+
+        @GET
+        @Path("/{id}")
+        public OutboundResponse get() {
+            return response;
+        }
+    }
+
+    static class Global implements ContainerRequestFilter, ContainerResponseFilter {
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        }
+    }
+
+    @Elsewhere
+    static class Bound extends Global {
+    }
+
+    @Test
+    public void per_route_chains() throws Exception {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(Response.Status.OK.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        Orders.response = new FilteredResponse(response, null, new WriterInterceptor[0]);
+
+        Orders orders = new Orders();
+        HttpServletRequest request = mock(HttpServletRequest.class, withSettings().stubOnly());
+        ResourceContext context = new ResourceContext() {
+            @Override
+            public <T> T getResource(Class<T> resourceClass) {
+                return (T) (resourceClass == HttpServletRequest.class ? request : orders);
+            }
+
+            @Override
+            public <T> T initResource(T resource) {
+                return resource;
+            }
+        };
+        UriInfoBuilder builder = new DispatchBenchmark.StubUriInfoBuilder(null);
+
+        for (int count : new int[]{0, 5, 20}) {
+            ResourceRouter.ResourceMethod method = method(IntStream.range(0, count).mapToObj(i -> new Global()).toList());
+            Throughput.measure(count + " global filters", () -> method.call(context, builder));
+        }
+        ResourceRouter.ResourceMethod unbound = method(IntStream.range(0, 20).mapToObj(i -> new Bound()).toList());
+        Throughput.measure("20 filters bound to other routes", () -> unbound.call(context, builder));
+    }
+
+    private static ResourceRouter.ResourceMethod method(List<?> filters) throws Exception {
+        return new RootResourceClass.DefaultResourceMethod(Orders.class, Orders.class.getMethod("get"),
+                ConverterRegistry.DEFAULT, new Filters(filters));
+    }
+}
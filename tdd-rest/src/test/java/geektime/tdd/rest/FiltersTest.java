@@ -0,0 +1,256 @@
+package geektime.tdd.rest;
+
+import jakarta.annotation.Priority;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NameBinding;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FiltersTest {
+
+    @NameBinding
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Audited {
+    }
+
+    @Path("/orders")
+    static class Orders {
+        static OutboundResponse response;
+
+        @GET
+        @Path("/plain")
+        public OutboundResponse plain() {
+            return response;
+        }
+
+        @GET
+        @Audited
+        @Path("/audited")
+        public OutboundResponse audited() {
+            return response;
+        }
+    }
+
+    private final List<String> calls = new ArrayList<>();
+    private ResourceContext context;
+    private OutboundResponse response;
+
+    @BeforeEach
+    public void before() {
+        response = mock(OutboundResponse.class);
+        when(response.getStatus()).thenReturn(Response.Status.OK.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getGenericEntity()).thenReturn(new GenericEntity<>("order", String.class));
+        when(response.getAnnotations()).thenReturn(new Annotation[0]);
+        when(response.getMediaType()).thenReturn(MediaType.TEXT_PLAIN_TYPE);
+        Orders.response = response;
+
+        context = mock(ResourceContext.class);
+        when(context.getResource(eq(Orders.class))).thenReturn(new Orders());
+        when(context.getResource(eq(HttpServletRequest.class))).thenReturn(mock(HttpServletRequest.class));
+    }
+
+    @Test
+    public void should_share_empty_chain_if_no_filter_bound_to_route() throws Exception {
+        Filters filters = new Filters(List.of(new AuditedFilter()));
+
+        assertSame(Filters.Chain.EMPTY, Filters.NONE.chain(Orders.class, Orders.class.getMethod("audited")));
+        assertSame(Filters.Chain.EMPTY, filters.chain(Orders.class, Orders.class.getMethod("plain")));
+        assertNotSame(Filters.Chain.EMPTY, filters.chain(Orders.class, Orders.class.getMethod("audited")));
+    }
+
+    @Test
+    public void should_run_global_and_name_bound_filters_in_priority_order() throws Exception {
+        Filters filters = new Filters(List.of(new AuditedFilter(), new LateFilter(), new EarlyFilter()));
+
+        call(filters, "plain");
+        assertEquals(List.of("early", "late", "late response", "early response"), calls);
+
+        calls.clear();
+        call(filters, "audited");
+        assertEquals(List.of("early", "audited", "late", "late response", "early response"), calls);
+    }
+
+    @Test
+    public void should_only_run_name_bound_request_filters_if_global_filters_already_ran() throws Exception {
+        Filters filters = new Filters(List.of(new AuditedFilter(), new LateFilter(), new EarlyFilter()));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute(Filters.FILTERED)).thenReturn(Boolean.TRUE);
+        when(context.getResource(eq(HttpServletRequest.class))).thenReturn(request);
+
+        assertEquals(2, filters.global().length);
+        call(filters, "audited");
+
+        assertEquals(List.of("audited", "late response", "early response"), calls);
+        verify(request).setAttribute(Filters.BOUND, Boolean.TRUE);
+    }
+
+    @Test
+    public void should_run_response_filters_in_reverse_priority_order() throws Exception {
+        Filters filters = new Filters(List.of(new EarlyFilter(), new LateFilter()));
+
+        GenericEntity entity = call(filters, "plain");
+
+        assertEquals(List.of("early", "late", "late response", "early response"), calls);
+        OutboundResponse filtered = (OutboundResponse) entity.getEntity();
+        assertEquals(Response.Status.ACCEPTED.getStatusCode(), filtered.getStatus());
+        assertEquals(List.of("late", "early"), filtered.getHeaders().get("X-Filtered"));
+        assertEquals("order", filtered.getGenericEntity().getEntity());
+    }
+
+    @Test
+    public void should_not_invoke_resource_method_if_request_aborted() throws Exception {
+        Orders orders = spy(new Orders());
+        when(context.getResource(eq(Orders.class))).thenReturn(orders);
+        OutboundResponse forbidden = mock(OutboundResponse.class);
+        when(forbidden.getStatus()).thenReturn(Response.Status.FORBIDDEN.getStatusCode());
+        when(forbidden.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        ContainerRequestFilter abort = request -> request.abortWith(forbidden);
+
+        GenericEntity entity = call(new Filters(List.of(abort, new EarlyFilter(), new LateFilter())), "plain");
+
+        verify(orders, never()).plain();
+        Response aborted = (Response) entity.getEntity();
+        assertEquals(Response.Status.ACCEPTED.getStatusCode(), aborted.getStatus());
+        assertEquals(List.of("late", "early"), aborted.getHeaders().get("X-Filtered"));
+        assertEquals(List.of("early", "late response", "early response"), calls);
+    }
+
+    @Test
+    public void should_wrap_entity_stream_with_writer_interceptors() throws Exception {
+        WriterInterceptor upper = context -> {
+            OutputStream out = context.getOutputStream();
+            context.setOutputStream(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(Character.toUpperCase(b));
+                }
+            });
+            context.proceed();
+        };
+        WriterInterceptor tagged = new TaggingInterceptor();
+
+        FilteredResponse filtered = (FilteredResponse) call(new Filters(List.of(upper, tagged)), "plain").getEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filtered.writeTo(filtered.getGenericEntity(), out, (value, type, genericType, annotations, mediaType, headers, stream) -> {
+            assertEquals(String.class, type);
+            stream.write(value.toString().getBytes());
+        });
+
+        assertTrue(filtered.isIntercepted());
+        assertEquals("TAGGED:ORDER", out.toString());
+    }
+
+    @Test
+    public void should_write_entity_to_stream_replaced_by_response_filter() throws Exception {
+        ContainerResponseFilter upper = (request, response) -> {
+            OutputStream out = response.getEntityStream();
+            response.setEntityStream(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(Character.toUpperCase(b));
+                }
+            });
+        };
+
+        FilteredResponse filtered = (FilteredResponse) call(new Filters(List.of(upper)), "plain").getEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filtered.writeTo(filtered.getGenericEntity(), out, (value, type, genericType, annotations, mediaType, headers, stream) ->
+                stream.write(value.toString().getBytes()));
+
+        assertTrue(filtered.isIntercepted());
+        assertEquals("ORDER", out.toString());
+    }
+
+    @Test
+    public void should_read_entity_from_stream_replaced_by_request_filter() throws Exception {
+        HttpServletRequest request = new RequestEntity(1024).wrap(RequestEntityTest.request("POST", 5, "hello"));
+        when(context.getResource(eq(HttpServletRequest.class))).thenReturn(request);
+        FilteredRequest filtered = new FilteredRequest(context, mock(UriInfoBuilder.class));
+
+        assertEquals("hello", new String(filtered.getEntityStream().readAllBytes()));
+        filtered.setEntityStream(new ByteArrayInputStream("replaced".getBytes()));
+
+        assertEquals("replaced", new String(request.getInputStream().readAllBytes()));
+    }
+
+    private GenericEntity call(Filters filters, String method) throws Exception {
+        ResourceRouter.ResourceMethod resourceMethod = new RootResourceClass.DefaultResourceMethod(Orders.class,
+                Orders.class.getMethod(method), ConverterRegistry.DEFAULT, filters);
+        return resourceMethod.call(context, mock(UriInfoBuilder.class));
+    }
+
+    @Audited
+    class AuditedFilter implements ContainerRequestFilter {
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            calls.add("audited");
+        }
+    }
+
+    @Priority(1000)
+    class EarlyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            calls.add("early");
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+            calls.add("early response");
+            responseContext.getHeaders().add("X-Filtered", "early");
+        }
+    }
+
+    @Priority(9000)
+    class LateFilter implements ContainerRequestFilter, ContainerResponseFilter {
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            calls.add("late");
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+            calls.add("late response");
+            responseContext.setStatus(Response.Status.ACCEPTED.getStatusCode());
+            responseContext.getHeaders().add("X-Filtered", "late");
+        }
+    }
+
+    @Priority(9000)
+    static class TaggingInterceptor implements WriterInterceptor {
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+            context.setEntity("tagged:" + context.getEntity());
+            context.proceed();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.SeBootstrap;
+import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+public class HeaderBenchmark {
+
+    static class ScanningRuntimeDelegate extends RuntimeDelegate {
+        private final Map<Class<?>, HeaderDelegate<?>> delegates = Map.of(
+                NewCookie.class, new HeaderDelegate<NewCookie>() {
+                    @Override
+                    public NewCookie fromString(String value) {
+                        return null;
+                    }
+
+                    @Override
+                    public String toString(NewCookie cookie) {
+                        return cookie.getName() + "=" + cookie.getValue() + "; Path=" + cookie.getPath();
+                    }
+                },
+                Object.class, new HeaderDelegate<>() {
+                    @Override
+                    public Object fromString(String value) {
+                        return value;
+                    }
+
+                    @Override
+                    public String toString(Object value) {
+                        return value.toString();
+                    }
+                });
+
+        @Override
+        public <T> HeaderDelegate<T> createHeaderDelegate(Class<T> type) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass())
+                for (Map.Entry<Class<?>, HeaderDelegate<?>> entry : delegates.entrySet())
+                    if (entry.getKey() == current) return (HeaderDelegate<T>) entry.getValue();
+            return null;
+        }
+
+        @Override
+        public UriBuilder createUriBuilder() {
+            return null;
+        }
+
+        @Override
+        public Response.ResponseBuilder createResponseBuilder() {
+            return null;
+        }
+
+        @Override
+        public Variant.VariantListBuilder createVariantListBuilder() {
+            return null;
+        }
+
+        @Override
+        public <T> T createEndpoint(Application application, Class<T> endpointType) {
+            return null;
+        }
+
+        @Override
+        public Link.Builder createLinkBuilder() {
+            return null;
+        }
+
+        @Override
+        public SeBootstrap.Configuration.Builder createConfigurationBuilder() {
+            return null;
+        }
+
+        @Override
+        public CompletionStage<SeBootstrap.Instance> bootstrap(Application application, SeBootstrap.Configuration configuration) {
+            return null;
+        }
+
+        @Override
+        public CompletionStage<SeBootstrap.Instance> bootstrap(Class<? extends Application> clazz, SeBootstrap.Configuration configuration) {
+            return null;
+        }
+
+        @Override
+        public EntityPart.Builder createEntityPartBuilder(String partName) {
+            return null;
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        RuntimeDelegate.setInstance(null);
+    }
+
+    @Test
+    public void headers_with_cookies() {
+        RuntimeDelegate runtimeDelegate = new ScanningRuntimeDelegate();
+        RuntimeDelegate.setInstance(runtimeDelegate);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        for (int i = 0; i < 20; i++) headers.add("X-Header-" + i, i % 2 == 0 ? "value-" + i : i);
+        for (int i = 0; i < 4; i++)
+            headers.add(HttpHeaders.SET_COOKIE, new NewCookie.Builder("cookie" + i).value("value" + i).path("/").build());
+
+        List<Map.Entry<String, Object>> values = new ArrayList<>();
+        headers.forEach((name, list) -> list.forEach(value -> values.add(Map.entry(name, value))));
+        HeaderDelegates delegates = new HeaderDelegates();
+
+        Throughput.measure("createHeaderDelegate per value, 24 headers", () -> {
+            for (Map.Entry<String, Object> value : values) {
+                RuntimeDelegate.HeaderDelegate delegate = runtimeDelegate.createHeaderDelegate(value.getValue().getClass());
+                delegate.toString(value.getValue());
+            }
+        });
+        Throughput.measure("HeaderDelegates.toString, 24 headers", () -> {
+            for (Map.Entry<String, Object> value : values) delegates.toString(value.getValue());
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        List<HttpField> fields = values.stream().map(v -> new HttpField(v.getKey(), delegates.toString(v.getValue()))).toList();
+        List<HttpField> encoded = values.stream().map(v -> (HttpField) new PreEncodedHttpField(v.getKey(), delegates.toString(v.getValue()))).toList();
+
+        Throughput.measure("HttpGenerator.putTo HttpField, 24 headers", () -> {
+            buffer.clear();
+            for (HttpField field : fields) HttpGenerator.putTo(field, buffer);
+        });
+        Throughput.measure("HttpGenerator.putTo PreEncodedHttpField, 24 headers", () -> {
+            buffer.clear();
+            for (HttpField field : encoded) HttpGenerator.putTo(field, buffer);
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package geektime.tdd.rest;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HeaderDelegatesTest {
+    private final HeaderDelegates delegates = new HeaderDelegates();
+    private HttpFields.Mutable fields;
+    private Response response;
+
+    @BeforeEach
+    public void before() {
+        fields = HttpFields.build();
+        response = mock(Response.class);
+        when(response.getHttpFields()).thenReturn(fields);
+    }
+
+    @Test
+    public void should_pre_encode_header_only_once_its_value_repeats() {
+        delegates.add(response, "X-Request-Id", "first");
+        delegates.add(response, "X-Trace", "shared");
+        delegates.add(response, "X-Trace", "shared");
+
+        verify(response).addHeader("X-Request-Id", "first");
+        verify(response).addHeader("X-Trace", "shared");
+        assertInstanceOf(PreEncodedHttpField.class, fields.getField("X-Trace"));
+    }
+
+    @Test
+    public void should_not_spend_encoding_budget_on_unique_values() {
+        for (int i = 0; i < HeaderDelegates.MAX_ENCODED_HEADERS * 2; i++)
+            delegates.add(response, "X-Request-Id", "id-" + i);
+        delegates.add(response, "X-Trace", "shared");
+        delegates.add(response, "X-Trace", "shared");
+
+        assertInstanceOf(PreEncodedHttpField.class, fields.getField("X-Trace"));
+    }
+}
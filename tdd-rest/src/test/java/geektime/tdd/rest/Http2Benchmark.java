@@ -0,0 +1,47 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+
+public class Http2Benchmark {
+    private static final int IN_FLIGHT = 256;
+
+    @Test
+    public void cleartext_http1_versus_h2c() throws Exception {
+        ResourceServer server = new ResourceServer(ResourceServerTest.runtime(), 0, ResourceServer.Execution.VIRTUAL);
+        server.start();
+        try {
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/streaming");
+            compare("cleartext", uri, HttpClient.newBuilder());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void tls_http1_versus_h2(@TempDir Path directory) throws Exception {
+        Path keyStore = ResourceServerTest.keyStore(directory);
+        ResourceServer server = new ResourceServer(ResourceServerTest.runtime(), 0, ResourceServer.Execution.VIRTUAL,
+                ResourceServer.DEFAULT_MAX_THREADS, new ResourceServer.Tls(0, keyStore, "changeit"));
+        server.start();
+        try {
+            URI uri = URI.create("https://localhost:" + server.getSecurePort() + "/streaming");
+            compare("tls", uri, HttpClient.newBuilder().sslContext(ResourceServerTest.trusting(keyStore)));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void compare(String transport, URI uri, HttpClient.Builder builder) {
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+        Throughput.latencies(transport + " HTTP/1.1, connection per in-flight request", IN_FLIGHT,
+                builder.version(HttpClient.Version.HTTP_1_1).build(), request);
+        Throughput.latencies(transport + " HTTP/2, multiplexed streams", IN_FLIGHT,
+                builder.version(HttpClient.Version.HTTP_2).build(), request);
+    }
+}
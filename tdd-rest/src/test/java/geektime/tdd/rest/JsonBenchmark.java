@@ -0,0 +1,136 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JsonBenchmark {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+    private static final MediaType JSON = MediaType.APPLICATION_JSON_TYPE;
+
+    record Item(long id, String name, int quantity, double price, boolean available) {
+    }
+
+    record Order(long id, String customer, List<Item> items) {
+    }
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Test
+    public void serialize_order() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) items.add(new Item(i, "item \"" + i + "\"", i % 5, i * 1.25, i % 2 == 0));
+        Order order = new Order(42, "customer", items);
+        JsonProvider provider = new JsonProvider();
+
+        Throughput.measure("hand-written StringBuilder + getBytes, 20 items", () -> write(handWritten(order).getBytes(StandardCharsets.UTF_8)));
+        Throughput.measure("reflection per field + getBytes, 20 items", () -> {
+            StringBuilder json = new StringBuilder();
+            reflective(order, json);
+            write(json.toString().getBytes(StandardCharsets.UTF_8));
+        });
+        Throughput.measure("JsonProvider compiled codec, 20 items", () -> {
+            try {
+                provider.writeTo(order, Order.class, Order.class, ANNOTATIONS, JSON, null, DISCARD);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void deserialize_order() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) items.add(new Item(i, "item " + i, i % 5, i * 1.25, i % 2 == 0));
+        byte[] json = handWritten(new Order(42, "customer", items)).getBytes(StandardCharsets.UTF_8);
+        JsonProvider provider = new JsonProvider();
+
+        Throughput.measure("JsonProvider compiled codec read, 20 items", () -> {
+            try {
+                provider.readFrom(Object.class, Order.class, ANNOTATIONS, JSON, null, new ByteArrayInputStream(json));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void write(byte[] bytes) {
+        try {
+            DISCARD.write(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String handWritten(Order order) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"id\":").append(order.id()).append(",\"customer\":");
+        quote(json, order.customer());
+        json.append(",\"items\":[");
+        for (int i = 0; i < order.items().size(); i++) {
+            Item item = order.items().get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(item.id()).append(",\"name\":");
+            quote(json, item.name());
+            json.append(",\"quantity\":").append(item.quantity()).append(",\"price\":").append(item.price())
+                    .append(",\"available\":").append(item.available()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void reflective(Object value, StringBuilder json) {
+        if (value instanceof String text) {
+            quote(json, text);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof List<?> list) {
+            json.append('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) json.append(',');
+                reflective(list.get(i), json);
+            }
+            json.append(']');
+        } else {
+            json.append('{');
+            RecordComponent[] components = value.getClass().getRecordComponents();
+            for (int i = 0; i < components.length; i++) {
+                if (i > 0) json.append(',');
+                quote(json, components[i].getName());
+                json.append(':');
+                try {
+                    reflective(components[i].getAccessor().invoke(value), json);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            json.append('}');
+        }
+    }
+
+    private static void quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\');
+            json.append(c);
+        }
+        json.append('"');
+    }
+}
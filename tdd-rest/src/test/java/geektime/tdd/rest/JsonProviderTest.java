@@ -0,0 +1,220 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonProviderTest {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+    private static final MediaType JSON = MediaType.APPLICATION_JSON_TYPE;
+
+    enum Role {ADMIN, USER}
+
+    record Address(String city, String zip) {
+    }
+
+    record User(long id, String name, int age, double score, boolean active, Role role, Address address,
+                List<String> tags, Map<String, Integer> counts, LocalDate born, BigDecimal balance) {
+    }
+
+    record Page<T>(int page, List<T> items) {
+    }
+
+    record Node(String name, List<Node> children) {
+    }
+
+    public static class Bean {
+        private String title;
+        private int count;
+        public Set<String> labels;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    record Unsupported(InputStream stream) {
+    }
+
+    private final JsonProvider provider = new JsonProvider();
+
+    @Test
+    public void should_write_record_as_json_object_in_component_order() throws Exception {
+        User user = new User(1, "john", 30, 1.5, true, Role.ADMIN, new Address("Beijing", null), List.of("a", "b"),
+                Map.of("x", 1), LocalDate.of(2000, 1, 2), new BigDecimal("10.25"));
+
+        assertEquals("{\"id\":1,\"name\":\"john\",\"age\":30,\"score\":1.5,\"active\":true,\"role\":\"ADMIN\","
+                + "\"address\":{\"city\":\"Beijing\",\"zip\":null},\"tags\":[\"a\",\"b\"],\"counts\":{\"x\":1},"
+                + "\"born\":\"2000-01-02\",\"balance\":10.25}", write(user, User.class));
+    }
+
+    @Test
+    public void should_read_record_through_canonical_constructor() throws Exception {
+        String json = " { \"name\" : \"john\", \"unknown\": {\"a\": [1, {\"b\": null}]}, \"id\": 1, \"age\": 30, \"score\": 1.5e0,"
+                + "\"active\": true, \"role\": \"USER\", \"address\": {\"city\": \"Beijing\"}, \"tags\": [], \"counts\": {\"x\": 2},"
+                + "\"born\": \"2000-01-02\", \"balance\": 10.25 } ";
+
+        assertEquals(new User(1, "john", 30, 1.5, true, Role.USER, new Address("Beijing", null), List.of(), Map.of("x", 2),
+                LocalDate.of(2000, 1, 2), new BigDecimal("10.25")), read(json, User.class));
+        assertEquals(new User(0, null, 0, 0, false, null, null, null, null, null, null), read("{}", User.class));
+    }
+
+    @Test
+    public void should_resolve_generic_type_arguments() throws Exception {
+        Type type = new GenericType<Page<Address>>() {
+        }.getType();
+        Page<Address> page = new Page<>(2, List.of(new Address("a", "1")));
+
+        assertEquals("{\"page\":2,\"items\":[{\"city\":\"a\",\"zip\":\"1\"}]}", write(page, type));
+        assertEquals(page, read("{\"page\":2,\"items\":[{\"city\":\"a\",\"zip\":\"1\"}]}", type));
+    }
+
+    @Test
+    public void should_support_recursive_types() throws Exception {
+        Node tree = new Node("root", List.of(new Node("leaf", List.of())));
+        String json = "{\"name\":\"root\",\"children\":[{\"name\":\"leaf\",\"children\":[]}]}";
+
+        assertEquals(json, write(tree, Node.class));
+        assertEquals(tree, read(json, Node.class));
+    }
+
+    @Test
+    public void should_map_bean_properties_and_public_fields() throws Exception {
+        Bean bean = new Bean();
+        bean.setTitle("t");
+        bean.setCount(3);
+        bean.labels = Set.of("x");
+
+        assertEquals("{\"count\":3,\"title\":\"t\",\"labels\":[\"x\"]}", write(bean, Bean.class));
+        Bean read = (Bean) read("{\"title\":\"u\",\"count\":4,\"labels\":[\"y\",\"y\"]}", Bean.class);
+        assertEquals("u", read.getTitle());
+        assertEquals(4, read.getCount());
+        assertEquals(Set.of("y"), read.labels);
+    }
+
+    @Test
+    public void should_write_runtime_type_of_untyped_values() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("address", new Address("a", null));
+        map.put("numbers", new int[]{1, 2});
+
+        assertEquals("{\"address\":{\"city\":\"a\",\"zip\":null},\"numbers\":[1,2]}", write(map, Map.class));
+        assertEquals(Map.of("a", List.of(1L, new BigDecimal("2.5"), "x", true)), read("{\"a\":[1,2.5,\"x\",true]}", Object.class));
+    }
+
+    @Test
+    public void should_escape_strings_and_encode_utf8() throws Exception {
+        String text = "quote\" slash\\ tab\t nul\u0000 中文 😀";
+
+        assertEquals("\"quote\\\" slash\\\\ tab\\t nul\\u0000 中文 😀\"", write(text, String.class));
+        assertEquals(text, read(write(text, String.class), String.class));
+        assertEquals("A😀/", read("\"\\u0041\\ud83d\\ude00\\/\"", String.class));
+    }
+
+    @Test
+    public void should_read_values_split_across_buffer_refills() throws Exception {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) values.add("value 中文 \"" + i + "\"");
+        Type type = new GenericType<List<String>>() {
+        }.getType();
+        byte[] json = write(values, type).getBytes(StandardCharsets.UTF_8);
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(json)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+
+        assertEquals(values, new JsonProvider(new BufferPool(16, 0)).readFrom(Object.class, type, ANNOTATIONS, JSON, null, trickle));
+    }
+
+    @Test
+    public void should_stream_to_output_through_bounded_buffer() throws Exception {
+        List<Integer> writes = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                fail("Single byte write");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.add(len);
+                bytes.write(b, off, len);
+            }
+        };
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) addresses.add(new Address("city " + i, "zip"));
+
+        new JsonProvider(new BufferPool(256, 0)).writeTo(addresses, List.class, List.class, ANNOTATIONS, JSON, null, out);
+
+        assertTrue(writes.size() > 1);
+        assertTrue(writes.stream().allMatch(length -> length <= 256));
+        assertEquals(addresses.size(), ((List<?>) read(bytes.toString(StandardCharsets.UTF_8), Object.class)).size());
+    }
+
+    @Test
+    public void should_only_handle_json_media_types_and_supported_types() {
+        assertTrue(provider.isWriteable(User.class, User.class, ANNOTATIONS, JSON));
+        assertTrue(provider.isReadable(User.class, User.class, ANNOTATIONS, new MediaType("application", "vnd.user+json")));
+        assertFalse(provider.isWriteable(User.class, User.class, ANNOTATIONS, MediaType.TEXT_PLAIN_TYPE));
+        assertFalse(provider.isWriteable(User.class, User.class, ANNOTATIONS, null));
+        assertFalse(provider.isWriteable(InputStream.class, InputStream.class, ANNOTATIONS, JSON));
+        assertFalse(provider.isReadable(Unsupported.class, Unsupported.class, ANNOTATIONS, JSON));
+    }
+
+    @Test
+    public void should_reject_malformed_json_as_bad_request() {
+        for (String json : List.of("{\"id\":", "{\"id\":1} x", "{\"id\":\"1\"}", "{\"age\":3000000000}", "{\"role\":\"ROOT\"}",
+                "{\"name\":\"\u0001\"}", "{\"born\":\"2000-13-01\"}", "[".repeat(JsonReader.MAX_DEPTH + 1))) {
+            WebApplicationException exception = assertThrows(WebApplicationException.class,
+                    () -> read(json, json.startsWith("[") ? Object.class : User.class), json);
+            assertEquals(400, exception.getResponse().getStatus());
+        }
+    }
+
+    private String write(Object value, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(value, JsonCodec.raw(type), type, ANNOTATIONS, JSON, null, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object read(String json, Type type) throws IOException {
+        return provider.readFrom((Class<Object>) JsonCodec.raw(type), type, ANNOTATIONS, JSON, null,
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,78 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageBodyWriterBenchmark {
+
+    record Entity(String value) {
+    }
+
+    record TypedWriter(Class<?> type, MediaType mediaType) implements MessageBodyWriter<Object> {
+        @Override
+        public boolean isWriteable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
+            return this.type.isAssignableFrom(aClass) && this.mediaType.isCompatible(mediaType);
+        }
+
+        @Override
+        public void writeTo(Object o, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> headers, OutputStream stream) throws WebApplicationException {
+        }
+    }
+
+    record ScanningProviders(List<MessageBodyWriter<?>> writers) implements Providers {
+        @Override
+        public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return null;
+        }
+
+        @Override
+        public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            for (MessageBodyWriter<?> writer : writers)
+                if (writer.isWriteable(type, genericType, annotations, mediaType)) return (MessageBodyWriter<T>) writer;
+            return null;
+        }
+
+        @Override
+        public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
+            return null;
+        }
+
+        @Override
+        public <T> ContextResolver<T> getContextResolver(Class<T> contextType, MediaType mediaType) {
+            return null;
+        }
+    }
+
+    @Test
+    public void select_writer_among_many() {
+        for (int count : new int[]{10, 100}) {
+            List<MessageBodyWriter<?>> writers = new ArrayList<>();
+            for (int i = 0; i < count - 1; i++)
+                writers.add(new TypedWriter(Number.class, new MediaType("application", "x-" + i)));
+            writers.add(new TypedWriter(Entity.class, MediaType.APPLICATION_JSON_TYPE));
+
+            Providers providers = new ScanningProviders(writers);
+            MessageBodyWriters cache = new MessageBodyWriters(providers);
+            Annotation[] annotations = new Annotation[0];
+
+            Throughput.measure("Providers.getMessageBodyWriter " + count + " writers",
+                    () -> providers.getMessageBodyWriter(Entity.class, Entity.class, annotations, MediaType.APPLICATION_JSON_TYPE));
+            Throughput.measure("MessageBodyWriters.get " + count + " writers",
+                    () -> cache.get(Entity.class, Entity.class, annotations, MediaType.APPLICATION_JSON_TYPE));
+        }
+    }
+}
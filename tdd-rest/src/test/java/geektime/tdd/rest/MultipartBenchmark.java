@@ -0,0 +1,43 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class MultipartBenchmark {
+    private static final String BOUNDARY = "----form-boundary";
+
+    @Test
+    public void parse_upload() throws IOException {
+        byte[] small = upload(16 * 1024);
+        byte[] large = upload(16 << 20);
+        Path directory = Files.createTempDirectory("multipart");
+
+        Throughput.measure("Multipart, 16 KB part in memory", () -> parse(small, directory));
+        double uploads = Throughput.measure("Multipart, 16 MB part to FileChannel", () -> parse(large, directory));
+        System.out.printf("%-56s %,16.0f MB/s%n", "Multipart, 16 MB part to FileChannel", uploads * 16);
+    }
+
+    private static void parse(byte[] body, Path directory) {
+        try (Multipart multipart = new Multipart(new ByteArrayInputStream(body), BOUNDARY, Multipart.DEFAULT_MEMORY_THRESHOLD, directory)) {
+            for (Multipart.Part part : multipart) part.getSize();
+        }
+    }
+
+    private static byte[] upload(int size) {
+        byte[] head = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[head.length + size + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        Arrays.fill(body, head.length, head.length + size, (byte) '-');
+        System.arraycopy(tail, 0, body, head.length + size, tail.length);
+        return body;
+    }
+}
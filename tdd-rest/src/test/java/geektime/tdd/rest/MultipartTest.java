@@ -0,0 +1,177 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultipartTest {
+    private static final String BOUNDARY = "----form-boundary";
+
+    @Test
+    public void should_read_parts_in_arrival_order() throws Exception {
+        Multipart multipart = multipart(body(
+                part("form-data; name=\"title\"", null, "hello"),
+                part("form-data; name=\"file\"; filename=\"a \\\"b\\\".txt\"", "text/plain", "line 1\r\nline 2")));
+
+        Iterator<Multipart.Part> parts = multipart.iterator();
+        Multipart.Part title = parts.next();
+        Multipart.Part file = parts.next();
+
+        assertFalse(parts.hasNext());
+        assertEquals("title", title.getName());
+        assertNull(title.getFileName());
+        assertEquals("hello", title.getString());
+        assertEquals("file", file.getName());
+        assertEquals("a \"b\".txt", file.getFileName());
+        assertEquals("text/plain", file.getContentType());
+        assertEquals("line 1\r\nline 2", new String(file.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        assertTrue(file.isInMemory());
+    }
+
+    @Test
+    public void should_find_boundary_split_across_reads() throws Exception {
+        String content = "x".repeat(1000) + "\r\n--" + BOUNDARY.substring(0, 5);
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(body(part("form-data; name=\"a\"", null, content),
+                part("form-data; name=\"b\"", null, "")).getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        Multipart multipart = new Multipart(trickle, BOUNDARY, Multipart.DEFAULT_MEMORY_THRESHOLD, null);
+
+        List<Multipart.Part> parts = new ArrayList<>();
+        multipart.forEach(parts::add);
+
+        assertEquals(2, parts.size());
+        assertEquals(content, parts.get(0).getString());
+        assertEquals("", parts.get(1).getString());
+    }
+
+    @Test
+    public void should_stream_large_part_to_file(@TempDir Path directory) throws Exception {
+        String content = "0123456789".repeat(1000);
+        Multipart multipart = new Multipart(stream(body(part("form-data; name=\"file\"; filename=\"big.bin\"", null, content))),
+                BOUNDARY, 1024, directory);
+
+        Multipart.Part part = multipart.iterator().next();
+        Path target = directory.resolve("saved.bin");
+
+        assertFalse(part.isInMemory());
+        assertEquals(content.length(), part.getSize());
+        assertEquals(content, part.getString());
+        assertEquals(content.length(), part.transferTo(target));
+        assertEquals(content, Files.readString(target));
+
+        multipart.close();
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(target), files.toList());
+        }
+    }
+
+    @Test
+    public void should_read_parts_lazily() {
+        String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"first\"\r\n\r\nfirst\r\n--" + BOUNDARY
+                + "\r\nContent-Disposition: form-data; name=\"second\"\r\n\r\nunterminated";
+        Iterator<Multipart.Part> parts = multipart(body).iterator();
+
+        assertEquals("first", parts.next().getName());
+        WebApplicationException exception = assertThrows(WebApplicationException.class, parts::hasNext);
+        assertEquals(400, exception.getResponse().getStatus());
+    }
+
+    @Test
+    public void should_read_multipart_form_data_with_boundary_of_media_type() {
+        MultipartReader reader = new MultipartReader();
+        MediaType form = new MediaType("multipart", "form-data", Map.of("boundary", BOUNDARY));
+
+        assertTrue(reader.isReadable(Multipart.class, Multipart.class, new Annotation[0], form));
+        assertFalse(reader.isReadable(String.class, String.class, new Annotation[0], form));
+        assertFalse(reader.isReadable(Multipart.class, Multipart.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+        Multipart multipart = reader.readFrom(Multipart.class, Multipart.class, new Annotation[0], form, null,
+                stream(body(part("form-data; name=\"a\"", null, "1"))));
+        assertEquals("a", multipart.iterator().next().getName());
+        assertEquals(400, assertThrows(WebApplicationException.class, () -> reader.readFrom(Multipart.class, Multipart.class,
+                new Annotation[0], MediaType.MULTIPART_FORM_DATA_TYPE, null, stream(""))).getResponse().getStatus());
+    }
+
+    @Test
+    public void should_upload_part_larger_than_heap_with_bounded_memory(@TempDir Path directory) throws Exception {
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx32m", "-cp", System.getProperty("java.class.path"), LargeUpload.class.getName(),
+                String.valueOf(256L << 20), directory.toString())
+                .redirectErrorStream(true).start();
+
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+        assertEquals(0, process.exitValue(), new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    static class LargeUpload {
+        public static void main(String[] args) throws Exception {
+            long size = Long.parseLong(args[0]);
+            InputStream content = new InputStream() {
+                private long remaining = size;
+
+                @Override
+                public int read() {
+                    return remaining-- > 0 ? 'x' : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (remaining <= 0) return -1;
+                    int count = (int) Math.min(len, remaining);
+                    Arrays.fill(b, off, off + count, (byte) 'x');
+                    remaining -= count;
+                    return count;
+                }
+            };
+            InputStream body = new SequenceInputStream(Collections.enumeration(List.of(
+                    stream("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"big.bin\"\r\n\r\n"),
+                    content, stream("\r\n--" + BOUNDARY + "--\r\n"))));
+
+            try (Multipart multipart = new Multipart(body, BOUNDARY, Multipart.DEFAULT_MEMORY_THRESHOLD, Path.of(args[1]))) {
+                Multipart.Part part = multipart.iterator().next();
+                if (part.getSize() != size || part.isInMemory()) System.exit(1);
+                if (size <= java.lang.Runtime.getRuntime().maxMemory()) System.exit(2);
+            }
+        }
+    }
+
+    private static Multipart multipart(String body) {
+        return new Multipart(stream(body), BOUNDARY, Multipart.DEFAULT_MEMORY_THRESHOLD, null);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String body(String... parts) {
+        return "preamble\r\n" + String.join("", parts) + "--" + BOUNDARY + "--\r\nepilogue";
+    }
+
+    private static String part(String disposition, String contentType, String content) {
+        return "--" + BOUNDARY + "\r\nContent-Disposition: " + disposition + "\r\n"
+                + (contentType == null ? "" : "Content-Type: " + contentType + "\r\n") + "\r\n" + content + "\r\n";
+    }
+}
@@ -0,0 +1,140 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OutboundResponseTest {
+
+    @AfterEach
+    public void afterEach() {
+        RuntimeDelegate.setInstance(null);
+    }
+
+    @Test
+    public void should_build_response_with_status_entity_and_headers() {
+        GenericEntity<String> entity = new GenericEntity<>("hello", String.class);
+
+        OutboundResponse response = OutboundResponse.builder().status(Response.Status.CREATED).entity(entity)
+                .type(MediaType.TEXT_PLAIN_TYPE).header(HttpHeaders.ETAG, "\"v1\"")
+                .header("X-Trace", "a").header("X-Trace", "b").build();
+
+        assertEquals(201, response.getStatus());
+        assertSame(entity, response.getGenericEntity());
+        assertEquals("hello", response.getEntity());
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getMediaType());
+        assertEquals("\"v1\"", response.getHeaderString(HttpHeaders.ETAG));
+        assertEquals(List.of("a", "b"), response.getHeaders().get("X-Trace"));
+        assertEquals("a", response.getHeaders().getFirst("x-trace"));
+        assertEquals(0, response.getAnnotations().length);
+    }
+
+    @Test
+    public void should_default_status_by_entity_presence() {
+        assertEquals(204, OutboundResponse.builder().build().getStatus());
+        assertEquals(200, OutboundResponse.builder().entity("hello").build().getStatus());
+        assertEquals(String.class, OutboundResponse.builder().entity("hello").build().getGenericEntity().getRawType());
+    }
+
+    @Test
+    public void should_replace_and_remove_headers() {
+        OutboundResponse response = OutboundResponse.builder().header("X-Trace", "a").header("X-Other", "b")
+                .header("X-Trace", "c").type(MediaType.TEXT_PLAIN).type(MediaType.APPLICATION_JSON_TYPE)
+                .header("X-Other", null).build();
+
+        MultivaluedMap<String, Object> headers = response.getHeaders();
+        assertEquals(List.of(MediaType.APPLICATION_JSON_TYPE), headers.get(HttpHeaders.CONTENT_TYPE));
+        assertFalse(headers.containsKey("X-Other"));
+
+        headers.putSingle("X-Trace", "d");
+        headers.add("X-Other", 1);
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) names.add(header.getKey());
+        assertEquals(List.of(HttpHeaders.CONTENT_TYPE, "X-Trace", "X-Other"), names);
+        assertEquals(List.of("d"), headers.get("X-Trace"));
+        assertEquals("1", response.getHeaderString("X-Other"));
+    }
+
+    @Test
+    public void should_not_share_headers_between_built_responses() {
+        OutboundResponseBuilder builder = OutboundResponse.builder().header("X-Trace", "a");
+        OutboundResponse first = builder.build();
+        OutboundResponse second = builder.header("X-Trace", "b").build();
+
+        assertEquals(List.of("a"), first.getHeaders().get("X-Trace"));
+        assertEquals(List.of("a", "b"), second.getHeaders().get("X-Trace"));
+    }
+
+    @Test
+    public void should_parse_allowed_methods() {
+        OutboundResponse response = OutboundResponse.builder().allow(HttpMethod.GET, HttpMethod.OPTIONS).build();
+
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.OPTIONS), response.getAllowedMethods());
+    }
+
+    @Test
+    public void should_share_immutable_common_responses() {
+        assertEquals(204, OutboundResponse.NO_CONTENT.getStatus());
+        assertEquals(404, OutboundResponse.NOT_FOUND.getStatus());
+        assertNull(OutboundResponse.NOT_FOUND.getGenericEntity());
+        assertThrows(UnsupportedOperationException.class, () -> OutboundResponse.NO_CONTENT.getHeaders().add("X-Trace", "a"));
+        assertTrue(OutboundResponse.NO_CONTENT.getHeaders().isEmpty());
+    }
+
+    @Test
+    public void should_filter_copy_of_shared_response_headers() {
+        FilteredResponse filtered = new FilteredResponse(OutboundResponse.NOT_FOUND, null, new WriterInterceptor[0]);
+
+        filtered.getHeaders().add("X-Trace", "a");
+
+        assertEquals(new MultivaluedHashMap<>(Map.of("X-Trace", "a")), filtered.getHeaders());
+        assertTrue(OutboundResponse.NOT_FOUND.getHeaders().isEmpty());
+    }
+
+    @Test
+    public void should_parse_string_headers_with_runtime_header_delegates() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.HeaderDelegate<EntityTag> entityTags = mock(RuntimeDelegate.HeaderDelegate.class);
+        RuntimeDelegate.HeaderDelegate<NewCookie> cookies = mock(RuntimeDelegate.HeaderDelegate.class);
+        when(delegate.createHeaderDelegate(EntityTag.class)).thenReturn(entityTags);
+        when(delegate.createHeaderDelegate(NewCookie.class)).thenReturn(cookies);
+        RuntimeDelegate.setInstance(delegate);
+        EntityTag entityTag = new EntityTag("v1");
+        NewCookie session = new NewCookie.Builder("SESSION").value("1").build();
+        when(entityTags.fromString("\"v1\"")).thenReturn(entityTag);
+        when(cookies.fromString("SESSION=1")).thenReturn(session);
+
+        OutboundResponse response = OutboundResponse.builder().header(HttpHeaders.ETAG, "\"v1\"")
+                .header(HttpHeaders.SET_COOKIE, "SESSION=1").build();
+
+        assertSame(entityTag, response.getEntityTag());
+        assertSame(session, response.getCookies().get("SESSION"));
+    }
+
+    @Test
+    public void should_keep_unknown_status_code() {
+        OutboundResponse response = OutboundResponse.builder().status(299, "Custom").build();
+
+        assertEquals(299, response.getStatus());
+        assertEquals("Custom", response.getStatusInfo().getReasonPhrase());
+        assertEquals(Response.Status.Family.SUCCESSFUL, response.getStatusInfo().getFamily());
+    }
+}
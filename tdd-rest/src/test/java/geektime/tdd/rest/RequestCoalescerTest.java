@@ -0,0 +1,95 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RequestCoalescerTest {
+    private final RequestCoalescer coalescer = new RequestCoalescer(50, TimeUnit.MILLISECONDS)
+            .route("/users/{id}", "Accept");
+
+    @BeforeEach
+    public void before() {
+        RuntimeDelegate.setInstance(null);
+    }
+
+    @Test
+    public void should_key_requests_on_method_path_query_and_selected_headers() {
+        assertEquals("GET /users/1?fields=name\napplication/json", coalescer.key(request("GET", "/users/1", "fields=name", "application/json")));
+        assertEquals("HEAD /users/1\nnull", coalescer.key(request("HEAD", "/users/1", null, null)));
+    }
+
+    @Test
+    public void should_key_credentialed_requests_per_credential() {
+        HttpServletRequest alice = request("GET", "/users/1", null, null);
+        when(alice.getHeader("Authorization")).thenReturn("Bearer alice");
+        HttpServletRequest bob = request("GET", "/users/1", null, null);
+        when(bob.getHeader("Cookie")).thenReturn("session=bob");
+
+        assertEquals("GET /users/1\nnull\nAuthorization: Bearer alice", coalescer.key(alice));
+        assertEquals("GET /users/1\nnull\nCookie: session=bob", coalescer.key(bob));
+    }
+
+    @Test
+    public void should_not_coalesce_unsafe_methods_or_other_routes() {
+        assertNull(coalescer.key(request("POST", "/users/1", null, null)));
+        assertNull(coalescer.key(request("GET", "/users/1/orders", null, null)));
+        assertNull(coalescer.key(request("GET", "/orders", null, null)));
+    }
+
+    @Test
+    public void should_share_result_of_leading_flight() throws Throwable {
+        CompletableFuture<ResponseCache.Cached> leader = new CompletableFuture<>();
+        assertNull(coalescer.join("key", leader));
+        CompletableFuture<ResponseCache.Cached> leading = coalescer.join("key", new CompletableFuture<>());
+        assertSame(leader, leading);
+
+        ResponseCache.Cached shared = ResponseCache.snapshot(200, Map.of("Content-Type", List.of("text/plain")), "users".getBytes(), true);
+        coalescer.land("key", leader, shared, null);
+
+        assertSame(shared, coalescer.await(leading));
+        assertNull(coalescer.join("key", new CompletableFuture<>()));
+        assertEquals(2, coalescer.getInvocations());
+        assertEquals(1, coalescer.getCoalesced());
+    }
+
+    @Test
+    public void should_propagate_error_of_leading_flight() {
+        CompletableFuture<ResponseCache.Cached> leader = new CompletableFuture<>();
+        coalescer.join("key", leader);
+        IllegalStateException error = new IllegalStateException();
+        coalescer.land("key", leader, null, error);
+
+        assertSame(error, assertThrows(IllegalStateException.class, () -> coalescer.await(leader)));
+        assertEquals(1, coalescer.getFailures());
+    }
+
+    @Test
+    public void should_give_up_waiting_after_timeout() {
+        CompletableFuture<ResponseCache.Cached> leader = new CompletableFuture<>();
+        coalescer.join("key", leader);
+
+        ServiceUnavailableException exception = assertThrows(ServiceUnavailableException.class, () -> coalescer.await(leader));
+        assertEquals(503, exception.getResponse().getStatus());
+        assertEquals(1, coalescer.getTimeouts());
+    }
+
+    private static HttpServletRequest request(String method, String path, String query, String accept) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getServletPath()).thenReturn(path);
+        when(request.getQueryString()).thenReturn(query);
+        when(request.getHeader("Accept")).thenReturn(accept);
+        return request;
+    }
+}
@@ -0,0 +1,118 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+public class RequestEntityBenchmark {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+    private static final MediaType JSON = MediaType.APPLICATION_JSON_TYPE;
+
+    @Test
+    public void reader_selection() {
+        List<MessageBodyReader<?>> registered = new ArrayList<>();
+        for (int i = 0; i < 8; i++) registered.add(reader(i == 7 ? JSON : new MediaType("application", "x-" + i)));
+        Providers providers = new ScanningProviders(registered);
+        MessageBodyReaders readers = new MessageBodyReaders(String.class, String.class, ANNOTATIONS);
+
+        Throughput.measure("Providers.getMessageBodyReader, 8 readers", () -> providers.getMessageBodyReader(String.class, String.class, ANNOTATIONS, JSON));
+        Throughput.measure("MessageBodyReaders.get, cached", () -> readers.get(providers, JSON));
+    }
+
+    @Test
+    public void streamed_upload() throws Exception {
+        Runtime runtime = mock(Runtime.class, withSettings().stubOnly());
+        when(runtime.getResourceRouter()).thenReturn((request, context) -> {
+            drain(request);
+            return OutboundResponse.NO_CONTENT;
+        });
+        Server server = new Server(0);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        handler.addServlet(new ServletHolder(new ResourceServlet(runtime, new ResourceServlet.Options().requestEntity(new RequestEntity(1 << 20)))), "/");
+        server.setHandler(handler);
+        server.start();
+        try {
+            URI uri = URI.create("http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/upload");
+            HttpClient client = HttpClient.newHttpClient();
+            byte[] accepted = new byte[512 * 1024];
+            byte[] rejected = new byte[8 << 20];
+            Throughput.requests("POST 512 KB, streamed under 1 MB limit", 8, client,
+                    HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(accepted)).build());
+            Throughput.requests("POST 8 MB, rejected by Content-Length", 8, client,
+                    HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(rejected)).build());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void drain(HttpServletRequest request) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = request.getInputStream()) {
+            while (in.read(buffer) >= 0) ;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record ScanningProviders(List<MessageBodyReader<?>> readers) implements Providers {
+        @Override
+        public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            for (MessageBodyReader<?> reader : readers)
+                if (reader.isReadable(type, genericType, annotations, mediaType)) return (MessageBodyReader<T>) reader;
+            return null;
+        }
+
+        @Override
+        public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return null;
+        }
+
+        @Override
+        public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
+            return null;
+        }
+
+        @Override
+        public <T> ContextResolver<T> getContextResolver(Class<T> contextType, MediaType mediaType) {
+            return null;
+        }
+    }
+
+    private static MessageBodyReader<Object> reader(MediaType mediaType) {
+        return new MessageBodyReader<>() {
+            @Override
+            public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType requested) {
+                return mediaType.isCompatible(requested);
+            }
+
+            @Override
+            public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                   MultivaluedMap<String, String> headers, InputStream entityStream) {
+                return null;
+            }
+        };
+    }
+}
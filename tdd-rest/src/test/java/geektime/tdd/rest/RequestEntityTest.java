@@ -0,0 +1,145 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RequestEntityTest {
+
+    @Test
+    public void should_not_wrap_request_without_entity() {
+        RequestEntity entity = new RequestEntity(10);
+
+        HttpServletRequest get = request("GET", -1, "");
+        assertSame(get, entity.wrap(get));
+        HttpServletRequest empty = request("POST", 0, "");
+        assertSame(empty, entity.wrap(empty));
+        assertInstanceOf(RequestEntity.EntityRequest.class, entity.wrap(request("POST", -1, "hello")));
+    }
+
+    @Test
+    public void should_reject_declared_length_over_limit() {
+        RequestEntity entity = new RequestEntity(4);
+
+        assertTrue(entity.exceeds(request("POST", 5, "hello")));
+        assertFalse(entity.exceeds(request("POST", 4, "hell")));
+        assertFalse(entity.exceeds(request("POST", -1, "hello")));
+    }
+
+    @Test
+    public void should_fail_streaming_entity_once_limit_exceeded() throws Exception {
+        HttpServletRequest request = new RequestEntity(4).wrap(request("POST", -1, "hello"));
+        InputStream in = request.getInputStream();
+
+        assertEquals("hell", new String(in.readNBytes(4), StandardCharsets.UTF_8));
+        IOException exception = assertThrows(IOException.class, in::read);
+
+        assertTrue(RequestEntity.tooLarge(exception));
+        assertTrue(RequestEntity.tooLarge(new UncheckedIOException(exception)));
+        assertFalse(RequestEntity.tooLarge(new IOException()));
+    }
+
+    @Test
+    public void should_replay_entity_read_by_filter_from_memory() throws Exception {
+        RequestEntity.EntityRequest request = (RequestEntity.EntityRequest) new RequestEntity(100).wrap(request("POST", 5, "hello"));
+
+        assertEquals("he", new String(request.buffered().readNBytes(2), StandardCharsets.UTF_8));
+        assertEquals("hello", new String(request.buffered().readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals("hello", new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void should_spill_buffered_entity_over_memory_threshold_to_disk(@TempDir Path directory) throws Exception {
+        String body = "0123456789".repeat(10);
+        RequestEntity.EntityBuffer buffer = new RequestEntity.EntityBuffer(input(body.getBytes(StandardCharsets.UTF_8)), 16, directory);
+
+        assertEquals("0123456789", new String(buffer.open().readNBytes(10), StandardCharsets.UTF_8));
+        assertFalse(buffer.isSpilled());
+        assertEquals(body, new String(buffer.open().readAllBytes(), StandardCharsets.UTF_8));
+        assertTrue(buffer.isSpilled());
+        assertEquals(100, buffer.size());
+        assertEquals(body, new String(buffer.open().readAllBytes(), StandardCharsets.UTF_8));
+
+        buffer.close();
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void should_cache_message_body_reader_per_media_type() {
+        Providers providers = mock(Providers.class);
+        MessageBodyReader reader = mock(MessageBodyReader.class);
+        when(providers.getMessageBodyReader(eq(String.class), eq(String.class), any(), any())).thenReturn(reader);
+        MessageBodyReaders readers = new MessageBodyReaders(String.class, String.class, new Annotation[0]);
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(reader, readers.get(providers, MediaType.TEXT_PLAIN_TYPE));
+            assertSame(reader, readers.get(providers, null));
+        }
+
+        verify(providers, times(1)).getMessageBodyReader(any(), any(), any(), eq(MediaType.TEXT_PLAIN_TYPE));
+        verify(providers, times(1)).getMessageBodyReader(any(), any(), any(), isNull());
+        Providers replaced = mock(Providers.class);
+        assertNull(readers.get(replaced, MediaType.TEXT_PLAIN_TYPE));
+    }
+
+    static HttpServletRequest request(String method, long length, String body) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getContentLengthLong()).thenReturn(length);
+        try {
+            when(request.getInputStream()).thenReturn(input(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return request;
+    }
+
+    static ServletInputStream input(byte[] bytes) {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        };
+    }
+}
@@ -88,6 +88,14 @@ public class ResourceDispatchTest {
         assertEquals(404,response.getStatus());
     }
 
+    @Test
+    public void should_not_create_uri_info_builder_if_no_root_resource_matched(){
+        ResourceRouter router = new DefaultResourceRouter(runtime,List.of(rootResource(unmatched("/users/1"))));
+
+        router.dispatch(request,context);
+        verify(runtime, never()).createUriInfoBuilder(any());
+    }
+
     @Test
     public void should_return_404_if_no_method_matched(){
         ResourceRouter.RootResource unmatched = rootResource(matched("/users/1", result("/1",2)));
@@ -110,6 +118,16 @@ public class ResourceDispatchTest {
         assertEquals(204,response.getStatus());
     }
 
+    @Test
+    public void should_use_response_returned_by_resource_method(){
+        OutboundResponse allowed = mock(OutboundResponse.class);
+        ResourceRouter.RootResource matched = rootResource(matched("/users/1", result("/1")), returns(new GenericEntity<>(allowed, Response.class)));
+
+        ResourceRouter router = new DefaultResourceRouter(runtime,List.of(matched));
+
+        assertSame(allowed, router.dispatch(request,context));
+    }
+
     private static ResourceRouter.RootResource rootResource(UriTemplate uriTemplate) {
         ResourceRouter.RootResource unmatched = mock(ResourceRouter.RootResource.class);
         when(unmatched.getUriTemplate()).thenReturn(uriTemplate);
@@ -136,7 +154,7 @@ public class ResourceDispatchTest {
         return matched;
     }
 
-    private ResourceRouter.ResourceMethod returns(GenericEntity<String> entity) {
+    private ResourceRouter.ResourceMethod returns(GenericEntity<?> entity) {
         ResourceRouter.ResourceMethod method = mock(ResourceRouter.ResourceMethod.class);
         when(method.call(same(context), same(builder))).thenReturn(entity);
         return method;
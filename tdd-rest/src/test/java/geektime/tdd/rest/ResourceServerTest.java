@@ -0,0 +1,179 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ResourceServerTest {
+    private static final String PASSWORD = "changeit";
+
+    @ParameterizedTest
+    @CsvSource({"POOLED,false", "VIRTUAL,true"})
+    public void should_dispatch_request_in_selected_execution_mode(ResourceServer.Execution execution, boolean virtual) throws Exception {
+        OutboundResponse response = mock(OutboundResponse.class);
+        when(response.getStatus()).thenReturn(Response.Status.NO_CONTENT.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        ResourceRouter router = mock(ResourceRouter.class);
+        when(router.dispatch(any(), any())).then(invocation -> {
+            thread.set(Thread.currentThread());
+            return response;
+        });
+        Runtime runtime = mock(Runtime.class);
+        when(runtime.getProviders()).thenReturn(mock(Providers.class));
+        when(runtime.getResourceRouter()).thenReturn(router);
+
+        ResourceServer server = new ResourceServer(runtime, 0, execution);
+        server.start();
+        try {
+            HttpResponse<String> httpResponse = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/test")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(Response.Status.NO_CONTENT.getStatusCode(), httpResponse.statusCode());
+            assertEquals(virtual, thread.get().isVirtual());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void should_upgrade_cleartext_connection_to_http2() throws Exception {
+        ResourceServer server = new ResourceServer(runtime(), 0, ResourceServer.Execution.VIRTUAL);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+            URI base = URI.create("http://localhost:" + server.getPort());
+
+            HttpResponse<String> upgraded = client.send(HttpRequest.newBuilder(base.resolve("/streaming")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(HttpClient.Version.HTTP_2, upgraded.version());
+            assertEquals("streaming", upgraded.body());
+            assertMultiplexed(client, base);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void should_negotiate_http2_over_tls_with_alpn(@TempDir Path directory) throws Exception {
+        Path keyStore = keyStore(directory);
+        ResourceServer server = new ResourceServer(runtime(), 0, ResourceServer.Execution.VIRTUAL,
+                ResourceServer.DEFAULT_MAX_THREADS, new ResourceServer.Tls(0, keyStore, PASSWORD));
+        server.start();
+        try {
+            URI base = URI.create("https://localhost:" + server.getSecurePort());
+            HttpClient http2 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).sslContext(trusting(keyStore)).build();
+            HttpClient http1 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).sslContext(trusting(keyStore)).build();
+
+            HttpResponse<String> negotiated = http1.send(HttpRequest.newBuilder(base.resolve("/streaming")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(HttpClient.Version.HTTP_1_1, negotiated.version());
+            assertEquals("streaming", negotiated.body());
+            assertMultiplexed(http2, base);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void assertMultiplexed(HttpClient client, URI base) {
+        List<CompletableFuture<HttpResponse<String>>> responses = IntStream.range(0, 50)
+                .mapToObj(i -> client.sendAsync(HttpRequest.newBuilder(base.resolve(i % 2 == 0 ? "/streaming" : "/async")).build(),
+                        HttpResponse.BodyHandlers.ofString()))
+                .toList();
+
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).join();
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals(Response.Status.OK.getStatusCode(), response.statusCode());
+            assertEquals(i % 2 == 0 ? "streaming" : "async", response.body());
+        }
+    }
+
+    static Runtime runtime() {
+        ResourceRouter router = mock(ResourceRouter.class, withSettings().stubOnly());
+        when(router.dispatch(any(), any())).then(invocation -> {
+            HttpServletRequest request = invocation.getArgument(0);
+            if (!request.getRequestURI().equals("/async")) return streaming("streaming");
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS).execute(() -> future.complete(streaming("async")));
+            return response(new GenericEntity<>(future, CompletionStage.class));
+        });
+        Runtime runtime = mock(Runtime.class, withSettings().stubOnly());
+        when(runtime.getProviders()).thenReturn(mock(Providers.class, withSettings().stubOnly()));
+        when(runtime.getResourceRouter()).thenReturn(router);
+        return runtime;
+    }
+
+    private static OutboundResponse streaming(String body) {
+        StreamingOutput output = out -> out.write(body.getBytes());
+        return response(new GenericEntity<>(output, StreamingOutput.class));
+    }
+
+    private static OutboundResponse response(GenericEntity<?> entity) {
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(Response.Status.OK.getStatusCode());
+        when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
+        when(response.getGenericEntity()).thenReturn(entity);
+        when(response.getAnnotations()).thenReturn(new Annotation[0]);
+        when(response.getMediaType()).thenReturn(MediaType.TEXT_PLAIN_TYPE);
+        return response;
+    }
+
+    static Path keyStore(Path directory) throws Exception {
+        Path keyStore = directory.resolve("server.p12");
+        Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "server", "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-storetype", "PKCS12",
+                "-keystore", keyStore.toString(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true).start();
+        String output = new String(keytool.getInputStream().readAllBytes());
+        assertEquals(0, keytool.waitFor(), output);
+        return keyStore;
+    }
+
+    static SSLContext trusting(Path keyStore) throws Exception {
+        KeyStore trusted = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore)) {
+            trusted.load(in, PASSWORD.toCharArray());
+        }
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(trusted);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trust.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -1,18 +1,31 @@
 package geektime.tdd.rest;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.*;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Providers;
 import jakarta.ws.rs.ext.RuntimeDelegate;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -20,7 +33,16 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -127,6 +149,503 @@ public class ResourceServletTest extends ServletTest {
             assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
         }
 
+        @Test
+        public void should_not_call_message_body_writer_for_head_request() {
+            response().entity(new GenericEntity<Object>("entity", String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = head("/test");
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_select_message_body_writer_once_for_same_entity_type() {
+            OutBoundBuilder builder = response();
+            builder.returnFrom(router);
+
+            get("/test");
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("entity", httpResponse.body());
+            verify(providers, times(1)).getMessageBodyWriter(eq(String.class), eq(String.class), same(builder.annotations), eq(builder.mediaType));
+        }
+
+        @Test
+        public void should_select_message_body_writer_again_if_providers_changed() {
+            response().returnFrom(router);
+            get("/test");
+
+            Providers changed = mock(Providers.class);
+            when(runtime.getProviders()).thenReturn(changed);
+            providers = changed;
+            response().returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+            assertEquals("entity", httpResponse.body());
+            verify(changed).getMessageBodyWriter(eq(String.class), eq(String.class), any(), any());
+        }
+
+        @Test
+        public void should_write_string_and_numeric_headers_without_header_delegate() {
+            response().headers("X-Constant", "constant").headers("X-Count", 3).returnFrom(router);
+
+            get("/test");
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("constant", httpResponse.headers().firstValue("X-Constant").get());
+            assertEquals("3", httpResponse.headers().firstValue("X-Count").get());
+            verify(delegate, never()).createHeaderDelegate(any());
+        }
+
+        @Test
+        public void should_create_header_delegate_once_per_value_class() {
+            response().headers(testHeader()).returnFrom(router);
+
+            get("/test");
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertArrayEquals(new String[]{"SESSION_ID=session", "USER_ID=user"},
+                    httpResponse.headers().allValues("Set-Cookie").toArray(String[]::new));
+            verify(delegate, times(1)).createHeaderDelegate(eq(NewCookie.class));
+        }
+
+        @Test
+        public void should_resolve_exception_mapper_once_per_exception_class() {
+            when(router.dispatch(any(), eq(resourceContext))).thenThrow(IllegalStateException.class);
+            when(providers.getExceptionMapper(eq(IllegalStateException.class))).thenReturn(ex -> response().status(Response.Status.SERVICE_UNAVAILABLE).build());
+
+            get("/test");
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), httpResponse.statusCode());
+            verify(providers, times(1)).getExceptionMapper(eq(IllegalStateException.class));
+        }
+
+        @Test
+        public void should_write_streaming_output_without_message_body_writer() {
+            StreamingOutput output = out -> out.write("streamed".getBytes());
+            response().entity(new GenericEntity<>(output, StreamingOutput.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("streamed", httpResponse.body());
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_write_stream_entity_element_by_element_and_close_stream() {
+            AtomicBoolean closed = new AtomicBoolean();
+            Stream<String> stream = Stream.of("a", "b", "c").onClose(() -> closed.set(true));
+            OutBoundBuilder builder = response();
+            builder.entity(new GenericEntity<>(stream, Stream.class), builder.annotations).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("abc", httpResponse.body());
+            assertTrue(closed.get());
+            verify(providers, times(1)).getMessageBodyWriter(eq(String.class), eq(String.class), any(), any());
+        }
+
+        @Test
+        public void should_send_file_entity_with_content_length() throws Exception {
+            Path file = file("0123456789");
+            response().entity(new GenericEntity<>(file, Path.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("0123456789", httpResponse.body());
+            assertEquals("10", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            assertEquals("bytes", httpResponse.headers().firstValue("Accept-Ranges").get());
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_send_partial_content_for_range_request() throws Exception {
+            File file = file("0123456789").toFile();
+            response().entity(new GenericEntity<>(file, File.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test", "Range", "bytes=2-5");
+
+            assertEquals(Response.Status.PARTIAL_CONTENT.getStatusCode(), httpResponse.statusCode());
+            assertEquals("2345", httpResponse.body());
+            assertEquals("bytes 2-5/10", httpResponse.headers().firstValue("Content-Range").get());
+        }
+
+        @Test
+        public void should_respond_416_if_range_not_satisfiable() throws Exception {
+            FileChannel channel = FileChannel.open(file("0123456789"));
+            response().entity(new GenericEntity<>(channel, FileChannel.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test", "Range", "bytes=20-");
+
+            assertEquals(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), httpResponse.statusCode());
+            assertEquals("bytes */10", httpResponse.headers().firstValue("Content-Range").get());
+            assertFalse(channel.isOpen());
+        }
+
+        @Test
+        public void should_respond_not_modified_without_writing_entity_if_entity_tag_matches() {
+            response().headers(HttpHeaders.ETAG, "\"v1\"").returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test", "If-None-Match", "W/\"v0\", \"v1\"");
+
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+            assertEquals("\"v1\"", httpResponse.headers().firstValue(HttpHeaders.ETAG).get());
+            assertEquals("", httpResponse.body());
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_respond_not_modified_if_not_modified_since() {
+            response().headers(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT").returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test", "If-Modified-Since", "Thu, 22 Oct 2015 07:28:00 GMT");
+
+            assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
+            verify(providers, never()).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_write_entity_if_entity_tag_not_match() {
+            response().headers(HttpHeaders.ETAG, "\"v2\"").returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test", "If-None-Match", "\"v1\"");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        public void should_hash_strong_entity_tag_from_serialized_entity() throws Exception {
+            response().returnFrom(router);
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().hashEntityTags(true));
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            HttpServletResponse first = servletResponse(body);
+            servlet.service(servletRequest(null), first);
+            ArgumentCaptor<String> entityTag = ArgumentCaptor.forClass(String.class);
+            verify(first).setHeader(eq(HttpHeaders.ETAG), entityTag.capture());
+            assertEquals("entity", body.toString());
+            assertTrue(entityTag.getValue().matches("\"[\\w-]{22}\""));
+
+            body.reset();
+            HttpServletResponse second = servletResponse(body);
+            servlet.service(servletRequest(entityTag.getValue()), second);
+            verify(second).setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+            assertEquals("", body.toString());
+        }
+
+        @Test
+        public void should_serve_cached_response_without_dispatching() throws Exception {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().cache(new ResponseCache(1 << 20)));
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            servlet.service(servletRequest(null), servletResponse(body));
+            body.reset();
+            HttpServletResponse cached = servletResponse(body);
+            servlet.service(servletRequest(null), cached);
+
+            assertEquals("entity", body.toString());
+            verify(cached).setHeader(ResponseCache.AGE, "0");
+            verify(router, times(1)).dispatch(any(), any());
+            verify(providers, times(1)).getMessageBodyWriter(any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_run_global_request_filters_before_serving_cached_response() throws Exception {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+            List<String> calls = new ArrayList<>();
+            ContainerRequestFilter global = request -> calls.add("filtered");
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options()
+                    .cache(new ResponseCache(1 << 20)).filters(new Filters(List.of(global))));
+
+            service(servlet, new ByteArrayOutputStream());
+            service(servlet, new ByteArrayOutputStream());
+
+            assertEquals(List.of("filtered", "filtered"), calls);
+            verify(router, times(1)).dispatch(any(), any());
+        }
+
+        @Test
+        public void should_not_serve_cached_response_if_global_request_filter_aborted() throws Exception {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+            OutboundResponse forbidden = response().status(Response.Status.FORBIDDEN).build();
+            AtomicBoolean abort = new AtomicBoolean();
+            ContainerRequestFilter global = request -> {
+                if (abort.get()) request.abortWith(forbidden);
+            };
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options()
+                    .cache(new ResponseCache(1 << 20)).filters(new Filters(List.of(global))));
+
+            service(servlet, new ByteArrayOutputStream());
+            abort.set(true);
+            HttpServletResponse aborted = servletResponse(new ByteArrayOutputStream());
+            servlet.service(servletRequest(null), aborted);
+
+            verify(aborted).setStatus(Response.Status.FORBIDDEN.getStatusCode());
+            verify(aborted, never()).setHeader(eq(ResponseCache.AGE), any());
+        }
+
+        @Test
+        public void should_not_cache_response_of_method_with_name_bound_request_filters() throws Exception {
+            response().headers(HttpHeaders.CACHE_CONTROL, "max-age=60").returnFrom(router);
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().cache(new ResponseCache(1 << 20)));
+
+            for (int i = 0; i < 2; i++) {
+                HttpServletRequest request = servletRequest(null);
+                when(request.getAttribute(Filters.BOUND)).thenReturn(Boolean.TRUE);
+                servlet.service(request, servletResponse(new ByteArrayOutputStream()));
+            }
+
+            verify(router, times(2)).dispatch(any(), any());
+        }
+
+        @Test
+        public void should_share_one_invocation_between_concurrent_identical_requests() throws Exception {
+            CountDownLatch dispatching = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            OutboundResponse response = response().build();
+            when(router.dispatch(any(), eq(resourceContext))).then(invocation -> {
+                dispatching.countDown();
+                release.await();
+                return response;
+            });
+            RequestCoalescer coalescer = new RequestCoalescer(5, TimeUnit.SECONDS).route("/test");
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().coalescer(coalescer));
+
+            ByteArrayOutputStream leader = new ByteArrayOutputStream();
+            ByteArrayOutputStream follower = new ByteArrayOutputStream();
+            Thread leading = new Thread(() -> service(servlet, leader));
+            leading.start();
+            dispatching.await();
+            Thread following = new Thread(() -> service(servlet, follower));
+            following.start();
+            while (following.getState() != Thread.State.TIMED_WAITING) Thread.onSpinWait();
+            release.countDown();
+            leading.join();
+            following.join();
+
+            assertEquals("entity", leader.toString());
+            assertEquals("entity", follower.toString());
+            verify(router, times(1)).dispatch(any(), any());
+            assertEquals(1, coalescer.getCoalesced());
+        }
+
+        @Test
+        public void should_reject_entity_over_limit_before_dispatching() throws Exception {
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().requestEntity(new RequestEntity(4)));
+            HttpServletRequest request = RequestEntityTest.request("POST", 5, "hello");
+            HttpServletResponse response = servletResponse(new ByteArrayOutputStream());
+
+            servlet.service(request, response);
+
+            verify(response).setStatus(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+            verify(router, never()).dispatch(any(), any());
+        }
+
+        @Test
+        public void should_reject_streamed_entity_once_limit_exceeded() throws Exception {
+            when(router.dispatch(any(), eq(resourceContext))).then(invocation -> {
+                try {
+                    invocation.<HttpServletRequest>getArgument(0).getInputStream().readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return response().build();
+            });
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options().requestEntity(new RequestEntity(4)));
+            HttpServletResponse response = servletResponse(new ByteArrayOutputStream());
+
+            servlet.service(RequestEntityTest.request("POST", -1, "hello"), response);
+
+            verify(response).setStatus(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+        }
+
+        @Test
+        public void should_release_request_entity_once_suspended_response_completes() throws Exception {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            AutoCloseable upload = mock(AutoCloseable.class);
+            OutboundResponse suspended = response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).build();
+            when(router.dispatch(any(), eq(resourceContext))).then(invocation -> {
+                invocation.<RequestEntity.EntityRequest>getArgument(0).closeAfter(upload);
+                return suspended;
+            });
+            HttpServletRequest request = RequestEntityTest.request("POST", 5, "hello");
+            AsyncContext async = mock(AsyncContext.class);
+            when(request.startAsync()).thenReturn(async);
+            ResourceServlet servlet = new ResourceServlet(runtime);
+
+            servlet.service(request, servletResponse(new ByteArrayOutputStream()));
+            verify(upload, never()).close();
+
+            ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+            verify(async).addListener(listener.capture());
+            future.complete(null);
+            listener.getValue().onComplete(new AsyncEvent(async));
+            verify(upload).close();
+        }
+
+        @Test
+        public void should_write_response_when_completion_stage_completes() {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            OutboundResponse completed = response().status(Response.Status.CREATED).build();
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> future.complete(completed));
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.CREATED.getStatusCode(), httpResponse.statusCode());
+            assertEquals("entity", httpResponse.body());
+        }
+
+        @Test
+        public void should_map_exception_if_completion_stage_failed() {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            response().entity(new GenericEntity<>(future, CompletionStage.class), new Annotation[0]).returnFrom(router);
+            when(providers.getExceptionMapper(eq(IllegalStateException.class))).thenReturn(ex -> response().status(Response.Status.FORBIDDEN).build());
+
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> future.completeExceptionally(new IllegalStateException()));
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        public void should_call_timeout_handler_of_suspended_response() {
+            SuspendedResponse suspended = new SuspendedResponse();
+            OutboundResponse timedOut = response().status(Response.Status.ACCEPTED).build();
+            response().entity(new GenericEntity<>(suspended, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            suspended.setTimeoutHandler(asyncResponse -> asyncResponse.resume(timedOut));
+            suspended.setTimeout(50, TimeUnit.MILLISECONDS);
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.ACCEPTED.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        public void should_respond_service_unavailable_if_suspended_response_timed_out_without_runtime_delegate() {
+            RuntimeDelegate.setInstance(null);
+            SuspendedResponse suspended = new SuspendedResponse();
+            response().entity(new GenericEntity<>(suspended, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            suspended.setTimeout(50, TimeUnit.MILLISECONDS);
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        public void should_respond_service_unavailable_if_suspended_response_cancelled_without_runtime_delegate() {
+            RuntimeDelegate.setInstance(null);
+            SuspendedResponse suspended = new SuspendedResponse();
+            response().entity(new GenericEntity<>(suspended, CompletionStage.class), new Annotation[0]).returnFrom(router);
+
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> suspended.cancel(120));
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), httpResponse.statusCode());
+            assertEquals("120", httpResponse.headers().firstValue(HttpHeaders.RETRY_AFTER).get());
+        }
+
+        @Test
+        public void should_stream_events_sent_to_event_sink() {
+            EventSink sink = new EventSink(providers);
+            response().entity(new GenericEntity<>(sink, SseEventSink.class), new Annotation[0]).returnFrom(router);
+            ServerSentEvents sse = new ServerSentEvents(providers);
+
+            sink.send(sse.newEvent("greeting", "hello"));
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> {
+                sink.send(sse.newEventBuilder().id("2").data("world").build());
+                sink.close();
+            });
+            HttpResponse<String> httpResponse = get("/events");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals(MediaType.SERVER_SENT_EVENTS, httpResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE).get());
+            assertEquals("event: greeting\ndata: hello\n\nid: 2\ndata: world\n\n", httpResponse.body());
+        }
+
+        record Point(int x, String label) {
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        public void should_negotiate_binary_media_type_when_accepted() throws Exception {
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(OutboundResponse.of(new GenericEntity<>(new Point(3, "ok"), Point.class)));
+            when(providers.getMessageBodyWriter(eq(Point.class), eq(Point.class), any(), eq(BinaryProvider.BINARY_TYPE)))
+                    .thenReturn((MessageBodyWriter) new BinaryProvider());
+            mediaTypes();
+
+            HttpResponse<String> httpResponse = get("/test", HttpHeaders.ACCEPT, "application/json;q=0.9, application/x-tdd-binary");
+
+            assertEquals(BinaryProvider.BINARY, httpResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE).get());
+            assertEquals(HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING, httpResponse.headers().firstValue(HttpHeaders.VARY).get());
+            assertEquals("\u0001\u0006\u0001\u0002ok", httpResponse.body());
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        public void should_negotiate_binary_media_type_for_coalesced_response() throws Exception {
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(OutboundResponse.of(new GenericEntity<>(new Point(3, "ok"), Point.class)));
+            when(providers.getMessageBodyWriter(eq(Point.class), eq(Point.class), any(), eq(BinaryProvider.BINARY_TYPE)))
+                    .thenReturn((MessageBodyWriter) new BinaryProvider());
+            mediaTypes();
+            ResourceServlet servlet = new ResourceServlet(runtime, new ResourceServlet.Options()
+                    .coalescer(new RequestCoalescer(5, TimeUnit.SECONDS).route("/test")));
+
+            HttpServletRequest request = servletRequest(null);
+            when(request.getHeader(HttpHeaders.ACCEPT)).thenReturn(BinaryProvider.BINARY);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            HttpServletResponse response = servletResponse(body);
+            servlet.service(request, response);
+
+            assertEquals("\u0001\u0006\u0001\u0002ok", body.toString());
+            verify(response).addHeader(HttpHeaders.CONTENT_TYPE, BinaryProvider.BINARY);
+            verify(response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        public void should_not_negotiate_binary_media_type_unless_preferred() {
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(OutboundResponse.of(new GenericEntity<>(new Point(3, "ok"), Point.class)));
+            when(providers.getMessageBodyWriter(eq(Point.class), eq(Point.class), any(), eq(BinaryProvider.BINARY_TYPE)))
+                    .thenReturn((MessageBodyWriter) new BinaryProvider());
+            when(providers.getMessageBodyWriter(eq(Point.class), eq(Point.class), any(), isNull())).thenReturn(new MessageBodyWriter<>() {
+                @Override
+                public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+                    return true;
+                }
+
+                @Override
+                public void writeTo(Point point, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                    MultivaluedMap<String, Object> headers, OutputStream out) throws IOException {
+                    out.write(point.label().getBytes());
+                }
+            });
+
+            HttpResponse<String> httpResponse = get("/test", HttpHeaders.ACCEPT, "application/json, application/x-tdd-binary;q=0.5");
+
+            assertEquals("ok", httpResponse.body());
+            assertEquals(HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING, httpResponse.headers().firstValue(HttpHeaders.VARY).get());
+        }
+
+        private void mediaTypes() {
+            when(delegate.createHeaderDelegate(eq(MediaType.class))).thenReturn(new RuntimeDelegate.HeaderDelegate<MediaType>() {
+                @Override
+                public MediaType fromString(String s) {
+                    return null;
+                }
+
+                @Override
+                public String toString(MediaType mediaType) {
+                    return mediaType.getType() + "/" + mediaType.getSubtype();
+                }
+            });
+        }
+
         public void should_build_response_by_ex_mapper_from_web_app_ex() throws Exception {
 
             when(router.dispatch(any(), eq(resourceContext))).thenThrow(RuntimeException.class);
@@ -367,6 +886,49 @@ public class ResourceServletTest extends ServletTest {
         }
     }
 
+    private static void service(ResourceServlet servlet, OutputStream body) {
+        try {
+            servlet.service(servletRequest(null), servletResponse(body));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static HttpServletRequest servletRequest(String ifNoneMatch) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+        when(request.getRequestURI()).thenReturn("/test");
+        when(request.getServletPath()).thenReturn("/test");
+        return request;
+    }
+
+    private static HttpServletResponse servletResponse(OutputStream body) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+        });
+        return response;
+    }
+
+    private static Path file(String content) throws IOException {
+        Path file = Files.createTempFile("entity", ".txt");
+        file.toFile().deleteOnExit();
+        return Files.writeString(file, content);
+    }
+
     private static MultivaluedMap<String, Object> testHeader() {
         MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
         headers.addAll("Set-Cookie",
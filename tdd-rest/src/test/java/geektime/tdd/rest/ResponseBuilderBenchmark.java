@@ -0,0 +1,40 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class ResponseBuilderBenchmark {
+
+    @Test
+    public void build_and_write_headers() {
+        GenericEntity<String> entity = new GenericEntity<>("hello", String.class);
+        String cacheControl = "max-age=60";
+        String tag = "\"v1\"";
+        long[] sink = new long[1];
+
+        Throughput.measure("MultivaluedHashMap headers, 4 headers", () -> {
+            MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+            headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_TYPE);
+            headers.putSingle(HttpHeaders.CACHE_CONTROL, cacheControl);
+            headers.putSingle(HttpHeaders.ETAG, tag);
+            headers.add("X-Trace", "a");
+            for (Map.Entry<String, List<Object>> header : headers.entrySet())
+                for (Object value : header.getValue()) sink[0] += header.getKey().length() + value.hashCode();
+        });
+
+        Throughput.measure("OutboundResponseBuilder, 4 headers", () -> {
+            DefaultOutboundResponse response = (DefaultOutboundResponse) OutboundResponse.builder().entity(entity)
+                    .type(MediaType.TEXT_PLAIN_TYPE).header(HttpHeaders.CACHE_CONTROL, cacheControl).header(HttpHeaders.ETAG, tag).header("X-Trace", "a").build();
+            response.forEachHeader((name, value) -> sink[0] += name.length() + value.hashCode());
+        });
+
+        Throughput.measure("shared 404", () -> sink[0] += OutboundResponse.NOT_FOUND.getStatus());
+    }
+}
@@ -0,0 +1,149 @@
+package geektime.tdd.rest;
+
+import geektime.tdd.di.Context;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ResponseCacheBenchmark {
+    private static final List<String> USERS = IntStream.range(0, 500)
+            .mapToObj(i -> "{\"id\":" + i + ",\"name\":\"user-" + i + "\",\"email\":\"user-" + i + "@example.com\"}").toList();
+
+    private final MessageBodyWriter<List> writer = new MessageBodyWriter<>() {
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public void writeTo(List users, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> headers, OutputStream out) throws IOException {
+            out.write(((List<String>) users).stream().collect(Collectors.joining(",", "[", "]")).getBytes(StandardCharsets.UTF_8));
+        }
+    };
+
+    @Test
+    public void uncached_versus_cached() {
+        measure("uncached, resource and writer run", servlet(null), request());
+        measure("cached, fresh hit", servlet(new ResponseCache(1 << 20)), request());
+    }
+
+    private static void measure(String name, ResourceServlet servlet, HttpServletRequest request) {
+        HttpServletResponse response = response();
+        Throughput.measure(name, () -> {
+            try {
+                servlet.service(request, response);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private ResourceServlet servlet(ResponseCache cache) {
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CACHE_CONTROL, "max-age=60");
+        OutboundResponse response = mock(OutboundResponse.class, withSettings().stubOnly());
+        when(response.getStatus()).thenReturn(200);
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getGenericEntity()).thenReturn(new GenericEntity<>(USERS, List.class));
+        when(response.getAnnotations()).thenReturn(new Annotation[0]);
+        when(response.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        when(providers.getMessageBodyWriter(any(), eq(List.class), any(), any())).thenReturn((MessageBodyWriter) writer);
+        return new ResourceServlet(runtime(providers, (request, context) -> response), new ResourceServlet.Options().cache(cache));
+    }
+
+    private static HttpServletRequest request() {
+        HttpServletRequest request = mock(HttpServletRequest.class, withSettings().stubOnly());
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/users");
+        return request;
+    }
+
+    private static HttpServletResponse response() {
+        HttpServletResponse response = mock(HttpServletResponse.class, withSettings().stubOnly());
+        try {
+            when(response.getOutputStream()).thenReturn(output(OutputStream.nullOutputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return response;
+    }
+
+    private static ServletOutputStream output(OutputStream out) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+        };
+    }
+
+    private static Runtime runtime(Providers providers, ResourceRouter router) {
+        return new Runtime() {
+            @Override
+            public Providers getProviders() {
+                return providers;
+            }
+
+            @Override
+            public ResourceContext createResourceContext(HttpServletRequest req, HttpServletResponse resp) {
+                return null;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return null;
+            }
+
+            @Override
+            public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+                return null;
+            }
+
+            @Override
+            public ResourceRouter getResourceRouter() {
+                return router;
+            }
+        };
+    }
+}
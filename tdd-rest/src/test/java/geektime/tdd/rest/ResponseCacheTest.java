@@ -0,0 +1,181 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ResponseCacheTest {
+    private Clock clock;
+    private ResponseCache cache;
+
+    @BeforeEach
+    public void before() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        cache = new ResponseCache(1024, clock);
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "max-age=60;60;0",
+            "public, max-age=60, stale-while-revalidate=30;60;30",
+            "max-age=60, s-maxage=10;10;0",
+            "max-age=\"5\", must-revalidate, stale-while-revalidate=30;5;0"}, delimiter = ';')
+    public void should_parse_freshness_lifetime(String cacheControl, long fresh, long stale) {
+        assertArrayEquals(new long[]{fresh, stale}, ResponseCache.lifetime(cacheControl));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"no-store, max-age=60", "private, max-age=60", "no-cache", "max-age=0", "public"})
+    public void should_not_store_response_without_shared_freshness(String cacheControl) {
+        assertFalse(ResponseCache.storable(cacheControl));
+    }
+
+    @Test
+    public void should_get_stored_response_for_same_path_and_query() {
+        cache.store(request("GET", "/users", "page=1"), headers("max-age=60"), "users".getBytes(), true);
+
+        assertArrayEquals("users".getBytes(), cache.get(request("HEAD", "/users", "page=1")).getBody());
+        assertNull(cache.get(request("GET", "/users", "page=2")));
+    }
+
+    @Test
+    public void should_key_variants_by_vary_headers() {
+        HttpServletRequest english = request("GET", "/users", null);
+        when(english.getHeader("accept-language")).thenReturn("en");
+        Map<String, List<String>> headers = headers("max-age=60");
+        headers.put("Vary", List.of("Accept-Language"));
+        cache.store(english, headers, "hello".getBytes(), true);
+
+        HttpServletRequest chinese = request("GET", "/users", null);
+        when(chinese.getHeader("accept-language")).thenReturn("zh");
+        assertNull(cache.get(chinese));
+        assertNotNull(cache.get(english));
+    }
+
+    @Test
+    public void should_not_store_or_serve_authorized_requests_without_shared_directives() {
+        HttpServletRequest authorized = request("GET", "/users", null);
+        when(authorized.getHeader("Authorization")).thenReturn("Bearer alice");
+        cache.store(authorized, headers("max-age=60"), "alice".getBytes(), true);
+        assertNull(cache.get(request("GET", "/users", null)));
+
+        cache.store(request("GET", "/users", null), headers("max-age=60"), "users".getBytes(), true);
+        assertNull(cache.get(authorized));
+        assertNotNull(cache.get(request("GET", "/users", null)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"public, max-age=60", "s-maxage=60", "max-age=60, must-revalidate"})
+    public void should_store_and_serve_authorized_requests_with_shared_directives(String cacheControl) {
+        HttpServletRequest authorized = request("GET", "/users", null);
+        when(authorized.getHeader("Authorization")).thenReturn("Bearer alice");
+        cache.store(authorized, headers(cacheControl), "users".getBytes(), true);
+
+        assertNotNull(cache.get(authorized));
+        assertNotNull(cache.get(request("GET", "/users", null)));
+    }
+
+    @Test
+    public void should_not_store_vary_any() {
+        Map<String, List<String>> headers = headers("max-age=60");
+        headers.put("Vary", List.of("*"));
+        cache.store(request("GET", "/users", null), headers, "users".getBytes(), true);
+
+        assertNull(cache.get(request("GET", "/users", null)));
+    }
+
+    @Test
+    public void should_serve_stale_within_stale_while_revalidate_and_revalidate_once() {
+        cache.store(request("GET", "/users", null), headers("max-age=10, stale-while-revalidate=20"), "users".getBytes(), true);
+
+        when(clock.millis()).thenReturn(5_000L);
+        ResponseCache.Cached fresh = cache.get(request("GET", "/users", null));
+        assertFalse(cache.revalidate(fresh));
+
+        when(clock.millis()).thenReturn(15_000L);
+        ResponseCache.Cached stale = cache.get(request("GET", "/users", null));
+        assertEquals(15, cache.age(stale));
+        assertTrue(cache.revalidate(stale));
+        assertFalse(cache.revalidate(stale));
+
+        when(clock.millis()).thenReturn(30_000L);
+        assertNull(cache.get(request("GET", "/users", null)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void should_bypass_cache_if_request_asks_for_no_cache() {
+        cache.store(request("GET", "/users", null), headers("max-age=60"), "users".getBytes(), true);
+        HttpServletRequest request = request("GET", "/users", null);
+        when(request.getHeader("Cache-Control")).thenReturn("no-cache");
+
+        assertNull(cache.get(request));
+    }
+
+    @Test
+    public void should_invalidate_stored_responses_on_unsafe_request() {
+        cache.store(request("GET", "/users", null), headers("max-age=60"), "users".getBytes(), true);
+
+        assertNull(cache.get(request("POST", "/users", null)));
+        assertNull(cache.get(request("GET", "/users", null)));
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void should_evict_least_recently_used_when_exceeding_max_bytes() {
+        cache.store(request("GET", "/a", null), headers("max-age=60"), new byte[400], true);
+        cache.store(request("GET", "/b", null), headers("max-age=60"), new byte[400], true);
+        cache.get(request("GET", "/a", null));
+        cache.store(request("GET", "/c", null), headers("max-age=60"), new byte[400], true);
+
+        assertNotNull(cache.get(request("GET", "/a", null)));
+        assertNull(cache.get(request("GET", "/b", null)));
+        assertNotNull(cache.get(request("GET", "/c", null)));
+        assertTrue(cache.bytes() <= 1024);
+    }
+
+    @Test
+    public void should_forget_vary_metadata_of_evicted_and_expired_responses() {
+        for (int i = 0; i < 100; i++) cache.store(request("GET", "/" + i, null), headers("max-age=60"), new byte[100], true);
+        cache.store(request("GET", "/expiring", null), headers("max-age=1"), new byte[100], true);
+
+        assertEquals(cache.size(), cache.bases());
+        when(clock.millis()).thenReturn(2_000L);
+        assertNull(cache.get(request("GET", "/expiring", null)));
+        assertEquals(cache.size(), cache.bases());
+        assertTrue(cache.bases() < 10);
+    }
+
+    @Test
+    public void should_not_store_response_larger_than_cache() {
+        cache.store(request("GET", "/a", null), headers("max-age=60"), new byte[2048], true);
+
+        assertEquals(0, cache.size());
+    }
+
+    private static HttpServletRequest request(String method, String uri, String query) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getRequestURI()).thenReturn(uri);
+        when(request.getQueryString()).thenReturn(query);
+        return request;
+    }
+
+    private static Map<String, List<String>> headers(String cacheControl) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Cache-Control", List.of(cacheControl));
+        return headers;
+    }
+}
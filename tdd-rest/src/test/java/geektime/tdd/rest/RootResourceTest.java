@@ -1,23 +1,39 @@
 package geektime.tdd.rest;
 
-import jakarta.ws.rs.GET;
-import jakarta.ws.rs.POST;
-import jakarta.ws.rs.Path;
-import jakarta.ws.rs.Produces;
-import jakarta.ws.rs.core.MediaType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.*;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 
 public class RootResourceTest {
 
+    @AfterEach
+    public void resetRuntimeDelegate() {
+        RuntimeDelegate.setInstance(null);
+    }
+
 
 
     @Path("/messages")
@@ -60,6 +76,79 @@ public class RootResourceTest {
         }
     }
 
+    @Path("/orders")
+    static class Orders {
+        @GET
+        @Path("/pending")
+        public String pending() {
+            return "pending";
+        }
+
+        @POST
+        @Path("/{id}")
+        public String update(@PathParam("id") String id) {
+            return id;
+        }
+    }
+
+    @Path("/users")
+    static class Users {
+        @GET
+        @Path("/{id}")
+        public String get(@PathParam("id") long id, @QueryParam("fields") String fields,
+                          @HeaderParam("X-Token") String token, @Context UriInfo uriInfo) {
+            return id + ":" + fields + ":" + token + ":" + (uriInfo != null);
+        }
+
+        @GET
+        @Path("/{id}/page")
+        public String page(@QueryParam("page") int page, @QueryParam("size") @DefaultValue("20") short size,
+                           @QueryParam("draft") boolean draft) {
+            return page + ":" + size + ":" + draft;
+        }
+
+        @GET
+        @Path("/{id}/limit")
+        public int limit(@HeaderParam("X-Limit") int limit) {
+            return limit;
+        }
+
+        @GET
+        @Path("/{id}/age")
+        public int age(@PathParam("id") int id) {
+            return id;
+        }
+
+        @POST
+        @Path("/{id}")
+        public void update(@PathParam("id") String id) {
+        }
+
+        @GET
+        @Path("/{id}/profile")
+        public CompletionStage<String> profile(@PathParam("id") String id) {
+            return CompletableFuture.completedFuture(id);
+        }
+
+        @GET
+        @Path("/{id}/search")
+        public String search(@PathParam("id") String id, @Encoded @QueryParam("q") String q) {
+            return id + ":" + q;
+        }
+
+        @GET
+        @Path("/{id}/orders")
+        public void orders(@PathParam("id") String id, @Suspended AsyncResponse response) {
+            response.resume(id);
+        }
+
+        @GET
+        @Path("/{id}/events")
+        public void events(@PathParam("id") String id, @Context SseEventSink sink, @Context Sse sse) {
+            sink.send(sse.newEvent("user", id));
+        }
+    }
+
     @Test
     public void should_get_uri_template_from_path_annotation(){
         ResourceRouter.RootResource resource = new RootResourceClass(Messages.class);
@@ -76,6 +165,7 @@ public class RootResourceTest {
         "POST,/messages/hello,Messages.postHello",
         "GET,/messages/topics/1234,Messages.topic1234",
         "GET,/messages/topics/12345,Messages.topicId",
+        "HEAD,/messages/hello,Messages.hello",
     })
     public  void should_match(String httpMethod, String path, String resourceMethod) {
         ResourceRouter.RootResource resource = new RootResourceClass(Messages.class);
@@ -83,4 +173,215 @@ public class RootResourceTest {
         ResourceRouter.ResourceMethod method = resource.matches(result, httpMethod, new String[]{MediaType.TEXT_PLAIN}, mock(UriInfoBuilder.class)).get();
         assertEquals(resourceMethod,method.toString());
     }
+
+    @Test
+    public void should_respond_options_with_allowed_methods() {
+        ResourceRouter.RootResource resource = new RootResourceClass(Messages.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/hello").get();
+        ResourceRouter.ResourceMethod method = resource.matches(result, HttpMethod.OPTIONS, new String[]{MediaType.TEXT_PLAIN}, mock(UriInfoBuilder.class)).get();
+
+        Response response = (Response) method.call(mock(ResourceContext.class), mock(UriInfoBuilder.class)).getEntity();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.POST, HttpMethod.OPTIONS), response.getAllowedMethods());
+    }
+
+    @Test
+    public void should_respond_405_with_allowed_methods_if_http_method_not_supported() {
+        ResourceRouter.RootResource resource = new RootResourceClass(Messages.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/ah").get();
+        ResourceRouter.ResourceMethod method = resource.matches(result, HttpMethod.DELETE, new String[]{MediaType.TEXT_PLAIN}, mock(UriInfoBuilder.class)).get();
+
+        Response response = (Response) method.call(mock(ResourceContext.class), mock(UriInfoBuilder.class)).getEntity();
+        assertEquals(Response.Status.METHOD_NOT_ALLOWED.getStatusCode(), response.getStatus());
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS), response.getAllowedMethods());
+        assertSame(response, method.call(mock(ResourceContext.class), mock(UriInfoBuilder.class)).getEntity());
+    }
+
+    @Test
+    public void should_respond_405_from_most_specific_path_instead_of_falling_back_to_less_specific_one() {
+        ResourceRouter.RootResource resource = new RootResourceClass(Orders.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/orders/pending").get();
+        UriInfoBuilder builder = mock(UriInfoBuilder.class);
+        ResourceRouter.ResourceMethod method = resource.matches(result, HttpMethod.POST, new String[]{MediaType.WILDCARD}, builder).get();
+
+        Response response = (Response) method.call(mock(ResourceContext.class), builder).getEntity();
+        assertEquals(Response.Status.METHOD_NOT_ALLOWED.getStatusCode(), response.getStatus());
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS), response.getAllowedMethods());
+        verify(builder, never()).addParameter(any(), any());
+    }
+
+    @Test
+    public void should_not_match_if_no_resource_method_path_matched() {
+        ResourceRouter.RootResource resource = new RootResourceClass(Messages.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/unknown").get();
+
+        assertTrue(resource.matches(result, HttpMethod.GET, new String[]{MediaType.TEXT_PLAIN}, mock(UriInfoBuilder.class)).isEmpty());
+    }
+
+    @Test
+    public void should_call_resource_method_with_bound_parameters() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getRequestHeader(eq("X-Token"))).thenReturn(List.of("token"));
+        when(context.getResource(eq(HttpHeaders.class))).thenReturn(headers);
+
+        UriInfoBuilder builder = uriInfoBuilder(Map.of("id", "1"), Map.of("fields", "name"));
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/1", context, builder);
+
+        assertEquals("1:name:token:true", entity.getEntity());
+        assertEquals(String.class, entity.getType());
+        verify(builder).addParameter(eq("id"), eq("1"));
+    }
+
+    @Test
+    public void should_wrap_primitive_result_as_generic_entity() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/42/age", context, uriInfoBuilder(Map.of("id", "42"), Map.of()));
+
+        assertEquals(42, entity.getEntity());
+        assertEquals(Integer.class, entity.getRawType());
+    }
+
+    @Test
+    public void should_return_null_entity_if_resource_method_returns_void() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        assertNull(call(HttpMethod.POST, "/users/1", context, uriInfoBuilder(Map.of("id", "1"), Map.of())));
+    }
+
+    @Test
+    public void should_throw_stackless_not_found_if_path_parameter_not_convertible() {
+        RuntimeDelegate.setInstance(null);
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> call(HttpMethod.GET, "/users/abc/age", context, uriInfoBuilder(Map.of("id", "abc"), Map.of())));
+
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), exception.getResponse().getStatus());
+        assertInstanceOf(NumberFormatException.class, exception.getCause());
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    public void should_throw_stackless_bad_request_if_header_parameter_not_convertible() {
+        RuntimeDelegate.setInstance(null);
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getRequestHeader(eq("X-Limit"))).thenReturn(List.of("many"));
+        when(context.getResource(eq(HttpHeaders.class))).thenReturn(headers);
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> call(HttpMethod.GET, "/users/1/limit", context, uriInfoBuilder(Map.of("id", "1"), Map.of())));
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), exception.getResponse().getStatus());
+        assertInstanceOf(NumberFormatException.class, exception.getCause());
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    public void should_keep_element_type_of_completion_stage_result() throws Exception {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/1/profile", context, uriInfoBuilder(Map.of("id", "1"), Map.of()));
+
+        assertEquals(Users.class.getMethod("profile", String.class).getGenericReturnType(), entity.getType());
+        assertEquals("1", ((CompletionStage<?>) entity.getEntity()).toCompletableFuture().get());
+    }
+
+    @Test
+    public void should_return_suspended_async_response_as_completion_stage() throws Exception {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/1/orders", context, uriInfoBuilder(Map.of("id", "1"), Map.of()));
+
+        assertEquals(CompletionStage.class, entity.getType());
+        assertInstanceOf(AsyncResponse.class, entity.getEntity());
+        assertEquals("1", ((CompletionStage<?>) entity.getEntity()).toCompletableFuture().get());
+    }
+
+    @Test
+    public void should_return_event_sink_as_entity_for_server_sent_events() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/1/events", context, uriInfoBuilder(Map.of("id", "1"), Map.of()));
+
+        assertEquals(SseEventSink.class, entity.getType());
+        EventSink sink = (EventSink) entity.getEntity();
+        assertFalse(sink.isClosed());
+    }
+
+    @Test
+    public void should_bind_encoded_value_if_parameter_annotated_with_encoded() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+        UriInfoBuilder builder = uriInfoBuilder(Map.of("id", "john doe"), Map.of("q", "a b"));
+        when(builder.createUriInfo().getQueryParameters(false)).thenReturn(new MultivaluedHashMap<>(Map.of("q", "a%20b")));
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/john doe/search", context, builder);
+
+        assertEquals("john doe:a%20b", entity.getEntity());
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "page=3&size=5&draft=TRUE;3:5:true",
+            "sort=name&page=3;3:20:false",
+            "page=3&page=4;3:20:false",
+            "draft;0:20:false",
+            "page=%33&size=5;3:5:false",
+    }, delimiter = ';')
+    public void should_convert_query_parameters_from_query_string(String query, String expected) {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        GenericEntity entity = call(HttpMethod.GET, "/users/1/page", context, uriInfoBuilder("/users/1/page", query));
+
+        assertEquals(expected, entity.getEntity());
+    }
+
+    @Test
+    public void should_throw_not_found_if_query_parameter_not_convertible() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> call(HttpMethod.GET, "/users/1/page", context, uriInfoBuilder("/users/1/page", "page=three")));
+
+        assertInstanceOf(NumberFormatException.class, exception.getCause());
+    }
+
+    private static GenericEntity call(String httpMethod, String path, ResourceContext context, UriInfoBuilder builder) {
+        ResourceRouter.RootResource resource = new RootResourceClass(Users.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match(path).get();
+        return resource.matches(result, httpMethod, new String[]{MediaType.WILDCARD}, builder).get().call(context, builder);
+    }
+
+    private static UriInfoBuilder uriInfoBuilder(String path, String query) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServletPath()).thenReturn(path);
+        when(request.getQueryString()).thenReturn(query);
+        return new DefaultUriInfoBuilder(request);
+    }
+
+    private static UriInfoBuilder uriInfoBuilder(Map<String, String> pathParameters, Map<String, String> queryParameters) {
+        UriInfo uriInfo = mock(UriInfo.class);
+        MultivaluedMap<String, String> path = new MultivaluedHashMap<>(pathParameters);
+        MultivaluedMap<String, String> query = new MultivaluedHashMap<>(queryParameters);
+        when(uriInfo.getPathParameters(true)).thenReturn(path);
+        when(uriInfo.getQueryParameters(true)).thenReturn(query);
+
+        UriInfoBuilder builder = mock(UriInfoBuilder.class);
+        when(builder.createUriInfo()).thenReturn(uriInfo);
+        return builder;
+    }
 }
@@ -0,0 +1,186 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ServerSentEventsTest {
+    private Providers providers;
+    private ServerSentEvents sse;
+
+    @BeforeEach
+    public void before() {
+        providers = mock(Providers.class);
+        sse = new ServerSentEvents(providers);
+    }
+
+    @Test
+    public void should_format_event_fields_and_split_multiline_data() {
+        OutboundSseEvent event = sse.newEventBuilder().comment("greeting").name("message").id("42")
+                .reconnectDelay(3000).data("hello\nworld").build();
+
+        assertEquals(": greeting\nevent: message\nid: 42\nretry: 3000\ndata: hello\ndata: world\n\n",
+                new String(ServerSentEvents.frame(event, providers), StandardCharsets.UTF_8));
+        assertEquals("data: \n\n", new String(ServerSentEvents.frame(sse.newEvent(""), providers), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void should_write_data_with_message_body_writer_of_media_type() throws Exception {
+        MessageBodyWriter writer = writer("{\"id\":1}");
+        when(providers.getMessageBodyWriter(eq(Order.class), eq(Order.class), any(), eq(MediaType.APPLICATION_JSON_TYPE))).thenReturn(writer);
+
+        OutboundSseEvent event = sse.newEventBuilder().mediaType(MediaType.APPLICATION_JSON_TYPE).data(new Order()).build();
+
+        assertEquals("data: {\"id\":1}\n\n", new String(ServerSentEvents.frame(event, providers), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void should_serialize_event_once_per_broadcast() throws Exception {
+        MessageBodyWriter writer = writer("{\"id\":1}");
+        when(providers.getMessageBodyWriter(eq(Order.class), eq(Order.class), any(), eq(MediaType.APPLICATION_JSON_TYPE))).thenReturn(writer);
+        SseBroadcaster broadcaster = sse.newBroadcaster();
+        List<Output> outputs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Output output = new Output(true);
+            broadcaster.register(output.attach(new EventSink(providers)));
+            outputs.add(output);
+        }
+
+        broadcaster.broadcast(sse.newEventBuilder().mediaType(MediaType.APPLICATION_JSON_TYPE).data(new Order()).build());
+
+        verify(writer, times(1)).writeTo(any(), any(), any(), any(), any(), any(), any());
+        for (Output output : outputs) assertEquals("data: {\"id\":1}\n\n", output.toString());
+    }
+
+    @Test
+    public void should_evict_slow_consumer_when_queue_full() {
+        SseBroadcaster broadcaster = sse.newBroadcaster();
+        Output fast = new Output(true);
+        Output slow = new Output(false);
+        EventSink sink = slow.attach(new EventSink(providers, 2));
+        broadcaster.register(fast.attach(new EventSink(providers, 2)));
+        broadcaster.register(sink);
+        List<Throwable> errors = new ArrayList<>();
+        List<SseEventSink> closed = new ArrayList<>();
+        broadcaster.onError((s, error) -> errors.add(error));
+        broadcaster.onClose(closed::add);
+
+        for (int i = 0; i < 3; i++) broadcaster.broadcast(sse.newEvent(String.valueOf(i)));
+
+        assertTrue(sink.isClosed());
+        assertEquals(List.of(sink), closed);
+        assertInstanceOf(EventSink.SlowConsumerException.class, errors.get(0));
+        verify(slow.async).complete();
+        assertEquals("data: 0\n\ndata: 1\n\ndata: 2\n\n", fast.toString());
+        assertEquals(1, ((EventBroadcaster) broadcaster).size());
+    }
+
+    @Test
+    public void should_drain_pending_events_before_completing_closed_sink() throws Exception {
+        Output output = new Output(false);
+        EventSink sink = output.attach(new EventSink(providers));
+
+        sink.send(sse.newEvent("hello"));
+        sink.close();
+
+        assertTrue(sink.isClosed());
+        verify(output.async, never()).complete();
+
+        output.ready = true;
+        output.listener.onWritePossible();
+
+        assertEquals("data: hello\n\n", output.toString());
+        verify(output.async).complete();
+    }
+
+    @Test
+    public void should_queue_events_sent_before_attached() throws Exception {
+        EventSink sink = new EventSink(providers, 2);
+        for (int i = 0; i < 3; i++) assertFalse(sink.send(sse.newEvent("early" + i)).toCompletableFuture().isCompletedExceptionally());
+
+        Output output = new Output(true);
+        output.attach(sink);
+        output.listener.onWritePossible();
+
+        assertEquals("data: early0\n\ndata: early1\n\ndata: early2\n\n", output.toString());
+    }
+
+    @Test
+    public void should_fail_send_after_client_disconnected() {
+        Output output = new Output(true);
+        EventSink sink = output.attach(new EventSink(providers));
+        IOException reset = new IOException("reset");
+
+        output.listener.onError(reset);
+
+        assertTrue(sink.isClosed());
+        assertSame(reset, assertThrows(Exception.class, () -> sink.send(sse.newEvent("late")).toCompletableFuture().join()).getCause());
+    }
+
+    private static MessageBodyWriter writer(String json) throws IOException {
+        MessageBodyWriter writer = mock(MessageBodyWriter.class);
+        doAnswer(invocation -> {
+            ((OutputStream) invocation.getArgument(6)).write(json.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(writer).writeTo(any(), any(), any(), any(), any(), any(), any());
+        return writer;
+    }
+
+    static class Order {
+    }
+
+    static class Output extends ServletOutputStream {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final AsyncContext async = mock(AsyncContext.class);
+        boolean ready;
+        WriteListener listener;
+
+        Output(boolean ready) {
+            this.ready = ready;
+        }
+
+        EventSink attach(EventSink sink) {
+            sink.attach(async, this);
+            return sink;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) {
+            written.write(b);
+        }
+
+        @Override
+        public String toString() {
+            return written.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -26,7 +26,9 @@ public abstract class ServletTest {
 
         ServletContextHandler handler = new ServletContextHandler(server,"/");
 
-        handler.addServlet(new ServletHolder(getServlet()),"/");
+        ServletHolder holder = new ServletHolder(getServlet());
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder,"/");
 
         server.setHandler(handler);
         server.start();
@@ -55,5 +57,25 @@ public abstract class ServletTest {
         }
     }
 
+    protected HttpResponse<String> get(String path, String... headers) {
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(path(path)).headers(headers).GET().build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected HttpResponse<String> head(String path) {
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(path(path)).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 
 }
@@ -0,0 +1,113 @@
+package geektime.tdd.rest;
+
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+public class SseBenchmark {
+    private static final int CONNECTIONS = Integer.getInteger("sse.connections", 10_000);
+    private static final int EVENTS = Integer.getInteger("sse.events", 100);
+
+    @Test
+    public void broadcast_to_open_connections() throws Exception {
+        Providers providers = mock(Providers.class, withSettings().stubOnly());
+        EventBroadcaster broadcaster = new EventBroadcaster(providers);
+        ResourceRouter router = (request, context) -> {
+            EventSink sink = new EventSink(providers);
+            broadcaster.register(sink);
+            return OutboundResponse.of(new GenericEntity<>(sink, SseEventSink.class));
+        };
+        Runtime runtime = mock(Runtime.class, withSettings().stubOnly());
+        when(runtime.getResourceRouter()).thenReturn(router);
+        when(runtime.getProviders()).thenReturn(providers);
+
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setAcceptQueueSize(1024);
+        connector.setIdleTimeout(TimeUnit.MINUTES.toMillis(5));
+        server.addConnector(connector);
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ServletHolder holder = new ServletHolder(new ResourceServlet(runtime));
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        server.setHandler(handler);
+        server.start();
+
+        List<SocketChannel> channels = new ArrayList<>(CONNECTIONS);
+        try (Selector selector = Selector.open()) {
+            long before = usedMemory();
+            InetSocketAddress address = new InetSocketAddress("localhost", connector.getLocalPort());
+            ByteBuffer request = ByteBuffer.wrap("GET /events HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            for (int i = 0; i < CONNECTIONS; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.write(request.duplicate());
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+                channels.add(channel);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (broadcaster.size() < CONNECTIONS && System.nanoTime() < deadline) Thread.sleep(10);
+            long after = usedMemory();
+            System.out.printf("%-55s %,10d open, %,8d bytes heap per connection (server and loopback client)%n",
+                    "SSE connections", broadcaster.size(), (after - before) / Math.max(1, broadcaster.size()));
+
+            OutboundSseEvent event = new ServerSentEvents(providers).newEvent("#");
+            long expected = (long) broadcaster.size() * EVENTS;
+            long received = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                broadcaster.broadcast(event);
+                received += read(selector, buffer, 0);
+            }
+            while (received < expected && System.nanoTime() < deadline) received += read(selector, buffer, 100);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-55s %,10d events, %,14.0f deliveries/s, %,d evicted%n",
+                    "SSE broadcast to " + CONNECTIONS + " connections", EVENTS, received / seconds,
+                    CONNECTIONS - broadcaster.size());
+        } finally {
+            for (SocketChannel channel : channels) channel.close();
+            server.stop();
+        }
+    }
+
+    private static long read(Selector selector, ByteBuffer buffer, long timeout) throws Exception {
+        long events = 0;
+        if ((timeout == 0 ? selector.selectNow() : selector.select(timeout)) == 0) return 0;
+        for (SelectionKey key : selector.selectedKeys()) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            for (int read = channel.read(buffer.clear()); read > 0; read = channel.read(buffer.clear()))
+                for (int i = 0; i < read; i++) if (buffer.get(i) == '#') events++;
+        }
+        selector.selectedKeys().clear();
+        return events;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        java.lang.Runtime jvm = java.lang.Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return jvm.totalMemory() - jvm.freeMemory();
+    }
+}
@@ -0,0 +1,55 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class StreamingBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Test
+    public void large_result_set() {
+        measure("materialized result set", () -> {
+            List<String> rows = IntStream.range(0, ROWS).mapToObj(StreamingBenchmark::row).toList();
+            write(OutputStream.nullOutputStream(), rows.stream().collect(Collectors.joining()).getBytes(StandardCharsets.UTF_8));
+        });
+        measure("streamed through pooled buffers", () -> {
+            OutputStream out = BufferPool.DEFAULT.output(OutputStream.nullOutputStream());
+            IntStream.range(0, ROWS).mapToObj(StreamingBenchmark::row).forEach(row -> write(out, row.getBytes(StandardCharsets.UTF_8)));
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void measure(String name, Runnable task) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        task.run();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        task.run();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf("%-56s %,16d bytes allocated per response%n", name + ", " + ROWS + " rows", allocated);
+        Throughput.measure(name, task);
+    }
+
+    private static String row(int i) {
+        return "{\"id\":" + i + ",\"name\":\"user-" + i + "\"}\n";
+    }
+
+    private static void write(OutputStream out, byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package geektime.tdd.rest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+// Benchmarks are named *Benchmark so surefire skips them by default, run one with
+// mvn -pl tdd-rest -am test -Dtest=DispatchBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+class Throughput {
+    private static final long WARMUP_MILLIS = Long.getLong("benchmark.warmup", 2000);
+    private static final long MEASURE_MILLIS = Long.getLong("benchmark.duration", 3000);
+
+    static double measure(String name, Runnable task) {
+        return measure(name, 1, task);
+    }
+
+    static double measure(String name, int threads, Runnable task) {
+        run(threads, WARMUP_MILLIS, task);
+        long ops = run(threads, MEASURE_MILLIS, task);
+        double throughput = ops * 1000.0 / MEASURE_MILLIS;
+        System.out.printf("%-56s %4d thread(s) %,16.0f ops/s%n", name, threads, throughput);
+        return throughput;
+    }
+
+    static double requests(String name, int inFlight, HttpClient client, HttpRequest request) {
+        send(inFlight, WARMUP_MILLIS, client, request, latency -> {});
+        long requests = send(inFlight, MEASURE_MILLIS, client, request, latency -> {});
+        double throughput = requests * 1000.0 / MEASURE_MILLIS;
+        System.out.printf("%-56s %4d in flight %,16.0f req/s%n", name, inFlight, throughput);
+        return throughput;
+    }
+
+    static long[] latencies(String name, int inFlight, HttpClient client, HttpRequest request) {
+        send(inFlight, WARMUP_MILLIS, client, request, latency -> {});
+        ConcurrentLinkedQueue<Long> recorded = new ConcurrentLinkedQueue<>();
+        long requests = send(inFlight, MEASURE_MILLIS, client, request, recorded::add);
+        long[] latencies = recorded.stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] percentiles = Arrays.stream(new double[]{0.5, 0.9, 0.99, 0.999})
+                .mapToLong(p -> latencies.length == 0 ? 0 : latencies[(int) Math.min(latencies.length - 1, p * latencies.length)] / 1000)
+                .toArray();
+        System.out.printf("%-56s %4d in flight %,10.0f req/s  p50 %,7d us  p90 %,7d us  p99 %,7d us  p99.9 %,7d us%n",
+                name, inFlight, requests * 1000.0 / MEASURE_MILLIS, percentiles[0], percentiles[1], percentiles[2], percentiles[3]);
+        return percentiles;
+    }
+
+    private static long send(int inFlight, long millis, HttpClient client, HttpRequest request, LongConsumer latencies) {
+        Semaphore permits = new Semaphore(inFlight);
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        try {
+            while (System.nanoTime() < deadline) {
+                permits.acquire();
+                long started = System.nanoTime();
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    long finished = System.nanoTime();
+                    if (error == null && finished < deadline) {
+                        completed.increment();
+                        latencies.accept(finished - started);
+                    }
+                    permits.release();
+                });
+            }
+            permits.acquire(inFlight);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return completed.sum();
+    }
+
+    private static long run(int threads, long millis, Runnable task) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    for (int j = 0; j < 64; j++) task.run();
+                    ops.add(64);
+                }
+            }));
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return ops.sum();
+    }
+}
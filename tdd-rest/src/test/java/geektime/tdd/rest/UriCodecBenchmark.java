@@ -0,0 +1,22 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+public class UriCodecBenchmark {
+    private static final String PLAIN = "/users/1234/orders/5678/items";
+    private static final String ENCODED = "/users/john%20doe/orders/caf%C3%A9/items";
+    private static final String QUERY = "fields=id%2Ctotal&sort=created&q=red+car";
+
+    @Test
+    public void decode() {
+        Throughput.measure("URLDecoder.decode, plain path", () -> URLDecoder.decode(PLAIN, StandardCharsets.UTF_8));
+        Throughput.measure("UriCodec.path, plain path", () -> UriCodec.path(PLAIN));
+        Throughput.measure("URLDecoder.decode, encoded path", () -> URLDecoder.decode(ENCODED, StandardCharsets.UTF_8));
+        Throughput.measure("UriCodec.path, encoded path", () -> UriCodec.path(ENCODED));
+        Throughput.measure("URLDecoder.decode, substring query value", () -> URLDecoder.decode(QUERY.substring(34), StandardCharsets.UTF_8));
+        Throughput.measure("UriCodec.decode, query value range", () -> UriCodec.decode(QUERY, 34, QUERY.length(), true));
+    }
+}
@@ -0,0 +1,103 @@
+package geektime.tdd.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UriCodecTest {
+    private static final String ALPHABET = "abcXYZ019-._~!$&'()*+,;=:@/?#[] %é你😀";
+
+    @ParameterizedTest
+    @CsvSource({"plain,plain", "a%20b,a b", "a+b,a+b", "%E4%BD%A0%E5%A5%BD,你好", "a%2Fb,a/b", "%f0%9f%98%80,😀"})
+    public void should_decode_percent_encoded_path(String raw, String decoded) {
+        assertEquals(decoded, UriCodec.decode(raw));
+    }
+
+    @Test
+    public void should_return_same_instance_if_nothing_to_decode() {
+        String path = "/users/1/orders";
+
+        assertSame(path, UriCodec.decode(path));
+        assertSame(path, UriCodec.normalize(path));
+        assertSame(path, UriCodec.path(path));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"100%", "%4", "%zz", "a%g1", "%-1"})
+    public void should_reject_malformed_escape_like_url_decoder(String raw) {
+        assertThrows(IllegalArgumentException.class, () -> URLDecoder.decode(raw, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> UriCodec.decode(raw));
+    }
+
+    @Test
+    public void should_round_trip_url_encoder_output() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String value = random(random, ALPHABET, 24);
+            String encoded = URLEncoder.encode(value, StandardCharsets.UTF_8);
+
+            assertEquals(value, UriCodec.decode(encoded, 0, encoded.length(), true), encoded);
+            assertEquals(value, UriCodec.decode(UriCodec.encode(value)), value);
+        }
+    }
+
+    @Test
+    public void should_agree_with_url_decoder_on_arbitrary_input() {
+        Random random = new Random(7);
+        String alphabet = "ab+%0123456789ABCDEFabcdefg/é";
+        for (int i = 0; i < 50_000; i++) {
+            String value = random(random, alphabet, 16);
+            // URLDecoder parses escapes with Integer.parseInt and so accepts a sign such as "%+1"; RFC 3986 does not
+            if (value.contains("%+")) continue;
+            String expected;
+            try {
+                expected = URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                assertThrows(IllegalArgumentException.class, () -> UriCodec.decode(value, 0, value.length(), true), value);
+                continue;
+            }
+            assertEquals(expected, UriCodec.decode(value, 0, value.length(), true), value);
+        }
+    }
+
+    @Test
+    public void should_decode_sub_range_without_touching_surroundings() {
+        String query = "name=john%20doe&city=Paris";
+
+        assertEquals("john doe", UriCodec.decode(query, 5, 15, true));
+        assertEquals("Paris", UriCodec.decode(query, 21, 26, true));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"/a/b,/a/b", "/a//b,/a/b", "/a/./b,/a/b", "/a/b/../c,/a/c", "/a/b/..,/a/", "/..,/", "/a/.,/a/",
+            "/a/b/,/a/b/", "/,/", "'',''", "/a/../../b,/b"})
+    public void should_normalize_path(String path, String normalized) {
+        assertEquals(normalized, UriCodec.normalize(path));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"/users/1,/users/1", "/users;v=1/1,/users/1", "/caf%C3%A9/menu%20items,/café/menu items",
+            "/a/%2E%2E/b,/b", "/a;x=1;y=2,/a"})
+    public void should_derive_servlet_path_from_raw_path(String raw, String path) {
+        assertEquals(path, UriCodec.path(raw));
+    }
+
+    private static String random(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int index = random.nextInt(alphabet.length());
+            char c = alphabet.charAt(index);
+            if (Character.isHighSurrogate(c)) value.append(c).append(alphabet.charAt(index + 1));
+            else if (!Character.isLowSurrogate(c)) value.append(c);
+        }
+        return value.toString();
+    }
+}
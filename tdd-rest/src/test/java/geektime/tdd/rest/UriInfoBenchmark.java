@@ -0,0 +1,45 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+public class UriInfoBenchmark {
+    private static final String PATH = "/users/john%20doe/orders/42";
+    private static final String QUERY = "fields=id,total&sort=created&page=3&size=20";
+
+    private final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class[]{HttpServletRequest.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getServletPath" -> "/users/john doe/orders/42";
+                case "getRequestURI" -> PATH;
+                case "getContextPath" -> "";
+                case "getQueryString" -> QUERY;
+                default -> null;
+            });
+
+    @Test
+    public void lazy_uri_info() {
+        Throughput.measure("route only, UriInfo never touched", () -> route());
+        Throughput.measure("route and read one path parameter", () -> route().createUriInfo().getPathParameters().getFirst("id"));
+        Throughput.measure("route and read one query parameter", () -> route().createUriInfo().getQueryParameters().getFirst("page"));
+        Throughput.measure("route and materialize everything", () -> {
+            UriInfo uriInfo = route().createUriInfo();
+            uriInfo.getPathParameters();
+            uriInfo.getQueryParameters();
+            uriInfo.getPathSegments().forEach(segment -> segment.getMatrixParameters());
+            uriInfo.getMatchedURIs();
+        });
+    }
+
+    private UriInfoBuilder route() {
+        UriInfoBuilder builder = new DefaultUriInfoBuilder(request);
+        builder.pushMatchedPath("/users");
+        builder.addParameter("name", "john doe");
+        builder.pushMatchedPath("/john doe/orders/42");
+        builder.addParameter("id", "42");
+        return builder;
+    }
+}
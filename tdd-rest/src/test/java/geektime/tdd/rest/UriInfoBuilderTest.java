@@ -0,0 +1,150 @@
+package geektime.tdd.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class UriInfoBuilderTest {
+
+    @Test
+    public void should_record_matched_paths_and_unmatched_remainder() {
+        DefaultUriInfoBuilder builder = builder("/users/1/orders", null);
+
+        builder.pushMatchedPath("/users");
+        assertEquals("/1/orders", builder.getUnmatchedPath());
+        builder.pushMatchedPath("/1");
+        assertEquals("/orders", builder.getUnmatchedPath());
+
+        assertEquals(List.of("users/1", "users"), builder.createUriInfo().getMatchedURIs());
+    }
+
+    @Test
+    public void should_not_touch_request_until_uri_info_accessed() {
+        HttpServletRequest request = request("/users/1", null);
+        DefaultUriInfoBuilder builder = new DefaultUriInfoBuilder(request);
+
+        builder.pushMatchedPath("/users");
+        builder.addParameter("id", "1");
+        UriInfo uriInfo = builder.createUriInfo();
+
+        verify(request).getServletPath();
+        verifyNoMoreInteractions(request);
+        assertSame(uriInfo, builder.createUriInfo());
+    }
+
+    @Test
+    public void should_expose_path_parameters_decoded_and_encoded() {
+        DefaultUriInfoBuilder builder = builder("/users/john doe", null);
+        builder.addParameter("name", "john doe");
+        builder.addParameter("id", "1");
+
+        UriInfo uriInfo = builder.createUriInfo();
+
+        assertEquals(List.of("john doe"), uriInfo.getPathParameters().get("name"));
+        assertEquals(List.of("1"), uriInfo.getPathParameters().get("id"));
+        assertEquals(List.of("john%20doe"), uriInfo.getPathParameters(false).get("name"));
+    }
+
+    @Test
+    public void should_parse_query_parameters_lazily() {
+        HttpServletRequest request = request("/users", "name=john+doe&city=S%C3%A3o%20Paulo&tag=a&tag=b&flag");
+        UriInfo uriInfo = new DefaultUriInfoBuilder(request).createUriInfo();
+
+        assertEquals(List.of("john doe"), uriInfo.getQueryParameters().get("name"));
+        assertEquals(List.of("São Paulo"), uriInfo.getQueryParameters().get("city"));
+        assertEquals(List.of("a", "b"), uriInfo.getQueryParameters().get("tag"));
+        assertEquals(List.of(""), uriInfo.getQueryParameters().get("flag"));
+        assertSame(uriInfo.getQueryParameters(), uriInfo.getQueryParameters());
+        verify(request, times(1)).getQueryString();
+        assertEquals(List.of("S%C3%A3o%20Paulo"), uriInfo.getQueryParameters(false).get("city"));
+    }
+
+    @Test
+    public void should_split_path_segments_with_matrix_parameters() {
+        HttpServletRequest request = request("/cars/red%20car;color=dark%20red;year=2020/wheels", null);
+        when(request.getServletPath()).thenReturn("/cars/red car/wheels");
+        UriInfo uriInfo = new DefaultUriInfoBuilder(request).createUriInfo();
+
+        List<PathSegment> segments = uriInfo.getPathSegments();
+
+        assertEquals(3, segments.size());
+        assertEquals("cars", segments.get(0).getPath());
+        assertEquals("red car", segments.get(1).getPath());
+        assertEquals(List.of("dark red"), segments.get(1).getMatrixParameters().get("color"));
+        assertEquals(List.of("2020"), segments.get(1).getMatrixParameters().get("year"));
+        assertTrue(segments.get(2).getMatrixParameters().isEmpty());
+        assertEquals("red%20car", uriInfo.getPathSegments(false).get(1).getPath());
+        assertEquals("cars/red car/wheels", uriInfo.getPath());
+        assertEquals("cars/red%20car;color=dark%20red;year=2020/wheels", uriInfo.getPath(false));
+    }
+
+    @Test
+    public void should_map_matched_uris_back_to_raw_path() {
+        HttpServletRequest request = request("/caf%C3%A9;open=true/menu%20items/1", null);
+        when(request.getServletPath()).thenReturn("/café/menu items/1");
+        DefaultUriInfoBuilder builder = new DefaultUriInfoBuilder(request);
+
+        builder.pushMatchedPath("/café");
+        builder.pushMatchedPath("/menu items");
+
+        assertEquals(List.of("café/menu items", "café"), builder.createUriInfo().getMatchedURIs());
+        assertEquals(List.of("caf%C3%A9;open=true/menu%20items", "caf%C3%A9"), builder.createUriInfo().getMatchedURIs(false));
+    }
+
+    @Test
+    public void should_build_request_absolute_and_base_uris() {
+        HttpServletRequest request = request("/users/1", "fields=name");
+        when(request.getContextPath()).thenReturn("/api");
+        when(request.getRequestURI()).thenReturn("/api/users/1");
+        when(request.getRequestURL()).thenAnswer(invocation -> new StringBuffer("http://localhost:8080/api/users/1"));
+        UriInfo uriInfo = new DefaultUriInfoBuilder(request).createUriInfo();
+
+        assertEquals(URI.create("http://localhost:8080/api/users/1?fields=name"), uriInfo.getRequestUri());
+        assertEquals(URI.create("http://localhost:8080/api/users/1"), uriInfo.getAbsolutePath());
+        assertEquals(URI.create("http://localhost:8080/api/"), uriInfo.getBaseUri());
+        assertEquals(URI.create("http://localhost:8080/api/users/2"), uriInfo.resolve(URI.create("users/2")));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"plain,plain", "a%20b,a b", "a+b,a+b", "%E4%BD%A0%E5%A5%BD,你好", "a%2Fb,a/b"})
+    public void should_decode_percent_encoded_path(String raw, String decoded) {
+        assertEquals(decoded, UriCodec.decode(raw, 0, raw.length(), false));
+        assertEquals(decoded, builder("/" + raw, null).createUriInfo().getPathSegments().get(0).getPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"100%", "%zz"})
+    public void should_reject_malformed_percent_encoded_path_as_bad_request(String raw) {
+        assertThrows(IllegalArgumentException.class, () -> UriCodec.decode(raw, 0, raw.length(), false));
+
+        UriInfo uriInfo = builder("/" + raw + ";open=" + raw, null).createUriInfo();
+        PathSegment segment = uriInfo.getPathSegments().get(0);
+        assertThrows(BadRequestException.class, segment::getPath);
+        assertThrows(BadRequestException.class, segment::getMatrixParameters);
+        assertEquals(raw, uriInfo.getPathSegments(false).get(0).getPath());
+    }
+
+    private static DefaultUriInfoBuilder builder(String path, String query) {
+        return new DefaultUriInfoBuilder(request(path, query));
+    }
+
+    private static HttpServletRequest request(String path, String query) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServletPath()).thenReturn(path);
+        when(request.getContextPath()).thenReturn("");
+        when(request.getRequestURI()).thenReturn(path);
+        when(request.getQueryString()).thenReturn(query);
+        return request;
+    }
+}